@@ -893,7 +893,7 @@ public class CacheDetailActivity extends AbstractViewPagerActivity<CacheDetailAc
 
         progress.show(this, res.getString(R.string.cache_dialog_refresh_title), res.getString(R.string.cache_dialog_refresh_message), true, refreshCacheHandler.cancelMessage());
 
-        cache.refresh(refreshCacheHandler, AndroidRxUtils.refreshScheduler);
+        cache.refresh(refreshCacheHandler, AndroidRxUtils.networkScheduler);
     }
 
     private void dropCache() {
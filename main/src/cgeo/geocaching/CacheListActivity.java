@@ -56,6 +56,7 @@ import cgeo.geocaching.settings.SettingsActivity;
 import cgeo.geocaching.sorting.CacheComparator;
 import cgeo.geocaching.sorting.SortActionProvider;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.StoredCachesPager;
 import cgeo.geocaching.ui.CacheListAdapter;
 import cgeo.geocaching.ui.LoggingUI;
 import cgeo.geocaching.ui.WeakReferenceHandler;
@@ -101,6 +102,8 @@ import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.ListView;
 import android.widget.TextView;
@@ -125,6 +128,7 @@ import rx.Subscriber;
 import rx.Subscription;
 import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.schedulers.Schedulers;
 
@@ -132,6 +136,8 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
 
     private static final int MAX_LIST_ITEMS = 1000;
     private static final int REFRESH_WARNING_THRESHOLD = 100;
+    /** number of caches below the visible ones from which on the next page of an offline list is loaded */
+    private static final int PAGE_PREFETCH = 30;
 
     private static final int REQUEST_CODE_IMPORT_GPX = 1;
 
@@ -156,6 +162,12 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     private final AtomicInteger detailProgress = new AtomicInteger(0);
     private long detailProgressTime = 0L;
     private int listId = StoredList.TEMPORARY_LIST.id; // Only meaningful for the OFFLINE type
+    /** Reads the pages of an offline list not shown yet, null for other list types */
+    @Nullable private StoredCachesPager storedPages = null;
+    /** The geocodes of the page being loaded in the background, null if no page is being loaded */
+    @Nullable private List<String> loadingPage = null;
+    /** The actions waiting for the remaining pages of an offline list, null if they are not being loaded */
+    @Nullable private List<Runnable> afterRemainingPages = null;
     private final GeoDirHandler geoDirHandler = new GeoDirHandler() {
 
         @Override
@@ -577,8 +589,7 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
 
         // refresh standard list if it has changed (new caches downloaded)
         if (type == CacheListType.OFFLINE && (listId >= StoredList.STANDARD_LIST_ID || listId == PseudoList.ALL_LIST.id) && search != null) {
-            final SearchResult newSearch = DataStore.getBatchOfStoredCaches(coords, Settings.getCacheType(), listId);
-            if (newSearch.getTotalCountGC() != search.getTotalCountGC()) {
+            if (DataStore.getAllStoredCachesCount(Settings.getCacheType(), listId) != search.getTotalCountGC()) {
                 refreshCurrentList();
             }
         }
@@ -617,8 +628,14 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
                     // always reset the inversion for a new sorting criteria
                     adapter.resetInverseSort();
                 }
-                setComparator(selectedComparator);
                 sortProvider.setSelection(selectedComparator);
+                // sorting works on all caches of the list
+                loadRemainingPages(new Runnable() {
+                    @Override
+                    public void run() {
+                        setComparator(selectedComparator);
+                    }
+                });
             }
         });
 
@@ -626,7 +643,12 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
 
             @Override
             public void onListNavigationSelected(final CacheListApp app) {
-                app.invoke(CacheListAppUtils.filterCoords(cacheList), CacheListActivity.this, getFilteredSearch());
+                loadRemainingPages(new Runnable() {
+                    @Override
+                    public void run() {
+                        app.invoke(CacheListAppUtils.filterCoords(cacheList), CacheListActivity.this, getFilteredSearch());
+                    }
+                });
             }
         });
 
@@ -737,8 +759,39 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         }
     }
 
+    /**
+     * @return true if the action of the menu item works on all caches of the list when none is selected
+     */
+    private static boolean isActionOnAllCaches(final int itemId) {
+        switch (itemId) {
+            case R.id.menu_show_on_map:
+            case R.id.menu_refresh_stored:
+            case R.id.menu_drop_caches:
+            case R.id.menu_invert_selection:
+            case R.id.menu_export_gpx:
+            case R.id.menu_export_fieldnotes:
+            case R.id.menu_move_to_list:
+            case R.id.menu_copy_to_list:
+            case R.id.menu_delete_events:
+            case R.id.menu_clear_offline_logs:
+            case R.id.menu_cache_list_app:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @Override
     public boolean onOptionsItemSelected(final MenuItem item) {
+        if (isActionOnAllCaches(item.getItemId()) && (storedPages != null || afterRemainingPages != null)) {
+            loadRemainingPages(new Runnable() {
+                @Override
+                public void run() {
+                    onOptionsItemSelected(item);
+                }
+            });
+            return true;
+        }
         switch (item.getItemId()) {
             case R.id.menu_show_on_map:
                 goMap();
@@ -1019,6 +1072,16 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     }
 
     private void setFilter(final IFilter filter) {
+        // the filter works on all caches of the list
+        loadRemainingPages(new Runnable() {
+            @Override
+            public void run() {
+                applyFilter(filter);
+            }
+        });
+    }
+
+    private void applyFilter(final IFilter filter) {
         currentFilter = filter;
         adapter.setFilter(filter);
         prepareFilterBar();
@@ -1049,11 +1112,122 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
             listView.addFooterView(listFooter);
         }
         setListAdapter(adapter);
+        // pages of the previous list must not be added anymore
+        storedPages = null;
+        loadingPage = null;
+        afterRemainingPages = null;
+        listView.setOnScrollListener(new OnScrollListener() {
+
+            @Override
+            public void onScrollStateChanged(final AbsListView view, final int scrollState) {
+                // nothing to do
+            }
+
+            @Override
+            public void onScroll(final AbsListView view, final int firstVisibleItem, final int visibleItemCount, final int totalItemCount) {
+                if (firstVisibleItem + visibleItemCount + PAGE_PREFETCH >= totalItemCount) {
+                    loadNextPage();
+                }
+            }
+        });
 
         adapter.setInverseSort(currentInverseSort);
         adapter.forceSort();
     }
 
+    /**
+     * Load the next page of an offline list in the background and add its caches to the shown ones.
+     */
+    private void loadNextPage() {
+        final StoredCachesPager pager = storedPages;
+        if (pager == null || loadingPage != null || !pager.hasMore()) {
+            return;
+        }
+        final List<String> page = new ArrayList<>();
+        loadingPage = page;
+        AndroidRxUtils.andThenOnUi(Schedulers.io(), new Func0<Set<Geocache>>() {
+            @Override
+            public Set<Geocache> call() {
+                synchronized (page) {
+                    page.addAll(pager.nextPage());
+                }
+                return DataStore.loadCaches(page, LoadFlags.LOAD_CACHE_OR_DB);
+            }
+        }, new Action1<Set<Geocache>>() {
+            @Override
+            public void call(final Set<Geocache> caches) {
+                // the page has been loaded in the meantime by loadRemainingPages() or belongs to another list
+                if (loadingPage != page) {
+                    return;
+                }
+                loadingPage = null;
+                appendCaches(caches);
+            }
+        });
+    }
+
+    /**
+     * Load all caches of an offline list not shown yet in the background, then run the action on the UI thread. This
+     * must be done before working with all caches of the list, like sorting, filtering or exporting them. The action
+     * is run at once if there are no remaining pages.
+     */
+    private void loadRemainingPages(@NonNull final Runnable action) {
+        if (afterRemainingPages != null) {
+            afterRemainingPages.add(action);
+            return;
+        }
+        final StoredCachesPager pager = storedPages;
+        if (pager == null) {
+            action.run();
+            return;
+        }
+        final List<Runnable> actions = new ArrayList<>();
+        actions.add(action);
+        afterRemainingPages = actions;
+        // the page being read in the background is not part of the remaining pages anymore, it is loaded with them
+        final List<String> pendingPage = loadingPage;
+        loadingPage = null;
+        storedPages = null;
+        showProgress(true);
+        AndroidRxUtils.andThenOnUi(Schedulers.io(), new Func0<Set<Geocache>>() {
+            @Override
+            public Set<Geocache> call() {
+                final List<String> geocodes = new ArrayList<>();
+                if (pendingPage != null) {
+                    synchronized (pendingPage) {
+                        geocodes.addAll(pendingPage);
+                    }
+                }
+                geocodes.addAll(pager.remainingPages());
+                return DataStore.loadCaches(geocodes, LoadFlags.LOAD_CACHE_OR_DB);
+            }
+        }, new Action1<Set<Geocache>>() {
+            @Override
+            public void call(final Set<Geocache> caches) {
+                // another list has been shown in the meantime
+                if (afterRemainingPages != actions) {
+                    return;
+                }
+                afterRemainingPages = null;
+                showProgress(false);
+                appendCaches(caches);
+                for (final Runnable waiting : actions) {
+                    waiting.run();
+                }
+            }
+        });
+    }
+
+    private void appendCaches(@NonNull final Set<Geocache> caches) {
+        if (search == null) {
+            return;
+        }
+        cacheList.addAll(caches);
+        search.addGeocodes(Geocache.getGeocodes(caches));
+        updateAdapter();
+        updateTitle();
+    }
+
     private void updateAdapter() {
         adapter.notifyDataSetChanged();
         adapter.reFilter();
@@ -1796,6 +1970,18 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
             final Set<Geocache> cachesFromSearchResult = searchIn.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
             cacheList.addAll(cachesFromSearchResult);
             search = searchIn;
+            storedPages = arg0 instanceof OfflineGeocacheListLoader ? ((OfflineGeocacheListLoader) arg0).getPager() : null;
+            loadingPage = null;
+            afterRemainingPages = null;
+            if (adapter.isFiltered()) {
+                // the filter works on all caches of the list
+                loadRemainingPages(new Runnable() {
+                    @Override
+                    public void run() {
+                        invalidateOptionsMenuCompatible();
+                    }
+                });
+            }
             updateAdapter();
             updateTitle();
             showFooterMoreCaches();
@@ -1848,7 +2034,8 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
         if (adapter.isFiltered()) {
             result.append(adapter.getCount()).append('/');
         }
-        result.append(getCacheNumberString(getResources(), search.getCount()));
+        // the caches of an offline list not loaded yet are counted as well
+        result.append(getCacheNumberString(getResources(), storedPages != null && storedPages.hasMore() ? storedPages.getTotalCount() : search.getCount()));
         return result.toString();
     }
 
@@ -118,10 +118,8 @@ public class CgeoApplication extends Application {
     @Override
     public void onTrimMemory(final int level) {
         super.onTrimMemory(level);
-        if (level >= TRIM_MEMORY_MODERATE) {
-            Log.i("Cleaning applications cache to trim memory");
-            DataStore.removeAllFromCache();
-        }
+        Log.i("Trimming applications cache for level " + level);
+        DataStore.trimCacheCache(level);
     }
 
     public boolean isLiveMapHintShownInThisSession() {
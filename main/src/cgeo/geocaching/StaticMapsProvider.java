@@ -7,10 +7,12 @@ import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
+import cgeo.geocaching.network.RequestPriority;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.LocalStorage;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.FileUtils;
+import cgeo.geocaching.utils.LeastRecentlyUsedMap;
 import cgeo.geocaching.utils.Log;
 
 import okhttp3.Response;
@@ -40,6 +42,12 @@ public final class StaticMapsProvider {
 
     private static volatile long last403 = 0;
 
+    /**
+     * Recently downloaded map files by URL. Caches and waypoints at the same place with the same marker share the
+     * same map, which is then copied instead of being downloaded again.
+     */
+    private static final LeastRecentlyUsedMap<String, File> downloadedMaps = new LeastRecentlyUsedMap.LruCache<>(200);
+
     /** We assume there is no real usable image with less than 1k. */
     private static final int MIN_MAP_IMAGE_BYTES = 1000;
 
@@ -99,6 +107,13 @@ public final class StaticMapsProvider {
                 if (waypoints != null) {
                     params.addAll(waypoints);
                 }
+                final String url = GOOGLE_STATICMAP_URL + '?' + params;
+                final File file = getMapFile(geocode, prefix, true);
+                if (copyDownloadedMap(url, file)) {
+                    return Completable.complete();
+                }
+                // static maps are downloaded in advance for offline use
+                final RequestPriority previous = RequestPriority.setForCurrentThread(RequestPriority.BULK);
                 try {
                     final Response httpResponse = Network.getRequest(GOOGLE_STATICMAP_URL, params).toBlocking().value();
 
@@ -110,22 +125,43 @@ public final class StaticMapsProvider {
                         }
                         return Completable.complete();
                     }
-                    final File file = getMapFile(geocode, prefix, true);
                     if (LocalStorage.saveEntityToFile(httpResponse, file)) {
                         // Delete image if it has no contents
                         final long fileSize = file.length();
                         if (fileSize < MIN_MAP_IMAGE_BYTES) {
                             FileUtils.deleteIgnoringFailure(file);
+                        } else {
+                            synchronized (downloadedMaps) {
+                                downloadedMaps.put(url, file);
+                            }
                         }
                     }
                 } catch (final Exception ignored) {
                     Log.e("StaticMapsProvider.downloadMap: error");
+                } finally {
+                    RequestPriority.setForCurrentThread(previous);
                 }
                 return Completable.complete();
             }
         }).subscribeOn(AndroidRxUtils.networkScheduler));
     }
 
+    /**
+     * Copy a map downloaded before from the same URL.
+     *
+     * @return {@code true} if the map has been copied to {@code file}
+     */
+    private static boolean copyDownloadedMap(final String url, final File file) {
+        final File downloaded;
+        synchronized (downloadedMaps) {
+            downloaded = downloadedMaps.get(url);
+        }
+        if (downloaded == null || !downloaded.isFile()) {
+            return false;
+        }
+        return downloaded.equals(file) || LocalStorage.copy(downloaded, file);
+    }
+
     public static Completable downloadMaps(final Geocache cache) {
         if ((!Settings.isStoreOfflineMaps() && !Settings.isStoreOfflineWpMaps()) || StringUtils.isBlank(cache.getGeocode())) {
             return Completable.complete();
@@ -144,7 +180,9 @@ public final class StaticMapsProvider {
         if (Settings.isStoreOfflineWpMaps()) {
             for (final Waypoint waypoint : cache.getWaypoints()) {
                 if (!hasAllStaticMapsForWaypoint(cache.getGeocode(), waypoint)) {
+                    // this refreshes the maps of all waypoints, so it must only be done once
                     downloaders.add(refreshAllWpStaticMaps(cache, displaySize.x, displaySize.y));
+                    break;
                 }
             }
 
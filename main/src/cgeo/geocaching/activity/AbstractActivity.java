@@ -8,6 +8,7 @@ import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.network.AndroidBeam;
 import cgeo.geocaching.network.Cookies;
 import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.ClipboardUtils;
 import cgeo.geocaching.utils.EditUtils;
 import cgeo.geocaching.utils.HtmlUtils;
@@ -97,6 +98,13 @@ public abstract class AbstractActivity extends ActionBarActivity implements IAbs
         super.onPause();
     }
 
+    @Override
+    protected void onStop() {
+        // do not keep changes of caches pending while the user is not looking at the application
+        DataStore.flushPendingWrites();
+        super.onStop();
+    }
+
     protected static void disableSuggestions(final EditText edit) {
         EditUtils.disableSuggestions(edit);
     }
@@ -42,6 +42,7 @@ import java.util.Collections;
 import java.util.List;
 
 import rx.Observable;
+import rx.functions.Action1;
 import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.schedulers.Schedulers;
@@ -282,10 +283,16 @@ public final class ConnectorFactory {
     /** @see ISearchByViewPort#searchByViewport */
     @NonNull
     public static SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens) {
+        return searchByViewport(viewport, tokens, null);
+    }
+
+    /** @see ISearchByViewPort#searchByViewport */
+    @NonNull
+    public static SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults) {
         return SearchResult.parallelCombineActive(searchByViewPortConns, new Func1<ISearchByViewPort, SearchResult>() {
             @Override
             public SearchResult call(final ISearchByViewPort connector) {
-                return connector.searchByViewport(viewport, tokens);
+                return connector.searchByViewport(viewport, tokens, partialResults);
             }
         });
     }
@@ -6,8 +6,16 @@ import cgeo.geocaching.connector.gc.MapTokens;
 import cgeo.geocaching.location.Viewport;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import rx.functions.Action1;
 
 public interface ISearchByViewPort extends IConnector {
+    /**
+     * @param partialResults
+     *            optional action for connectors loading the viewport in several parts, it is called with the result
+     *            of each part as soon as that part is available
+     */
     @NonNull
-    SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens);
+    SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults);
 }
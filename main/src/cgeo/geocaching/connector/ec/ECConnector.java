@@ -35,6 +35,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import rx.functions.Action1;
+
 public class ECConnector extends AbstractConnector implements ISearchByGeocode, ISearchByCenter, ISearchByViewPort, ILogin, ICredentials {
 
     @NonNull
@@ -104,7 +106,7 @@ public class ECConnector extends AbstractConnector implements ISearchByGeocode,
 
     @Override
     @NonNull
-    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens) {
+    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults) {
         final Collection<Geocache> caches = ECApi.searchByBBox(viewport);
         final SearchResult searchResult = new SearchResult(caches);
         return searchResult.filterSearchResults(false, Settings.getCacheType());
@@ -0,0 +1,300 @@
+package cgeo.geocaching.connector.gc;
+
+import cgeo.geocaching.utils.MatcherWrapper;
+import cgeo.geocaching.utils.TextUtils;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A whitespace normalized cache details page, scanned once for the positions of the texts the cache page patterns of
+ * {@link GCConstants} start with.
+ *
+ * A pattern is then run from the first position of its text only, and not at all if the text is missing from the page,
+ * instead of searching the whole page for every field. As no match can start before the text it starts with, the
+ * results are the same as running the patterns over the whole page.
+ */
+final class GCCachePage {
+
+    /** Literal text every match of the pattern starts with */
+    private static final Map<Pattern, String> PREFIXES = new HashMap<>();
+
+    private static final String CALENDAR_LINKS = "<div id=\"calLinks\">";
+    private static final String HINTS = "<p id=\"ctl00_ContentBody_hints\">";
+
+    /**
+     * Number of characters up to the end of {@link #CALENDAR_LINKS} and {@link #HINTS} in which the start of a match
+     * ending with them is searched first. The page has at most one space between tags after its whitespace has been normalized, so
+     * the rest of the page is only searched if there is no match at all.
+     */
+    static final int MATCH_END_WINDOW = 256;
+
+    static {
+        PREFIXES.put(GCConstants.PATTERN_STATUS, "<p class=\"OldWarning");
+        PREFIXES.put(GCConstants.PATTERN_PREMIUMMEMBERS, "<p class=\"Warning NoBottomSpacing\"");
+        PREFIXES.put(GCConstants.PATTERN_IS_FAVORITE, "<div id=\"pnlFavoriteCache\">");
+        PREFIXES.put(GCConstants.PATTERN_GEOCODE, "class=\"CoordInfoCode\">GC");
+        PREFIXES.put(GCConstants.PATTERN_CACHEID, "/seek/log.aspx?ID=");
+        PREFIXES.put(GCConstants.PATTERN_GUID, "&wid=");
+        PREFIXES.put(GCConstants.PATTERN_WATCHLIST_COUNT, "watchlist.aspx");
+        PREFIXES.put(GCConstants.PATTERN_OWNER_USERID, "seek/nearest.aspx?u=");
+        PREFIXES.put(GCConstants.PATTERN_TERRAIN, "<span id=\"ctl00_ContentBody_Localize");
+        PREFIXES.put(GCConstants.PATTERN_DIFFICULTY, "<span id=\"ctl00_ContentBody_uxLegendScale\"");
+        PREFIXES.put(GCConstants.PATTERN_OWNER_DISPLAYNAME, "<div id=\"ctl00_ContentBody_mcd1\">");
+        PREFIXES.put(GCConstants.PATTERN_HIDDEN, "ctl00_ContentBody_mcd2");
+        PREFIXES.put(GCConstants.PATTERN_FAVORITECOUNT, "<span class=\"favorite-value\">");
+        PREFIXES.put(GCConstants.PATTERN_SIZE, "/icons/container/");
+        PREFIXES.put(GCConstants.PATTERN_FOUND, "logtypes/48/");
+        // the dot before "aspx" is not escaped in the pattern
+        PREFIXES.put(GCConstants.PATTERN_TYPE, "<a href=\"/seek/nearest");
+        PREFIXES.put(GCConstants.PATTERN_WATCHLIST, "watchlist.aspx");
+        PREFIXES.put(GCConstants.PATTERN_LATLON, "<span id=\"uxLatLon\"");
+        PREFIXES.put(GCConstants.PATTERN_LOCATION, "<span id=\"ctl00_ContentBody_Location\">In ");
+        PREFIXES.put(GCConstants.PATTERN_HINT, "<div id=\"div_hint\"");
+        PREFIXES.put(GCConstants.PATTERN_SHORTDESC, "<span id=\"ctl00_ContentBody_ShortDescription\">");
+        PREFIXES.put(GCConstants.PATTERN_DESC, "<span id=\"ctl00_ContentBody_LongDescription\">");
+        PREFIXES.put(GCConstants.PATTERN_RELATED_WEB_PAGE, "ctl00_ContentBody_uxCacheUrl");
+        PREFIXES.put(GCConstants.PATTERN_ATTRIBUTES, "<img src=\"/images/attributes");
+        PREFIXES.put(GCConstants.PATTERN_SPOILER_IMAGE, "<a href=\"http");
+        PREFIXES.put(GCConstants.PATTERN_INVENTORY, "ctl00_ContentBody_uxTravelBugList_uxInventoryLabel\">");
+        PREFIXES.put(GCConstants.PATTERN_COUNTLOGS, "<span id=\"ctl00_ContentBody_lblFindCounts\"><p");
+        PREFIXES.put(GCConstants.PATTERN_LATLON_ORIG, "{\"isUserDefined\":true");
+    }
+
+    /** All the texts searched in the page, with their index in {@link #positions} */
+    private static final Map<String, Integer> TEXTS = new HashMap<>();
+
+    /** Indexes in {@link #TEXTS} of the texts starting with a given pair of ASCII characters */
+    private static final int[][] TEXTS_BY_FIRST_CHARS = new int[128 * 128][];
+
+    private static final String[] TEXTS_ARRAY;
+
+    static {
+        for (final String text : PREFIXES.values()) {
+            addText(text);
+        }
+        addText(GCConstants.STRING_CACHEDETAILS);
+        addText(GCConstants.STRING_WAYPOINTS);
+        addText(CALENDAR_LINKS);
+        addText(HINTS);
+        TEXTS_ARRAY = new String[TEXTS.size()];
+        for (final Map.Entry<String, Integer> entry : TEXTS.entrySet()) {
+            final int index = entry.getValue();
+            TEXTS_ARRAY[index] = entry.getKey();
+            final int firstChars = entry.getKey().charAt(0) << 7 | entry.getKey().charAt(1);
+            final int[] indexes = TEXTS_BY_FIRST_CHARS[firstChars];
+            final int[] extended = indexes == null ? new int[1] : Arrays.copyOf(indexes, indexes.length + 1);
+            extended[extended.length - 1] = index;
+            TEXTS_BY_FIRST_CHARS[firstChars] = extended;
+        }
+    }
+
+    private static void addText(@NonNull final String text) {
+        if (!TEXTS.containsKey(text)) {
+            TEXTS.put(text, TEXTS.size());
+        }
+    }
+
+    /**
+     * @return the patterns which can be run on the scanned page
+     */
+    @NonNull
+    static Set<Pattern> getPatterns() {
+        return Collections.unmodifiableSet(PREFIXES.keySet());
+    }
+
+    @NonNull private final String page;
+
+    /** Ascending positions of each text in the page, in the first {@link #counts} entries */
+    @NonNull private final int[][] positions = new int[TEXTS_ARRAY.length][];
+    @NonNull private final int[] counts = new int[TEXTS_ARRAY.length];
+
+    /**
+     * Scan the page for all the texts in a single pass.
+     *
+     * @param page
+     *            the cache details page, with its whitespace replaced by {@link TextUtils#replaceWhitespace(String)}
+     */
+    GCCachePage(@NonNull final String page) {
+        this.page = page;
+        final int last = page.length() - 1;
+        for (int i = 0; i < last; i++) {
+            final char first = page.charAt(i);
+            final char second = page.charAt(i + 1);
+            if ((first | second) < 128) {
+                final int[] candidates = TEXTS_BY_FIRST_CHARS[first << 7 | second];
+                if (candidates != null) {
+                    for (final int text : candidates) {
+                        if (page.startsWith(TEXTS_ARRAY[text], i)) {
+                            addPosition(text, i);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addPosition(final int text, final int position) {
+        int[] textPositions = positions[text];
+        if (textPositions == null) {
+            textPositions = new int[2];
+            positions[text] = textPositions;
+        } else if (counts[text] == textPositions.length) {
+            textPositions = Arrays.copyOf(textPositions, textPositions.length * 2);
+            positions[text] = textPositions;
+        }
+        textPositions[counts[text]++] = position;
+    }
+
+    /**
+     * @return the first position of one of the texts of this class at or after {@code from}, or -1 if not found
+     */
+    int indexOf(@NonNull final String text, final int from) {
+        final Integer index = TEXTS.get(text);
+        if (index == null) {
+            throw new IllegalArgumentException("text not scanned: " + text);
+        }
+        final int[] textPositions = positions[index];
+        final int count = counts[index];
+        for (int i = 0; i < count; i++) {
+            if (textPositions[i] >= from) {
+                return textPositions[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position of the first possible match of the pattern at or after {@code from}, or -1 if the pattern
+     *         cannot match there
+     */
+    int start(@NonNull final Pattern pattern, final int from) {
+        final String prefix = PREFIXES.get(pattern);
+        if (prefix == null) {
+            throw new IllegalArgumentException("pattern without known prefix: " + pattern);
+        }
+        return indexOf(prefix, from);
+    }
+
+    /**
+     * Same as {@link TextUtils#getMatch(String, Pattern, boolean, String)} on the page from {@code from} on.
+     */
+    String getMatch(@NonNull final Pattern pattern, final int from, final boolean trim, final String defaultValue) {
+        final int start = start(pattern, from);
+        return start >= 0 ? TextUtils.getMatch(page, pattern, start, trim, 1, defaultValue, false) : defaultValue;
+    }
+
+    /**
+     * Same as {@link TextUtils#getMatch(String, Pattern, boolean, String)} on the page.
+     */
+    String getMatch(@NonNull final Pattern pattern, final boolean trim, final String defaultValue) {
+        return getMatch(pattern, 0, trim, defaultValue);
+    }
+
+    /**
+     * Same as {@link TextUtils#matches(String, Pattern)} on the page.
+     */
+    boolean matches(@NonNull final Pattern pattern) {
+        final int start = start(pattern, 0);
+        return start >= 0 && pattern.matcher(page).find(start);
+    }
+
+    /**
+     * @return a matcher on the page, whose {@link MatcherWrapper#find()} finds the same matches as on the whole page
+     */
+    @NonNull
+    MatcherWrapper matcher(@NonNull final Pattern pattern) {
+        final int start = start(pattern, 0);
+        // without the prefix, the empty region at the end of the page finds nothing
+        return new MatcherWrapper(pattern, page).region(start >= 0 ? start : page.length(), page.length());
+    }
+
+    /**
+     * Same as {@link TextUtils#getMatch(String, Pattern, boolean, String)} with {@link GCConstants#PATTERN_DESC} on
+     * the page, without running the pattern over the whole description to find its end.
+     */
+    @NonNull
+    String getLongDescription() {
+        final int start = start(GCConstants.PATTERN_DESC, 0);
+        if (start < 0) {
+            return "";
+        }
+        final int descriptionStart = start + PREFIXES.get(GCConstants.PATTERN_DESC).length();
+        for (int hints = indexOf(HINTS, descriptionStart); hints >= 0; hints = indexOf(HINTS, hints + 1)) {
+            final int end = findMatchEndingAt(GCConstants.PATTERN_DESC_END, descriptionStart, hints + HINTS.length());
+            if (end >= 0) {
+                return copy(page.substring(descriptionStart, end));
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Same as {@link TextUtils#getMatch(String, Pattern, boolean, String)} with {@link GCConstants#PATTERN_HIDDENEVENT}
+     * on the page from {@code from} on, without running the pattern over the whole page.
+     */
+    @Nullable
+    String getHiddenEventDate(final int from) {
+        for (int links = indexOf(CALENDAR_LINKS, from); links >= 0; links = indexOf(CALENDAR_LINKS, links + 1)) {
+            final int end = links + CALENDAR_LINKS.length();
+            final int start = findMatchEndingAt(GCConstants.PATTERN_HIDDENEVENT, from, end);
+            if (start >= 0) {
+                final Matcher matcher = GCConstants.PATTERN_HIDDENEVENT.matcher(page);
+                matcher.region(start, end);
+                if (matcher.find()) {
+                    return copy(matcher.group(1));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the start of the first match of the pattern ending at {@code end} and starting at or after
+     *         {@code from}, or -1
+     */
+    private int findMatchEndingAt(@NonNull final Pattern pattern, final int from, final int end) {
+        final int windowStart = Math.max(from, end - MATCH_END_WINDOW);
+        final int start = findMatchEndingAt(pattern, windowStart, end, end);
+        if (start >= 0 || windowStart == from) {
+            return start;
+        }
+        // a match longer than the window
+        return findMatchEndingAt(pattern, from, windowStart, end);
+    }
+
+    /**
+     * @return the start of the first match of the pattern ending at {@code end} and starting at or after
+     *         {@code from} and before {@code startLimit}, or -1
+     */
+    private int findMatchEndingAt(@NonNull final Pattern pattern, final int from, final int startLimit, final int end) {
+        final Matcher matcher = pattern.matcher(page);
+        matcher.region(from, end);
+        while (matcher.find() && matcher.start() < startLimit) {
+            if (matcher.end() == end) {
+                return matcher.start();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the control characters like {@link TextUtils#getMatch(String, Pattern, boolean, String)} does, and copy
+     * the text so that it does not keep the whole page in memory.
+     */
+    @NonNull
+    @SuppressFBWarnings("DM_STRING_CTOR")
+    private static String copy(@NonNull final String text) {
+        return new String(TextUtils.removeControlCharacters(text));
+    }
+}
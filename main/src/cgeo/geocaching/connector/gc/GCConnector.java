@@ -202,8 +202,8 @@ public class GCConnector extends AbstractConnector implements ISearchByGeocode,
 
     @Override
     @NonNull
-    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens) {
-        return GCMap.searchByViewport(viewport, tokens);
+    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults) {
+        return GCMap.searchByViewport(viewport, tokens, partialResults);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package cgeo.geocaching.connector.gc;
 
+import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.SearchResult;
 import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.enumerations.CacheType;
@@ -16,9 +17,9 @@ import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.Formatter;
 import cgeo.geocaching.utils.JsonUtils;
-import cgeo.geocaching.utils.LeastRecentlyUsedMap;
 import cgeo.geocaching.utils.Log;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -28,25 +29,45 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
 import android.graphics.Bitmap;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import rx.Observable;
 import rx.Single;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
 import rx.functions.Func2;
 
 public class GCMap {
+    /** maximum number of live map tiles requested at the same time */
+    private static final int MAX_CONCURRENT_TILE_REQUESTS = 4;
+    /** time after which tiles in the disk cache are not used anymore */
+    private static final long TILE_DISK_CACHE_TTL = TimeUnit.DAYS.toMillis(1);
+    /** maximum size of the tile disk cache in bytes */
+    private static final long TILE_DISK_CACHE_SIZE = 20 * 1024 * 1024;
+    /** age after which tiles served from the disk cache are loaded again in the background */
+    private static final long TILE_REVALIDATION_AGE = TimeUnit.MINUTES.toMillis(10);
+
+    private static TileDiskCache tileDiskCache = null;
+    /** disk cache keys of the tiles being revalidated */
+    private static final Set<String> revalidatingTiles = Collections.synchronizedSet(new HashSet<String>());
+
     private static Viewport lastSearchViewport = null;
 
     private GCMap() {
@@ -121,81 +142,33 @@ public class GCMap {
      */
     public static SearchResult parseMapJSON(final String data, final Tile tile, final Bitmap bitmap, final LivemapStrategy strategy) {
         final SearchResult searchResult = new SearchResult();
+        searchResult.addAndPutInCache(filterCaches(decodeMapJSON(data, tile, bitmap, strategy)));
+        Log.d("Retrieved " + searchResult.getCount() + " caches for tile " + tile.toString());
+        return searchResult;
+    }
 
-        try {
-
-            final LeastRecentlyUsedMap<String, String> nameCache = new LeastRecentlyUsedMap.LruCache<>(2000); // JSON id, cache name
+    /**
+     * Decodes all caches of a live map tile, without applying any filter.
+     */
+    @NonNull
+    private static List<Geocache> decodeMapJSON(final String data, final Tile tile, final Bitmap bitmap, final LivemapStrategy strategy) {
+        final List<Geocache> caches = new ArrayList<>();
 
+        try {
             if (StringUtils.isEmpty(data)) {
                 throw new ParserException("No page given");
             }
 
-            // Example JSON information
-            // {"grid":[....],
-            //  "keys":["","55_55","55_54","17_25","55_53","17_27","17_26","57_53","57_55","3_62","3_61","57_54","3_60","15_27","15_26","15_25","4_60","4_61","4_62","16_25","16_26","16_27","2_62","2_60","2_61","56_53","56_54","56_55"],
-            //  "data":{"55_55":[{"i":"gEaR","n":"Spiel & Sport"}],"55_54":[{"i":"gEaR","n":"Spiel & Sport"}],"17_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"55_53":[{"i":"gEaR","n":"Spiel & Sport"}],"17_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"17_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"57_53":[{"i":"gEaR","n":"Spiel & Sport"}],"57_55":[{"i":"gEaR","n":"Spiel & Sport"}],"3_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"3_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"57_54":[{"i":"gEaR","n":"Spiel & Sport"}],"3_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"15_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"4_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"16_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"2_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"56_53":[{"i":"gEaR","n":"Spiel & Sport"}],"56_54":[{"i":"gEaR","n":"Spiel & Sport"}],"56_55":[{"i":"gEaR","n":"Spiel & Sport"}]}
-            //  }
-
-            final ObjectNode json = (ObjectNode) JsonUtils.reader.readTree(data);
-
-            final ArrayNode grid = (ArrayNode) json.get("grid");
-            if (grid == null || grid.size() != (UTFGrid.GRID_MAXY + 1)) {
-                throw new ParserException("No grid inside JSON");
-            }
-            final ArrayNode keys = (ArrayNode) json.get("keys");
-            if (keys == null) {
-                throw new ParserException("No keys inside JSON");
-            }
-            final ObjectNode dataObject = (ObjectNode) json.get("data");
-            if (dataObject == null) {
-                throw new ParserException("No data inside JSON");
-            }
-
-            // iterate over the data and construct all caches in this tile
-            final Map<String, List<UTFGridPosition>> positions = new HashMap<>(); // JSON id as key
-            final Map<String, List<UTFGridPosition>> singlePositions = new HashMap<>(); // JSON id as key
-
-            for (final JsonNode rawKey: keys) {
-                final String key = rawKey.asText();
-                if (StringUtils.isNotBlank(key)) { // index 0 is empty
-                    final UTFGridPosition pos = UTFGridPosition.fromString(key);
-                    final ArrayNode dataForKey = (ArrayNode) dataObject.get(key);
-                    for (final JsonNode cacheInfo: dataForKey) {
-                        final String id = cacheInfo.get("i").asText();
-                        nameCache.put(id, cacheInfo.get("n").asText());
-
-                        List<UTFGridPosition> listOfPositions = positions.get(id);
-                        List<UTFGridPosition> singleListOfPositions = singlePositions.get(id);
-
-                        if (listOfPositions == null) {
-                            listOfPositions = new ArrayList<>();
-                            positions.put(id, listOfPositions);
-                            singleListOfPositions = new ArrayList<>();
-                            singlePositions.put(id, singleListOfPositions);
-                        }
-
-                        listOfPositions.add(pos);
-                        if (dataForKey.size() == 1) {
-                            singleListOfPositions.add(pos);
-                        }
-
-                    }
-                }
-            }
-
-            final List<Geocache> caches = new ArrayList<>();
-            for (final Entry<String, List<UTFGridPosition>> entry : positions.entrySet()) {
-                final String id = entry.getKey();
-                final List<UTFGridPosition> pos = entry.getValue();
-                final UTFGridPosition xy = UTFGrid.getPositionInGrid(pos);
+            for (final MapInfoParser.TileCache tileCache : MapInfoParser.parse(data)) {
+                final UTFGridPosition xy = UTFGrid.getPositionInGrid(tileCache.positions);
                 final Geocache cache = new Geocache();
                 cache.setDetailed(false);
                 cache.setReliableLatLon(false);
-                cache.setGeocode(id);
-                cache.setName(nameCache.get(id));
+                cache.setGeocode(tileCache.id);
+                cache.setName(tileCache.name);
                 cache.setCoords(tile.getCoord(xy), tile.getZoomLevel());
                 if (strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES) && bitmap != null) {
-                    for (final UTFGridPosition singlePos : singlePositions.get(id)) {
+                    for (final UTFGridPosition singlePos : tileCache.singlePositions) {
                         if (IconDecoder.parseMapPNG(cache, bitmap, singlePos, tile.getZoomLevel())) {
                             break; // cache parsed
                         }
@@ -203,29 +176,38 @@ public class GCMap {
                 } else {
                     cache.setType(CacheType.UNKNOWN, tile.getZoomLevel());
                 }
-
-                boolean exclude = false;
-                if (Settings.isExcludeMyCaches() && (cache.isFound() || cache.isOwner())) { // workaround for BM
-                    exclude = true;
-                }
-                if (Settings.isExcludeDisabledCaches() && cache.isDisabled()) {
-                    exclude = true;
-                }
-                if (!Settings.getCacheType().contains(cache) && cache.getType() != CacheType.UNKNOWN) { // workaround for BM
-                    exclude = true;
-                }
-                if (!exclude) {
-                    caches.add(cache);
-                }
+                caches.add(cache);
             }
-            searchResult.addAndPutInCache(caches);
-            Log.d("Retrieved " + searchResult.getCount() + " caches for tile " + tile.toString());
 
         } catch (RuntimeException | ParserException | IOException e) {
             Log.e("GCMap.parseMapJSON", e);
         }
 
-        return searchResult;
+        return caches;
+    }
+
+    /**
+     * @return the caches not excluded by the current settings
+     */
+    @NonNull
+    private static List<Geocache> filterCaches(@NonNull final Collection<Geocache> caches) {
+        final List<Geocache> included = new ArrayList<>(caches.size());
+        for (final Geocache cache : caches) {
+            boolean exclude = false;
+            if (Settings.isExcludeMyCaches() && (cache.isFound() || cache.isOwner())) { // workaround for BM
+                exclude = true;
+            }
+            if (Settings.isExcludeDisabledCaches() && cache.isDisabled()) {
+                exclude = true;
+            }
+            if (!Settings.getCacheType().contains(cache) && cache.getType() != CacheType.UNKNOWN) { // workaround for BM
+                exclude = true;
+            }
+            if (!exclude) {
+                included.add(cache);
+            }
+        }
+        return included;
     }
 
     /**
@@ -235,16 +217,18 @@ public class GCMap {
      *            Area to search
      * @param tokens
      *            Live map tokens
+     * @param partialResults
+     *            optional action receiving the caches of every tile as soon as the tile has been loaded
      */
     @NonNull
-    public static SearchResult searchByViewport(final Viewport viewport, final MapTokens tokens) {
+    public static SearchResult searchByViewport(final Viewport viewport, final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults) {
         final int speed = (int) Sensors.getInstance().currentGeo().getSpeed() * 60 * 60 / 1000; // in km/h
         LivemapStrategy strategy = Settings.getLiveMapStrategy();
         if (strategy == LivemapStrategy.AUTO) {
             strategy = speed >= 30 ? LivemapStrategy.FAST : LivemapStrategy.DETAILED;
         }
 
-        final SearchResult result = searchByViewport(viewport, tokens, strategy);
+        final SearchResult result = searchByViewport(viewport, tokens, strategy, partialResults);
 
         if (Settings.isDebug()) {
             final StringBuilder text = new StringBuilder(Formatter.SEPARATOR).append(strategy.getL10n()).append(Formatter.SEPARATOR).append(Units.getSpeed(speed));
@@ -267,9 +251,11 @@ public class GCMap {
      *            Live map tokens
      * @param strategy
      *            Strategy for data retrieval and parsing, @see Strategy
+     * @param partialResults
+     *            optional action receiving the caches of every tile as soon as the tile has been loaded
      */
     @NonNull
-    private static SearchResult searchByViewport(final Viewport viewport, final MapTokens tokens, final LivemapStrategy strategy) {
+    private static SearchResult searchByViewport(final Viewport viewport, final MapTokens tokens, final LivemapStrategy strategy, @Nullable final Action1<SearchResult> partialResults) {
         Log.d("GCMap.searchByViewport" + viewport.toString());
 
         final SearchResult searchResult = new SearchResult();
@@ -285,63 +271,30 @@ public class GCMap {
                 searchResult.setUrl(new StringBuilder().append(tiles.iterator().next().getZoomLevel()).append(Formatter.SEPARATOR).append(searchResult.getUrl()).toString());
             }
 
+            final List<Tile> tilesToLoad = new ArrayList<>(tiles.size());
             for (final Tile tile : tiles) {
                 if (!Tile.cache.contains(tile)) {
-                    final Parameters params = new Parameters(
-                            "x", String.valueOf(tile.getX()),
-                            "y", String.valueOf(tile.getY()),
-                            "z", String.valueOf(tile.getZoomLevel()),
-                            "ep", "1",
-                            "app", "cgeo");
-                    if (tokens != null) {
-                        params.put("k", tokens.getUserSession(), "st", tokens.getSessionToken());
-                    }
-                    if (Settings.isExcludeMyCaches()) { // works only for PM
-                        params.put("hf", "1", "hh", "1"); // hide found, hide hidden
-                    }
-                    // ect: exclude cache type (probably), comma separated list
-                    if (Settings.getCacheType() != CacheType.ALL) {
-                        params.put("ect", getCacheTypeFilter(Settings.getCacheType()));
-                    }
-                    if (tile.getZoomLevel() != 14) {
-                        params.put("_", String.valueOf(System.currentTimeMillis()));
-                    }
+                    tilesToLoad.add(tile);
+                }
+            }
 
-                    // The PNG must be requested first, otherwise the following request would always return with 204 - No Content
-                    final Single<Bitmap> bitmapObs = Tile.requestMapTile(params).onErrorResumeNext(Single.<Bitmap>just(null));
-                    final Single<String> dataObs = Tile.requestMapInfo(GCConstants.URL_MAP_INFO, params, GCConstants.URL_LIVE_MAP).onErrorResumeNext(Single.just(""));
-                    try {
-                        Single.zip(bitmapObs, dataObs, new Func2<Bitmap, String, Void>() {
-                            @Override
-                            public Void call(final Bitmap bitmap, final String data) {
-                                final boolean validBitmap = bitmap != null && bitmap.getWidth() == Tile.TILE_SIZE && bitmap.getHeight() == Tile.TILE_SIZE;
-
-                                if (StringUtils.isEmpty(data)) {
-                                    Log.w("GCMap.searchByViewport: No data from server for tile (" + tile.getX() + "/" + tile.getY() + ")");
-                                } else {
-                                    final SearchResult search = parseMapJSON(data, tile, validBitmap ? bitmap : null, strategy);
-                                    if (CollectionUtils.isEmpty(search.getGeocodes())) {
-                                        Log.e("GCMap.searchByViewport: No cache parsed for viewport " + viewport);
-                                    } else {
-                                        synchronized (searchResult) {
-                                            searchResult.addSearchResult(search);
-                                        }
-                                    }
-                                    synchronized (Tile.cache) {
-                                        Tile.cache.add(tile);
-                                    }
-                                }
-
-                                // release native bitmap memory
-                                if (bitmap != null) {
-                                    bitmap.recycle();
-                                }
-
-                                return null;
-                            }
-                        }).toBlocking().value();
-                    } catch (final Exception e) {
-                        Log.e("GCMap.searchByViewPort: connection error");
+            // load the tiles concurrently, but merge their results on this thread in the order they arrive
+            final Observable<SearchResult> tileResults = Observable.from(tilesToLoad).flatMap(new Func1<Tile, Observable<SearchResult>>() {
+                @Override
+                public Observable<SearchResult> call(final Tile tile) {
+                    return Observable.defer(new Func0<Observable<SearchResult>>() {
+                        @Override
+                        public Observable<SearchResult> call() {
+                            return Observable.just(searchTile(viewport, tile, tokens, strategy));
+                        }
+                    }).subscribeOn(AndroidRxUtils.networkScheduler);
+                }
+            }, MAX_CONCURRENT_TILE_REQUESTS);
+            for (final SearchResult tileResult : tileResults.toBlocking().toIterable()) {
+                if (!tileResult.isEmpty()) {
+                    searchResult.addSearchResult(tileResult);
+                    if (partialResults != null) {
+                        partialResults.call(tileResult);
                     }
                 }
             }
@@ -368,6 +321,133 @@ public class GCMap {
         return searchResult;
     }
 
+    /**
+     * Gets the caches of a single live map tile, from the disk cache if possible. Tiles served from the disk cache
+     * are revalidated in the background once they are older than {@link #TILE_REVALIDATION_AGE}.
+     *
+     * @return the caches of the tile, an empty search result if the tile could not be loaded
+     */
+    @NonNull
+    private static SearchResult searchTile(final Viewport viewport, final Tile tile, final MapTokens tokens, final LivemapStrategy strategy) {
+        final String diskCacheKey = getDiskCacheKey(tile, tokens, strategy);
+        final TileDiskCache.Entry entry = getTileDiskCache().get(diskCacheKey);
+        if (entry == null) {
+            return loadTile(viewport, tile, tokens, strategy, diskCacheKey);
+        }
+
+        if (System.currentTimeMillis() - entry.timestamp > TILE_REVALIDATION_AGE && revalidatingTiles.add(diskCacheKey)) {
+            AndroidRxUtils.networkScheduler.createWorker().schedule(new Action0() {
+                @Override
+                public void call() {
+                    try {
+                        loadTile(viewport, tile, tokens, strategy, diskCacheKey);
+                    } finally {
+                        revalidatingTiles.remove(diskCacheKey);
+                    }
+                }
+            });
+        }
+
+        final SearchResult search = new SearchResult();
+        search.addAndPutInCache(filterCaches(entry.caches));
+        Log.d("Retrieved " + search.getCount() + " caches for tile " + tile.toString() + " from disk cache");
+        synchronized (Tile.cache) {
+            Tile.cache.add(tile);
+        }
+        return search;
+    }
+
+    /**
+     * Key of a tile in the disk cache. Besides the tile itself, it contains everything influencing the content of
+     * the tile delivered by the server or the decoding of the caches.
+     */
+    @NonNull
+    private static String getDiskCacheKey(final Tile tile, final MapTokens tokens, final LivemapStrategy strategy) {
+        final String variant = StringUtils.join(Arrays.asList(
+                tokens != null ? Settings.getUserName() : "",
+                Settings.isExcludeMyCaches(),
+                Settings.getCacheType().id,
+                strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES)), '|');
+        return String.format(Locale.US, "%d_%d_%d_%08x", tile.getZoomLevel(), tile.getX(), tile.getY(), variant.hashCode());
+    }
+
+    @NonNull
+    private static synchronized TileDiskCache getTileDiskCache() {
+        if (tileDiskCache == null) {
+            tileDiskCache = new TileDiskCache(new File(CgeoApplication.getInstance().getCacheDir(), "livemap-tiles"), TILE_DISK_CACHE_TTL, TILE_DISK_CACHE_SIZE);
+        }
+        return tileDiskCache;
+    }
+
+    /**
+     * Loads a single live map tile from the server and stores it in the disk cache. The PNG is requested before the
+     * JSON data, the server would answer the data request with 204 - No Content otherwise.
+     *
+     * @return the caches of the tile, an empty search result if the tile could not be loaded
+     */
+    @NonNull
+    private static SearchResult loadTile(final Viewport viewport, final Tile tile, final MapTokens tokens, final LivemapStrategy strategy, final String diskCacheKey) {
+        final Parameters params = new Parameters(
+                "x", String.valueOf(tile.getX()),
+                "y", String.valueOf(tile.getY()),
+                "z", String.valueOf(tile.getZoomLevel()),
+                "ep", "1",
+                "app", "cgeo");
+        if (tokens != null) {
+            params.put("k", tokens.getUserSession(), "st", tokens.getSessionToken());
+        }
+        if (Settings.isExcludeMyCaches()) { // works only for PM
+            params.put("hf", "1", "hh", "1"); // hide found, hide hidden
+        }
+        // ect: exclude cache type (probably), comma separated list
+        if (Settings.getCacheType() != CacheType.ALL) {
+            params.put("ect", getCacheTypeFilter(Settings.getCacheType()));
+        }
+        if (tile.getZoomLevel() != 14) {
+            params.put("_", String.valueOf(System.currentTimeMillis()));
+        }
+
+        // The PNG must be requested first, otherwise the following request would always return with 204 - No Content
+        final Single<Bitmap> bitmapObs = Tile.requestMapTile(params).onErrorResumeNext(Single.<Bitmap>just(null));
+        final Single<String> dataObs = Tile.requestMapInfo(GCConstants.URL_MAP_INFO, params, GCConstants.URL_LIVE_MAP).onErrorResumeNext(Single.just(""));
+        try {
+            return Single.zip(bitmapObs, dataObs, new Func2<Bitmap, String, SearchResult>() {
+                @Override
+                public SearchResult call(final Bitmap bitmap, final String data) {
+                    final boolean validBitmap = bitmap != null && bitmap.getWidth() == Tile.TILE_SIZE && bitmap.getHeight() == Tile.TILE_SIZE;
+
+                    final SearchResult search = new SearchResult();
+                    if (StringUtils.isEmpty(data)) {
+                        Log.w("GCMap.searchByViewport: No data from server for tile (" + tile.getX() + "/" + tile.getY() + ")");
+                    } else {
+                        final List<Geocache> caches = decodeMapJSON(data, tile, validBitmap ? bitmap : null, strategy);
+                        if (!caches.isEmpty()) {
+                            getTileDiskCache().put(diskCacheKey, data, tile.getZoomLevel(), caches);
+                        }
+                        search.addAndPutInCache(filterCaches(caches));
+                        Log.d("Retrieved " + search.getCount() + " caches for tile " + tile.toString());
+                        if (CollectionUtils.isEmpty(search.getGeocodes())) {
+                            Log.e("GCMap.searchByViewport: No cache parsed for viewport " + viewport);
+                        }
+                        synchronized (Tile.cache) {
+                            Tile.cache.add(tile);
+                        }
+                    }
+
+                    // release native bitmap memory
+                    if (bitmap != null) {
+                        bitmap.recycle();
+                    }
+
+                    return search;
+                }
+            }).toBlocking().value();
+        } catch (final Exception e) {
+            Log.e("GCMap.searchByViewPort: connection error");
+            return new SearchResult();
+        }
+    }
+
     /**
      * Creates a list of caches types to filter on the live map (exclusion string)
      *
@@ -37,8 +37,8 @@ import cgeo.geocaching.utils.MatcherWrapper;
 import cgeo.geocaching.utils.SynchronizedDateFormat;
 import cgeo.geocaching.utils.TextUtils;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -449,111 +449,107 @@ public final class GCParser {
         }
 
         final String page = TextUtils.replaceWhitespace(pageIn);
+        // find the parts of the page once, instead of searching the whole page for every field
+        final GCCachePage cachePage = new GCCachePage(page);
 
         final Geocache cache = new Geocache();
-        final String status = TextUtils.getMatch(page, GCConstants.PATTERN_STATUS, "");
+        final String status = cachePage.getMatch(GCConstants.PATTERN_STATUS, true, "");
         cache.setDisabled(containsStatus(status, GCConstants.STATUS_DISABLED));
 
         cache.setArchived(containsStatus(status, GCConstants.STATUS_ARCHIVED));
 
-        cache.setPremiumMembersOnly(TextUtils.matches(page, GCConstants.PATTERN_PREMIUMMEMBERS));
+        cache.setPremiumMembersOnly(cachePage.matches(GCConstants.PATTERN_PREMIUMMEMBERS));
 
-        cache.setFavorite(TextUtils.matches(page, GCConstants.PATTERN_IS_FAVORITE));
+        cache.setFavorite(cachePage.matches(GCConstants.PATTERN_IS_FAVORITE));
 
         // cache geocode
-        cache.setGeocode(TextUtils.getMatch(page, GCConstants.PATTERN_GEOCODE, true, cache.getGeocode()));
+        cache.setGeocode(cachePage.getMatch(GCConstants.PATTERN_GEOCODE, true, cache.getGeocode()));
 
         // cache id
-        cache.setCacheId(TextUtils.getMatch(page, GCConstants.PATTERN_CACHEID, true, cache.getCacheId()));
+        cache.setCacheId(cachePage.getMatch(GCConstants.PATTERN_CACHEID, true, cache.getCacheId()));
 
         // cache guid
-        cache.setGuid(TextUtils.getMatch(page, GCConstants.PATTERN_GUID, true, cache.getGuid()));
+        cache.setGuid(cachePage.getMatch(GCConstants.PATTERN_GUID, true, cache.getGuid()));
 
         // cache watchlistcount
-        cache.setWatchlistCount(getWatchListCount(page));
+        cache.setWatchlistCount(parseWatchListCount(cachePage.getMatch(GCConstants.PATTERN_WATCHLIST_COUNT, true, null)));
 
         // name
         cache.setName(cacheName);
 
         // owner real name
-        cache.setOwnerUserId(Network.decode(TextUtils.getMatch(page, GCConstants.PATTERN_OWNER_USERID, true, cache.getOwnerUserId())));
+        cache.setOwnerUserId(Network.decode(cachePage.getMatch(GCConstants.PATTERN_OWNER_USERID, true, cache.getOwnerUserId())));
 
         cache.setUserModifiedCoords(false);
 
-        String tableInside = page;
-
-        final int pos = tableInside.indexOf(GCConstants.STRING_CACHEDETAILS);
-        if (pos == -1) {
+        final int cacheDetails = cachePage.indexOf(GCConstants.STRING_CACHEDETAILS, 0);
+        if (cacheDetails == -1) {
             Log.e("GCParser.parseCache: ID \"cacheDetails\" not found on page");
             return UNKNOWN_PARSE_ERROR;
         }
 
-        tableInside = tableInside.substring(pos);
-
-        if (StringUtils.isNotBlank(tableInside)) {
-            // cache terrain
-            String result = TextUtils.getMatch(tableInside, GCConstants.PATTERN_TERRAIN, true, null);
-            if (result != null) {
-                try {
-                    cache.setTerrain(Float.parseFloat(StringUtils.replaceChars(result, '_', '.')));
-                } catch (final NumberFormatException e) {
-                    Log.e("Error parsing terrain value", e);
-                }
+        // cache terrain
+        String stars = cachePage.getMatch(GCConstants.PATTERN_TERRAIN, cacheDetails, true, null);
+        if (stars != null) {
+            try {
+                cache.setTerrain(Float.parseFloat(StringUtils.replaceChars(stars, '_', '.')));
+            } catch (final NumberFormatException e) {
+                Log.e("Error parsing terrain value", e);
             }
+        }
 
-            // cache difficulty
-            result = TextUtils.getMatch(tableInside, GCConstants.PATTERN_DIFFICULTY, true, null);
-            if (result != null) {
-                try {
-                    cache.setDifficulty(Float.parseFloat(StringUtils.replaceChars(result, '_', '.')));
-                } catch (final NumberFormatException e) {
-                    Log.e("Error parsing difficulty value", e);
-                }
+        // cache difficulty
+        stars = cachePage.getMatch(GCConstants.PATTERN_DIFFICULTY, cacheDetails, true, null);
+        if (stars != null) {
+            try {
+                cache.setDifficulty(Float.parseFloat(StringUtils.replaceChars(stars, '_', '.')));
+            } catch (final NumberFormatException e) {
+                Log.e("Error parsing difficulty value", e);
             }
+        }
 
-            // owner
-            cache.setOwnerDisplayName(StringEscapeUtils.unescapeHtml4(TextUtils.getMatch(tableInside, GCConstants.PATTERN_OWNER_DISPLAYNAME, true, cache.getOwnerDisplayName())));
+        // owner
+        cache.setOwnerDisplayName(StringEscapeUtils.unescapeHtml4(cachePage.getMatch(GCConstants.PATTERN_OWNER_DISPLAYNAME, cacheDetails, true, cache.getOwnerDisplayName())));
 
-            // hidden
-            try {
-                String hiddenString = TextUtils.getMatch(tableInside, GCConstants.PATTERN_HIDDEN, true, null);
+        // hidden
+        try {
+            String hiddenString = cachePage.getMatch(GCConstants.PATTERN_HIDDEN, cacheDetails, true, null);
+            if (StringUtils.isNotBlank(hiddenString)) {
+                cache.setHidden(GCLogin.parseGcCustomDate(hiddenString));
+            }
+            if (cache.getHiddenDate() == null) {
+                // event date
+                hiddenString = cachePage.getHiddenEventDate(cacheDetails);
                 if (StringUtils.isNotBlank(hiddenString)) {
                     cache.setHidden(GCLogin.parseGcCustomDate(hiddenString));
                 }
-                if (cache.getHiddenDate() == null) {
-                    // event date
-                    hiddenString = TextUtils.getMatch(tableInside, GCConstants.PATTERN_HIDDENEVENT, true, null);
-                    if (StringUtils.isNotBlank(hiddenString)) {
-                        cache.setHidden(GCLogin.parseGcCustomDate(hiddenString));
-                    }
-                }
-            } catch (final ParseException e) {
-                // failed to parse cache hidden date
-                Log.w("GCParser.parseCache: Failed to parse cache hidden (event) date", e);
-            }
-
-            // favorite
-            try {
-                cache.setFavoritePoints(Integer.parseInt(TextUtils.getMatch(tableInside, GCConstants.PATTERN_FAVORITECOUNT, true, "0")));
-            } catch (final NumberFormatException e) {
-                Log.e("Error parsing favorite count", e);
             }
+        } catch (final ParseException e) {
+            // failed to parse cache hidden date
+            Log.w("GCParser.parseCache: Failed to parse cache hidden (event) date", e);
+        }
 
-            // cache size
-            cache.setSize(CacheSize.getById(TextUtils.getMatch(tableInside, GCConstants.PATTERN_SIZE, true, CacheSize.NOT_CHOSEN.id)));
+        // favorite
+        try {
+            cache.setFavoritePoints(Integer.parseInt(cachePage.getMatch(GCConstants.PATTERN_FAVORITECOUNT, cacheDetails, true, "0")));
+        } catch (final NumberFormatException e) {
+            Log.e("Error parsing favorite count", e);
         }
 
+        // cache size
+        cache.setSize(CacheSize.getById(cachePage.getMatch(GCConstants.PATTERN_SIZE, cacheDetails, true, CacheSize.NOT_CHOSEN.id)));
+
         // cache found
-        cache.setFound(TextUtils.matches(page, GCConstants.PATTERN_FOUND));
+        cache.setFound(cachePage.matches(GCConstants.PATTERN_FOUND));
 
         // cache type
-        cache.setType(CacheType.getByGuid(TextUtils.getMatch(page, GCConstants.PATTERN_TYPE, true, cache.getType().id)));
+        cache.setType(CacheType.getByGuid(cachePage.getMatch(GCConstants.PATTERN_TYPE, true, cache.getType().id)));
 
         // on watchlist
-        cache.setOnWatchlist(TextUtils.matches(page, GCConstants.PATTERN_WATCHLIST));
+        cache.setOnWatchlist(cachePage.matches(GCConstants.PATTERN_WATCHLIST));
 
         // latitude and longitude. Can only be retrieved if user is logged in
-        String latlon = TextUtils.getMatch(page, GCConstants.PATTERN_LATLON, true, "");
+        String latlon = cachePage.getMatch(GCConstants.PATTERN_LATLON, true, "");
         if (StringUtils.isNotEmpty(latlon)) {
             try {
                 cache.setCoords(new Geopoint(latlon));
@@ -564,10 +560,10 @@ public final class GCParser {
         }
 
         // cache location
-        cache.setLocation(TextUtils.getMatch(page, GCConstants.PATTERN_LOCATION, true, ""));
+        cache.setLocation(cachePage.getMatch(GCConstants.PATTERN_LOCATION, true, ""));
 
         // cache hint
-        final String result = TextUtils.getMatch(page, GCConstants.PATTERN_HINT, false, null);
+        final String result = cachePage.getMatch(GCConstants.PATTERN_HINT, false, null);
         if (result != null) {
             // replace linebreak and paragraph tags
             final String hint = GCConstants.PATTERN_LINEBREAK.matcher(result).replaceAll("\n");
@@ -580,11 +576,11 @@ public final class GCParser {
         cache.setPersonalNote(personalNoteWithLineBreaks);
 
         // cache short description
-        cache.setShortDescription(TextUtils.getMatch(page, GCConstants.PATTERN_SHORTDESC, true, ""));
+        cache.setShortDescription(cachePage.getMatch(GCConstants.PATTERN_SHORTDESC, true, ""));
 
         // cache description
-        final String longDescription = TextUtils.getMatch(page, GCConstants.PATTERN_DESC, true, "");
-        String relatedWebPage = TextUtils.getMatch(page, GCConstants.PATTERN_RELATED_WEB_PAGE, true, "");
+        final String longDescription = cachePage.getLongDescription();
+        String relatedWebPage = cachePage.getMatch(GCConstants.PATTERN_RELATED_WEB_PAGE, true, "");
         if (StringUtils.isNotEmpty(relatedWebPage)) {
             relatedWebPage = String.format("<br/><br/><a href=\"%s\"><b>%s</b></a>", relatedWebPage, relatedWebPage);
         }
@@ -593,7 +589,7 @@ public final class GCParser {
         // cache attributes
         try {
             final List<String> attributes = new ArrayList<>();
-            final String attributesPre = TextUtils.getMatch(page, GCConstants.PATTERN_ATTRIBUTES, true, null);
+            final String attributesPre = cachePage.getMatch(GCConstants.PATTERN_ATTRIBUTES, true, null);
             if (attributesPre != null) {
                 final MatcherWrapper matcherAttributesInside = new MatcherWrapper(GCConstants.PATTERN_ATTRIBUTESINSIDE, attributesPre);
 
@@ -628,7 +624,7 @@ public final class GCParser {
             }
             CancellableHandler.sendLoadProgressDetail(handler, R.string.cache_dialog_loading_details_status_spoilers);
 
-            final MatcherWrapper matcherSpoilersInside = new MatcherWrapper(GCConstants.PATTERN_SPOILER_IMAGE, page);
+            final MatcherWrapper matcherSpoilersInside = cachePage.matcher(GCConstants.PATTERN_SPOILER_IMAGE);
 
             while (matcherSpoilersInside.find()) {
                 // the original spoiler URL (include .../display/... contains a low-resolution image
@@ -654,7 +650,7 @@ public final class GCParser {
 
         // cache inventory
         try {
-            final MatcherWrapper matcherInventory = new MatcherWrapper(GCConstants.PATTERN_INVENTORY, page);
+            final MatcherWrapper matcherInventory = cachePage.matcher(GCConstants.PATTERN_INVENTORY);
             if (matcherInventory.find()) {
                 final String inventoryPre = matcherInventory.group();
 
@@ -682,7 +678,7 @@ public final class GCParser {
 
         // cache logs counts
         try {
-            final String countlogs = TextUtils.getMatch(page, GCConstants.PATTERN_COUNTLOGS, true, null);
+            final String countlogs = cachePage.getMatch(GCConstants.PATTERN_COUNTLOGS, true, null);
             if (countlogs != null) {
                 final MatcherWrapper matcherLog = new MatcherWrapper(GCConstants.PATTERN_COUNTLOG, countlogs);
 
@@ -710,7 +706,7 @@ public final class GCParser {
 
         // add waypoint for original coordinates in case of user-modified listing-coordinates
         try {
-            final String originalCoords = TextUtils.getMatch(page, GCConstants.PATTERN_LATLON_ORIG, false, null);
+            final String originalCoords = cachePage.getMatch(GCConstants.PATTERN_LATLON_ORIG, false, null);
 
             if (originalCoords != null) {
                 final Waypoint waypoint = new Waypoint(CgeoApplication.getInstance().getString(R.string.cache_coordinates_original), WaypointType.ORIGINAL, false);
@@ -721,7 +717,7 @@ public final class GCParser {
         } catch (final Geopoint.GeopointException ignored) {
         }
 
-        int wpBegin = page.indexOf("<table class=\"Table\" id=\"ctl00_ContentBody_Waypoints\">");
+        int wpBegin = cachePage.indexOf(GCConstants.STRING_WAYPOINTS, 0);
         if (wpBegin != -1) { // parse waypoints
             if (CancellableHandler.isCancelled(handler)) {
                 return UNKNOWN_PARSE_ERROR;
@@ -1419,8 +1415,11 @@ public final class GCParser {
      * @return Number of people watching geocache, -1 when error
      */
     static int getWatchListCount(final String page) {
-        final String sCount = TextUtils.getMatch(page, GCConstants.PATTERN_WATCHLIST_COUNT, true, 1, "notFound", false);
-        if ("notFound".equals(sCount)) {
+        return parseWatchListCount(TextUtils.getMatch(page, GCConstants.PATTERN_WATCHLIST_COUNT, true, 1, null, false));
+    }
+
+    private static int parseWatchListCount(@Nullable final String sCount) {
+        if (sCount == null) {
             return -1;
         }
         try {
@@ -1814,54 +1813,59 @@ public final class GCParser {
         }).subscribeOn(AndroidRxUtils.networkScheduler);
     }
 
-    private static Observable<LogEntry> parseLogs(final boolean markAsFriendsLog, final InputStream responseStream) {
+    /**
+     * Parse the logbook JSON while it is read, emitting every log as soon as it is complete.
+     */
+    static Observable<LogEntry> parseLogs(final boolean markAsFriendsLog, final InputStream responseStream) {
         return Observable.create(new OnSubscribe<LogEntry>() {
             @Override
             public void call(final Subscriber<? super LogEntry> subscriber) {
                 try {
-                    final ObjectNode resp = (ObjectNode) JsonUtils.reader.readTree(responseStream);
-                    if (!resp.path("status").asText().equals("success")) {
-                        Log.w("GCParser.loadLogsFromDetails: status is " + resp.path("status").asText("[absent]"));
-                        subscriber.onCompleted();
-                        return;
-                    }
-
-                    final ArrayNode data = (ArrayNode) resp.get("data");
-                    for (final JsonNode entry: data) {
-                        final String logType = entry.path("LogType").asText();
-
-                        final long date;
-                        try {
-                            date = GCLogin.parseGcCustomDate(entry.get("Visited").asText()).getTime();
-                        } catch (ParseException | NullPointerException e) {
-                            Log.e("GCParser.loadLogsFromDetails: failed to parse log date", e);
-                            continue;
+                    final JsonParser parser = JsonUtils.jsonFactory.createParser(responseStream);
+                    try {
+                        if (parser.nextToken() != JsonToken.START_OBJECT) {
+                            throw new IOException("logbook is not a JSON object");
                         }
-
-                        // TODO: we should update our log data structure to be able to record
-                        // proper coordinates, and make them clickable. In the meantime, it is
-                        // better to integrate those coordinates into the text rather than not
-                        // display them at all.
-                        final String latLon = entry.path("LatLonString").asText();
-                        final String logText = (StringUtils.isEmpty(latLon) ? "" : (latLon + "<br/><br/>")) + TextUtils.removeControlCharacters(entry.path("LogText").asText());
-                        final LogEntry.Builder logDoneBuilder = new LogEntry.Builder()
-                                .setAuthor(TextUtils.removeControlCharacters(entry.path("UserName").asText()))
-                                .setDate(date)
-                                .setLogType(LogType.getByType(logType))
-                                .setLog(logText)
-                                .setFound(entry.path("GeocacheFindCount").asInt())
-                                .setFriend(markAsFriendsLog);
-
-                        final ArrayNode images = (ArrayNode) entry.get("Images");
-                        for (final JsonNode image: images) {
-                            final String url = "https://imgcdn.geocaching.com/cache/log/large/" + image.path("FileName").asText();
-                            final String title = TextUtils.removeControlCharacters(image.path("Name").asText());
-                            final String description = image.path("Descr").asText();
-                            final Image logImage = new Image.Builder().setUrl(url).setTitle(title).setDescription(description).build();
-                            logDoneBuilder.addLogImage(logImage);
+                        String status = null;
+                        // logs read before the status, emitted only if it is a success
+                        final List<LogEntry> pendingLogs = new ArrayList<>();
+                        while (parser.nextToken() == JsonToken.FIELD_NAME && !subscriber.isUnsubscribed()) {
+                            final String field = parser.getCurrentName();
+                            final JsonToken value = parser.nextToken();
+                            if ("status".equals(field)) {
+                                status = parser.getValueAsString("[absent]");
+                                if (!status.equals("success")) {
+                                    break;
+                                }
+                                for (final LogEntry log : pendingLogs) {
+                                    subscriber.onNext(log);
+                                }
+                                pendingLogs.clear();
+                            } else if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                                while (parser.nextToken() != JsonToken.END_ARRAY && !subscriber.isUnsubscribed()) {
+                                    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                                        parser.skipChildren();
+                                        continue;
+                                    }
+                                    final LogEntry log = parseLog(parser, markAsFriendsLog);
+                                    if (log == null) {
+                                        continue;
+                                    }
+                                    if (status == null) {
+                                        pendingLogs.add(log);
+                                    } else {
+                                        subscriber.onNext(log);
+                                    }
+                                }
+                            } else {
+                                parser.skipChildren();
+                            }
                         }
-
-                        subscriber.onNext(logDoneBuilder.build());
+                        if (!"success".equals(status)) {
+                            Log.w("GCParser.loadLogsFromDetails: status is " + StringUtils.defaultString(status, "[absent]"));
+                        }
+                    } finally {
+                        parser.close();
                     }
                 } catch (final IOException e) {
                     Log.w("GCParser.loadLogsFromDetails: Failed to parse cache logs", e);
@@ -1871,6 +1875,106 @@ public final class GCParser {
         });
     }
 
+    /**
+     * Parse the log object the parser is at, up to its end.
+     *
+     * @return the log, or {@code null} if it has no valid date
+     */
+    @Nullable
+    private static LogEntry parseLog(final JsonParser parser, final boolean markAsFriendsLog) throws IOException {
+        String logType = "";
+        String visited = null;
+        String latLon = "";
+        String logText = "";
+        String userName = "";
+        int findCount = 0;
+        final List<Image> images = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            switch (field) {
+                case "LogType":
+                    logType = parser.getValueAsString("");
+                    break;
+                case "Visited":
+                    visited = parser.getValueAsString();
+                    break;
+                case "LatLonString":
+                    latLon = parser.getValueAsString("");
+                    break;
+                case "LogText":
+                    logText = parser.getValueAsString("");
+                    break;
+                case "UserName":
+                    userName = parser.getValueAsString("");
+                    break;
+                case "GeocacheFindCount":
+                    findCount = parser.getValueAsInt();
+                    break;
+                case "Images":
+                    if (value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                                images.add(parseLogImage(parser));
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            parser.skipChildren();
+        }
+
+        final long date;
+        try {
+            date = GCLogin.parseGcCustomDate(visited).getTime();
+        } catch (ParseException | NullPointerException e) {
+            Log.e("GCParser.loadLogsFromDetails: failed to parse log date", e);
+            return null;
+        }
+
+        // TODO: we should update our log data structure to be able to record
+        // proper coordinates, and make them clickable. In the meantime, it is
+        // better to integrate those coordinates into the text rather than not
+        // display them at all.
+        final String text = (StringUtils.isEmpty(latLon) ? "" : (latLon + "<br/><br/>")) + TextUtils.removeControlCharacters(logText);
+        final LogEntry.Builder logDoneBuilder = new LogEntry.Builder()
+                .setAuthor(TextUtils.removeControlCharacters(userName))
+                .setDate(date)
+                .setLogType(LogType.getByType(logType))
+                .setLog(text)
+                .setFound(findCount)
+                .setFriend(markAsFriendsLog);
+        for (final Image image : images) {
+            logDoneBuilder.addLogImage(image);
+        }
+        return logDoneBuilder.build();
+    }
+
+    @NonNull
+    private static Image parseLogImage(final JsonParser parser) throws IOException {
+        String fileName = "";
+        String name = "";
+        String description = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("FileName".equals(field)) {
+                fileName = parser.getValueAsString("");
+            } else if ("Name".equals(field)) {
+                name = parser.getValueAsString("");
+            } else if ("Descr".equals(field)) {
+                description = parser.getValueAsString("");
+            }
+            parser.skipChildren();
+        }
+        final String url = "https://imgcdn.geocaching.com/cache/log/large/" + fileName;
+        return new Image.Builder().setUrl(url).setTitle(TextUtils.removeControlCharacters(name)).setDescription(description).build();
+    }
+
     @NonNull
     static List<LogType> parseTypes(final String page) {
         if (StringUtils.isEmpty(page)) {
@@ -0,0 +1,193 @@
+package cgeo.geocaching.connector.gc;
+
+import cgeo.geocaching.files.ParserException;
+import cgeo.geocaching.utils.JsonUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming parser of the UTFGrid data of a live map tile, as returned by {@link GCConstants#URL_MAP_INFO}.
+ *
+ * Example:
+ *
+ * <pre>
+ * {"grid":[....],
+ *  "keys":["","55_55","55_54","17_25",...],
+ *  "data":{"55_55":[{"i":"gEaR","n":"Spiel &amp; Sport"}],"55_54":[{"i":"gEaR","n":"Spiel &amp; Sport"}],"17_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],...}
+ * }
+ * </pre>
+ *
+ * The grid is only counted, its rows are never read as strings. The caches are collected while the data is read,
+ * without building a tree of the whole document.
+ */
+final class MapInfoParser {
+
+    /**
+     * A cache found in the data of a tile.
+     */
+    static final class TileCache {
+        @NonNull final String id;
+        /** name of the cache, set once its first entry has been read */
+        String name;
+        /** positions in the grid occupied by the cache */
+        @NonNull final List<UTFGridPosition> positions = new ArrayList<>();
+        /** positions in the grid occupied by the cache alone */
+        @NonNull final List<UTFGridPosition> singlePositions = new ArrayList<>();
+
+        private TileCache(@NonNull final String id) {
+            this.id = id;
+        }
+    }
+
+    private MapInfoParser() {
+        // utility class
+    }
+
+    /**
+     * @return the caches of the tile, in the order they appear in the data
+     */
+    @NonNull
+    static Collection<TileCache> parse(@NonNull final String data) throws IOException, ParserException {
+        final JsonParser parser = JsonUtils.jsonFactory.createParser(data);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ParserException("No JSON object");
+            }
+            int gridRows = -1;
+            Set<String> keys = null;
+            Map<String, TileCache> caches = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("grid".equals(field) && value == JsonToken.START_ARRAY) {
+                    gridRows = countElements(parser);
+                } else if ("keys".equals(field) && value == JsonToken.START_ARRAY) {
+                    keys = readKeys(parser);
+                } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    caches = readData(parser, keys);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (gridRows != UTFGrid.GRID_MAXY + 1) {
+                throw new ParserException("No grid inside JSON");
+            }
+            if (keys == null) {
+                throw new ParserException("No keys inside JSON");
+            }
+            if (caches == null) {
+                throw new ParserException("No data inside JSON");
+            }
+            return caches.values();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Count the elements of the current array and move to its end, without reading the values.
+     */
+    private static int countElements(@NonNull final JsonParser parser) throws IOException {
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            count++;
+        }
+        return count;
+    }
+
+    @NonNull
+    private static Set<String> readKeys(@NonNull final JsonParser parser) throws IOException {
+        final Set<String> keys = new HashSet<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            keys.add(parser.getValueAsString(""));
+            parser.skipChildren();
+        }
+        return keys;
+    }
+
+    /**
+     * Read the caches of every grid position of the data object.
+     *
+     * @param keys
+     *            the keys listed before the data, whose positions are the only ones used, or {@code null} if the data
+     *            came first
+     */
+    @NonNull
+    private static Map<String, TileCache> readData(@NonNull final JsonParser parser, @Nullable final Set<String> keys) throws IOException, ParserException {
+        final Map<String, TileCache> caches = new LinkedHashMap<>();
+        final List<TileCache> cachesAtPosition = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || StringUtils.isBlank(key) || (keys != null && !keys.contains(key))) {
+                parser.skipChildren();
+                continue;
+            }
+            cachesAtPosition.clear();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                    cachesAtPosition.add(readCache(parser, caches));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            final UTFGridPosition position = UTFGridPosition.fromString(key);
+            for (final TileCache cache : cachesAtPosition) {
+                cache.positions.add(position);
+            }
+            if (cachesAtPosition.size() == 1) {
+                cachesAtPosition.get(0).singlePositions.add(position);
+            }
+        }
+        return caches;
+    }
+
+    /**
+     * Read the id and name of a cache object, and merge them with the cache of the same id seen before. The name is
+     * only read for a new cache, as every position of a cache repeats it.
+     */
+    @NonNull
+    private static TileCache readCache(@NonNull final JsonParser parser, @NonNull final Map<String, TileCache> caches) throws IOException, ParserException {
+        TileCache cache = null;
+        String name = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("i".equals(field)) {
+                final String id = parser.getValueAsString();
+                if (id == null) {
+                    throw new ParserException("Cache without id inside JSON");
+                }
+                cache = caches.get(id);
+                if (cache == null) {
+                    cache = new TileCache(id);
+                    caches.put(id, cache);
+                }
+            } else if ("n".equals(field) && (cache == null || cache.name == null)) {
+                name = parser.getValueAsString();
+            }
+            parser.skipChildren();
+        }
+        if (cache == null || (cache.name == null && name == null)) {
+            throw new ParserException("Cache without id or name inside JSON");
+        }
+        if (name != null) {
+            cache.name = name;
+        }
+        return cache;
+    }
+}
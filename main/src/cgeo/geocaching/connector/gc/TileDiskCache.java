@@ -0,0 +1,269 @@
+package cgeo.geocaching.connector.gc;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.utils.FileUtils;
+import cgeo.geocaching.utils.JsonUtils;
+import cgeo.geocaching.utils.Log;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Disk cache for live map tiles. For every tile the UTFGrid JSON data of the server and the caches decoded from it
+ * are stored in one file. Entries older than the time to live are not returned anymore, and the least recently used
+ * files are deleted whenever the cache grows beyond its size limit.
+ */
+public class TileDiskCache {
+
+    private static final String FILE_EXTENSION = ".json";
+
+    private final File directory;
+    private final long timeToLive;
+    private final long maxSize;
+
+    /** size of all files in the directory, -1 until it has been computed */
+    private long currentSize = -1;
+
+    /**
+     * An entry of the cache, as stored by {@link #put(String, String, int, Collection)}.
+     */
+    public static final class Entry {
+        /** time the entry has been stored, in milliseconds since epoch */
+        public final long timestamp;
+        @NonNull public final String data;
+        /** the decoded caches of the tile, before any filtering */
+        @NonNull public final List<Geocache> caches;
+
+        Entry(final long timestamp, @NonNull final String data, @NonNull final List<Geocache> caches) {
+            this.timestamp = timestamp;
+            this.data = data;
+            this.caches = caches;
+        }
+    }
+
+    /**
+     * @param directory
+     *            directory for the cache files, it is created if needed
+     * @param timeToLive
+     *            time in milliseconds after which an entry is not returned anymore
+     * @param maxSize
+     *            maximum size of all cache files in bytes
+     */
+    public TileDiskCache(@NonNull final File directory, final long timeToLive, final long maxSize) {
+        this.directory = directory;
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a stored tile.
+     *
+     * @param key
+     *            key of the tile, must be usable as file name
+     * @return the entry, or {@code null} if there is no entry or if it has expired
+     */
+    @Nullable
+    public Entry get(@NonNull final String key) {
+        final File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        final JsonNode json;
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            json = JsonUtils.reader.readTree(input);
+        } catch (final IOException e) {
+            Log.w("TileDiskCache.get: could not read " + file, e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        try {
+            final long timestamp = json.get("time").asLong();
+            if (System.currentTimeMillis() - timestamp > timeToLive) {
+                remove(file);
+                return null;
+            }
+            final int zoomLevel = json.get("zoom").asInt();
+            final List<Geocache> caches = new ArrayList<>();
+            for (final JsonNode node : json.get("caches")) {
+                caches.add(decodeCache(node, zoomLevel));
+            }
+            // the modification time is used as access time for the eviction of the least recently used entries
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                Log.d("TileDiskCache.get: could not update access time of " + file);
+            }
+            return new Entry(timestamp, json.get("data").asText(), caches);
+        } catch (final RuntimeException e) {
+            Log.w("TileDiskCache.get: invalid entry " + file, e);
+            remove(file);
+            return null;
+        }
+    }
+
+    /**
+     * Store a tile, replacing an existing entry with the same key.
+     *
+     * @param key
+     *            key of the tile, must be usable as file name
+     * @param data
+     *            the JSON data of the tile as delivered by the server
+     * @param zoomLevel
+     *            the zoom level of the tile, used as precision of the coordinates and types of the caches
+     * @param caches
+     *            the caches decoded from the tile
+     */
+    public void put(@NonNull final String key, @NonNull final String data, final int zoomLevel, @NonNull final Collection<Geocache> caches) {
+        final ObjectNode json = new ObjectNode(JsonUtils.factory);
+        json.put("time", System.currentTimeMillis());
+        json.put("zoom", zoomLevel);
+        json.put("data", data);
+        final ArrayNode cacheNodes = json.putArray("caches");
+        for (final Geocache cache : caches) {
+            cacheNodes.add(encodeCache(cache));
+        }
+
+        synchronized (this) {
+            if (!directory.isDirectory() && !FileUtils.mkdirs(directory)) {
+                Log.w("TileDiskCache.put: could not create " + directory);
+                return;
+            }
+            final File file = getFile(key);
+            final File tempFile = new File(directory, key + ".tmp");
+            try {
+                JsonUtils.writer.writeValue(tempFile, json);
+                final long previousLength = file.length();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("could not rename " + tempFile);
+                }
+                if (currentSize >= 0) {
+                    currentSize += file.length() - previousLength;
+                }
+            } catch (final IOException e) {
+                Log.w("TileDiskCache.put: could not write " + file, e);
+                FileUtils.deleteIgnoringFailure(tempFile);
+                return;
+            }
+            trimToSize();
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        FileUtils.deleteDirectory(directory);
+        currentSize = -1;
+    }
+
+    /**
+     * Delete the least recently used files until the cache takes at most 3/4 of its maximum size. Must be called
+     * with the monitor held.
+     */
+    private void trimToSize() {
+        if (currentSize < 0) {
+            currentSize = 0;
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    currentSize += file.length();
+                }
+            }
+        }
+        if (currentSize <= maxSize) {
+            return;
+        }
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        final Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // read once, the values must not change while sorting
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer lhs, final Integer rhs) {
+                return Long.valueOf(lastModified[lhs]).compareTo(lastModified[rhs]);
+            }
+        });
+        final long targetSize = maxSize / 4 * 3;
+        for (final Integer index : order) {
+            if (currentSize <= targetSize) {
+                break;
+            }
+            final long length = files[index].length();
+            if (FileUtils.delete(files[index])) {
+                currentSize -= length;
+            }
+        }
+        Log.d("TileDiskCache: trimmed to " + currentSize + " bytes");
+    }
+
+    private synchronized void remove(@NonNull final File file) {
+        final long length = file.length();
+        if (FileUtils.delete(file) && currentSize >= 0) {
+            currentSize -= length;
+        }
+    }
+
+    @NonNull
+    private File getFile(@NonNull final String key) {
+        return new File(directory, key + FILE_EXTENSION);
+    }
+
+    @NonNull
+    private static ObjectNode encodeCache(@NonNull final Geocache cache) {
+        final ObjectNode node = new ObjectNode(JsonUtils.factory);
+        node.put("geocode", cache.getGeocode());
+        node.put("name", cache.getName());
+        final Geopoint coords = cache.getCoords();
+        if (coords != null) {
+            node.put("lat", coords.getLatitude());
+            node.put("lon", coords.getLongitude());
+        }
+        node.put("type", cache.getType().id);
+        node.put("found", cache.isFound());
+        node.put("owner", cache.getOwnerUserId());
+        return node;
+    }
+
+    @NonNull
+    private static Geocache decodeCache(@NonNull final JsonNode node, final int zoomLevel) {
+        final Geocache cache = new Geocache();
+        cache.setDetailed(false);
+        cache.setReliableLatLon(false);
+        cache.setGeocode(node.get("geocode").asText());
+        cache.setName(node.get("name").asText());
+        if (node.has("lat") && node.has("lon")) {
+            cache.setCoords(new Geopoint(node.get("lat").asDouble(), node.get("lon").asDouble()), zoomLevel);
+        }
+        cache.setType(CacheType.getById(node.get("type").asText()), zoomLevel);
+        cache.setFound(node.get("found").asBoolean());
+        if (node.hasNonNull("owner")) {
+            cache.setOwnerUserId(node.get("owner").asText());
+        }
+        return cache;
+    }
+}
@@ -1,10 +1,5 @@
 package cgeo.geocaching.connector.gc;
 
-import cgeo.geocaching.utils.MatcherWrapper;
-
-import java.util.regex.Pattern;
-
-
 /**
  * Representation of a position inside an UTFGrid
  */
@@ -12,7 +7,6 @@ final class UTFGridPosition {
 
     final int x;
     final int y;
-    private static final Pattern PATTERN_JSON_KEY = Pattern.compile("[^\\d]*" + "(\\d+),\\s*(\\d+)" + "[^\\d]*"); // (12, 34)
 
     UTFGridPosition(final int x, final int y) {
         if (x < 0 || x > UTFGrid.GRID_MAXX) {
@@ -34,20 +28,72 @@ final class UTFGridPosition {
     }
 
     /**
+     * Parse the key without a regular expression, as it is called for every key of every live map tile. Keys which are
+     * not made of two numbers separated by a comma and optional whitespace lead to the position (0, 0).
+     *
      * @param key
      *            Key in the format (xx, xx)
      */
     static UTFGridPosition fromString(final String key) {
-        final MatcherWrapper matcher = new MatcherWrapper(PATTERN_JSON_KEY, key);
-        try {
-            if (matcher.matches()) {
-                final int x = Integer.parseInt(matcher.group(1));
-                final int y = Integer.parseInt(matcher.group(2));
-                return new UTFGridPosition(x, y);
+        final int length = key.length();
+        int index = skipNonDigits(key, 0);
+        final int xEnd = skipDigits(key, index);
+        final int x = parseNumber(key, index, xEnd);
+        index = xEnd;
+        if (x < 0 || index >= length || key.charAt(index) != ',') {
+            return new UTFGridPosition(0, 0);
+        }
+        index++;
+        while (index < length && isWhitespace(key.charAt(index))) {
+            index++;
+        }
+        final int yEnd = skipDigits(key, index);
+        final int y = parseNumber(key, index, yEnd);
+        if (y < 0 || skipNonDigits(key, yEnd) < length) {
+            return new UTFGridPosition(0, 0);
+        }
+        return new UTFGridPosition(x, y);
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
+    }
+
+    private static int skipDigits(final String key, final int start) {
+        int index = start;
+        while (index < key.length() && isDigit(key.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipNonDigits(final String key, final int start) {
+        int index = start;
+        while (index < key.length() && !isDigit(key.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return the number made of the digits between start and end, or -1 if there are none or it does not fit an int
+     */
+    private static int parseNumber(final String key, final int start, final int end) {
+        if (start == end) {
+            return -1;
+        }
+        long number = 0;
+        for (int index = start; index < end; index++) {
+            number = number * 10 + key.charAt(index) - '0';
+            if (number > Integer.MAX_VALUE) {
+                return -1;
             }
-        } catch (final NumberFormatException ignored) {
         }
-        return new UTFGridPosition(0, 0);
+        return (int) number;
     }
 
 }
@@ -10,6 +10,8 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Locale;
 
+import rx.functions.Action1;
+
 import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.LogCacheActivity;
 import cgeo.geocaching.SearchResult;
@@ -56,7 +58,7 @@ public class OCApiLiveConnector extends OCApiConnector implements ISearchByCente
 
     @Override
     @NonNull
-    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens) {
+    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults) {
         final SearchResult result = new SearchResult(OkapiClient.getCachesBBox(viewport, this));
 
         Log.d(String.format(Locale.getDefault(), "OC returning %d caches from search by viewport", result.getCount()));
@@ -25,6 +25,7 @@ import cgeo.geocaching.models.Image;
 import cgeo.geocaching.models.LogEntry;
 import cgeo.geocaching.models.Trackable;
 import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.network.CachePolicy;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.OAuth;
 import cgeo.geocaching.network.OAuthTokens;
@@ -824,8 +825,10 @@ final class OkapiClient {
         }
 
         final String uri = "http://" + host + service.methodName;
+        // signed requests are never repeated, so only the others may fall back to the cache
+        final CachePolicy cachePolicy = connector.getSupportedAuthLevel() == OAuthLevel.Level3 ? null : CachePolicy.OFFLINE_FALLBACK;
         try {
-            return new JSONResult(Network.getRequest(uri, params).toBlocking().value());
+            return new JSONResult(Network.getRequest(uri, params, cachePolicy).toBlocking().value());
         } catch (final Exception e) {
             return new JSONResult("connection error");
         }
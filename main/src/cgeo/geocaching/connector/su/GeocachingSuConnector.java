@@ -20,6 +20,8 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.InputStream;
 
+import rx.functions.Action1;
+
 public class GeocachingSuConnector extends AbstractConnector implements ISearchByCenter, ISearchByGeocode, ISearchByViewPort {
 
     private static final CharSequence PREFIX_MULTISTEP_VIRTUAL = "MV";
@@ -104,7 +106,7 @@ public class GeocachingSuConnector extends AbstractConnector implements ISearchB
 
     @Override
     @NonNull
-    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens) {
+    public SearchResult searchByViewport(@NonNull final Viewport viewport, @NonNull final MapTokens tokens, @Nullable final Action1<SearchResult> partialResults) {
         return searchCaches("cache", "rtype=0&lngmax=" + viewport.getLongitudeMax() + "&lngmin=" + viewport.getLongitudeMin() + "&latmax=" + viewport.getLatitudeMax() + "&latmin=" + viewport.getLatitudeMin());
     }
 
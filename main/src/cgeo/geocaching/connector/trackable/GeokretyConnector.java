@@ -25,6 +25,7 @@ import cgeo.geocaching.enumerations.StatusCode;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Trackable;
 import cgeo.geocaching.models.TrackableLog;
+import cgeo.geocaching.network.CachePolicy;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.settings.Settings;
@@ -58,6 +59,8 @@ public class GeokretyConnector extends AbstractTrackableConnector {
     private static final String HOST = "geokrety.org";
     public static final String URL = "https://" + HOST;
     private static final String URLPROXY = "https://api.geokretymap.org";
+    /** trackables move slowly, their details may be reused for 10 minutes */
+    private static final CachePolicy TRACKABLE_CACHE_POLICY = new CachePolicy(600, 0, true);
 
     @Override
     @NonNull
@@ -138,7 +141,7 @@ public class GeokretyConnector extends AbstractTrackableConnector {
         try {
             final String urlDetails = Settings.isGeokretyCacheActive() ? URLPROXY + "/export-details.php" : URL + "/export2.php";
 
-            final InputStream response = Network.getResponseStream(Network.getRequest(urlDetails + "?gkid=" + gkid));
+            final InputStream response = Network.getResponseStream(Network.getRequest(urlDetails + "?gkid=" + gkid, null, TRACKABLE_CACHE_POLICY));
             if (response == null) {
                 Log.e("GeokretyConnector.searchTrackable: No data from server");
                 return null;
@@ -162,7 +165,7 @@ public class GeokretyConnector extends AbstractTrackableConnector {
     public List<Trackable> searchTrackables(final String geocode) {
         Log.d("GeokretyConnector.searchTrackables: wpt=" + geocode);
         try {
-            final InputStream response = Network.getResponseStream(Network.getRequest(getUrlCache() + "/export2.php?wpt=" + URLEncoder.encode(geocode, "utf-8")));
+            final InputStream response = Network.getResponseStream(Network.getRequest(getUrlCache() + "/export2.php?wpt=" + URLEncoder.encode(geocode, "utf-8"), null, TRACKABLE_CACHE_POLICY));
             if (response == null) {
                 Log.e("GeokretyConnector.searchTrackable: No data from server");
                 return Collections.emptyList();
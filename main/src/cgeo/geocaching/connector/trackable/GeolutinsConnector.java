@@ -1,6 +1,7 @@
 package cgeo.geocaching.connector.trackable;
 
 import cgeo.geocaching.models.Trackable;
+import cgeo.geocaching.network.CachePolicy;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.storage.DataStore;
@@ -21,6 +22,8 @@ public final class GeolutinsConnector extends AbstractTrackableConnector {
     private static final Pattern PATTERN_GL_CODE = Pattern.compile("(GL[0-9A-F]{5}|[0-9]{7,8}-[0-9]{3,4})");
     private static final String HOST = "www.geolutins.com";
     private static final String URL = "http://" + HOST;
+    /** trackables move slowly, their details may be reused for 10 minutes */
+    private static final CachePolicy TRACKABLE_CACHE_POLICY = new CachePolicy(600, 0, true);
 
     /**
      * Get geocode from Geolutins id
@@ -84,7 +87,7 @@ public final class GeolutinsConnector extends AbstractTrackableConnector {
             final String urlDetails = URL + "/xml/api.php?G=" + StringUtils.upperCase(glid);
             Log.i("GeolutinsConnector.searchTrackable URL: " + urlDetails);
 
-            final InputStream response = Network.getResponseStream(Network.getRequest(urlDetails));
+            final InputStream response = Network.getResponseStream(Network.getRequest(urlDetails, null, TRACKABLE_CACHE_POLICY));
             if (response == null) {
                 Log.e("GeolutinsConnector.searchTrackable: No data from server");
                 return null;
@@ -1,13 +1,13 @@
 package cgeo.geocaching.export;
 
 import cgeo.geocaching.enumerations.CacheAttribute;
-import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.LogEntry;
 import cgeo.geocaching.models.Trackable;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.DataStore.CacheExportVisitor;
 import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.SynchronizedDateFormat;
 import cgeo.geocaching.utils.TextUtils;
@@ -18,23 +18,46 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.CharEncoding;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import rx.internal.util.RxThreadFactory;
 
 public final class GpxSerializer {
 
 
 
 
-    private static final SynchronizedDateFormat dateFormatZ = new SynchronizedDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+    /**
+     * Number of caches serialized together by one worker of a parallel export.
+     */
+    static final int CACHES_PER_CHUNK = 50;
+
+    /**
+     * Number of serialized chunks which may wait for being written, per worker thread.
+     */
+    private static final int PENDING_CHUNKS_PER_THREAD = 2;
+
+    // every serializer has its own format, so that the workers of a parallel export don't block each other
+    private final SynchronizedDateFormat dateFormatZ = new SynchronizedDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
 
     private static final String PREFIX_XSI = "xsi";
     private static final String NS_XSI = "http://www.w3.org/2001/XMLSchema-instance";
@@ -54,11 +77,6 @@ public final class GpxSerializer {
     private static final String PREFIX_CGEO = "cgeo";
     private static final String NS_CGEO = "http://www.cgeo.org/wptext/1/0";
 
-    /**
-     * During the export, only this number of geocaches is fully loaded into memory.
-     */
-    public static final int CACHES_PER_BATCH = 100;
-
     /**
      * counter for exported caches, used for progress reporting
      */
@@ -72,11 +90,97 @@ public final class GpxSerializer {
 
     }
 
-    public void writeGPX(@NonNull final List<String> allGeocodesIn, final Writer writer, final ProgressListener progressListener) throws IOException {
-        // create a copy of the geocode list, as we need to modify it, but it might be immutable
-        final List<String> allGeocodes = new ArrayList<>(allGeocodesIn);
+    /**
+     * Source of the caches to export, {@link DataStore#exportCaches(java.util.Collection, CacheExportVisitor)} for
+     * stored caches.
+     */
+    interface CacheSource {
+
+        void visitCaches(@NonNull CacheExportVisitor visitor) throws IOException;
 
+    }
+
+    /**
+     * A cache of a parallel export with its logs, which cannot be read from the database cursor by the workers.
+     */
+    private static final class ChunkEntry {
+        @NonNull private final Geocache cache;
+        @NonNull private final List<LogEntry> logs;
+
+        ChunkEntry(@NonNull final Geocache cache, @NonNull final List<LogEntry> logs) {
+            this.cache = cache;
+            this.logs = logs;
+        }
+    }
+
+    /**
+     * The serialized caches of a chunk.
+     */
+    private static final class SerializedChunk {
+        @NonNull private final String xml;
+        private final int countExported;
+
+        SerializedChunk(@NonNull final String xml, final int countExported) {
+            this.xml = xml;
+            this.countExported = countExported;
+        }
+    }
+
+    public void writeGPX(@NonNull final List<String> allGeocodes, final Writer writer, final ProgressListener progressListener) throws IOException {
+        final CacheSource source = new CacheSource() {
+
+            @Override
+            public void visitCaches(@NonNull final CacheExportVisitor visitor) throws IOException {
+                DataStore.exportCaches(allGeocodes, visitor);
+            }
+        };
+        final int threads = Runtime.getRuntime().availableProcessors();
+        if (threads <= 1) {
+            writeGPX(source, writer, progressListener, null, 0);
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new RxThreadFactory("gpx-export-"));
+        try {
+            writeGPX(source, writer, progressListener, executor, threads);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Write a GPX file. With an executor, chunks of {@link #CACHES_PER_CHUNK} caches are serialized by separate
+     * serializers on the executor, while the caches are still read by the calling thread, and the serialized chunks
+     * are written in their original order. The output is the same as without an executor.
+     *
+     * @param executor
+     *            executor for serializing the chunks, {@code null} to serialize all caches on the calling thread
+     * @param threads
+     *            number of threads of the executor, limits the number of chunks held in memory
+     */
+    void writeGPX(@NonNull final CacheSource source, final Writer writer, final ProgressListener progressListener, @Nullable final ExecutorService executor, final int threads) throws IOException {
         this.progressListener = progressListener;
+        // the serialized chunks are written to the same buffer the serializer uses
+        final BufferedWriter output = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+        startGPX(output);
+
+        if (executor == null) {
+            // The caches are streamed from the database, so that only the cache currently written is kept in memory.
+            source.visitCaches(new CacheExportVisitor() {
+
+                @Override
+                public void visit(@NonNull final Geocache cache, @NonNull final Iterator<LogEntry> logs) throws IOException {
+                    exportCache(cache, logs);
+                }
+            });
+        } else {
+            exportParallel(source, output, executor, Math.max(1, threads) * PENDING_CHUNKS_PER_THREAD);
+        }
+
+        gpx.endTag(NS_GPX, "gpx");
+        gpx.endDocument();
+    }
+
+    private void startGPX(@NonNull final Writer writer) throws IOException {
         gpx.setOutput(writer);
 
         gpx.startDocument(CharEncoding.UTF_8, true);
@@ -90,94 +194,204 @@ public final class GpxSerializer {
         gpx.attribute("", "version", "1.0");
         gpx.attribute("", "creator", "c:geo - http://www.cgeo.org/");
         gpx.attribute(NS_XSI, "schemaLocation", NS_GPX + " " + GPX_SCHEMA + " " + NS_GROUNDSPEAK + " " + GROUNDSPEAK_SCHEMA + " " + NS_GSAK + " " + GSAK_SCHEMA);
+    }
 
-        // Split the overall set of geocodes into small chunks. That is a compromise between memory efficiency (because
-        // we don't load all caches fully into memory) and speed (because we don't query each cache separately).
-        while (!allGeocodes.isEmpty()) {
-            final List<String> batch = allGeocodes.subList(0, Math.min(CACHES_PER_BATCH, allGeocodes.size()));
-            exportBatch(gpx, batch);
-            batch.clear();
+    private void exportParallel(@NonNull final CacheSource source, @NonNull final Writer output, @NonNull final ExecutorService executor, final int maxPendingChunks) throws IOException {
+        final ChunkingVisitor chunks = new ChunkingVisitor(output, executor, maxPendingChunks);
+        try {
+            source.visitCaches(chunks);
+            chunks.finish();
+        } catch (final IOException | RuntimeException e) {
+            chunks.cancel();
+            throw e;
         }
-
-        gpx.endTag(NS_GPX, "gpx");
-        gpx.endDocument();
     }
 
-    private void exportBatch(final XmlSerializer gpx, @NonNull final Collection<String> geocodesOfBatch) throws IOException {
-        final Set<Geocache> caches = DataStore.loadCaches(geocodesOfBatch, LoadFlags.LOAD_ALL_DB_ONLY);
-        for (final Geocache cache : caches) {
-            if (cache == null) {
-                continue;
+    /**
+     * Collects the visited caches in chunks, which are serialized on the executor, and writes the serialized chunks
+     * in order.
+     */
+    private final class ChunkingVisitor implements CacheExportVisitor {
+        @NonNull private final Writer output;
+        @NonNull private final ExecutorService executor;
+        private final int maxPendingChunks;
+        private final Deque<Future<SerializedChunk>> pendingChunks = new ArrayDeque<>();
+        private List<ChunkEntry> chunk = new ArrayList<>(CACHES_PER_CHUNK);
+        /** whether the start tag of the gpx element has been completed */
+        private boolean started = false;
+
+        ChunkingVisitor(@NonNull final Writer output, @NonNull final ExecutorService executor, final int maxPendingChunks) {
+            this.output = output;
+            this.executor = executor;
+            this.maxPendingChunks = maxPendingChunks;
+        }
+
+        @Override
+        public void visit(@NonNull final Geocache cache, @NonNull final Iterator<LogEntry> logs) throws IOException {
+            // the logs are read from the database cursor, which must not be used by the workers
+            final List<LogEntry> cacheLogs = new ArrayList<>();
+            while (logs.hasNext()) {
+                cacheLogs.add(logs.next());
             }
-            final Geopoint coords = cache.getCoords();
-            if (coords == null) {
-                // Export would be invalid without coordinates.
-                continue;
+            chunk.add(new ChunkEntry(cache, cacheLogs));
+            if (chunk.size() >= CACHES_PER_CHUNK) {
+                submitChunk();
+                while (pendingChunks.size() > maxPendingChunks) {
+                    writeChunk(pendingChunks.remove());
+                }
             }
-            gpx.startTag(NS_GPX, "wpt");
-            gpx.attribute("", "lat", Double.toString(coords.getLatitude()));
-            gpx.attribute("", "lon", Double.toString(coords.getLongitude()));
+        }
+
+        void finish() throws IOException {
+            submitChunk();
+            while (!pendingChunks.isEmpty()) {
+                writeChunk(pendingChunks.remove());
+            }
+        }
 
-            final Date hiddenDate = cache.getHiddenDate();
-            if (hiddenDate != null) {
-                XmlUtils.simpleText(gpx, NS_GPX, "time", dateFormatZ.format(hiddenDate));
+        void cancel() {
+            for (final Future<SerializedChunk> pending : pendingChunks) {
+                pending.cancel(true);
             }
+            pendingChunks.clear();
+        }
 
-            XmlUtils.multipleTexts(gpx, NS_GPX,
-                    "name", cache.getGeocode(),
-                    "desc", cache.getName(),
-                    "url", cache.getUrl(),
-                    "urlname", cache.getName(),
-                    "sym", cache.isFound() ? "Geocache Found" : "Geocache",
-                    "type", "Geocache|" + cache.getType().pattern);
-
-            gpx.startTag(NS_GROUNDSPEAK, "cache");
-            gpx.attribute("", "id", cache.getCacheId());
-            gpx.attribute("", "available", !cache.isDisabled() ? "True" : "False");
-            gpx.attribute("", "archived", cache.isArchived() ? "True" : "False");
+        private void submitChunk() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            final List<ChunkEntry> entries = chunk;
+            chunk = new ArrayList<>(CACHES_PER_CHUNK);
+            pendingChunks.add(executor.submit(new Callable<SerializedChunk>() {
 
-            XmlUtils.multipleTexts(gpx, NS_GROUNDSPEAK,
-                    "name", cache.getName(),
-                    "placed_by", cache.getOwnerDisplayName(),
-                    "owner", cache.getOwnerUserId(),
-                    "type", cache.getType().pattern,
+                @Override
+                public SerializedChunk call() throws IOException {
+                    return new GpxSerializer().serializeChunk(entries);
+                }
+            }));
+        }
+
+        private void writeChunk(@NonNull final Future<SerializedChunk> pending) throws IOException {
+            final SerializedChunk serialized;
+            try {
+                serialized = pending.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("GPX export interrupted");
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException("GPX export failed", cause);
+            }
+            if (serialized.xml.isEmpty()) {
+                return;
+            }
+            if (!started) {
+                // complete the pending start tag of the gpx element before adding the waypoints
+                gpx.flush();
+                started = true;
+            }
+            output.write(serialized.xml);
+            countExported += serialized.countExported;
+            if (progressListener != null) {
+                progressListener.publishProgress(countExported);
+            }
+        }
+    }
+
+    /**
+     * Serialize the caches of a chunk with this serializer. The chunk is written as part of a complete document,
+     * so that the namespaces are in the same state as in the document the chunk is added to.
+     *
+     * @return the XML of the caches only
+     */
+    @NonNull
+    private SerializedChunk serializeChunk(@NonNull final List<ChunkEntry> entries) throws IOException {
+        final StringWriter buffer = new StringWriter();
+        startGPX(buffer);
+        gpx.flush();
+        final int start = buffer.getBuffer().length();
+        for (final ChunkEntry entry : entries) {
+            exportCache(entry.cache, entry.logs.iterator());
+        }
+        gpx.flush();
+        return new SerializedChunk(buffer.getBuffer().substring(start), countExported);
+    }
+
+    private void exportCache(@NonNull final Geocache cache, @NonNull final Iterator<LogEntry> logs) throws IOException {
+        final Geopoint coords = cache.getCoords();
+        if (coords == null) {
+            // Export would be invalid without coordinates.
+            return;
+        }
+        gpx.startTag(NS_GPX, "wpt");
+        gpx.attribute("", "lat", Double.toString(coords.getLatitude()));
+        gpx.attribute("", "lon", Double.toString(coords.getLongitude()));
+
+        final Date hiddenDate = cache.getHiddenDate();
+        if (hiddenDate != null) {
+            XmlUtils.simpleText(gpx, NS_GPX, "time", dateFormatZ.format(hiddenDate));
+        }
+
+        XmlUtils.multipleTexts(gpx, NS_GPX,
+                "name", cache.getGeocode(),
+                "desc", cache.getName(),
+                "url", cache.getUrl(),
+                "urlname", cache.getName(),
+                "sym", cache.isFound() ? "Geocache Found" : "Geocache",
+                "type", "Geocache|" + cache.getType().pattern);
+
+        gpx.startTag(NS_GROUNDSPEAK, "cache");
+        gpx.attribute("", "id", cache.getCacheId());
+        gpx.attribute("", "available", !cache.isDisabled() ? "True" : "False");
+        gpx.attribute("", "archived", cache.isArchived() ? "True" : "False");
+
+        XmlUtils.multipleTexts(gpx, NS_GROUNDSPEAK,
+                "name", cache.getName(),
+                "placed_by", cache.getOwnerDisplayName(),
+                "owner", cache.getOwnerUserId(),
+                "type", cache.getType().pattern,
  "container", cache.getSize().id);
 
-            writeAttributes(cache);
+        writeAttributes(cache);
 
-            XmlUtils.multipleTexts(gpx, NS_GROUNDSPEAK,
-                    "difficulty", Float.toString(cache.getDifficulty()),
-                    "terrain", Float.toString(cache.getTerrain()),
-                    "country", getCountry(cache),
+        XmlUtils.multipleTexts(gpx, NS_GROUNDSPEAK,
+                "difficulty", Float.toString(cache.getDifficulty()),
+                "terrain", Float.toString(cache.getTerrain()),
+                "country", getCountry(cache),
  "state", getState(cache));
 
-            gpx.startTag(NS_GROUNDSPEAK, "short_description");
-            gpx.attribute("", "html", TextUtils.containsHtml(cache.getShortDescription()) ? "True" : "False");
-            gpx.text(cache.getShortDescription());
-            gpx.endTag(NS_GROUNDSPEAK, "short_description");
+        gpx.startTag(NS_GROUNDSPEAK, "short_description");
+        gpx.attribute("", "html", TextUtils.containsHtml(cache.getShortDescription()) ? "True" : "False");
+        gpx.text(cache.getShortDescription());
+        gpx.endTag(NS_GROUNDSPEAK, "short_description");
 
-            gpx.startTag(NS_GROUNDSPEAK, "long_description");
-            gpx.attribute("", "html", TextUtils.containsHtml(cache.getDescription()) ? "True" : "False");
-            gpx.text(cache.getDescription());
-            gpx.endTag(NS_GROUNDSPEAK, "long_description");
+        gpx.startTag(NS_GROUNDSPEAK, "long_description");
+        gpx.attribute("", "html", TextUtils.containsHtml(cache.getDescription()) ? "True" : "False");
+        gpx.text(cache.getDescription());
+        gpx.endTag(NS_GROUNDSPEAK, "long_description");
 
-            XmlUtils.simpleText(gpx, NS_GROUNDSPEAK, "encoded_hints", cache.getHint());
+        XmlUtils.simpleText(gpx, NS_GROUNDSPEAK, "encoded_hints", cache.getHint());
 
-            writeLogs(cache);
-            writeTravelBugs(cache);
+        writeLogs(cache, logs);
+        writeTravelBugs(cache);
 
-            gpx.endTag(NS_GROUNDSPEAK, "cache");
+        gpx.endTag(NS_GROUNDSPEAK, "cache");
 
-            writeGsakExtensions(cache);
+        writeGsakExtensions(cache);
 
-            gpx.endTag(NS_GPX, "wpt");
+        gpx.endTag(NS_GPX, "wpt");
 
-            writeWaypoints(cache);
+        writeWaypoints(cache);
 
-            countExported++;
-            if (progressListener != null) {
-                progressListener.publishProgress(countExported);
-            }
+        countExported++;
+        if (progressListener != null) {
+            progressListener.publishProgress(countExported);
         }
     }
 
@@ -273,14 +487,14 @@ public final class GpxSerializer {
         }
     }
 
-    private void writeLogs(@NonNull final Geocache cache) throws IOException {
-        final List<LogEntry> logs = cache.getLogs();
-        if (logs.isEmpty()) {
+    private void writeLogs(@NonNull final Geocache cache, @NonNull final Iterator<LogEntry> logs) throws IOException {
+        if (!logs.hasNext()) {
             return;
         }
         gpx.startTag(NS_GROUNDSPEAK, "logs");
 
-        for (final LogEntry log : logs) {
+        while (logs.hasNext()) {
+            final LogEntry log = logs.next();
             gpx.startTag(NS_GROUNDSPEAK, "log");
             gpx.attribute("", "id", Integer.toString(log.id));
 
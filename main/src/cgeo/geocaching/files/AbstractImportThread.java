@@ -13,10 +13,25 @@ import cgeo.geocaching.utils.Log;
 import android.os.Handler;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Completable;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.functions.Func1;
 
 abstract class AbstractImportThread extends Thread {
+    /** number of caches whose static maps are downloaded at the same time */
+    private static final int STATIC_MAPS_CONCURRENT_CACHES = 4;
+    /** number of caches loaded at once from the database for downloading their static maps */
+    private static final int STATIC_MAPS_BATCH_SIZE = 50;
+
     final int listId;
     final Handler importStepHandler;
     final CancellableHandler progressHandler;
@@ -71,22 +86,70 @@ abstract class AbstractImportThread extends Thread {
      */
     protected abstract String getSourceDisplayName();
 
+    /**
+     * Download the static maps of the imported caches. The caches are loaded from the database in batches, and the
+     * maps of up to {@link #STATIC_MAPS_CONCURRENT_CACHES} caches are downloaded at the same time.
+     *
+     * @return {@code false} if the download has been cancelled
+     */
     private boolean importStaticMaps(final SearchResult importedCaches) {
-        int storedCacheMaps = 0;
+        final List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>(STATIC_MAPS_BATCH_SIZE);
         for (final String geocode : importedCaches.getGeocodes()) {
-            final Geocache cache = DataStore.loadCache(geocode, LoadFlags.LOAD_WAYPOINTS);
-            if (cache != null) {
-                Log.d("GPXImporter.ImportThread.importStaticMaps start downloadMaps for cache " + geocode);
-                StaticMapsProvider.downloadMaps(cache).await();
-            } else {
-                Log.d("GPXImporter.ImportThread.importStaticMaps: no data found for " + geocode);
+            if (batch.size() == STATIC_MAPS_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>(STATIC_MAPS_BATCH_SIZE);
+            }
+            batch.add(geocode);
+        }
+        batches.add(batch);
+
+        final AtomicInteger storedCacheMaps = new AtomicInteger();
+        // the next batch is only loaded when the downloads of the previous one have been started
+        final Observable<Completable> downloads = Observable.from(batches).concatMap(new Func1<List<String>, Observable<Completable>>() {
+            @Override
+            public Observable<Completable> call(final List<String> geocodes) {
+                if (progressHandler.isCancelled()) {
+                    return Observable.empty();
+                }
+                final Set<Geocache> caches = DataStore.loadCaches(geocodes, LoadFlags.LOAD_WAYPOINTS);
+                if (caches.size() < geocodes.size()) {
+                    Log.d("GPXImporter.ImportThread.importStaticMaps: no data found for " + (geocodes.size() - caches.size()) + " caches");
+                    reportStaticMapsProgress(storedCacheMaps.addAndGet(geocodes.size() - caches.size()));
+                }
+                return Observable.from(caches).map(new Func1<Geocache, Completable>() {
+                    @Override
+                    public Completable call(final Geocache cache) {
+                        return downloadStaticMaps(cache, storedCacheMaps);
+                    }
+                });
+            }
+        });
+        Completable.merge(downloads, STATIC_MAPS_CONCURRENT_CACHES).await();
+        return !progressHandler.isCancelled();
+    }
+
+    private Completable downloadStaticMaps(final Geocache cache, final AtomicInteger storedCacheMaps) {
+        return Completable.defer(new Func0<Completable>() {
+            @Override
+            public Completable call() {
+                if (progressHandler.isCancelled()) {
+                    return Completable.complete();
+                }
+                Log.d("GPXImporter.ImportThread.importStaticMaps start downloadMaps for cache " + cache.getGeocode());
+                return StaticMapsProvider.downloadMaps(cache);
             }
-            storedCacheMaps++;
-            if (progressHandler.isCancelled()) {
-                return false;
+        }).doOnCompleted(new Action0() {
+            @Override
+            public void call() {
+                reportStaticMapsProgress(storedCacheMaps.incrementAndGet());
             }
+        });
+    }
+
+    private void reportStaticMapsProgress(final int storedCacheMaps) {
+        if (!progressHandler.isCancelled()) {
             progressHandler.sendMessage(progressHandler.obtainMessage(0, storedCacheMaps, 0));
         }
-        return true;
     }
 }
@@ -0,0 +1,167 @@
+package cgeo.geocaching.files;
+
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.LogEntry;
+import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.Log;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Stores the caches parsed by the {@link GPXParser} on a separate thread. The parser collects the caches in a
+ * {@link Batch}, which is handed over to the writer through a bounded queue once it is full. Every batch is written
+ * in a single database transaction, while the parser continues with the next batch.
+ */
+final class GPXImportWriter {
+
+    /** number of caches written in one transaction */
+    static final int BATCH_SIZE = 200;
+    /** number of full batches waiting to be written before the parser gets blocked */
+    private static final int QUEUE_CAPACITY = 2;
+
+    private static final Batch END_OF_IMPORT = new Batch();
+
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    /** number of batches handed over, but not yet written */
+    private int pendingBatches = 0;
+
+    /**
+     * Caches and logs to be written in one transaction.
+     */
+    static final class Batch {
+        private final Map<String, Geocache> caches = new LinkedHashMap<>();
+        private final Map<String, List<LogEntry>> logs = new HashMap<>();
+
+        /**
+         * Add a parsed cache with its logs, replacing the logs of an earlier cache with the same geocode.
+         */
+        void addParsed(@NonNull final Geocache cache, @NonNull final List<LogEntry> cacheLogs) {
+            add(cache);
+            logs.put(cache.getGeocode(), cacheLogs);
+        }
+
+        /**
+         * Add a cache whose logs are not to be touched, e.g. an already stored cache which got a new waypoint.
+         */
+        void add(@NonNull final Geocache cache) {
+            final Geocache previous = caches.put(cache.getGeocode(), cache);
+            if (previous != null && previous != cache) {
+                cache.gatherMissingFrom(previous);
+            }
+        }
+
+        @Nullable
+        Geocache get(@NonNull final String geocode) {
+            return caches.get(geocode);
+        }
+
+        @Nullable
+        Geocache getByName(@NonNull final String name) {
+            for (final Geocache cache : caches.values()) {
+                if (StringUtils.equals(cache.getName(), name)) {
+                    return cache;
+                }
+            }
+            return null;
+        }
+
+        int size() {
+            return caches.size();
+        }
+    }
+
+    GPXImportWriter() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "GPXImportWriter");
+        thread.start();
+    }
+
+    /**
+     * Hand a batch over to the writer thread. Blocks while the queue is full.
+     */
+    void write(@NonNull final Batch batch) {
+        if (batch.size() == 0) {
+            return;
+        }
+        synchronized (this) {
+            pendingBatches++;
+        }
+        try {
+            queue.put(batch);
+        } catch (final InterruptedException e) {
+            synchronized (this) {
+                pendingBatches--;
+                notifyAll();
+            }
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while waiting for the GPX import writer");
+        }
+    }
+
+    /**
+     * Wait until all batches handed over so far have been written.
+     */
+    synchronized void flush() {
+        while (pendingBatches > 0) {
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("interrupted while waiting for the GPX import writer");
+            }
+        }
+    }
+
+    /**
+     * Write all remaining batches and stop the writer thread.
+     */
+    void finish() {
+        try {
+            queue.put(END_OF_IMPORT);
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w("GPXImportWriter: interrupted while finishing the import");
+        }
+    }
+
+    private void writeBatches() {
+        while (true) {
+            final Batch batch;
+            try {
+                batch = queue.take();
+            } catch (final InterruptedException e) {
+                Log.w("GPXImportWriter: interrupted, remaining caches are not stored");
+                return;
+            }
+            if (batch == END_OF_IMPORT) {
+                return;
+            }
+            try {
+                DataStore.saveImportedCaches(batch.caches.values(), batch.logs);
+            } catch (final RuntimeException e) {
+                Log.e("GPXImportWriter: could not store caches", e);
+            } finally {
+                synchronized (this) {
+                    pendingBatches--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -11,8 +11,6 @@ import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.LoadFlag;
-import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
-import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
 import cgeo.geocaching.enumerations.LogType;
 import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.list.StoredList;
@@ -121,6 +119,10 @@ public abstract class GPXParser extends FileParser {
      */
     private final Set<String> result = new HashSet<>(100);
     private ProgressInputStream progressStream;
+    /** stores the parsed caches on a separate thread */
+    private GPXImportWriter writer;
+    /** parsed caches not yet handed over to the {@link #writer} */
+    private GPXImportWriter.Batch batch;
     /**
      * URL contained in the header of the GPX file. Used to guess where the file is coming from.
      */
@@ -370,11 +372,13 @@ public abstract class GPXParser extends FileParser {
 
                     // finally store the cache in the database
                     result.add(geocode);
-                    DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
-                    DataStore.saveLogs(cache.getGeocode(), logs);
-
-                    // avoid the cachecache using lots of memory for caches which the user did not actually look at
-                    DataStore.removeCache(geocode, EnumSet.of(RemoveFlag.CACHE));
+                    // full batches are only handed over before a new cache, so that the waypoints following a cache
+                    // still find it in the current batch
+                    if (batch.size() >= GPXImportWriter.BATCH_SIZE) {
+                        writer.write(batch);
+                        batch = new GPXImportWriter.Batch();
+                    }
+                    batch.addParsed(cache, logs);
                     showProgressMessage(progressHandler, progressStream.getProgress());
                 } else if (StringUtils.isNotBlank(cache.getName())
  && (StringUtils.containsIgnoreCase(type, "waypoint") || terraChildWaypoint)) {
@@ -422,7 +426,7 @@ public abstract class GPXParser extends FileParser {
                         newPoints.add(waypoint);
                         Waypoint.mergeWayPoints(newPoints, mergedWayPoints, true);
                         cacheForWaypoint.setWaypoints(newPoints, false);
-                        DataStore.saveCache(cacheForWaypoint, EnumSet.of(SaveFlag.DB));
+                        batch.add(cacheForWaypoint);
                         showProgressMessage(progressHandler, progressStream.getProgress());
                     }
                 }
@@ -858,14 +862,20 @@ public abstract class GPXParser extends FileParser {
             });
         }
 
+        batch = new GPXImportWriter.Batch();
+        writer = new GPXImportWriter();
         try {
             progressStream = new ProgressInputStream(stream);
             final BufferedReader reader = new BufferedReader(new InputStreamReader(progressStream, CharEncoding.UTF_8));
             Xml.parse(new InvalidXMLCharacterFilterReader(reader), root.getContentHandler());
-            return DataStore.loadCaches(result, EnumSet.of(LoadFlag.DB_MINIMAL));
         } catch (final SAXException e) {
             throw new ParserException("Cannot parse .gpx file as GPX " + version + ": could not parse XML", e);
+        } finally {
+            // store the caches parsed so far, also if the import has been cancelled
+            writer.write(batch);
+            writer.finish();
         }
+        return DataStore.loadCaches(result, EnumSet.of(LoadFlag.DB_MINIMAL));
     }
 
     /**
@@ -1285,13 +1295,22 @@ public abstract class GPXParser extends FileParser {
         if (StringUtils.isBlank(parentCacheCode)) {
             return null;
         }
-        // first match by geocode only
-        Geocache cacheForWaypoint = DataStore.loadCache(parentCacheCode, LoadFlags.LOAD_CACHE_OR_DB);
+        // first match by geocode only, preferring the caches not yet handed over to the writer
+        Geocache cacheForWaypoint = batch.get(parentCacheCode);
+        if (cacheForWaypoint != null) {
+            return cacheForWaypoint;
+        }
+        // the parent cache may be part of a batch which is still being written
+        writer.flush();
+        cacheForWaypoint = DataStore.loadCache(parentCacheCode, LoadFlags.LOAD_CACHE_OR_DB);
         if (cacheForWaypoint == null) {
             // then match by title
-            final String geocode = DataStore.getGeocodeForTitle(parentCacheCode);
-            if (StringUtils.isNotBlank(geocode)) {
-                cacheForWaypoint = DataStore.loadCache(geocode, LoadFlags.LOAD_CACHE_OR_DB);
+            cacheForWaypoint = batch.getByName(parentCacheCode);
+            if (cacheForWaypoint == null) {
+                final String geocode = DataStore.getGeocodeForTitle(parentCacheCode);
+                if (StringUtils.isNotBlank(geocode)) {
+                    cacheForWaypoint = DataStore.loadCache(geocode, LoadFlags.LOAD_CACHE_OR_DB);
+                }
             }
         }
         return cacheForWaypoint;
@@ -4,6 +4,7 @@ import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.R;
 import cgeo.geocaching.connector.capability.ICredentials;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.network.CachePolicy;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.settings.Credentials;
@@ -41,6 +42,8 @@ public final class GCVote implements ICredentials {
     private static final LeastRecentlyUsedMap<String, GCVoteRating> RATINGS_CACHE = new LeastRecentlyUsedMap.LruCache<>(MAX_CACHED_RATINGS);
     private static final float MIN_RATING = 1;
     private static final float MAX_RATING = 5;
+    /** votes change slowly, the anonymous ratings of the same caches may be reused for an hour */
+    private static final CachePolicy VOTES_CACHE_POLICY = new CachePolicy(3600, 0, true);
 
     private GCVote() {
         // utility class
@@ -97,7 +100,8 @@ public final class GCVote implements ICredentials {
         } else {
             params.put("waypoints", StringUtils.join(geocodes, ','));
         }
-        final InputStream response = Network.getResponseStream(Network.getRequest("http://gcvote.com/getVotes.php", params));
+        // the ratings of a logged in user carry their own vote and the request their password, neither may be cached
+        final InputStream response = Network.getResponseStream(Network.getRequest("http://gcvote.com/getVotes.php", params, login.isValid() ? null : VOTES_CACHE_POLICY));
         if (response == null) {
             return Collections.emptyMap();
         }
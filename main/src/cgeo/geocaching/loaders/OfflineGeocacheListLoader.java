@@ -1,18 +1,25 @@
 package cgeo.geocaching.loaders;
 
-import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.StoredCachesPager;
 import cgeo.geocaching.Intents;
 import cgeo.geocaching.SearchResult;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.settings.Settings;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import android.content.Context;
 import android.os.Bundle;
 
+/**
+ * Loads the first page of a stored list. The following pages are read from the {@link #getPager() pager} while the
+ * list is being scrolled.
+ */
 public class OfflineGeocacheListLoader extends AbstractSearchLoader {
 
     private final int listId;
     private final Geopoint searchCenter;
+    @Nullable private volatile StoredCachesPager pager;
 
     public OfflineGeocacheListLoader(final Context context, final Geopoint searchCenter, final int listId) {
         super(context);
@@ -22,7 +29,18 @@ public class OfflineGeocacheListLoader extends AbstractSearchLoader {
 
     @Override
     public SearchResult runSearch() {
-        return DataStore.getBatchOfStoredCaches(searchCenter, Settings.getCacheType(), listId);
+        final StoredCachesPager newPager = new StoredCachesPager(searchCenter, Settings.getCacheType(), listId);
+        final SearchResult search = new SearchResult(newPager.nextPage(), newPager.getTotalCount());
+        pager = newPager;
+        return search;
+    }
+
+    /**
+     * @return the pager of the last search, positioned behind the caches of the returned search result
+     */
+    @Nullable
+    public StoredCachesPager getPager() {
+        return pager;
     }
 
     /**
@@ -1,5 +1,6 @@
 package cgeo.geocaching.location;
 
+import cgeo.geocaching.network.CachePolicy;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.utils.Log;
@@ -22,6 +23,8 @@ import rx.functions.Func1;
 public class MapQuestGeocoder {
 
     private static final String MAPQUEST_KEY = "Fmjtd|luurn1u2n9,bs=o5-9wynua";
+    /** addresses and coordinates rarely change, answers may be reused for a week */
+    private static final CachePolicy GEOCODER_CACHE_POLICY = new CachePolicy(7 * 24 * 3600, 0, true);
 
     private MapQuestGeocoder() {
         // Do not instantiate
@@ -53,7 +56,7 @@ public class MapQuestGeocoder {
 
     private static Observable<Address> get(@NonNull final String method, @NonNull final Parameters parameters) {
         return Network.requestJSON("https://open.mapquestapi.com/geocoding/v1/" + method,
-                parameters.put("key", MAPQUEST_KEY))
+                parameters.put("key", MAPQUEST_KEY), GEOCODER_CACHE_POLICY)
                 .flatMapObservable(new Func1<ObjectNode, Observable<Address>>() {
                     @Override
                     public Observable<Address> call(final ObjectNode response) {
@@ -29,8 +29,10 @@ import cgeo.geocaching.maps.interfaces.MapSource;
 import cgeo.geocaching.maps.interfaces.MapViewImpl;
 import cgeo.geocaching.maps.interfaces.OnMapDragListener;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.GeocacheSummary;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.network.AndroidBeam;
+import cgeo.geocaching.network.RequestPriority;
 import cgeo.geocaching.sensors.GeoData;
 import cgeo.geocaching.sensors.GeoDirHandler;
 import cgeo.geocaching.sensors.Sensors;
@@ -140,7 +142,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     private Activity activity;
     private MapItemFactory mapItemFactory;
     private String mapTitle;
-    private final LeastRecentlyUsedSet<Geocache> caches = new LeastRecentlyUsedSet<>(MAX_CACHES + DataStore.getAllCachesCount());
+    private final LeastRecentlyUsedSet<GeocacheSummary> caches = new LeastRecentlyUsedSet<>(MAX_CACHES + DataStore.getAllCachesCount());
     private MapViewImpl mapView;
     private CachesOverlay overlayCaches;
     private PositionAndScaleOverlay overlayPositionAndScale;
@@ -256,7 +258,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             return res.getString(R.string.map_live);
         }
         if (mapMode == MapMode.SINGLE) {
-            final Geocache cache = getSingleModeCache();
+            final GeocacheSummary cache = getSingleModeCache();
             if (cache != null) {
                 return cache.getName();
             }
@@ -265,9 +267,9 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     }
 
     @Nullable
-    private Geocache getSingleModeCache() {
+    private GeocacheSummary getSingleModeCache() {
         // use a copy of the caches list to avoid concurrent modification
-        for (final Geocache geocache : caches.getAsList()) {
+        for (final GeocacheSummary geocache : caches.getAsList()) {
             if (geocache.getGeocode().equals(geocodeIntent)) {
                 return geocache;
             }
@@ -275,6 +277,14 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         return null;
     }
 
+    /**
+     * @return the complete cache shown in single mode, for the actions needing more than its summary
+     */
+    @Nullable
+    private Geocache loadSingleModeCache() {
+        return getSingleModeCache() != null ? DataStore.loadCache(geocodeIntent, LoadFlags.LOAD_CACHE_OR_DB) : null;
+    }
+
     private void setSubtitle() {
         final String subtitle = calculateSubtitle();
         if (StringUtils.isEmpty(subtitle)) {
@@ -296,7 +306,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         countVisibleCaches();
         final StringBuilder subtitle = new StringBuilder();
         if (!isLiveEnabled && mapMode == MapMode.SINGLE) {
-            final Geocache cache = getSingleModeCache();
+            final GeocacheSummary cache = getSingleModeCache();
             if (cache != null) {
                 return Formatter.formatMapSubtitle(cache);
             }
@@ -606,14 +616,11 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             AndroidRxUtils.refreshScheduler.createWorker().schedule(new Action0() {
                 @Override
                 public void call() {
-                    for (final String geocode: toRefresh) {
-                        final Geocache cache = DataStore.loadCache(geocode, LoadFlags.LOAD_WAYPOINTS);
-                        if (cache != null) {
-                            // new collection type needs to remove first
-                            caches.remove(cache);
-                            // re-add to update the freshness
-                            caches.add(cache);
-                        }
+                    for (final GeocacheSummary cache : DataStore.loadSummaries(toRefresh)) {
+                        // new collection type needs to remove first
+                        caches.remove(cache);
+                        // re-add to update the freshness
+                        caches.add(cache);
                     }
                     displayExecutor.execute(new DisplayRunnable(CGeoMap.this));
                 }
@@ -881,14 +888,14 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     }
 
     private void menuCompass() {
-        final Geocache cache = getSingleModeCache();
+        final Geocache cache = loadSingleModeCache();
         if (cache != null) {
             CompassActivity.startActivityCache(this.getActivity(), cache);
         }
     }
 
     private void menuShowHint() {
-        final Geocache cache = getSingleModeCache();
+        final Geocache cache = loadSingleModeCache();
         if (cache != null) {
             cache.showHintToast(getActivity());
         }
@@ -947,11 +954,11 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
      */
     private Set<String> getGeocodesForCachesInViewport() {
         final Set<String> geocodes = new HashSet<>();
-        final List<Geocache> cachesProtected = caches.getAsList();
+        final List<GeocacheSummary> cachesProtected = caches.getAsList();
 
         final Viewport viewport = mapView.getViewport();
 
-        for (final Geocache cache : cachesProtected) {
+        for (final GeocacheSummary cache : cachesProtected) {
             if (viewport.contains(cache)) {
                 geocodes.add(cache.getGeocode());
             }
@@ -1261,7 +1268,8 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             }
 
             downloaded = true;
-            final Set<Geocache> cachesFromSearchResult = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS);
+            // the summaries are enough for the markers, a cache is only loaded completely when it is opened
+            final List<GeocacheSummary> cachesFromSearchResult = DataStore.loadSummaries(searchResult.getGeocodes());
             // update the caches
             // new collection type needs to remove first
             caches.removeAll(cachesFromSearchResult);
@@ -1271,7 +1279,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             final boolean excludeDisabled = Settings.isExcludeDisabledCaches();
             if (mapMode == MapMode.LIVE) {
                 synchronized(caches) {
-                    filter(caches);
+                    MapUtils.filter(caches);
                 }
             }
             countVisibleCaches();
@@ -1286,7 +1294,11 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                     waypoints.addAll(waypointsInViewport);
                 } else {
                     //All waypoints from the viewed caches
-                    for (final Geocache c : caches.getAsList()) {
+                    final Set<String> geocodes = new HashSet<>();
+                    for (final GeocacheSummary c : caches.getAsList()) {
+                        geocodes.add(c.getGeocode());
+                    }
+                    for (final Geocache c : DataStore.loadCaches(geocodes, LoadFlags.LOAD_WAYPOINTS)) {
                         waypoints.addAll(c.getWaypoints());
                     }
                 }
@@ -1341,13 +1353,13 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             final SearchResult searchResult = ConnectorFactory.searchByViewport(mapView.getViewport().resize(0.8), tokens);
             downloaded = true;
 
-            final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
-            filter(result);
+            final List<GeocacheSummary> result = GeocacheSummary.of(searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB));
+            MapUtils.filter(result);
             // update the caches
             // first remove filtered out
             final Set<String> filteredCodes = searchResult.getFilteredGeocodes();
             Log.d("Filtering out " + filteredCodes.size() + " caches: " + filteredCodes.toString());
-            caches.removeAll(DataStore.loadCaches(filteredCodes, LoadFlags.LOAD_CACHE_ONLY));
+            caches.removeAll(GeocacheSummary.of(DataStore.loadCaches(filteredCodes, LoadFlags.LOAD_CACHE_ONLY)));
             DataStore.removeCaches(filteredCodes, EnumSet.of(RemoveFlag.CACHE));
             // new collection type needs to remove first to refresh
             caches.removeAll(result);
@@ -1382,7 +1394,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             showProgressHandler.sendEmptyMessage(SHOW_PROGRESS);
 
             // display caches
-            final List<Geocache> cachesToDisplay = caches.getAsList();
+            final List<GeocacheSummary> cachesToDisplay = caches.getAsList();
             final List<Waypoint> waypointsToDisplay = new ArrayList<>(waypoints);
             final List<CachesOverlayItemImpl> itemsToDisplay = new ArrayList<>();
 
@@ -1399,7 +1411,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                         itemsToDisplay.add(getWaypointItem(waypoint));
                     }
                 }
-                for (final Geocache cache : cachesToDisplay) {
+                for (final GeocacheSummary cache : cachesToDisplay) {
 
                     if (cache == null || cache.getCoords() == null) {
                         continue;
@@ -1523,6 +1535,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 return;
             }
 
+            RequestPriority.setForCurrentThread(RequestPriority.BULK);
             for (final String geocode : geocodes) {
                 try {
                     if (handler.isCancelled()) {
@@ -1548,19 +1561,6 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         }
     }
 
-    private static synchronized void filter(final Collection<Geocache> caches) {
-        final boolean excludeMine = Settings.isExcludeMyCaches();
-        final boolean excludeDisabled = Settings.isExcludeDisabledCaches();
-
-        final List<Geocache> removeList = new ArrayList<>();
-        for (final Geocache cache : caches) {
-            if ((excludeMine && cache.isFound()) || (excludeMine && cache.isOwner()) || (excludeDisabled && cache.isDisabled()) || (excludeDisabled && cache.isArchived())) {
-                removeList.add(cache);
-            }
-        }
-        caches.removeAll(removeList);
-    }
-
     private static boolean mapMoved(final Viewport referenceViewport, final Viewport newViewport) {
         return Math.abs(newViewport.getLatitudeSpan() - referenceViewport.getLatitudeSpan()) > 50e-6 ||
                 Math.abs(newViewport.getLongitudeSpan() - referenceViewport.getLongitudeSpan()) > 50e-6 ||
@@ -1758,7 +1758,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         }
     }
 
-    private CachesOverlayItemImpl getCacheItem(final Geocache cache) {
+    private CachesOverlayItemImpl getCacheItem(final GeocacheSummary cache) {
         final CachesOverlayItemImpl item = mapItemFactory.getCachesOverlayItem(cache, cache.applyDistanceRule());
         item.setMarker(MapUtils.getCacheMarker(getResources(), cache));
         return item;
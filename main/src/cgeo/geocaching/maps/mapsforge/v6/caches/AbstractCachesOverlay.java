@@ -9,17 +9,22 @@ import cgeo.geocaching.maps.mapsforge.v6.MfMapView;
 import cgeo.geocaching.maps.mapsforge.v6.NewMap;
 import cgeo.geocaching.maps.mapsforge.v6.TapHandler;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.GeocacheSummary;
+import cgeo.geocaching.models.ICacheSummary;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.MapUtils;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.Layers;
+import org.mapsforge.map.model.common.Observer;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -28,6 +33,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
+import rx.functions.Action0;
+
 public abstract class AbstractCachesOverlay {
 
     private final int overlayId;
@@ -37,6 +44,24 @@ public abstract class AbstractCachesOverlay {
     private final GeoitemLayers layerList = new GeoitemLayers();
     private final MapHandlers mapHandlers;
     private boolean invalidated = true;
+    /** draws the items below {@link ClusterLayer#EXPAND_ZOOM}, directly above the anchor layer */
+    private final ClusterLayer clusterLayer;
+    /** whether the items are currently handed to the cluster layer instead of being individual layers */
+    private volatile boolean clustered = false;
+    private final Observer zoomObserver = new Observer() {
+        @Override
+        public void onChange() {
+            // the overlays without load timer must follow the zoom level as well
+            if (isClusteringZoom() != clustered) {
+                AndroidRxUtils.computationScheduler.createWorker().schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        updateClustering();
+                    }
+                });
+            }
+        }
+    };
 
     public AbstractCachesOverlay(final int overlayId, final Set<GeoEntry> geoEntries, final MfMapView mapView, final Layer anchorLayer, final MapHandlers mapHandlers) {
         this.overlayId = overlayId;
@@ -44,17 +69,24 @@ public abstract class AbstractCachesOverlay {
         this.mapView = mapView;
         this.anchorLayer = anchorLayer;
         this.mapHandlers = mapHandlers;
+
+        this.clusterLayer = new ClusterLayer(mapView.getModel().mapViewPosition);
+        final Layers layers = mapView.getLayerManager().getLayers();
+        layers.add(layers.indexOf(anchorLayer) + 1, clusterLayer);
+        mapView.getModel().mapViewPosition.addObserver(zoomObserver);
     }
 
     public void onDestroy() {
+        this.mapView.getModel().mapViewPosition.removeObserver(zoomObserver);
         clearLayers();
+        this.mapView.getLayerManager().getLayers().remove(clusterLayer);
     }
 
     public int getVisibleItemsCount() {
         return mapView.getViewport().count(DataStore.loadCaches(getGeocodes(), LoadFlags.LOAD_CACHE_OR_DB));
     }
 
-    public int getItemsCount() {
+    public synchronized int getItemsCount() {
         return layerList.size();
     }
 
@@ -71,41 +103,77 @@ public abstract class AbstractCachesOverlay {
     }
 
     protected void fill(final Set<Geocache> caches) {
+        fill(caches, true);
+    }
 
-        final Collection<String> removeCodes = getGeocodes();
-        final Collection<String> newCodes = new HashSet<>();
+    /**
+     * @param removeOthers
+     *            {@code true} to remove all displayed items not contained in {@code caches}, {@code false} to only add
+     *            the given caches to the displayed ones (e.g. for partial results of a running search)
+     */
+    protected void fill(final Set<Geocache> caches, final boolean removeOthers) {
+        // Only show waypoints when less than showWaypointsthreshold Caches shown
+        List<Waypoint> waypoints = null;
+        if (caches.size() < Settings.getWayPointsThreshold()) {
+            waypoints = new ArrayList<>();
+            for (final Geocache cache : caches) {
+                if (cache != null) {
+                    waypoints.addAll(cache.getWaypoints());
+                }
+            }
+        }
+        fill(caches, waypoints, removeOthers);
+    }
 
-        // display caches
-        final Set<Geocache> cachesToDisplay = caches;
+    /**
+     * Like {@link #fill(Set)}, for the summaries of caches. The full caches are only loaded if their waypoints are
+     * shown.
+     */
+    protected void fillSummaries(final Collection<GeocacheSummary> caches) {
+        List<Waypoint> waypoints = null;
+        // Only show waypoints when less than showWaypointsthreshold Caches shown
+        if (caches.size() < Settings.getWayPointsThreshold()) {
+            final Set<String> geocodes = new HashSet<>();
+            for (final GeocacheSummary cache : caches) {
+                geocodes.add(cache.getGeocode());
+            }
+            waypoints = new ArrayList<>();
+            for (final Geocache cache : DataStore.loadCaches(geocodes, LoadFlags.LOAD_WAYPOINTS)) {
+                waypoints.addAll(cache.getWaypoints());
+            }
+        }
+        fill(caches, waypoints, true);
+    }
 
-        if (!cachesToDisplay.isEmpty()) {
-            // Only show waypoints when less than showWaypointsthreshold Caches shown
-            final boolean showWaypoints = cachesToDisplay.size() < Settings.getWayPointsThreshold();
+    /**
+     * @param waypoints
+     *            the waypoints of the caches to show, or {@code null} to not show waypoints
+     */
+    private void fill(final Collection<? extends ICacheSummary> caches, @Nullable final Collection<Waypoint> waypoints, final boolean removeOthers) {
 
-            Log.d(String.format(Locale.ENGLISH, "CachesToDisplay: %d, showWaypoints: %b", cachesToDisplay.size(), showWaypoints));
+        final Collection<String> removeCodes = removeOthers ? getGeocodes() : new HashSet<String>();
+        final Collection<String> newCodes = new HashSet<>();
 
-            for (final Geocache cache : cachesToDisplay) {
+        if (!caches.isEmpty()) {
+            Log.d(String.format(Locale.ENGLISH, "CachesToDisplay: %d, showWaypoints: %b", caches.size(), waypoints != null));
 
-                if (cache == null) {
-                    continue;
-                }
-                if (showWaypoints) {
-                    final List<Waypoint> waypoints = cache.getWaypoints();
-                    for (final Waypoint waypoint : waypoints) {
-                        if (waypoint == null || waypoint.getCoords() == null) {
-                            continue;
-                        }
-                        if (removeCodes.contains(waypoint.getGpxId())) {
-                            removeCodes.remove(waypoint.getGpxId());
-                        } else {
-                            if (addItem(waypoint)) {
-                                newCodes.add(waypoint.getGpxId());
-                            }
+            if (waypoints != null) {
+                for (final Waypoint waypoint : waypoints) {
+                    if (waypoint == null || waypoint.getCoords() == null) {
+                        continue;
+                    }
+                    if (removeCodes.contains(waypoint.getGpxId())) {
+                        removeCodes.remove(waypoint.getGpxId());
+                    } else {
+                        if (addItem(waypoint)) {
+                            newCodes.add(waypoint.getGpxId());
                         }
                     }
                 }
+            }
 
-                if (cache.getCoords() == null) {
+            for (final ICacheSummary cache : caches) {
+                if (cache == null || cache.getCoords() == null) {
                     continue;
                 }
                 if (removeCodes.contains(cache.getGeocode())) {
@@ -123,7 +191,7 @@ public abstract class AbstractCachesOverlay {
         repaint();
     }
 
-    protected final boolean addItem(final Geocache cache) {
+    protected final synchronized boolean addItem(final ICacheSummary cache) {
         final GeoEntry entry = new GeoEntry(cache.getGeocode(), overlayId);
         if (geoEntries.add(entry)) {
             layerList.add(getCacheItem(cache, this.mapHandlers.getTapHandler()));
@@ -138,7 +206,7 @@ public abstract class AbstractCachesOverlay {
         return false;
     }
 
-    protected final boolean addItem(final Waypoint waypoint) {
+    protected final synchronized boolean addItem(final Waypoint waypoint) {
         final GeoEntry entry = new GeoEntry(waypoint.getGpxId(), overlayId);
         final GeoitemLayer waypointItem = getWaypointItem(waypoint, this.mapHandlers.getTapHandler());
         if (waypointItem != null && geoEntries.add(entry)) {
@@ -154,13 +222,51 @@ public abstract class AbstractCachesOverlay {
         return false;
     }
 
-    protected void addLayers() {
+    protected synchronized void addLayers() {
+        clustered = isClusteringZoom();
+        if (clustered) {
+            clusterLayer.addAll(layerList.getAsLayers());
+            return;
+        }
+        final Layers layers = this.mapView.getLayerManager().getLayers();
+        layers.addAll(getLayerIndex(layers), layerList.getAsLayers());
+    }
+
+    /**
+     * Move all items between the cluster layer and the individual layers if the zoom level crossed
+     * {@link ClusterLayer#EXPAND_ZOOM}.
+     */
+    private synchronized void updateClustering() {
+        final boolean clusterNow = isClusteringZoom();
+        if (clusterNow == clustered) {
+            return;
+        }
+        clustered = clusterNow;
         final Layers layers = this.mapView.getLayerManager().getLayers();
-        final int index = layers.indexOf(anchorLayer) + 1;
-        layers.addAll(index, layerList.getAsLayers());
+        if (clustered) {
+            for (final GeoitemLayer item : layerList) {
+                layers.remove(item);
+            }
+            clusterLayer.addAll(layerList.getAsLayers());
+        } else {
+            clusterLayer.clear();
+            layers.addAll(getLayerIndex(layers), layerList.getAsLayers());
+        }
+        repaint();
+    }
+
+    private boolean isClusteringZoom() {
+        return getMapZoomLevel() < ClusterLayer.EXPAND_ZOOM;
     }
 
-    protected Collection<String> getGeocodes() {
+    /**
+     * @return index for adding individual item layers, above the cluster layer
+     */
+    private int getLayerIndex(final Layers layers) {
+        return layers.indexOf(clusterLayer) + 1;
+    }
+
+    protected synchronized Collection<String> getGeocodes() {
         return layerList.getGeocodes();
     }
 
@@ -185,29 +291,40 @@ public abstract class AbstractCachesOverlay {
         mapHandlers.sendEmptyDisplayMessage(NewMap.UPDATE_TITLE);
     }
 
-    protected void clearLayers() {
+    protected synchronized void clearLayers() {
         final Layers layers = this.mapView.getLayerManager().getLayers();
 
         for (final GeoitemLayer layer : layerList) {
             geoEntries.remove(new GeoEntry(layer.getItemCode(), overlayId));
-            layers.remove(layer);
+            if (!clustered) {
+                layers.remove(layer);
+            }
         }
+        clusterLayer.clear();
 
         layerList.clear();
 
         Log.d(String.format(Locale.ENGLISH, "Layers for id %d cleared, remaining geoEntries: %d", overlayId, geoEntries.size()));
     }
 
-    protected void syncLayers(final Collection<String> removeCodes, final Collection<String> newCodes) {
+    protected synchronized void syncLayers(final Collection<String> removeCodes, final Collection<String> newCodes) {
         final Layers layers = this.mapView.getLayerManager().getLayers();
         for (final String code : removeCodes) {
             final GeoitemLayer item = layerList.getItem(code);
             geoEntries.remove(new GeoEntry(code, overlayId));
-            layers.remove(item);
+            if (clustered) {
+                clusterLayer.remove(item);
+            } else {
+                layers.remove(item);
+            }
             layerList.remove(item);
         }
-        final int index = layers.indexOf(anchorLayer) + 1;
-        layers.addAll(index, layerList.getMatchingLayers(newCodes));
+        if (clustered) {
+            clusterLayer.addAll(layerList.getMatchingLayers(newCodes));
+        } else {
+            layers.addAll(getLayerIndex(layers), layerList.getMatchingLayers(newCodes));
+        }
+        updateClustering();
 
         Log.d(String.format(Locale.ENGLISH, "Layers for id %d synced. Codes removed: %d, new codes: %d, geoEntries: %d", overlayId, removeCodes.size(), newCodes.size(), geoEntries.size()));
     }
@@ -219,20 +336,7 @@ public abstract class AbstractCachesOverlay {
                 Math.abs(newViewport.center.getLongitude() - referenceViewport.center.getLongitude()) > referenceViewport.getLongitudeSpan() / 4;
     }
 
-    static synchronized void filter(final Collection<Geocache> caches) {
-        final boolean excludeMine = Settings.isExcludeMyCaches();
-        final boolean excludeDisabled = Settings.isExcludeDisabledCaches();
-
-        final List<Geocache> removeList = new ArrayList<>();
-        for (final Geocache cache : caches) {
-            if ((excludeMine && cache.isFound()) || (excludeMine && cache.isOwner()) || (excludeDisabled && cache.isDisabled()) || (excludeDisabled && cache.isArchived())) {
-                removeList.add(cache);
-            }
-        }
-        caches.removeAll(removeList);
-    }
-
-    private static GeoitemLayer getCacheItem(final Geocache cache, final TapHandler tapHandler) {
+    private static GeoitemLayer getCacheItem(final ICacheSummary cache, final TapHandler tapHandler) {
         final Geopoint target = cache.getCoords();
         final Bitmap marker = AndroidGraphicFactory.convertToBitmap(MapUtils.getCacheMarker(CgeoApplication.getInstance().getResources(), cache));
         return new GeoitemLayer(cache.getGeoitemRef(), tapHandler, new LatLong(target.getLatitude(), target.getLongitude()), marker, 0, -marker.getHeight() / 2);
@@ -0,0 +1,247 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Color;
+import org.mapsforge.core.graphics.FontFamily;
+import org.mapsforge.core.graphics.FontStyle;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+import org.mapsforge.map.layer.Layer;
+import org.mapsforge.map.model.MapViewPosition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Draws the items of a caches overlay grouped by screen cells of {@link #CELL_SIZE_DP}. A cell containing a single
+ * item shows the marker of the item, other cells show the number of items. The overlay only hands its items to this
+ * layer below {@link #EXPAND_ZOOM}, at higher zoom levels the items are displayed as individual layers.
+ *
+ * The clusters are computed per zoom level on demand and kept until items are removed. Since the pixel coordinates
+ * double with every zoom level, a level is derived from the next finer one by merging 2x2 cells, so zooming out does
+ * not have to look at every item again. Added items are merged into all computed levels.
+ */
+public class ClusterLayer extends Layer {
+
+    /** zoom level from which on the items are not clustered */
+    public static final byte EXPAND_ZOOM = 14;
+    private static final int CELL_SIZE_DP = 48;
+    private static final int RADIUS_DP = 14;
+    private static final int TEXT_SIZE_DP = 13;
+
+    private final MapViewPosition mapViewPosition;
+    private final Map<String, GeoitemLayer> items = new HashMap<>();
+    /** clusters by cell key for every computed zoom level */
+    private final Map<Byte, Map<Long, Cluster>> levels = new HashMap<>();
+    /** cell size in pixels the levels have been computed with */
+    private int cellSize = 0;
+    private byte drawnZoomLevel = -1;
+
+    private Paint circlePaint;
+    private Paint borderPaint;
+    private Paint textPaint;
+
+    private static final class Cluster {
+        private int count;
+        private double latitudeSum;
+        private double longitudeSum;
+        /** the item of the cluster, only valid for a count of 1 */
+        @Nullable private GeoitemLayer single;
+
+        void add(@NonNull final GeoitemLayer item) {
+            final LatLong position = item.getLatLong();
+            single = count == 0 ? item : null;
+            count++;
+            latitudeSum += position.latitude;
+            longitudeSum += position.longitude;
+        }
+
+        void merge(@NonNull final Cluster other) {
+            single = count == 0 ? other.single : null;
+            count += other.count;
+            latitudeSum += other.latitudeSum;
+            longitudeSum += other.longitudeSum;
+        }
+
+        @NonNull
+        LatLong getCenter() {
+            return new LatLong(latitudeSum / count, longitudeSum / count);
+        }
+    }
+
+    public ClusterLayer(@NonNull final MapViewPosition mapViewPosition) {
+        this.mapViewPosition = mapViewPosition;
+    }
+
+    public synchronized void addAll(@NonNull final Collection<? extends Layer> layers) {
+        for (final Layer layer : layers) {
+            final GeoitemLayer item = (GeoitemLayer) layer;
+            items.put(item.getItemCode(), item);
+            for (final Map.Entry<Byte, Map<Long, Cluster>> level : levels.entrySet()) {
+                addToLevel(level.getValue(), level.getKey(), item);
+            }
+        }
+    }
+
+    public synchronized void remove(@Nullable final GeoitemLayer item) {
+        if (item != null && items.remove(item.getItemCode()) != null) {
+            // the remaining item of a cluster is not known anymore, compute the levels again when needed
+            levels.clear();
+        }
+    }
+
+    public synchronized void clear() {
+        items.clear();
+        levels.clear();
+    }
+
+    @Override
+    public synchronized void draw(final BoundingBox boundingBox, final byte zoomLevel, final Canvas canvas, final Point topLeftPoint) {
+        drawnZoomLevel = zoomLevel;
+        if (items.isEmpty()) {
+            return;
+        }
+        final long mapSize = MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize());
+        for (final Cluster cluster : getClusters(zoomLevel).values()) {
+            if (cluster.single != null) {
+                cluster.single.setDisplayModel(displayModel);
+                cluster.single.draw(boundingBox, zoomLevel, canvas, topLeftPoint);
+                continue;
+            }
+            final LatLong center = cluster.getCenter();
+            if (!boundingBox.contains(center)) {
+                continue;
+            }
+            final int x = (int) (MercatorProjection.longitudeToPixelX(center.longitude, mapSize) - topLeftPoint.x);
+            final int y = (int) (MercatorProjection.latitudeToPixelY(center.latitude, mapSize) - topLeftPoint.y);
+            drawCount(canvas, x, y, cluster.count);
+        }
+    }
+
+    @Override
+    public boolean onTap(final LatLong tapLatLong, final Point layerXY, final Point tapXY) {
+        final MapPosition zoomTarget = findZoomTarget(tapLatLong, tapXY);
+        if (zoomTarget == null) {
+            return false;
+        }
+        // zoom into the cluster, so that it splits up. This notifies the observers of the map position, and must
+        // therefore not be done with the monitor held.
+        mapViewPosition.setMapPosition(zoomTarget);
+        return true;
+    }
+
+    /**
+     * Pass the tap to the markers displayed individually and find a tapped cluster.
+     *
+     * @return the position to zoom to for a tapped cluster, {@code null} if no cluster has been tapped
+     */
+    @Nullable
+    private synchronized MapPosition findZoomTarget(final LatLong tapLatLong, final Point tapXY) {
+        if (drawnZoomLevel < 0 || items.isEmpty()) {
+            return null;
+        }
+        final long mapSize = MercatorProjection.getMapSize(drawnZoomLevel, displayModel.getTileSize());
+        final double tapX = MercatorProjection.longitudeToPixelX(tapLatLong.longitude, mapSize);
+        final double tapY = MercatorProjection.latitudeToPixelY(tapLatLong.latitude, mapSize);
+        final int radius = scaled(RADIUS_DP);
+        for (final Cluster cluster : getClusters(drawnZoomLevel).values()) {
+            final LatLong center = cluster.single != null ? cluster.single.getLatLong() : cluster.getCenter();
+            final double x = MercatorProjection.longitudeToPixelX(center.longitude, mapSize);
+            final double y = MercatorProjection.latitudeToPixelY(center.latitude, mapSize);
+            if (cluster.single != null) {
+                // let the marker check the hit, with the position of the marker relative to the tap
+                cluster.single.onTap(tapLatLong, new Point(tapXY.x + x - tapX, tapXY.y + y - tapY), tapXY);
+            } else if (Math.abs(x - tapX) <= radius && Math.abs(y - tapY) <= radius) {
+                return new MapPosition(center, (byte) Math.min(drawnZoomLevel + 2, EXPAND_ZOOM));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Must be called with the monitor held.
+     */
+    @NonNull
+    private Map<Long, Cluster> getClusters(final byte zoomLevel) {
+        final int currentCellSize = scaled(CELL_SIZE_DP);
+        if (currentCellSize != cellSize) {
+            levels.clear();
+            cellSize = currentCellSize;
+        }
+        Map<Long, Cluster> clusters = levels.get(zoomLevel);
+        if (clusters != null) {
+            return clusters;
+        }
+        clusters = new HashMap<>();
+        final Map<Long, Cluster> finer = zoomLevel < Byte.MAX_VALUE ? levels.get((byte) (zoomLevel + 1)) : null;
+        if (finer != null) {
+            for (final Map.Entry<Long, Cluster> cell : finer.entrySet()) {
+                final long key = cell.getKey();
+                final long parentKey = cellKey((key >>> 32) >> 1, (key & 0xffffffffL) >> 1);
+                getCluster(clusters, parentKey).merge(cell.getValue());
+            }
+        } else {
+            for (final GeoitemLayer item : items.values()) {
+                addToLevel(clusters, zoomLevel, item);
+            }
+        }
+        levels.put(zoomLevel, clusters);
+        return clusters;
+    }
+
+    private void addToLevel(@NonNull final Map<Long, Cluster> clusters, final byte zoomLevel, @NonNull final GeoitemLayer item) {
+        final LatLong position = item.getLatLong();
+        final long mapSize = MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize());
+        final long cellX = (long) (MercatorProjection.longitudeToPixelX(position.longitude, mapSize) / cellSize);
+        final long cellY = (long) (MercatorProjection.latitudeToPixelY(position.latitude, mapSize) / cellSize);
+        getCluster(clusters, cellKey(cellX, cellY)).add(item);
+    }
+
+    @NonNull
+    private static Cluster getCluster(@NonNull final Map<Long, Cluster> clusters, final long key) {
+        Cluster cluster = clusters.get(key);
+        if (cluster == null) {
+            cluster = new Cluster();
+            clusters.put(key, cluster);
+        }
+        return cluster;
+    }
+
+    private static long cellKey(final long cellX, final long cellY) {
+        return (cellX << 32) | cellY;
+    }
+
+    private void drawCount(@NonNull final Canvas canvas, final int x, final int y, final int count) {
+        if (circlePaint == null) {
+            circlePaint = AndroidGraphicFactory.INSTANCE.createPaint();
+            circlePaint.setColor(0xcc1565c0);
+            circlePaint.setStyle(Style.FILL);
+            borderPaint = AndroidGraphicFactory.INSTANCE.createPaint();
+            borderPaint.setColor(Color.WHITE);
+            borderPaint.setStyle(Style.STROKE);
+            borderPaint.setStrokeWidth(scaled(2));
+            textPaint = AndroidGraphicFactory.INSTANCE.createPaint();
+            textPaint.setColor(Color.WHITE);
+            textPaint.setTypeface(FontFamily.DEFAULT, FontStyle.BOLD);
+            textPaint.setTextSize(scaled(TEXT_SIZE_DP));
+        }
+        final int radius = scaled(RADIUS_DP);
+        canvas.drawCircle(x, y, radius, circlePaint);
+        canvas.drawCircle(x, y, radius, borderPaint);
+        final String text = String.valueOf(count);
+        canvas.drawText(text, x - textPaint.getTextWidth(text) / 2, y + textPaint.getTextHeight(text) / 2, textPaint);
+    }
+
+    private int scaled(final int dp) {
+        return Math.round(dp * displayModel.getScaleFactor());
+    }
+}
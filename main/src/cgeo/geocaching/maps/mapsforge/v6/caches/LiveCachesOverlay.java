@@ -13,6 +13,7 @@ import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.Log;
+import cgeo.geocaching.utils.MapUtils;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNull;
@@ -26,6 +27,7 @@ import java.util.concurrent.TimeUnit;
 
 import rx.Subscription;
 import rx.functions.Action0;
+import rx.functions.Action1;
 import rx.schedulers.Schedulers;
 
 public class LiveCachesOverlay extends AbstractCachesOverlay {
@@ -111,10 +113,18 @@ public class LiveCachesOverlay extends AbstractCachesOverlay {
                     //                    }
                 }
             }
-            searchResult.addSearchResult(ConnectorFactory.searchByViewport(getViewport().resize(1.2), tokens));
+            searchResult.addSearchResult(ConnectorFactory.searchByViewport(getViewport().resize(1.2), tokens, new Action1<SearchResult>() {
+                @Override
+                public void call(final SearchResult partialResult) {
+                    // show the caches of the first loaded tiles while the remaining ones are still being downloaded
+                    final Set<Geocache> partialCaches = partialResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
+                    MapUtils.filter(partialCaches);
+                    fill(partialCaches, false);
+                }
+            }));
 
             final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
-            AbstractCachesOverlay.filter(result);
+            MapUtils.filter(result);
             // update the caches
             // first remove filtered out
             final Set<String> filteredCodes = searchResult.getFilteredGeocodes();
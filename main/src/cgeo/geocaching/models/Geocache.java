@@ -84,7 +84,7 @@ import rx.schedulers.Schedulers;
 /**
  * Internal representation of a "cache"
  */
-public class Geocache implements IWaypoint {
+public class Geocache implements ICacheSummary {
 
     private static final int OWN_WP_PREFIX_OFFSET = 17;
     private long updated = 0;
@@ -168,6 +168,11 @@ public class Geocache implements IWaypoint {
 
     private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
 
+    /** estimated heap size of the fields of a cache without its texts and lists */
+    private static final int ESTIMATED_BASE_SIZE = 1024;
+    /** estimated heap size of an element of the lists of a cache, like a waypoint or a spoiler */
+    private static final int ESTIMATED_ITEM_SIZE = 256;
+
     private Handler changeNotificationHandler = null;
 
     public void setChangeNotificationHandler(final Handler newNotificationHandler) {
@@ -480,6 +485,7 @@ public class Geocache implements IWaypoint {
      * @return
      *          The Offline LogEntry else Null
      */
+    @Override
     @Nullable
     public LogType getOfflineLogType() {
         final LogEntry offlineLog = getOfflineLog();
@@ -559,6 +565,7 @@ public class Geocache implements IWaypoint {
         return getConnector().getLoggingManager(activity, this);
     }
 
+    @Override
     public float getDifficulty() {
         return difficulty;
     }
@@ -581,14 +588,17 @@ public class Geocache implements IWaypoint {
         return size;
     }
 
+    @Override
     public float getTerrain() {
         return terrain;
     }
 
+    @Override
     public boolean isArchived() {
         return BooleanUtils.isTrue(archived);
     }
 
+    @Override
     public boolean isDisabled() {
         return BooleanUtils.isTrue(disabled);
     }
@@ -605,6 +615,7 @@ public class Geocache implements IWaypoint {
      *
      * @return {@code true} if the user is the owner of the cache, {@code false} otherwise
      */
+    @Override
     public boolean isOwner() {
         return getConnector().isOwner(this);
     }
@@ -716,6 +727,11 @@ public class Geocache implements IWaypoint {
         return StringUtils.defaultIfBlank(personalNote, null);
     }
 
+    @Override
+    public boolean hasPersonalNote() {
+        return getPersonalNote() != null;
+    }
+
     public boolean supportsCachesAround() {
         return getConnector() instanceof ISearchByCenter;
     }
@@ -765,6 +781,7 @@ public class Geocache implements IWaypoint {
         this.description = description;
     }
 
+    @Override
     public boolean isFound() {
         return BooleanUtils.isTrue(found);
     }
@@ -930,6 +947,7 @@ public class Geocache implements IWaypoint {
     /**
      * @return true if the coords are from the cache details page and the user has been logged in
      */
+    @Override
     public boolean isReliableLatLon() {
         return getConnector().isReliableLatLon(reliableLatLon);
     }
@@ -1154,6 +1172,7 @@ public class Geocache implements IWaypoint {
         return Collections.unmodifiableList(friendLogs);
     }
 
+    @Override
     public boolean isLogOffline() {
         return BooleanUtils.isTrue(logOffline);
     }
@@ -1264,6 +1283,7 @@ public class Geocache implements IWaypoint {
      *
      * @returns Never null
      */
+    @Override
     public CacheType getType() {
         return cacheType.getValue();
     }
@@ -1312,6 +1332,104 @@ public class Geocache implements IWaypoint {
         return storageLocation.contains(StorageLocation.DATABASE);
     }
 
+    /**
+     * Rough estimate of the heap used by this instance. Lazily initialized parts are only counted once they have been
+     * loaded, and estimating never loads them.
+     */
+    public int getEstimatedSize() {
+        int estimate = ESTIMATED_BASE_SIZE + estimatedSize(name) + estimatedSize(ownerDisplayName) + estimatedSize(personalNote) +
+                estimatedSize(hint) + estimatedSize(location) + estimatedSize(shortdesc) + estimatedSize(description);
+        if (waypoints.isInitialized()) {
+            estimate += waypoints.size() * ESTIMATED_ITEM_SIZE;
+        }
+        if (attributes.isInitialized()) {
+            estimate += attributes.size() * ESTIMATED_ITEM_SIZE / 4;
+        }
+        if (spoilers != null) {
+            estimate += spoilers.size() * ESTIMATED_ITEM_SIZE;
+        }
+        if (inventory != null) {
+            estimate += inventory.size() * ESTIMATED_ITEM_SIZE;
+        }
+        return estimate;
+    }
+
+    private static int estimatedSize(@Nullable final String text) {
+        return text != null ? 40 + 2 * text.length() : 0;
+    }
+
+    /**
+     * Check if this cache is stored in the database and holds parts which could be loaded from there again on demand.
+     * Checking never loads them.
+     */
+    public boolean hasStoredPartsLoaded() {
+        return inDatabase() && (hint != null || location != null || shortdesc != null || description != null || attributes.isInitialized() || waypoints.isInitialized());
+    }
+
+    /**
+     * Create a copy of a cache stored in the database without the parts which are loaded from the database on demand,
+     * namely the texts, attributes and waypoints. This instance is not changed, as it may still be used by other
+     * threads.
+     *
+     * @return the copy, or {@code null} if the cache is not stored in the database or has no such parts loaded
+     */
+    @Nullable
+    public Geocache copyWithoutStoredParts() {
+        if (!hasStoredPartsLoaded()) {
+            return null;
+        }
+        final Geocache copy = new Geocache();
+        copy.updated = updated;
+        copy.detailedUpdate = detailedUpdate;
+        copy.visitedDate = visitedDate;
+        copy.lists = new HashSet<>(lists);
+        copy.detailed = detailed;
+        copy.geocode = geocode;
+        copy.cacheId = cacheId;
+        copy.guid = guid;
+        copy.cacheType = cacheType;
+        copy.name = name;
+        copy.ownerDisplayName = ownerDisplayName;
+        copy.ownerUserId = ownerUserId;
+        copy.hidden = hidden != null ? new Date(hidden.getTime()) : null;
+        copy.size = size;
+        copy.difficulty = difficulty;
+        copy.terrain = terrain;
+        copy.direction = direction;
+        copy.distance = distance;
+        copy.coords = coords;
+        copy.reliableLatLon = reliableLatLon;
+        copy.personalNote = personalNote;
+        copy.disabled = disabled;
+        copy.archived = archived;
+        copy.premiumMembersOnly = premiumMembersOnly;
+        copy.found = found;
+        copy.favorite = favorite;
+        copy.onWatchlist = onWatchlist;
+        copy.logOffline = logOffline;
+        copy.watchlistCount = watchlistCount;
+        copy.favoritePoints = favoritePoints;
+        copy.rating = rating;
+        copy.votes = votes;
+        copy.myVote = myVote;
+        copy.inventoryItems = inventoryItems;
+        // spoilers and inventory cannot be loaded again on their own, so they stay with the copy
+        copy.spoilers = spoilers != null ? new ArrayList<>(spoilers) : null;
+        copy.inventory = inventory != null ? new ArrayList<>(inventory) : null;
+        if (logCounts != null) {
+            copy.logCounts.putAll(logCounts);
+        }
+        copy.userModifiedCoords = userModifiedCoords;
+        copy.statusChecked = statusChecked;
+        copy.directionImg = directionImg;
+        copy.nameForSorting = nameForSorting;
+        copy.storageLocation.addAll(storageLocation);
+        copy.finalDefined = finalDefined;
+        copy.logPasswordRequired = logPasswordRequired;
+        copy.offlineLogs = offlineLogs;
+        return copy;
+    }
+
     /**
      * @param waypoint
      *            Waypoint to add to the cache
@@ -1375,6 +1493,7 @@ public class Geocache implements IWaypoint {
         return !waypoints.isEmpty();
     }
 
+    @Override
     public boolean hasFinalDefined() {
         return finalDefined;
     }
@@ -1397,6 +1516,7 @@ public class Geocache implements IWaypoint {
         }
     }
 
+    @Override
     public boolean hasUserModifiedCoords() {
         return userModifiedCoords;
     }
@@ -1745,6 +1865,11 @@ public class Geocache implements IWaypoint {
         return !lists.isEmpty() && (lists.size() > 1 || lists.iterator().next() != StoredList.TEMPORARY_LIST.id);
     }
 
+    @Override
+    public boolean isStored() {
+        return !lists.isEmpty();
+    }
+
     /**
      * guess an event start time from the description
      *
@@ -1862,6 +1987,7 @@ public class Geocache implements IWaypoint {
         return false;
     }
 
+    @Override
     public int getMapMarkerId() {
         return getConnector().getCacheMapMarkerId(isDisabled() || isArchived());
     }
@@ -1947,6 +2073,8 @@ public class Geocache implements IWaypoint {
         ActivityMixin.showToast(activity, StringUtils.defaultIfBlank(hint, activity.getString(R.string.cache_hint_not_available)));
     }
 
+    @Override
+    @NonNull
     public GeoitemRef getGeoitemRef() {
         return new GeoitemRef(getGeocode(), getCoordType(), getGeocode(), 0, getName(), getType().markerId);
     }
@@ -0,0 +1,398 @@
+package cgeo.geocaching.models;
+
+import cgeo.geocaching.connector.ConnectorFactory;
+import cgeo.geocaching.connector.IConnector;
+import cgeo.geocaching.connector.gc.GCConnector;
+import cgeo.geocaching.enumerations.CacheSize;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.CoordinatesType;
+import cgeo.geocaching.enumerations.LogType;
+import cgeo.geocaching.enumerations.WaypointType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.maps.mapsforge.v6.caches.GeoitemRef;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact, read-only projection of a {@link Geocache} with the fields needed to show it on a map: geocode, name, type,
+ * coordinates, size, difficulty, terrain and the status shown by the markers. The status is kept in bit flags.
+ *
+ * Summaries of stored caches are read by a narrow query in {@link cgeo.geocaching.storage.DataStore}, others are
+ * derived from the full cache. The full cache is only loaded when it is opened.
+ */
+public final class GeocacheSummary implements ICacheSummary {
+
+    private static final int FOUND = 1;
+    private static final int DISABLED = 1 << 1;
+    private static final int ARCHIVED = 1 << 2;
+    private static final int OWNER = 1 << 3;
+    private static final int STORED = 1 << 4;
+    private static final int LOG_OFFLINE = 1 << 5;
+    private static final int RELIABLE_LATLON = 1 << 6;
+    private static final int USER_MODIFIED_COORDS = 1 << 7;
+    private static final int FINAL_DEFINED = 1 << 8;
+    private static final int PERSONAL_NOTE = 1 << 9;
+
+    @NonNull private final String geocode;
+    @NonNull private final String name;
+    @NonNull private final CacheType type;
+    @NonNull private final CacheSize size;
+    private final double latitude;
+    private final double longitude;
+    private final float difficulty;
+    private final float terrain;
+    private final int flags;
+    @Nullable private final LogType offlineLogType;
+
+    public static class Builder {
+        @NonNull private final String geocode;
+        @NonNull private String name = StringUtils.EMPTY;
+        @NonNull private CacheType type = CacheType.UNKNOWN;
+        @NonNull private CacheSize size = CacheSize.UNKNOWN;
+        @Nullable private Geopoint coords;
+        private float difficulty;
+        private float terrain;
+        private int flags;
+        @Nullable private LogType offlineLogType;
+
+        public Builder(@NonNull final String geocode) {
+            this.geocode = geocode;
+        }
+
+        @NonNull
+        public GeocacheSummary build() {
+            return new GeocacheSummary(this);
+        }
+
+        @NonNull
+        public Builder setName(@Nullable final String name) {
+            this.name = StringUtils.defaultString(name);
+            return this;
+        }
+
+        @NonNull
+        public Builder setType(@NonNull final CacheType type) {
+            this.type = type;
+            return this;
+        }
+
+        @NonNull
+        public Builder setSize(@NonNull final CacheSize size) {
+            this.size = size;
+            return this;
+        }
+
+        @NonNull
+        public Builder setCoords(@Nullable final Geopoint coords) {
+            this.coords = coords;
+            return this;
+        }
+
+        @NonNull
+        public Builder setDifficulty(final float difficulty) {
+            this.difficulty = difficulty;
+            return this;
+        }
+
+        @NonNull
+        public Builder setTerrain(final float terrain) {
+            this.terrain = terrain;
+            return this;
+        }
+
+        @NonNull
+        public Builder setFound(final boolean found) {
+            return setFlag(FOUND, found);
+        }
+
+        @NonNull
+        public Builder setDisabled(final boolean disabled) {
+            return setFlag(DISABLED, disabled);
+        }
+
+        @NonNull
+        public Builder setArchived(final boolean archived) {
+            return setFlag(ARCHIVED, archived);
+        }
+
+        /**
+         * @param owner
+         *            whether the cache is owned by the user, as decided by the connector
+         */
+        @NonNull
+        public Builder setOwner(final boolean owner) {
+            return setFlag(OWNER, owner);
+        }
+
+        /**
+         * @param stored
+         *            whether the cache is on at least one list
+         */
+        @NonNull
+        public Builder setStored(final boolean stored) {
+            return setFlag(STORED, stored);
+        }
+
+        /**
+         * @param reliableLatLon
+         *            the reliability of the coordinates, as decided by the connector
+         */
+        @NonNull
+        public Builder setReliableLatLon(final boolean reliableLatLon) {
+            return setFlag(RELIABLE_LATLON, reliableLatLon);
+        }
+
+        @NonNull
+        public Builder setUserModifiedCoords(final boolean userModifiedCoords) {
+            return setFlag(USER_MODIFIED_COORDS, userModifiedCoords);
+        }
+
+        @NonNull
+        public Builder setFinalDefined(final boolean finalDefined) {
+            return setFlag(FINAL_DEFINED, finalDefined);
+        }
+
+        @NonNull
+        public Builder setPersonalNote(final boolean personalNote) {
+            return setFlag(PERSONAL_NOTE, personalNote);
+        }
+
+        /**
+         * @param logOffline
+         *            whether a log has been stored offline
+         * @param offlineLogType
+         *            the type of the offline log, if known
+         */
+        @NonNull
+        public Builder setLogOffline(final boolean logOffline, @Nullable final LogType offlineLogType) {
+            this.offlineLogType = logOffline ? offlineLogType : null;
+            return setFlag(LOG_OFFLINE, logOffline);
+        }
+
+        @NonNull
+        private Builder setFlag(final int flag, final boolean value) {
+            flags = value ? flags | flag : flags & ~flag;
+            return this;
+        }
+    }
+
+    private GeocacheSummary(@NonNull final Builder builder) {
+        geocode = builder.geocode;
+        name = builder.name;
+        type = builder.type;
+        size = builder.size;
+        latitude = builder.coords != null ? builder.coords.getLatitude() : Double.NaN;
+        longitude = builder.coords != null ? builder.coords.getLongitude() : Double.NaN;
+        difficulty = builder.difficulty;
+        terrain = builder.terrain;
+        flags = builder.flags;
+        offlineLogType = builder.offlineLogType;
+    }
+
+    /**
+     * Project a full cache.
+     */
+    @NonNull
+    public static GeocacheSummary of(@NonNull final Geocache cache) {
+        final boolean logOffline = cache.isLogOffline();
+        return new Builder(cache.getGeocode())
+                .setName(cache.getName())
+                .setType(cache.getType())
+                .setSize(cache.getSize())
+                .setCoords(cache.getCoords())
+                .setDifficulty(cache.getDifficulty())
+                .setTerrain(cache.getTerrain())
+                .setFound(cache.isFound())
+                .setDisabled(cache.isDisabled())
+                .setArchived(cache.isArchived())
+                .setOwner(cache.isOwner())
+                .setStored(cache.isStored())
+                .setReliableLatLon(cache.isReliableLatLon())
+                .setUserModifiedCoords(cache.hasUserModifiedCoords())
+                .setFinalDefined(cache.hasFinalDefined())
+                .setPersonalNote(cache.hasPersonalNote())
+                .setLogOffline(logOffline, logOffline ? cache.getOfflineLogType() : null)
+                .build();
+    }
+
+    /**
+     * Project full caches.
+     */
+    @NonNull
+    public static List<GeocacheSummary> of(@NonNull final Collection<Geocache> caches) {
+        final List<GeocacheSummary> summaries = new ArrayList<>(caches.size());
+        for (final Geocache cache : caches) {
+            summaries.add(of(cache));
+        }
+        return summaries;
+    }
+
+    @Override
+    @NonNull
+    public String getGeocode() {
+        return geocode;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    @NonNull
+    public CacheType getType() {
+        return type;
+    }
+
+    @NonNull
+    public CacheSize getSize() {
+        return size;
+    }
+
+    @Override
+    @Nullable
+    public Geopoint getCoords() {
+        return Double.isNaN(latitude) ? null : new Geopoint(latitude, longitude);
+    }
+
+    @Override
+    public float getDifficulty() {
+        return difficulty;
+    }
+
+    @Override
+    public float getTerrain() {
+        return terrain;
+    }
+
+    @Override
+    public boolean isFound() {
+        return (flags & FOUND) != 0;
+    }
+
+    @Override
+    public boolean isDisabled() {
+        return (flags & DISABLED) != 0;
+    }
+
+    @Override
+    public boolean isArchived() {
+        return (flags & ARCHIVED) != 0;
+    }
+
+    @Override
+    public boolean isOwner() {
+        return (flags & OWNER) != 0;
+    }
+
+    /**
+     * @return whether the cache is on at least one list
+     */
+    @Override
+    public boolean isStored() {
+        return (flags & STORED) != 0;
+    }
+
+    @Override
+    public boolean isReliableLatLon() {
+        return (flags & RELIABLE_LATLON) != 0;
+    }
+
+    @Override
+    public boolean hasUserModifiedCoords() {
+        return (flags & USER_MODIFIED_COORDS) != 0;
+    }
+
+    @Override
+    public boolean hasFinalDefined() {
+        return (flags & FINAL_DEFINED) != 0;
+    }
+
+    @Override
+    public boolean hasPersonalNote() {
+        return (flags & PERSONAL_NOTE) != 0;
+    }
+
+    @Override
+    public boolean isLogOffline() {
+        return (flags & LOG_OFFLINE) != 0;
+    }
+
+    /**
+     * @return the type of the offline log, or {@code null} if there is none or it is unknown
+     */
+    @Override
+    @Nullable
+    public LogType getOfflineLogType() {
+        return offlineLogType;
+    }
+
+    @NonNull
+    private IConnector getConnector() {
+        return ConnectorFactory.getConnector(geocode);
+    }
+
+    /**
+     * @see Geocache#getMapMarkerId()
+     */
+    @Override
+    public int getMapMarkerId() {
+        return getConnector().getCacheMapMarkerId(isDisabled() || isArchived());
+    }
+
+    /**
+     * @see Geocache#applyDistanceRule()
+     */
+    public boolean applyDistanceRule() {
+        return (type.applyDistanceRule() || hasUserModifiedCoords()) && getConnector() == GCConnector.getInstance();
+    }
+
+    @Override
+    @NonNull
+    public GeoitemRef getGeoitemRef() {
+        return new GeoitemRef(geocode, getCoordType(), geocode, 0, name, type.markerId);
+    }
+
+    @Override
+    public int getId() {
+        return 0;
+    }
+
+    @Override
+    @Nullable
+    public WaypointType getWaypointType() {
+        return null;
+    }
+
+    @Override
+    @NonNull
+    public CoordinatesType getCoordType() {
+        return CoordinatesType.CACHE;
+    }
+
+    /**
+     * Summaries are equal if they are of the same cache, like {@link Geocache#equals(Object)}.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        return this == obj || (obj instanceof GeocacheSummary && geocode.equals(((GeocacheSummary) obj).geocode));
+    }
+
+    @Override
+    public int hashCode() {
+        return geocode.hashCode();
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return geocode;
+    }
+}
@@ -0,0 +1,57 @@
+package cgeo.geocaching.models;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LogType;
+import cgeo.geocaching.maps.mapsforge.v6.caches.GeoitemRef;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The properties of a cache needed to show, filter and describe it on a map. They are provided by the complete
+ * {@link Geocache} as well as by its {@link GeocacheSummary}.
+ */
+public interface ICacheSummary extends IWaypoint {
+
+    @NonNull
+    CacheType getType();
+
+    float getDifficulty();
+
+    float getTerrain();
+
+    boolean isFound();
+
+    boolean isDisabled();
+
+    boolean isArchived();
+
+    boolean isOwner();
+
+    /**
+     * @return whether the cache is on at least one list
+     */
+    boolean isStored();
+
+    boolean isReliableLatLon();
+
+    boolean hasUserModifiedCoords();
+
+    boolean hasFinalDefined();
+
+    boolean hasPersonalNote();
+
+    boolean isLogOffline();
+
+    /**
+     * @return the type of the offline log, or {@code null} if there is none or it is unknown
+     */
+    @Nullable
+    LogType getOfflineLogType();
+
+    int getMapMarkerId();
+
+    @NonNull
+    GeoitemRef getGeoitemRef();
+
+}
@@ -0,0 +1,45 @@
+package cgeo.geocaching.network;
+
+/**
+ * How the HTTP response cache of {@link Network} may answer a GET request, in addition to the cache headers sent by the
+ * server. Requests without a policy follow the server headers only.
+ */
+public final class CachePolicy {
+
+    /**
+     * Always ask the server, but answer with the last cached response if it cannot be reached.
+     */
+    public static final CachePolicy OFFLINE_FALLBACK = new CachePolicy(0, 0, true);
+
+    final int maxAge;
+    final int staleWhileRevalidate;
+    final boolean offlineFallback;
+
+    /**
+     * @param maxAge
+     *            if positive, the number of seconds successful responses are fresh, overriding the server headers
+     * @param staleWhileRevalidate
+     *            if positive, the number of seconds a stale response may still be answered from the cache while it is
+     *            revalidated in the background
+     * @param offlineFallback
+     *            {@code true} if a cached response of any age may be answered when the server cannot be reached or
+     *            returns a server error
+     */
+    public CachePolicy(final int maxAge, final int staleWhileRevalidate, final boolean offlineFallback) {
+        this.maxAge = maxAge;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.offlineFallback = offlineFallback;
+    }
+
+    /**
+     * @return the policy used to revalidate a stale response in the background
+     */
+    CachePolicy forRevalidation() {
+        return new CachePolicy(maxAge, 0, false);
+    }
+
+    @Override
+    public String toString() {
+        return "max-age=" + maxAge + ", stale-while-revalidate=" + staleWhileRevalidate + ", offline-fallback=" + offlineFallback;
+    }
+}
@@ -228,7 +228,13 @@ public class HtmlImage implements Html.ImageGetter {
                         }
                         AndroidRxUtils.networkScheduler.createWorker().schedule(new Action0() {
                             @Override public void call() {
-                                downloadAndSave(subscriber);
+                                // images only saved for later are not waited for by the user
+                                final RequestPriority previous = RequestPriority.setForCurrentThread(onlySave ? RequestPriority.BULK : RequestPriority.INTERACTIVE);
+                                try {
+                                    downloadAndSave(subscriber);
+                                } finally {
+                                    RequestPriority.setForCurrentThread(previous);
+                                }
                             }
                         });
                     }
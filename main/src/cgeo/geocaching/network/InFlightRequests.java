@@ -0,0 +1,205 @@
+package cgeo.geocaching.network;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Share identical requests made while the first one is still running, so that they are sent only once.
+ *
+ * A request is registered when it is subscribed to, and later subscribers join it until its response is known. Every
+ * subscriber gets its own {@link Response}. The body is only read in memory if more than one subscriber waits for it:
+ * bodies up to {@link #MAX_SHARED_BODY} bytes are then copied, a larger body is given to the first subscriber and the
+ * others send their own request.
+ */
+final class InFlightRequests {
+
+    static final long MAX_SHARED_BODY = 1024 * 1024;
+
+    private final Map<String, SharedRequest> inFlight = new HashMap<>();
+
+    /**
+     * A running request and its subscribers. The fields are guarded by the {@link InFlightRequests} instance.
+     */
+    private final class SharedRequest {
+        @NonNull private final String key;
+        @NonNull private final Single<Response> request;
+        private final List<SingleSubscriber<? super Response>> subscribers = new ArrayList<>();
+        @Nullable private Subscription subscription;
+        private boolean finished = false;
+
+        SharedRequest(@NonNull final String key, @NonNull final Single<Response> request) {
+            this.key = key;
+            this.request = request;
+        }
+
+        void start() {
+            final Subscription started = request.subscribe(new SingleSubscriber<Response>() {
+                @Override
+                public void onSuccess(final Response response) {
+                    deliver(response, finish());
+                }
+
+                @Override
+                public void onError(final Throwable error) {
+                    for (final SingleSubscriber<? super Response> subscriber : finish()) {
+                        subscriber.onError(error);
+                    }
+                }
+            });
+            final boolean cancelled;
+            synchronized (InFlightRequests.this) {
+                subscription = started;
+                cancelled = subscribers.isEmpty() && !finished;
+            }
+            if (cancelled) {
+                started.unsubscribe();
+            }
+        }
+
+        /**
+         * Stop accepting subscribers.
+         *
+         * @return the subscribers waiting for the response
+         */
+        @NonNull
+        private List<SingleSubscriber<? super Response>> finish() {
+            synchronized (InFlightRequests.this) {
+                finished = true;
+                remove();
+                return new ArrayList<>(subscribers);
+            }
+        }
+
+        void leave(@NonNull final SingleSubscriber<? super Response> subscriber) {
+            final Subscription cancelled;
+            synchronized (InFlightRequests.this) {
+                subscribers.remove(subscriber);
+                if (finished || !subscribers.isEmpty()) {
+                    return;
+                }
+                // nobody waits for the response anymore
+                remove();
+                cancelled = subscription;
+            }
+            if (cancelled != null) {
+                cancelled.unsubscribe();
+            }
+        }
+
+        /**
+         * Must be called with the {@link InFlightRequests} lock held.
+         */
+        private void remove() {
+            if (inFlight.get(key) == this) {
+                inFlight.remove(key);
+            }
+        }
+
+        private void deliver(@NonNull final Response response, @NonNull final List<SingleSubscriber<? super Response>> waiting) {
+            final byte[] body;
+            try {
+                body = waiting.size() > 1 ? readSmallBody(response) : null;
+            } catch (final IOException e) {
+                for (final SingleSubscriber<? super Response> subscriber : waiting) {
+                    subscriber.onError(e);
+                }
+                return;
+            }
+            final MediaType contentType = response.body().contentType();
+            boolean taken = false;
+            for (final SingleSubscriber<? super Response> subscriber : waiting) {
+                if (subscriber.isUnsubscribed()) {
+                    continue;
+                }
+                if (body != null) {
+                    subscriber.onSuccess(response.newBuilder().body(ResponseBody.create(contentType, body)).build());
+                } else if (!taken) {
+                    taken = true;
+                    subscriber.onSuccess(response);
+                } else {
+                    // the body is too large to be copied
+                    request.subscribe(subscriber);
+                }
+            }
+            if (body == null && !taken) {
+                response.body().close();
+            }
+        }
+    }
+
+    /**
+     * @return the body of the response if it has at most {@link #MAX_SHARED_BODY} bytes, {@code null} if the body is
+     *         larger and has been left unread
+     */
+    @Nullable
+    private static byte[] readSmallBody(@NonNull final Response response) throws IOException {
+        final ResponseBody responseBody = response.body();
+        final BufferedSource source = responseBody.source();
+        // request() buffers the beginning of the body without consuming it, so a large body can still be read whole
+        if (source.request(MAX_SHARED_BODY + 1)) {
+            return null;
+        }
+        final byte[] body = source.readByteArray();
+        responseBody.close();
+        return body;
+    }
+
+    /**
+     * @return the number of distinct requests running
+     */
+    synchronized int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * Run the request when subscribed to, or join the identical one which is running at that time.
+     *
+     * @param key a key identifying identical requests
+     * @param request the request to run if there is no identical one running
+     * @return a Single with a response of its own for each subscriber
+     */
+    @NonNull
+    Single<Response> share(@NonNull final String key, @NonNull final Single<Response> request) {
+        return Single.create(new Single.OnSubscribe<Response>() {
+            @Override
+            public void call(final SingleSubscriber<? super Response> subscriber) {
+                final SharedRequest shared;
+                final boolean first;
+                synchronized (InFlightRequests.this) {
+                    final SharedRequest running = inFlight.get(key);
+                    first = running == null;
+                    shared = first ? new SharedRequest(key, request) : running;
+                    if (first) {
+                        inFlight.put(key, shared);
+                    }
+                    shared.subscribers.add(subscriber);
+                }
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        shared.leave(subscriber);
+                    }
+                }));
+                if (first) {
+                    shared.start();
+                }
+            }
+        });
+    }
+}
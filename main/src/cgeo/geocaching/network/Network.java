@@ -1,10 +1,10 @@
 package cgeo.geocaching.network;
 
+import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.LocalStorage;
 import cgeo.geocaching.utils.JsonUtils;
 import cgeo.geocaching.utils.Log;
-import cgeo.geocaching.utils.RxOkHttpUtils;
 import cgeo.geocaching.utils.TextUtils;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -19,11 +19,24 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import javax.net.SocketFactory;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dns;
 import okhttp3.FormBody;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
@@ -34,6 +47,11 @@ import okhttp3.Request;
 import okhttp3.Request.Builder;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import rx.Completable;
 import rx.Single;
 import rx.functions.Func1;
@@ -47,16 +65,34 @@ public final class Network {
 
     private static final Pattern PATTERN_PASSWORD = Pattern.compile("(?<=[\\?&])[Pp]ass(w(or)?d)?=[^&#$]+");
 
-    private static final OkHttpClient OK_HTTP_CLIENT = new OkHttpClient.Builder()
+    /**
+     * Cache control of the GET requests which must neither be answered nor stored by the HTTP cache, like the ones
+     * carrying a password or the ones saved to a file of their own
+     */
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noCache().noStore().build();
+
+    /** Maximum size of the HTTP response cache on disk */
+    private static final long CACHE_SIZE = 20 * 1024 * 1024;
+
+    private static final OkHttpClient OK_HTTP_CLIENT = buildWithCache(new OkHttpClient.Builder()
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
             .followRedirects(true)
             .followSslRedirects(true)
             .cookieJar(Cookies.cookieJar)
+            .dns(new TimingDns())
+            .socketFactory(new TimingSocketFactory())
             .addInterceptor(new HeadersInterceptor())
-            .addNetworkInterceptor(new LoggingInterceptor())
-            .build();
+            .addNetworkInterceptor(new LoggingInterceptor()), createCache());
+
+    /** Default number of requests running in parallel to a host, below the limit of OkHttp itself */
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+    /** Default number of bulk requests running in parallel to a host, keeping a slot for interactive ones */
+    private static final int MAX_BULK_REQUESTS_PER_HOST = 3;
+
+    private static final RequestDispatcher DISPATCHER = new RequestDispatcher(MAX_REQUESTS_PER_HOST, MAX_BULK_REQUESTS_PER_HOST);
+    private static final InFlightRequests IN_FLIGHT = new InFlightRequests();
 
     private static final MediaType MEDIA_TYPE_APPLICATION_JSON = MediaType.parse("application/json; charset=utf-8");
 
@@ -75,6 +111,31 @@ public final class Network {
         // Utility class
     }
 
+    @Nullable
+    private static Cache createCache() {
+        final CgeoApplication application = CgeoApplication.getInstance();
+        if (application == null) {
+            // no application context in unit tests
+            return null;
+        }
+        return new Cache(new File(application.getCacheDir(), "http"), CACHE_SIZE);
+    }
+
+    /**
+     * Add the HTTP cache and the interceptors applying the {@link CachePolicy} of the requests to a client.
+     */
+    @NonNull
+    static OkHttpClient buildWithCache(@NonNull final OkHttpClient.Builder builder, @Nullable final Cache cache) {
+        final CachePolicyInterceptor cachePolicyInterceptor = new CachePolicyInterceptor();
+        final OkHttpClient client = builder
+                .cache(cache)
+                .addInterceptor(cachePolicyInterceptor)
+                .addNetworkInterceptor(new CacheHeadersInterceptor())
+                .build();
+        cachePolicyInterceptor.client = client;
+        return client;
+    }
+
     /**
      * POST HTTP request
      *
@@ -111,7 +172,7 @@ public final class Network {
     public static Single<Response> postJsonRequest(final String uri, final ObjectNode json) {
         final Request request = new Request.Builder().url(uri).post(RequestBody.create(MEDIA_TYPE_APPLICATION_JSON,
                 json.toString())).build();
-        return RxOkHttpUtils.request(OK_HTTP_CLIENT, request);
+        return execute(request);
     }
 
     /**
@@ -134,8 +195,8 @@ public final class Network {
         entity.addFormDataPart(fileFieldName, file.getName(),
                 RequestBody.create(MediaType.parse(fileContentType), file));
         final Builder request = new Request.Builder().url(uri).post(entity.build());
-        addHeaders(request, null, null);
-        return RxOkHttpUtils.request(OK_HTTP_CLIENT, request.build());
+        addHeaders(request, null);
+        return execute(request.build());
     }
 
     /**
@@ -149,22 +210,35 @@ public final class Network {
      *            the parameters to add to the URI
      * @param headers
      *            the headers to add to the request
-     * @param cacheFile
-     *            the cache file used to cache this query
+     * @param cachePolicy
+     *            the policy of the HTTP cache for this request, or {@code null} to follow the server headers only
      * @return a single with the HTTP response, or an IOException
      */
     @NonNull
     private static Single<Response> request(final String method, final String uri,
                                             @Nullable final Parameters params, @Nullable final Parameters headers,
-                                            @Nullable final File cacheFile) {
+                                            @Nullable final CachePolicy cachePolicy) {
+        return execute(newRequest(method, uri, params, headers, cachePolicy));
+    }
+
+    /**
+     * Build an HTTP request, see {@link #request(String, String, Parameters, Parameters, CachePolicy)}.
+     */
+    @NonNull
+    static Request newRequest(final String method, final String uri,
+                              @Nullable final Parameters params, @Nullable final Parameters headers,
+                              @Nullable final CachePolicy cachePolicy) {
         final Builder builder = new Builder();
 
+        boolean hasPassword = false;
         if ("GET".equals(method)) {
             final HttpUrl.Builder urlBuilder = HttpUrl.parse(uri).newBuilder();
             if (params != null) {
                 urlBuilder.encodedQuery(params.toString());
             }
-            builder.url(urlBuilder.build());
+            final HttpUrl url = urlBuilder.build();
+            hasPassword = PATTERN_PASSWORD.matcher(url.toString()).find();
+            builder.url(url);
         } else {
             builder.url(uri);
             final FormBody.Builder body = new FormBody.Builder();
@@ -176,8 +250,30 @@ public final class Network {
             builder.post(body.build());
         }
 
-        addHeaders(builder, headers, cacheFile);
-        return RxOkHttpUtils.request(OK_HTTP_CLIENT, builder.build());
+        if (hasPassword) {
+            // the cache would store the URL and thus the password on disk
+            builder.cacheControl(NO_STORE);
+        } else if (cachePolicy != null) {
+            builder.tag(cachePolicy);
+        }
+        addHeaders(builder, headers);
+        return builder.build();
+    }
+
+    /**
+     * Run a request through the per-host limits, with the priority of the current thread. An identical GET request
+     * with the same priority which is still running is joined instead of sending a new one.
+     */
+    @NonNull
+    private static Single<Response> execute(@NonNull final Request request) {
+        final RequestPriority priority = RequestPriority.forCurrentThread();
+        final Single<Response> response = DISPATCHER.request(OK_HTTP_CLIENT, request, priority);
+        if (!"GET".equals(request.method())) {
+            return response;
+        }
+        final Object tag = request.tag();
+        final String key = priority + " " + request.url() + '\n' + request.headers() + (tag instanceof CachePolicy ? tag : "");
+        return IN_FLIGHT.share(key, response);
     }
 
     /**
@@ -186,11 +282,9 @@ public final class Network {
      *            the request builder to add headers to
      * @param headers
      *            the headers to add (in addition to the standard headers), can be null
-     * @param cacheFile
-     *            if non-null, the file to take ETag and If-Modified-Since information from
      */
-    private static void addHeaders(final Builder request, @Nullable final Parameters headers, @Nullable final File cacheFile) {
-        for (final ImmutablePair<String, String> header : Parameters.extend(Parameters.merge(headers, cacheHeaders(cacheFile)))) {
+    private static void addHeaders(final Builder request, @Nullable final Parameters headers) {
+        for (final ImmutablePair<String, String> header : Parameters.extend(headers)) {
             request.header(header.left, header.right);
         }
     }
@@ -209,6 +303,9 @@ public final class Network {
         }
     }
 
+    /**
+     * Log the requests sent to the network and record their figures in {@link NetworkMetrics}.
+     */
     private static class LoggingInterceptor implements Interceptor {
 
         @Override
@@ -218,20 +315,39 @@ public final class Network {
 
             Log.d(reqLogStr);
 
+            final long bytesOut = getContentLength(request);
             final long before = System.currentTimeMillis();
+            final Response response;
             try {
-                final Response response = chain.proceed(request);
-                final String protocol = " (" + response.protocol() + ')';
-                if (response.isSuccessful()) {
-                    Log.d(response.code() + formatTimeSpan(before) + reqLogStr + protocol);
-                } else {
-                    Log.d(response.code() + " [" + response.message() + "]" + formatTimeSpan(before) + reqLogStr + protocol);
-                }
-                return response;
+                response = chain.proceed(request);
             } catch (final Exception e) {
+                NetworkMetrics.recordFailure(request.url());
                 Log.w("Failure" + formatTimeSpan(before) + reqLogStr + " (" + e + ")");
                 throw new IOException("Invalid response", e);
             }
+            NetworkMetrics.recordResponse(request.url(), response.code(), System.currentTimeMillis() - before, bytesOut);
+            final String protocol = " (" + response.protocol() + ')';
+            if (response.isSuccessful()) {
+                Log.d(response.code() + formatTimeSpan(before) + reqLogStr + protocol);
+            } else {
+                Log.d(response.code() + " [" + response.message() + "]" + formatTimeSpan(before) + reqLogStr + protocol);
+            }
+            return response.newBuilder().body(new CountingResponseBody(request.url(), response.body())).build();
+        }
+
+        /**
+         * @return the size of the request body, or -1 if it is unknown
+         */
+        private static long getContentLength(final Request request) {
+            final RequestBody body = request.body();
+            if (body == null) {
+                return 0;
+            }
+            try {
+                return body.contentLength();
+            } catch (final IOException e) {
+                return -1;
+            }
         }
 
         private static String hidePassword(final String message) {
@@ -244,25 +360,245 @@ public final class Network {
         }
     }
 
-    @Nullable
-    private static Parameters cacheHeaders(@Nullable final File cacheFile) {
-        if (cacheFile == null || !cacheFile.exists()) {
-            return null;
+    /**
+     * Response body recording the number of bytes received once it has been read or closed.
+     */
+    private static class CountingResponseBody extends ResponseBody {
+
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        CountingResponseBody(final HttpUrl url, final ResponseBody body) {
+            this.body = body;
+            source = Okio.buffer(new ForwardingSource(body.source()) {
+                private long count = 0;
+                private boolean recorded = false;
+
+                @Override
+                public long read(final Buffer sink, final long byteCount) throws IOException {
+                    final long read = super.read(sink, byteCount);
+                    if (read >= 0) {
+                        count += read;
+                    } else {
+                        record();
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    record();
+                    super.close();
+                }
+
+                private void record() {
+                    if (!recorded) {
+                        recorded = true;
+                        NetworkMetrics.recordBytesIn(url, count);
+                    }
+                }
+            });
         }
 
-        final String etag = LocalStorage.getSavedHeader(cacheFile, LocalStorage.HEADER_ETAG);
-        if (etag != null) {
-            // The ETag is a more robust check than a timestamp. If we have an ETag, it is enough
-            // to identify the right version of the resource.
-            return new Parameters("If-None-Match", etag);
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
         }
 
-        final String lastModified = LocalStorage.getSavedHeader(cacheFile, LocalStorage.HEADER_LAST_MODIFIED);
-        if (lastModified != null) {
-            return new Parameters("If-Modified-Since", lastModified);
+        @Override
+        public long contentLength() {
+            return body.contentLength();
         }
 
-        return null;
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    /**
+     * Record the time of the DNS lookups in {@link NetworkMetrics}.
+     */
+    private static class TimingDns implements Dns {
+
+        @Override
+        public List<InetAddress> lookup(final String hostname) throws UnknownHostException {
+            final long before = System.currentTimeMillis();
+            final List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+            NetworkMetrics.recordDns(hostname, System.currentTimeMillis() - before);
+            return addresses;
+        }
+    }
+
+    /**
+     * Create sockets recording the time of the TCP connection in {@link NetworkMetrics}. OkHttp only uses unconnected
+     * sockets, the other methods are delegated to the default factory.
+     */
+    private static class TimingSocketFactory extends SocketFactory {
+
+        private static final SocketFactory DEFAULT = SocketFactory.getDefault();
+
+        @Override
+        public Socket createSocket() {
+            return new Socket() {
+                @Override
+                public void connect(final SocketAddress endpoint, final int timeout) throws IOException {
+                    final long before = System.currentTimeMillis();
+                    super.connect(endpoint, timeout);
+                    if (endpoint instanceof InetSocketAddress && ((InetSocketAddress) endpoint).getAddress() != null) {
+                        // the address comes from the DNS lookup and knows its host name
+                        NetworkMetrics.recordConnect(((InetSocketAddress) endpoint).getAddress().getHostName(), System.currentTimeMillis() - before);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port) throws IOException {
+            return DEFAULT.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port, final InetAddress localHost, final int localPort) throws IOException {
+            return DEFAULT.createSocket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(final InetAddress host, final int port) throws IOException {
+            return DEFAULT.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(final InetAddress address, final int port, final InetAddress localAddress, final int localPort) throws IOException {
+            return DEFAULT.createSocket(address, port, localAddress, localPort);
+        }
+    }
+
+    /**
+     * Apply the {@link CachePolicy} found in the tag of GET requests and count how the requests were answered.
+     */
+    static final class CachePolicyInterceptor implements Interceptor {
+
+        /** the client this interceptor belongs to, used to revalidate responses in the background */
+        private OkHttpClient client;
+
+        @Override
+        public Response intercept(final Interceptor.Chain chain) throws IOException {
+            final Request request = chain.request();
+            if (!"GET".equals(request.method())) {
+                return chain.proceed(request);
+            }
+            final CachePolicy policy = request.tag() instanceof CachePolicy ? (CachePolicy) request.tag() : null;
+            if (policy == null || client.cache() == null) {
+                return countCacheUse(chain.proceed(request));
+            }
+
+            if (policy.staleWhileRevalidate > 0) {
+                final Response cached = proceedFromCache(chain, request, policy.staleWhileRevalidate);
+                if (cached != null) {
+                    if (StringUtils.startsWith(cached.header("Warning"), "110")) {
+                        revalidateInBackground(request, policy);
+                    }
+                    return countCacheUse(cached);
+                }
+            }
+
+            final Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (final IOException e) {
+                final Response cached = policy.offlineFallback ? proceedFromCache(chain, request, Integer.MAX_VALUE) : null;
+                if (cached == null) {
+                    throw e;
+                }
+                Log.i("Network: server unreachable, using cached response for " + request.url());
+                return countCacheUse(cached);
+            }
+            if (policy.offlineFallback && response.code() >= 500) {
+                final Response cached = proceedFromCache(chain, request, Integer.MAX_VALUE);
+                if (cached != null) {
+                    response.body().close();
+                    Log.i("Network: server error " + response.code() + ", using cached response for " + request.url());
+                    return countCacheUse(cached);
+                }
+            }
+            return countCacheUse(response);
+        }
+
+        /**
+         * @return the cached response if it is at most {@code maxStale} seconds stale, {@code null} otherwise
+         */
+        @Nullable
+        private static Response proceedFromCache(final Interceptor.Chain chain, final Request request, final int maxStale) throws IOException {
+            final CacheControl onlyIfCached = new CacheControl.Builder().onlyIfCached().maxStale(maxStale, TimeUnit.SECONDS).build();
+            final Response cached = chain.proceed(request.newBuilder().cacheControl(onlyIfCached).build());
+            if (cached.cacheResponse() == null) {
+                cached.body().close();
+                return null;
+            }
+            return cached;
+        }
+
+        private void revalidateInBackground(final Request request, final CachePolicy policy) {
+            final Request revalidation = request.newBuilder()
+                    .cacheControl(new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build())
+                    .tag(policy.forRevalidation())
+                    .build();
+            client.newCall(revalidation).enqueue(new Callback() {
+                @Override
+                public void onFailure(final Call call, final IOException e) {
+                    Log.d("Network: background revalidation of " + request.url() + " failed (" + e + ")");
+                }
+
+                @Override
+                public void onResponse(final Call call, final Response response) {
+                    // the cache only stores a new response once its body has been read completely
+                    try {
+                        response.body().bytes();
+                    } catch (final IOException e) {
+                        Log.d("Network: background revalidation of " + request.url() + " failed (" + e + ")");
+                    }
+                }
+            });
+        }
+
+        @NonNull
+        private static Response countCacheUse(@NonNull final Response response) {
+            final String host = response.request().url().host();
+            final Response networkResponse = response.networkResponse();
+            if (networkResponse == null) {
+                if (response.cacheResponse() != null) {
+                    NetworkMetrics.recordCacheUse(host, NetworkMetrics.CacheUse.HIT);
+                }
+            } else if (response.cacheResponse() != null && networkResponse.code() == 304) {
+                NetworkMetrics.recordCacheUse(host, NetworkMetrics.CacheUse.REVALIDATION);
+            } else {
+                NetworkMetrics.recordCacheUse(host, NetworkMetrics.CacheUse.MISS);
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Make successful responses fresh for the time given by the {@link CachePolicy} of the request, whatever the server
+     * headers say.
+     */
+    static final class CacheHeadersInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(final Interceptor.Chain chain) throws IOException {
+            final Request request = chain.request();
+            final Response response = chain.proceed(request);
+            final CachePolicy policy = request.tag() instanceof CachePolicy ? (CachePolicy) request.tag() : null;
+            if (policy == null || policy.maxAge <= 0 || !(response.isSuccessful() || response.code() == 304)) {
+                return response;
+            }
+            return response.newBuilder()
+                    .header("Cache-Control", "max-age=" + policy.maxAge)
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .build();
+        }
     }
 
     /**
@@ -272,13 +608,13 @@ public final class Network {
      *            the URI to request
      * @param params
      *            the parameters to add to the GET request
-     * @param cacheFile
-     *            the name of the file storing the cached resource, or null not to use one
+     * @param cachePolicy
+     *            the policy of the HTTP cache for this request, or {@code null} to follow the server headers only
      * @return a single with the HTTP response, or an IOException
      */
     @NonNull
-    public static Single<Response> getRequest(final String uri, @Nullable final Parameters params, @Nullable final File cacheFile) {
-        return request("GET", uri, params, null, cacheFile);
+    public static Single<Response> getRequest(final String uri, @Nullable final Parameters params, @Nullable final CachePolicy cachePolicy) {
+        return request("GET", uri, params, null, cachePolicy);
     }
 
 
@@ -322,6 +658,46 @@ public final class Network {
         return request("GET", uri, null, null, null);
     }
 
+    /**
+     * GET HTTP request for a resource saved to a file of its own. The request is conditional on the ETag or the last
+     * modification of the saved copy. It is neither answered nor stored by the HTTP cache, so that the resource is not
+     * kept twice.
+     *
+     * @param uri
+     *            the URI to request
+     * @param params
+     *            the parameters to add to the GET request
+     * @param cacheFile
+     *            the name of the file storing the cached resource, or null not to use one
+     * @return a single with the HTTP response, or an IOException
+     */
+    @NonNull
+    public static Single<Response> getRequest(final String uri, @Nullable final Parameters params, @Nullable final File cacheFile) {
+        final Request request = newRequest("GET", uri, params, cacheHeaders(cacheFile), null);
+        return execute(request.newBuilder().cacheControl(NO_STORE).build());
+    }
+
+    @Nullable
+    private static Parameters cacheHeaders(@Nullable final File cacheFile) {
+        if (cacheFile == null || !cacheFile.exists()) {
+            return null;
+        }
+
+        final String etag = LocalStorage.getSavedHeader(cacheFile, LocalStorage.HEADER_ETAG);
+        if (etag != null) {
+            // The ETag is a more robust check than a timestamp. If we have an ETag, it is enough
+            // to identify the right version of the resource.
+            return new Parameters("If-None-Match", etag);
+        }
+
+        final String lastModified = LocalStorage.getSavedHeader(cacheFile, LocalStorage.HEADER_LAST_MODIFIED);
+        if (lastModified != null) {
+            return new Parameters("If-Modified-Since", lastModified);
+        }
+
+        return null;
+    }
+
     /**
      * Get the result of a GET HTTP request returning a JSON body.
      *
@@ -331,7 +707,20 @@ public final class Network {
      */
     @NonNull
     public static Single<ObjectNode> requestJSON(final String uri, @Nullable final Parameters params) {
-        return request("GET", uri, params, new Parameters("Accept", "application/json, text/javascript, */*; q=0.01"), null)
+        return requestJSON(uri, params, null);
+    }
+
+    /**
+     * Get the result of a GET HTTP request returning a JSON body.
+     *
+     * @param uri the base URI of the GET HTTP request
+     * @param params the query parameters, or {@code null} if there are none
+     * @param cachePolicy the policy of the HTTP cache for this request, or {@code null} to follow the server headers only
+     * @return a Single with a JSON object if the request was successful and the body could be decoded, an error otherwise
+     */
+    @NonNull
+    public static Single<ObjectNode> requestJSON(final String uri, @Nullable final Parameters params, @Nullable final CachePolicy cachePolicy) {
+        return request("GET", uri, params, new Parameters("Accept", "application/json, text/javascript, */*; q=0.01"), cachePolicy)
                 .flatMap(getResponseData)
                 .flatMap(stringToJson);
     }
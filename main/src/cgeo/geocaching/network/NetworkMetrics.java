@@ -0,0 +1,326 @@
+package cgeo.geocaching.network;
+
+import cgeo.geocaching.utils.JsonUtils;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Performance figures of the requests made by {@link Network}, per host and per endpoint, to compare the connectors
+ * in the field. The figures are kept in memory since the application start or the last {@link #reset()}.
+ */
+public final class NetworkMetrics {
+
+    /** Upper bounds in milliseconds of the histogram buckets, the last bucket is unbounded */
+    private static final long[] BOUNDS = { 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+    /** Endpoints beyond this number are counted in a single endpoint per host */
+    private static final int MAX_ENDPOINTS = 200;
+
+    /** Path segments identifying a single object, which are replaced by a placeholder */
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("\\d+");
+    private static final Pattern CODE_SEGMENT = Pattern.compile("[A-Z]{2,3}[0-9A-Z]*\\d[0-9A-Z]*(?:_.*)?");
+    private static final Pattern GUID_SEGMENT = Pattern.compile("\\p{XDigit}{8}(?:-\\p{XDigit}{4}){3}-\\p{XDigit}{12}(\\.\\w+)?");
+    private static final Pattern HEX_SEGMENT = Pattern.compile("(?=\\p{XDigit}*\\d)\\p{XDigit}{8,}(\\.\\w+)?");
+
+    enum CacheUse {
+        HIT, MISS, REVALIDATION
+    }
+
+    static final class Histogram {
+        private final long[] buckets = new long[BOUNDS.length + 1];
+        private long count = 0;
+        private long sum = 0;
+        private long max = 0;
+
+        void record(final long millis) {
+            int bucket = 0;
+            while (bucket < BOUNDS.length && millis > BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            count++;
+            sum += millis;
+            max = Math.max(max, millis);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the given fraction of the values, or the maximum for the last
+         *         bucket
+         */
+        long getPercentile(final double fraction) {
+            final long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < BOUNDS.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(BOUNDS[bucket], max);
+                }
+            }
+            return max;
+        }
+
+        @NonNull
+        ObjectNode toJson() {
+            final ObjectNode json = JsonUtils.factory.objectNode();
+            json.put("count", count);
+            json.put("mean", getMean());
+            json.put("max", max);
+            final ArrayNode counts = json.putArray("buckets");
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                final ObjectNode entry = counts.addObject();
+                if (bucket < BOUNDS.length) {
+                    entry.put("le", BOUNDS[bucket]);
+                }
+                entry.put("count", buckets[bucket]);
+            }
+            return json;
+        }
+    }
+
+    static class Stats {
+        final Histogram latency = new Histogram();
+        long httpErrors = 0;
+        long failures = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+
+        @NonNull
+        ObjectNode toJson() {
+            final ObjectNode json = JsonUtils.factory.objectNode();
+            json.set("latency", latency.toJson());
+            json.put("httpErrors", httpErrors);
+            json.put("failures", failures);
+            json.put("bytesIn", bytesIn);
+            json.put("bytesOut", bytesOut);
+            return json;
+        }
+    }
+
+    static final class HostStats extends Stats {
+        final Histogram dns = new Histogram();
+        final Histogram connect = new Histogram();
+        long cacheHits = 0;
+        long cacheMisses = 0;
+        long cacheRevalidations = 0;
+
+        /**
+         * @return the fraction of GET requests answered from the cache, revalidated or not
+         */
+        double getCacheHitRate() {
+            final long total = cacheHits + cacheMisses + cacheRevalidations;
+            return total > 0 ? (cacheHits + cacheRevalidations) / (double) total : 0;
+        }
+
+        @Override
+        @NonNull
+        ObjectNode toJson() {
+            final ObjectNode json = super.toJson();
+            json.set("dns", dns.toJson());
+            json.set("connect", connect.toJson());
+            final ObjectNode cache = json.putObject("cache");
+            cache.put("hits", cacheHits);
+            cache.put("misses", cacheMisses);
+            cache.put("revalidations", cacheRevalidations);
+            cache.put("hitRate", getCacheHitRate());
+            return json;
+        }
+    }
+
+    private static final Map<String, HostStats> hosts = new TreeMap<>();
+    private static final Map<String, Stats> endpoints = new TreeMap<>();
+
+    private NetworkMetrics() {
+        // utility class
+    }
+
+    /**
+     * @return the endpoint of the URL: its host and path, with the path segments of numbers, geocodes (optionally
+     *         followed by a name like on geocaching.com), GUIDs and hexadecimal ids (optionally followed by a file
+     *         extension) replaced by a placeholder, so that the requests for different caches share an endpoint
+     */
+    @NonNull
+    static String getEndpoint(@NonNull final HttpUrl url) {
+        final StringBuilder endpoint = new StringBuilder(url.host());
+        for (final String segment : url.encodedPathSegments()) {
+            endpoint.append('/').append(getSegmentPlaceholder(segment));
+        }
+        return endpoint.toString();
+    }
+
+    @NonNull
+    private static String getSegmentPlaceholder(@NonNull final String segment) {
+        if (NUMERIC_SEGMENT.matcher(segment).matches()) {
+            return "{n}";
+        }
+        if (CODE_SEGMENT.matcher(segment).matches()) {
+            return "{code}";
+        }
+        final Matcher guid = GUID_SEGMENT.matcher(segment);
+        if (guid.matches()) {
+            return "{guid}" + StringUtils.defaultString(guid.group(1));
+        }
+        final Matcher hex = HEX_SEGMENT.matcher(segment);
+        if (hex.matches()) {
+            return "{id}" + StringUtils.defaultString(hex.group(1));
+        }
+        return segment;
+    }
+
+    @NonNull
+    private static HostStats getHost(@NonNull final String host) {
+        HostStats stats = hosts.get(host);
+        if (stats == null) {
+            stats = new HostStats();
+            hosts.put(host, stats);
+        }
+        return stats;
+    }
+
+    @NonNull
+    private static Stats getEndpoint(@NonNull final String endpoint, @NonNull final String host) {
+        Stats stats = endpoints.get(endpoint);
+        if (stats == null) {
+            final String key = endpoints.size() < MAX_ENDPOINTS ? endpoint : host + "/...";
+            stats = endpoints.get(key);
+            if (stats == null) {
+                stats = new Stats();
+                endpoints.put(key, stats);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Record a response received from the network.
+     *
+     * @param millis the time until the response headers were received
+     */
+    static synchronized void recordResponse(@NonNull final HttpUrl url, final int code, final long millis, final long bytesOut) {
+        final HostStats host = getHost(url.host());
+        final Stats endpoint = getEndpoint(getEndpoint(url), url.host());
+        host.latency.record(millis);
+        endpoint.latency.record(millis);
+        host.bytesOut += Math.max(bytesOut, 0);
+        endpoint.bytesOut += Math.max(bytesOut, 0);
+        if (code >= 400) {
+            host.httpErrors++;
+            endpoint.httpErrors++;
+        }
+    }
+
+    /**
+     * Record a request which failed without a response.
+     */
+    static synchronized void recordFailure(@NonNull final HttpUrl url) {
+        getHost(url.host()).failures++;
+        getEndpoint(getEndpoint(url), url.host()).failures++;
+    }
+
+    /**
+     * Record the size of a response body once it has been read.
+     */
+    static synchronized void recordBytesIn(@NonNull final HttpUrl url, final long bytes) {
+        getHost(url.host()).bytesIn += bytes;
+        getEndpoint(getEndpoint(url), url.host()).bytesIn += bytes;
+    }
+
+    static synchronized void recordCacheUse(@NonNull final String host, @NonNull final CacheUse use) {
+        final HostStats stats = getHost(host);
+        switch (use) {
+            case HIT:
+                stats.cacheHits++;
+                break;
+            case MISS:
+                stats.cacheMisses++;
+                break;
+            case REVALIDATION:
+                stats.cacheRevalidations++;
+                break;
+        }
+    }
+
+    static synchronized void recordDns(@NonNull final String host, final long millis) {
+        getHost(host).dns.record(millis);
+    }
+
+    static synchronized void recordConnect(@NonNull final String host, final long millis) {
+        getHost(host).connect.record(millis);
+    }
+
+    static synchronized long getCacheCount(@NonNull final CacheUse use) {
+        long count = 0;
+        for (final HostStats stats : hosts.values()) {
+            count += use == CacheUse.HIT ? stats.cacheHits : use == CacheUse.MISS ? stats.cacheMisses : stats.cacheRevalidations;
+        }
+        return count;
+    }
+
+    /**
+     * Forget all the figures recorded so far.
+     */
+    public static synchronized void reset() {
+        hosts.clear();
+        endpoints.clear();
+    }
+
+    /**
+     * @return the figures per host and per endpoint, for export
+     */
+    @NonNull
+    public static synchronized ObjectNode toJson() {
+        final ObjectNode json = JsonUtils.factory.objectNode();
+        final ObjectNode hostsJson = json.putObject("hosts");
+        for (final Map.Entry<String, HostStats> entry : hosts.entrySet()) {
+            hostsJson.set(entry.getKey(), entry.getValue().toJson());
+        }
+        final ObjectNode endpointsJson = json.putObject("endpoints");
+        for (final Map.Entry<String, Stats> entry : endpoints.entrySet()) {
+            endpointsJson.set(entry.getKey(), entry.getValue().toJson());
+        }
+        return json;
+    }
+
+    /**
+     * @return a short human readable summary per host
+     */
+    @NonNull
+    public static synchronized String getSummary() {
+        final StringBuilder summary = new StringBuilder();
+        if (!hosts.isEmpty()) {
+            summary.append(String.format(Locale.US, "HTTP cache: %d hits, %d revalidations, %d misses%n%n",
+                    getCacheCount(CacheUse.HIT), getCacheCount(CacheUse.REVALIDATION), getCacheCount(CacheUse.MISS)));
+        }
+        for (final Map.Entry<String, HostStats> entry : hosts.entrySet()) {
+            final HostStats stats = entry.getValue();
+            final Histogram latency = stats.latency;
+            summary.append(entry.getKey()).append('\n')
+                    .append(String.format(Locale.US, "  %d requests, median %d ms, 90%% %d ms, max %d ms%n",
+                            latency.getCount(), latency.getPercentile(0.5), latency.getPercentile(0.9), latency.max))
+                    .append(String.format(Locale.US, "  %d HTTP errors, %d failures, %d kB in, %d kB out%n",
+                            stats.httpErrors, stats.failures, stats.bytesIn / 1024, stats.bytesOut / 1024))
+                    .append(String.format(Locale.US, "  DNS %d ms, connect %d ms (mean), cache hit rate %d%%%n%n",
+                            stats.dns.getMean(), stats.connect.getMean(), Math.round(stats.getCacheHitRate() * 100)));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,223 @@
+package cgeo.geocaching.network;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import rx.Single;
+import rx.Single.OnSubscribe;
+import rx.SingleSubscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Limit the number of requests running in parallel to each host. Waiting requests are started by priority, and
+ * {@link RequestPriority#BULK} requests never take the last slots of a host, which stay available for
+ * {@link RequestPriority#INTERACTIVE} ones.
+ *
+ * A request holds its slot until its response headers have been received or it has failed.
+ */
+final class RequestDispatcher {
+
+    private static class HostState {
+        int running = 0;
+        int runningBulk = 0;
+        final LinkedList<Waiting> interactive = new LinkedList<>();
+        final LinkedList<Waiting> bulk = new LinkedList<>();
+    }
+
+    static final class Waiting {
+        private final String host;
+        private final RequestPriority priority;
+        private final Runnable start;
+
+        private Waiting(final String host, final RequestPriority priority, final Runnable start) {
+            this.host = host;
+            this.priority = priority;
+            this.start = start;
+        }
+    }
+
+    private final Map<String, HostState> hosts = new HashMap<>();
+    private int maxRequestsPerHost;
+    private int maxBulkRequestsPerHost;
+
+    /**
+     * @param maxRequestsPerHost the maximum number of requests running in parallel to a host
+     * @param maxBulkRequestsPerHost the maximum number of bulk requests running in parallel to a host
+     */
+    RequestDispatcher(final int maxRequestsPerHost, final int maxBulkRequestsPerHost) {
+        setLimits(maxRequestsPerHost, maxBulkRequestsPerHost);
+    }
+
+    /**
+     * Change the limits. Requests already running are not interrupted.
+     *
+     * @param maxRequestsPerHost the maximum number of requests running in parallel to a host
+     * @param maxBulkRequestsPerHost the maximum number of bulk requests running in parallel to a host, lower than
+     *            {@code maxRequestsPerHost} to keep slots for interactive requests
+     */
+    void setLimits(final int maxRequestsPerHost, final int maxBulkRequestsPerHost) {
+        if (maxRequestsPerHost < 1 || maxBulkRequestsPerHost < 1 || maxBulkRequestsPerHost > maxRequestsPerHost) {
+            throw new IllegalArgumentException("invalid limits " + maxRequestsPerHost + "/" + maxBulkRequestsPerHost);
+        }
+        final List<Runnable> started;
+        synchronized (this) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            this.maxBulkRequestsPerHost = maxBulkRequestsPerHost;
+            started = new ArrayList<>();
+            for (final HostState state : hosts.values()) {
+                startWaiting(state, started);
+            }
+        }
+        run(started);
+    }
+
+    /**
+     * Create a Single running a request on the client once a slot is available for its host. Unsubscribing removes
+     * a waiting request or cancels a running one.
+     */
+    @NonNull
+    Single<Response> request(@NonNull final OkHttpClient client, @NonNull final Request request, @NonNull final RequestPriority priority) {
+        return Single.create(new OnSubscribe<Response>() {
+            @Override
+            public void call(final SingleSubscriber<? super Response> singleSubscriber) {
+                final String host = request.url().host();
+                final Call call = client.newCall(request);
+                final AtomicBoolean completed = new AtomicBoolean(false);
+                final Waiting waiting = submit(host, priority, new Runnable() {
+                    @Override
+                    public void run() {
+                        call.enqueue(new Callback() {
+                            @Override
+                            public void onFailure(final Call call, final IOException e) {
+                                completed.set(true);
+                                finished(host, priority);
+                                singleSubscriber.onError(e);
+                            }
+
+                            @Override
+                            public void onResponse(final Call call, final Response response) throws IOException {
+                                completed.set(true);
+                                finished(host, priority);
+                                singleSubscriber.onSuccess(response);
+                            }
+                        });
+                    }
+                });
+                singleSubscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        if (!completed.get() && !cancel(waiting)) {
+                            call.cancel();
+                        }
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * Start a request now if the host has a free slot for its priority, or queue it.
+     *
+     * @param start the action starting the request, which must lead to one call to {@link #finished(String, RequestPriority)}
+     * @return the waiting request, to be given to {@link #cancel(Waiting)}
+     */
+    @NonNull
+    Waiting submit(@NonNull final String host, @NonNull final RequestPriority priority, @NonNull final Runnable start) {
+        final Waiting waiting = new Waiting(host, priority, start);
+        final List<Runnable> started = new ArrayList<>(1);
+        synchronized (this) {
+            final HostState state = getState(host);
+            (priority == RequestPriority.BULK ? state.bulk : state.interactive).add(waiting);
+            startWaiting(state, started);
+        }
+        run(started);
+        return waiting;
+    }
+
+    /**
+     * Remove a request which has not been started yet.
+     *
+     * @return {@code true} if the request was still waiting, {@code false} if it has already been started
+     */
+    synchronized boolean cancel(@NonNull final Waiting waiting) {
+        final HostState state = hosts.get(waiting.host);
+        return state != null && (waiting.priority == RequestPriority.BULK ? state.bulk : state.interactive).remove(waiting);
+    }
+
+    /**
+     * Release the slot of a started request and start the next waiting ones.
+     */
+    void finished(@NonNull final String host, @NonNull final RequestPriority priority) {
+        final List<Runnable> started = new ArrayList<>(1);
+        synchronized (this) {
+            final HostState state = getState(host);
+            state.running--;
+            if (priority == RequestPriority.BULK) {
+                state.runningBulk--;
+            }
+            startWaiting(state, started);
+            if (state.running == 0 && state.interactive.isEmpty() && state.bulk.isEmpty()) {
+                hosts.remove(host);
+            }
+        }
+        run(started);
+    }
+
+    /**
+     * @return the number of requests waiting for a slot
+     */
+    synchronized int getWaitingCount() {
+        int waiting = 0;
+        for (final HostState state : hosts.values()) {
+            waiting += state.interactive.size() + state.bulk.size();
+        }
+        return waiting;
+    }
+
+    @NonNull
+    private HostState getState(@NonNull final String host) {
+        HostState state = hosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            hosts.put(host, state);
+        }
+        return state;
+    }
+
+    private void startWaiting(@NonNull final HostState state, @NonNull final List<Runnable> started) {
+        for (final Iterator<Waiting> it = state.interactive.iterator(); it.hasNext() && state.running < maxRequestsPerHost; ) {
+            started.add(it.next().start);
+            it.remove();
+            state.running++;
+        }
+        for (final Iterator<Waiting> it = state.bulk.iterator(); it.hasNext() && state.running < maxRequestsPerHost && state.runningBulk < maxBulkRequestsPerHost; ) {
+            started.add(it.next().start);
+            it.remove();
+            state.running++;
+            state.runningBulk++;
+        }
+    }
+
+    /**
+     * Start requests outside of the lock, as starting may complete them synchronously.
+     */
+    private static void run(@NonNull final List<Runnable> started) {
+        for (final Runnable start : started) {
+            start.run();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cgeo.geocaching.network;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Priority class of the requests made by {@link Network}. The priority is taken from the thread creating the request,
+ * so that background bulk work cannot delay the requests the user is waiting for.
+ */
+public enum RequestPriority {
+    /** requests the user is waiting for, like the details of a cache being displayed */
+    INTERACTIVE,
+    /** requests made in the background for many caches, like refreshing a list or storing images */
+    BULK;
+
+    private static final ThreadLocal<RequestPriority> CURRENT = new ThreadLocal<RequestPriority>() {
+        @Override
+        protected RequestPriority initialValue() {
+            return INTERACTIVE;
+        }
+    };
+
+    /**
+     * @return the priority of the requests created on the current thread
+     */
+    @NonNull
+    public static RequestPriority forCurrentThread() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Set the priority of the requests created on the current thread.
+     *
+     * @param priority the new priority
+     * @return the previous priority, to be restored when the work is done
+     */
+    @NonNull
+    public static RequestPriority setForCurrentThread(@NonNull final RequestPriority priority) {
+        final RequestPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        return previous;
+    }
+
+    /**
+     * Wrap a thread factory so that the requests created on its threads get the given priority.
+     */
+    @NonNull
+    public static ThreadFactory threadFactory(@NonNull final RequestPriority priority, @NonNull final ThreadFactory factory) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return factory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        setForCurrentThread(priority);
+                        runnable.run();
+                    }
+                });
+            }
+        };
+    }
+}
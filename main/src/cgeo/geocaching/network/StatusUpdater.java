@@ -55,6 +55,9 @@ public class StatusUpdater {
 
     public static final BehaviorSubject<Status> LATEST_STATUS = BehaviorSubject.create(Status.defaultStatus(null));
 
+    /** the status is polled every 30 minutes, a status up to a day old is shown at startup while it is refreshed */
+    private static final CachePolicy STATUS_CACHE_POLICY = new CachePolicy(1800, 24 * 3600, true);
+
     static {
         AndroidRxUtils.networkScheduler.createWorker().schedulePeriodically(new Action0() {
             @Override
@@ -62,7 +65,7 @@ public class StatusUpdater {
                 Network.requestJSON("https://cgeo-status.herokuapp.com/api/status.json",
                         new Parameters("version_code", String.valueOf(Version.getVersionCode(CgeoApplication.getInstance())),
                                 "version_name", Version.getVersionName(CgeoApplication.getInstance()),
-                                "locale", Locale.getDefault().toString()))
+                                "locale", Locale.getDefault().toString()), STATUS_CACHE_POLICY)
                         .subscribe(new Action1<ObjectNode>() {
                             @Override
                             public void call(final ObjectNode json) {
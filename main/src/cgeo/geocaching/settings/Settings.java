@@ -953,6 +953,17 @@ public class Settings {
         putInt(R.string.pref_version, version);
     }
 
+    /**
+     * @return the _id of the last cache checked by an interrupted database clean after a version change
+     */
+    public static long getDatabaseCleanProgress() {
+        return getLong(R.string.pref_dbcleanprogress, 0);
+    }
+
+    public static void setDatabaseCleanProgress(final long lastId) {
+        putLong(R.string.pref_dbcleanprogress, lastId);
+    }
+
     public static boolean isOpenLastDetailsPage() {
         return getBoolean(R.string.pref_opendetailslastpage, false);
     }
@@ -406,6 +406,15 @@ public class SettingsActivity extends PreferenceActivity {
                         return true;
                     }
                 });
+        getPreference(R.string.pref_network_metrics)
+                .setOnPreferenceClickListener(new OnPreferenceClickListener() {
+                    @Override
+                    public boolean onPreferenceClick(
+                            final Preference preference) {
+                        DebugUtils.showNetworkMetrics(SettingsActivity.this);
+                        return true;
+                    }
+                });
     }
 
     private static void initDeviceSpecificPreferences() {
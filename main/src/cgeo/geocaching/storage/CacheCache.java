@@ -3,6 +3,7 @@ package cgeo.geocaching.storage;
 import cgeo.geocaching.storage.DataStore.StorageLocation;
 import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.utils.LeastRecentlyUsedMap;
@@ -10,26 +11,86 @@ import cgeo.geocaching.utils.LeastRecentlyUsedMap.RemoveHandler;
 import cgeo.geocaching.utils.Log;
 
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
+import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Cache for Caches. Every cache is stored in memory while c:geo is active to
  * speed up the app and to minimize network requests - which are slow.
+ *
+ * The caches are additionally indexed in a grid of {@link #CELL_SIZE} degrees, so that viewport queries only
+ * have to look at the cells overlapping the viewport. Lookups by geocode modify the LRU order and take the write
+ * lock, while viewport queries only take the read lock and can run concurrently.
+ *
+ * The memory is limited by a budget of estimated bytes instead of a number of caches, as a cache with all details
+ * needs much more memory than one from the live map. When the budget is exceeded, the least recently used caches
+ * stored in the database are first replaced by copies without their texts, attributes and waypoints, which are loaded
+ * again from the database on demand. Only if that is not enough, the least recently used caches are removed. The
+ * cached instances are shared with other threads and are therefore never modified to free memory. On memory
+ * pressure, {@link #trimMemory(int)} shrinks the cache in steps depending on the level.
  */
 public class CacheCache {
 
-    private static final int MAX_CACHED_CACHES = 1000;
+    /** fraction of the maximum heap size used as budget by default */
+    private static final int HEAP_FRACTION = 16;
+
+    /** Edge length of a grid cell in degrees. */
+    static final double CELL_SIZE = 0.05;
+    private static final long CELLS_PER_ROW = (long) Math.ceil(360 / CELL_SIZE) + 1;
+
     private final LeastRecentlyUsedMap<String, Geocache> cachesCache;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final long maxBytes;
+    /** sum of {@link #sizeOfGeocode} */
+    private long bytes = 0;
+    /** estimated size of a cache when it has been stored or accessed */
+    private final Map<String, Integer> sizeOfGeocode = new HashMap<>();
+    /** caches which hold parts that can be loaded again from the database, see {@link Geocache#hasStoredPartsLoaded()} */
+    private final Set<String> withStoredParts = new HashSet<>();
+
+    /** caches by grid cell, see {@link #cellOf(Geopoint)} */
+    private final Map<Long, Map<String, Geocache>> grid = new HashMap<>();
+    /** grid cell a geocode has been indexed in */
+    private final Map<String, Long> cellOfGeocode = new HashMap<>();
+    /** caches which had no coordinates when they were stored, they are checked on every viewport query */
+    private final Map<String, Geocache> withoutCoords = new HashMap<>();
 
     public CacheCache() {
-        cachesCache = new LeastRecentlyUsedMap.LruCache<>(MAX_CACHED_CACHES);
+        this(Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+    }
+
+    CacheCache(final long maxBytes) {
+        this.maxBytes = maxBytes;
+        cachesCache = new LeastRecentlyUsedMap.LruCache<>(Integer.MAX_VALUE);
         cachesCache.setRemoveHandler(new CacheRemoveHandler());
     }
 
-    public synchronized void removeAllFromCache() {
-        cachesCache.clear();
+    public void removeAllFromCache() {
+        lock.writeLock().lock();
+        try {
+            cachesCache.clear();
+            grid.clear();
+            cellOfGeocode.clear();
+            withoutCoords.clear();
+            sizeOfGeocode.clear();
+            withStoredParts.clear();
+            bytes = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -40,8 +101,11 @@ public class CacheCache {
         if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized(this) {
+        lock.writeLock().lock();
+        try {
             cachesCache.remove(geocode);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -59,9 +123,16 @@ public class CacheCache {
         if (StringUtils.isBlank(cache.getGeocode())) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized(this) {
+        lock.writeLock().lock();
+        try {
             cache.addStorageLocation(StorageLocation.CACHE);
             cachesCache.put(cache.getGeocode(), cache);
+            removeFromIndex(cache.getGeocode());
+            addToIndex(cache);
+            updateSize(cache);
+            shrink(maxBytes, cache.getGeocode());
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -74,14 +145,145 @@ public class CacheCache {
         if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized(this) {
-            return cachesCache.get(geocode);
+        // get() updates the access order of the LRU map and therefore needs the write lock
+        lock.writeLock().lock();
+        try {
+            final Geocache cache = cachesCache.get(geocode);
+            if (cache != null) {
+                // parts of the cache may have been loaded since it has been stored
+                updateSize(cache);
+            }
+            return cache;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Shrink the cache according to one of the {@code TRIM_MEMORY_*} levels of {@link ComponentCallbacks2}. The
+     * higher the level, the more memory is released, up to removing all caches for
+     * {@link ComponentCallbacks2#TRIM_MEMORY_COMPLETE}.
+     */
+    @SuppressLint("InlinedApi")
+    public void trimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            removeAllFromCache();
+            return;
+        }
+        final long target;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            target = maxBytes / 4;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            target = maxBytes / 2;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            target = maxBytes * 3 / 4;
+        } else {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            shrink(target, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the estimated memory used by the cached caches
+     */
+    long getEstimatedSize() {
+        lock.readLock().lock();
+        try {
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void updateSize(@NonNull final Geocache cache) {
+        final String geocode = cache.getGeocode();
+        final int size = cache.getEstimatedSize();
+        final Integer previous = sizeOfGeocode.put(geocode, size);
+        bytes += previous != null ? size - previous : size;
+        if (cache.hasStoredPartsLoaded()) {
+            withStoredParts.add(geocode);
+        } else {
+            withStoredParts.remove(geocode);
         }
     }
 
-    public synchronized Set<String> getInViewport(final Viewport viewport, final CacheType cacheType) {
+    /**
+     * Replace caches by copies without their stored parts and then remove caches, each starting with the least
+     * recently used ones, until the estimated size does not exceed the target. Must be called with the write lock held.
+     *
+     * @param keep
+     *            geocode of a cache to keep unchanged, like the one just stored
+     */
+    private void shrink(final long target, @Nullable final String keep) {
+        final Iterator<Map.Entry<String, Geocache>> entries = cachesCache.entrySet().iterator();
+        while (bytes > target && !withStoredParts.isEmpty() && entries.hasNext()) {
+            final Map.Entry<String, Geocache> entry = entries.next();
+            if (entry.getKey().equals(keep) || !withStoredParts.contains(entry.getKey())) {
+                continue;
+            }
+            final Geocache copy = entry.getValue().copyWithoutStoredParts();
+            if (copy != null) {
+                // replacing the value of the entry keeps its position in the LRU order
+                entry.setValue(copy);
+                removeFromIndex(copy.getGeocode());
+                addToIndex(copy);
+            }
+            updateSize(entry.getValue());
+        }
+        while (bytes > target) {
+            final Iterator<String> eldest = cachesCache.keySet().iterator();
+            String geocode = eldest.hasNext() ? eldest.next() : null;
+            if (geocode != null && geocode.equals(keep)) {
+                geocode = eldest.hasNext() ? eldest.next() : null;
+            }
+            if (geocode == null) {
+                return;
+            }
+            cachesCache.remove(geocode);
+        }
+    }
+
+    public Set<String> getInViewport(final Viewport viewport, final CacheType cacheType) {
         final Set<String> geocodes = new HashSet<>();
-        for (final Geocache cache : cachesCache.values()) {
+        lock.readLock().lock();
+        try {
+            final long minLatCell = latitudeCell(viewport.getLatitudeMin());
+            final long maxLatCell = latitudeCell(viewport.getLatitudeMax());
+            final long minLonCell = longitudeCell(viewport.getLongitudeMin());
+            final long maxLonCell = longitudeCell(viewport.getLongitudeMax());
+            final long cellCount = (maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1);
+            if (cellCount > grid.size()) {
+                // large viewport: walking the occupied cells is cheaper than probing every overlapping cell
+                for (final Map<String, Geocache> cell : grid.values()) {
+                    addInViewport(cell.values(), viewport, cacheType, geocodes);
+                }
+            } else {
+                for (long lat = minLatCell; lat <= maxLatCell; lat++) {
+                    for (long lon = minLonCell; lon <= maxLonCell; lon++) {
+                        final Map<String, Geocache> cell = grid.get(lat * CELLS_PER_ROW + lon);
+                        if (cell != null) {
+                            addInViewport(cell.values(), viewport, cacheType, geocodes);
+                        }
+                    }
+                }
+            }
+            addInViewport(withoutCoords.values(), viewport, cacheType, geocodes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return geocodes;
+    }
+
+    private static void addInViewport(final Collection<Geocache> caches, final Viewport viewport, final CacheType cacheType, final Set<String> geocodes) {
+        for (final Geocache cache : caches) {
             if (cache.getCoords() == null) {
                 // FIXME: this kludge must be removed, it is only present to help us debug the cases where
                 // caches contain null coordinates.
@@ -92,18 +294,81 @@ public class CacheCache {
                 geocodes.add(cache.getGeocode());
             }
         }
-        return geocodes;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void addToIndex(@NonNull final Geocache cache) {
+        final Geopoint coords = cache.getCoords();
+        if (coords == null) {
+            withoutCoords.put(cache.getGeocode(), cache);
+            return;
+        }
+        final Long cell = cellOf(coords);
+        Map<String, Geocache> cellCaches = grid.get(cell);
+        if (cellCaches == null) {
+            cellCaches = new HashMap<>();
+            grid.put(cell, cellCaches);
+        }
+        cellCaches.put(cache.getGeocode(), cache);
+        cellOfGeocode.put(cache.getGeocode(), cell);
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void removeFromIndex(@NonNull final String geocode) {
+        withoutCoords.remove(geocode);
+        final Long cell = cellOfGeocode.remove(geocode);
+        if (cell != null) {
+            final Map<String, Geocache> cellCaches = grid.get(cell);
+            if (cellCaches != null) {
+                cellCaches.remove(geocode);
+                if (cellCaches.isEmpty()) {
+                    grid.remove(cell);
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private static Long cellOf(@NonNull final Geopoint coords) {
+        return latitudeCell(coords.getLatitude()) * CELLS_PER_ROW + longitudeCell(coords.getLongitude());
+    }
+
+    private static long latitudeCell(final double latitude) {
+        return (long) Math.floor((latitude + 90) / CELL_SIZE);
+    }
+
+    private static long longitudeCell(final double longitude) {
+        return (long) Math.floor((longitude + 180) / CELL_SIZE);
     }
 
     @Override
-    public synchronized String toString() {
-        return StringUtils.join(cachesCache.keySet(), ' ');
+    public String toString() {
+        lock.readLock().lock();
+        try {
+            return StringUtils.join(cachesCache.keySet(), ' ');
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    private static class CacheRemoveHandler implements RemoveHandler<Geocache> {
+    /**
+     * Keeps the tile cache and the grid index consistent with the LRU map. This is called for explicit removals
+     * as well as for evictions, always with the write lock held.
+     */
+    private class CacheRemoveHandler implements RemoveHandler<Geocache> {
 
         @Override
         public void onRemove(final Geocache removed) {
+            removeFromIndex(removed.getGeocode());
+            withStoredParts.remove(removed.getGeocode());
+            final Integer size = sizeOfGeocode.remove(removed.getGeocode());
+            if (size != null) {
+                bytes -= size;
+            }
             // FIXME: as above, we sometimes get caches with null coordinates, that may then provoke
             // a NullPointerException down the invocation chain.
             if (removed.getCoords() != null) {
@@ -0,0 +1,147 @@
+package cgeo.geocaching.storage;
+
+import cgeo.geocaching.enumerations.LogType;
+import cgeo.geocaching.list.StoredList;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.Image;
+import cgeo.geocaching.models.Trackable;
+import cgeo.geocaching.models.Waypoint;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The values of a cache as they are written to the database, taken at one point in time. Caches written behind are
+ * queued as snapshots, so that the cache may still be changed by other threads until the snapshot is written.
+ *
+ * Taking a snapshot reads the lazily loaded parts of the cache, like its attributes and waypoints, in the calling
+ * thread.
+ */
+final class CacheSnapshot {
+
+    /**
+     * The values of a waypoint. The row id of an inserted waypoint is given back to the original waypoint.
+     */
+    static final class WaypointValues {
+        @NonNull final Waypoint waypoint;
+        final int id;
+        @Nullable final String type;
+        @Nullable final String prefix;
+        @Nullable final String lookup;
+        @Nullable final String name;
+        @Nullable final Geopoint coords;
+        @Nullable final String note;
+        final boolean userDefined;
+        final boolean visited;
+
+        WaypointValues(@NonNull final Waypoint waypoint) {
+            this.waypoint = waypoint;
+            id = waypoint.getId();
+            type = waypoint.getWaypointType() != null ? waypoint.getWaypointType().id : null;
+            prefix = waypoint.getPrefix();
+            lookup = waypoint.getLookup();
+            name = waypoint.getName();
+            coords = waypoint.getCoords();
+            note = waypoint.getNote();
+            userDefined = waypoint.isUserDefined();
+            visited = waypoint.isVisited();
+        }
+    }
+
+    @NonNull final String geocode;
+    /** the values of the cache columns, in the order of the columns in {@code DataStore.dbCachesColumns} */
+    @NonNull final Object[] columns;
+    @NonNull final List<String> attributes;
+    @NonNull final List<WaypointValues> waypoints;
+    /** {@code null} if the spoilers have not been set and are to be kept as stored */
+    @Nullable final List<Image> spoilers;
+    @NonNull final Map<LogType, Integer> logCounts;
+    @Nullable final List<Trackable> inventory;
+    @NonNull final Set<Integer> lists;
+    @Nullable final String shortDescription;
+    @Nullable final String description;
+
+    CacheSnapshot(@NonNull final Geocache cache) {
+        geocode = cache.getGeocode();
+        shortDescription = cache.getShortDescription();
+        description = cache.getDescription();
+        columns = getColumns(cache, shortDescription, description);
+        attributes = new ArrayList<>(cache.getAttributes());
+        waypoints = getWaypointValues(cache.getWaypoints());
+        spoilers = cache.hasSpoilersSet() ? new ArrayList<>(cache.getSpoilers()) : null;
+        logCounts = cache.getLogCounts() != null ? new EnumMap<>(cache.getLogCounts()) : new EnumMap<LogType, Integer>(LogType.class);
+        inventory = cache.getInventory() != null ? new ArrayList<>(cache.getInventory()) : null;
+        lists = new HashSet<>(cache.getLists());
+    }
+
+    @NonNull
+    static List<WaypointValues> getWaypointValues(@Nullable final List<Waypoint> waypoints) {
+        final List<WaypointValues> values = new ArrayList<>();
+        if (waypoints != null) {
+            for (final Waypoint waypoint : waypoints) {
+                values.add(new WaypointValues(waypoint));
+            }
+        }
+        return values;
+    }
+
+    @NonNull
+    private static Object[] getColumns(@NonNull final Geocache cache, @Nullable final String shortDescription, @Nullable final String description) {
+        final Date hiddenDate = cache.getHiddenDate();
+        final Geopoint coords = cache.getCoords();
+        final Float distance = cache.getDistance();
+        final Float direction = cache.getDirection();
+        return new Object[] {
+                cache.getUpdated() == 0 ? System.currentTimeMillis() : cache.getUpdated(),
+                (long) StoredList.STANDARD_LIST_ID,
+                cache.isDetailed() ? 1L : 0L,
+                cache.getDetailedUpdate(),
+                cache.getVisitedDate(),
+                cache.getGeocode(),
+                cache.getCacheId(),
+                cache.getGuid(),
+                cache.getType().id,
+                cache.getName(),
+                cache.getOwnerDisplayName(),
+                cache.getOwnerUserId(),
+                hiddenDate == null ? 0L : hiddenDate.getTime(),
+                cache.getHint(),
+                cache.getSize().id,
+                (double) cache.getDifficulty(),
+                (double) cache.getTerrain(),
+                cache.getLocation(),
+                distance == null ? null : (double) distance,
+                direction == null ? null : (double) direction,
+                coords == null ? null : coords.getLatitude(),
+                coords == null ? null : coords.getLongitude(),
+                cache.isReliableLatLon() ? 1L : 0L,
+                TextCompression.isCompressed(shortDescription) ? null : shortDescription,
+                cache.getPersonalNote(),
+                TextCompression.isCompressed(description) ? null : description,
+                (long) cache.getFavoritePoints(),
+                (double) cache.getRating(),
+                (long) cache.getVotes(),
+                (double) cache.getMyVote(),
+                cache.isDisabled() ? 1L : 0L,
+                cache.isArchived() ? 1L : 0L,
+                cache.isPremiumMembersOnly() ? 1L : 0L,
+                cache.isFound() ? 1L : 0L,
+                cache.isFavorite() ? 1L : 0L,
+                (long) cache.getInventoryItems(),
+                cache.isOnWatchlist() ? 1L : 0L,
+                cache.hasUserModifiedCoords() ? 1L : 0L,
+                cache.hasFinalDefined() ? 1L : 0L,
+                cache.isLogPasswordRequired() ? 1L : 0L,
+                (long) cache.getWatchlistCount()
+        };
+    }
+}
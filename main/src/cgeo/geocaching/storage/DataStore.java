@@ -4,6 +4,7 @@ import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.Intents;
 import cgeo.geocaching.R;
 import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.connector.ConnectorFactory;
 import cgeo.geocaching.connector.IConnector;
 import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheSize;
@@ -21,6 +22,7 @@ import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.models.Destination;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.GeocacheSummary;
 import cgeo.geocaching.models.Image;
 import cgeo.geocaching.models.LogEntry;
 import cgeo.geocaching.models.Trackable;
@@ -39,8 +41,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.ProgressDialog;
+import android.content.ComponentCallbacks2;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.ContextWrapper;
@@ -53,9 +58,13 @@ import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Process;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -72,18 +81,22 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import rx.Observable;
 import rx.Observable.OnSubscribe;
+import rx.Scheduler.Worker;
 import rx.Subscriber;
 import rx.android.app.AppObservable;
 import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.internal.util.RxThreadFactory;
 import rx.schedulers.Schedulers;
 
 public class DataStore {
@@ -136,7 +149,7 @@ public class DataStore {
                     "cg_caches.terrain,"             +   // 18
                     "cg_caches.location,"            +   // 19
                     "cg_caches.personal_note,"       +   // 20
-                    "cg_caches.shortdesc,"           +   // 21
+                    "NULL,"                          +   // 21 (shortdesc, loaded lazily)
                     "cg_caches.favourite_cnt,"       +   // 22
                     "cg_caches.rating,"              +   // 23
                     "cg_caches.votes,"               +   // 24
@@ -159,18 +172,67 @@ public class DataStore {
                     "cg_caches.logPasswordRequired," +   // 41
                     "cg_caches.watchlistCount";          // 42
 
+    /** The narrow query for {@link GeocacheSummary}, without the child tables and the texts of caches. */
+    private static final String QUERY_SUMMARY_DATA =
+            "SELECT " +
+                    "cg_caches.geocode,"             +   // 0
+                    "cg_caches.name,"                +   // 1
+                    "cg_caches.type,"                +   // 2
+                    "cg_caches.size,"                +   // 3
+                    "cg_caches.latitude,"            +   // 4
+                    "cg_caches.longitude,"           +   // 5
+                    "cg_caches.difficulty,"          +   // 6
+                    "cg_caches.terrain,"             +   // 7
+                    "cg_caches.owner,"               +   // 8
+                    "cg_caches.owner_real,"          +   // 9
+                    "cg_caches.found,"               +   // 10
+                    "cg_caches.disabled,"            +   // 11
+                    "cg_caches.archived,"            +   // 12
+                    "cg_caches.reliable_latlon,"     +   // 13
+                    "cg_caches.coordsChanged,"       +   // 14
+                    "cg_caches.finalDefined,"        +   // 15
+                    "cg_caches.personal_note IS NOT NULL," +   // 16
+                    "EXISTS (SELECT 1 FROM cg_caches_lists WHERE cg_caches_lists.geocode = cg_caches.geocode)," +   // 17
+                    "cg_logs_offline.type"           +   // 18 (NULL without offline log)
+            " FROM cg_caches LEFT OUTER JOIN cg_logs_offline ON cg_caches.geocode = cg_logs_offline.geocode";
+
     /** The list of fields needed for mapping. */
     private static final String[] WAYPOINT_COLUMNS = { "_id", "geocode", "updated", "type", "prefix", "lookup", "name", "latitude", "longitude", "note", "own", "visited" };
 
+    /** Number of geocodes whose caches are read with one set of cursors during an export */
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     /** Number of days (as ms) after temporarily saved caches are deleted */
     private static final long DAYS_AFTER_CACHE_IS_DELETED = 3 * 24 * 60 * 60 * 1000;
+    /** number of caches removed in one transaction by the database clean */
+    private static final int CLEAN_CHUNK_SIZE = 200;
+    /** pause in milliseconds between two chunks of the database clean */
+    private static final long CLEAN_CHUNK_PAUSE = 100;
 
     /**
      * holds the column indexes of the cache table to avoid lookups
      */
     private static final CacheCache cacheCache = new CacheCache();
+    /** time in milliseconds small changes of caches are collected before they are written */
+    private static final long WRITE_BEHIND_DELAY = 2000;
+    /**
+     * Small changes of caches written together on a single writer thread. Read-your-writes is ensured by putting
+     * changed caches into the CacheCache immediately, and by flushing the changes a query or another write depends on
+     * before it: the list changes before list queries, the visit dates before history queries, and the changes of the
+     * caches read or written otherwise. Queries only filtering or sorting stored caches by other columns, like the
+     * coordinates, may see such a change up to {@link #WRITE_BEHIND_DELAY} late, while the caches themselves come
+     * from the CacheCache.
+     */
+    private static final WriteBehindQueue<CacheSnapshot> pendingWrites = new WriteBehindQueue<>(new WriteBehindQueue.Writer<CacheSnapshot>() {
+        @Override
+        public void write(@NonNull final Collection<WriteBehindQueue.Mutation<CacheSnapshot>> mutations) {
+            writeMutations(mutations);
+        }
+    }, Schedulers.from(Executors.newSingleThreadExecutor(new RxThreadFactory("db-writer-"))), WRITE_BEHIND_DELAY);
+    /** deletes the directories of caches removed by the database clean */
+    private static final Worker purgeWorker = Schedulers.from(Executors.newSingleThreadExecutor(new RxThreadFactory("file-purge-"))).createWorker();
     private static volatile SQLiteDatabase database = null;
-    private static final int dbVersion = 71;
+    private static final int dbVersion = 75;
     public static final int customListIdOffset = 10;
     @NonNull private static final String dbName = "data";
     @NonNull private static final String dbTableCaches = "cg_caches";
@@ -185,6 +247,14 @@ public class DataStore {
     @NonNull private static final String dbTableLogsOffline = "cg_logs_offline";
     @NonNull private static final String dbTableTrackables = "cg_trackables";
     @NonNull private static final String dbTableSearchDestinationHistory = "cg_search_destination_history";
+    @NonNull private static final String dbTableCachesRTree = "cg_caches_rtree";
+    @NonNull private static final String dbTableWaypointsRTree = "cg_waypoints_rtree";
+    @NonNull private static final String dbTableCachesFts = "cg_caches_fts";
+    @NonNull private static final String dbTableLogsFts = "cg_logs_fts";
+    @NonNull private static final String dbTableTrackablesFts = "cg_trackables_fts";
+    @NonNull private static final String dbTableListCounts = "cg_list_counts";
+    @NonNull private static final String dbTableCacheTexts = "cg_cache_texts";
+    @NonNull private static final String dbTableLogTexts = "cg_log_texts";
     @NonNull private static final String dbCreateCaches = ""
             + "create table " + dbTableCaches + " ("
             + "_id integer primary key autoincrement, "
@@ -232,6 +302,12 @@ public class DataStore {
             + "logPasswordRequired integer default 0,"
             + "watchlistCount integer default -1"
             + "); ";
+    /** the columns of a cache written by {@link #bindColumns}, in the order of {@link CacheSnapshot#columns} */
+    @NonNull private static final String[] dbCachesColumns = { "updated", "reason", "detailed", "detailedupdate", "visiteddate", "geocode",
+            "cacheid", "guid", "type", "name", "owner", "owner_real", "hidden", "hint", "size", "difficulty", "terrain", "location",
+            "distance", "direction", "latitude", "longitude", "reliable_latlon", "shortdesc", "personal_note", "description",
+            "favourite_cnt", "rating", "votes", "myvote", "disabled", "archived", "members", "found", "favourite", "inventoryunknown",
+            "onWatchlist", "coordsChanged", "finalDefined", "logPasswordRequired", "watchlistCount" };
     private static final String dbCreateLists = ""
             + "create table " + dbTableLists + " ("
             + "_id integer primary key autoincrement, "
@@ -336,6 +412,47 @@ public class DataStore {
             + "longitude double "
             + "); ";
 
+    /**
+     * R*Tree indices over the coordinates of caches and waypoints. The rows are identified by the _id of the indexed
+     * table and are maintained by triggers, so that every insert, update and delete keeps them in sync.
+     */
+    private static final String dbCreateCachesRTree = "create virtual table " + dbTableCachesRTree + " using rtree(id, minLat, maxLat, minLon, maxLon)";
+    private static final String dbCreateWaypointsRTree = "create virtual table " + dbTableWaypointsRTree + " using rtree(id, minLat, maxLat, minLon, maxLon)";
+
+    /**
+     * Full text indices of the columns used for search suggestions. The docid of a row is the _id of the indexed
+     * table, and triggers keep them in sync like the R*Tree indices.
+     */
+    private static final String[] ftsCachesColumns = { "geocode", "name", "owner", "owner_real" };
+    private static final String[] ftsLogsColumns = { "author" };
+    private static final String[] ftsTrackablesColumns = { "tbcode", "title" };
+    /**
+     * Number of detailed caches per list and cache type, maintained by triggers on the caches and the list
+     * memberships. A missing type is stored as empty string, as it is part of the primary key.
+     */
+    private static final String dbCreateListCounts = "create table if not exists " + dbTableListCounts + " ("
+            + "list_id integer not null, "
+            + "type text not null, "
+            + "count integer not null, "
+            + "primary key (list_id, type)"
+            + ")";
+    /**
+     * Long texts of caches and logs, compressed by {@link TextCompression}. The column of a text stored here is null
+     * in the caches or logs table.
+     */
+    private static final String dbCreateCacheTexts = "create table if not exists " + dbTableCacheTexts + " ("
+            + "geocode text primary key not null, "
+            + "shortdesc_deflated blob, "
+            + "description_deflated blob"
+            + ")";
+    private static final String dbCreateLogTexts = "create table if not exists " + dbTableLogTexts + " ("
+            + "_id integer primary key, " // id of the log
+            + "log_deflated blob"
+            + ")";
+
+    /** maximum number of suggestions returned for one kind of search */
+    private static final int MAX_SUGGESTIONS = 50;
+
     private static final Observable<Integer> allCachesCountObservable = Observable.create(new OnSubscribe<Integer>() {
         @Override
         public void call(final Subscriber<? super Integer> subscriber) {
@@ -348,6 +465,10 @@ public class DataStore {
 
     private static boolean newlyCreatedDatabase = false;
     private static boolean databaseCleaned = false;
+    /** whether the R*Tree indices could be created, as not every SQLite build provides the rtree module */
+    private static volatile boolean rTreeAvailable = false;
+    /** whether the full text indices could be created, as the fts4 module is missing in older SQLite builds */
+    private static volatile boolean ftsAvailable = false;
 
     public static void init() {
         if (database != null) {
@@ -365,6 +486,43 @@ public class DataStore {
                 Log.e("DataStore.init: unable to open database for R/W", e);
                 recreateDatabase(dbHelper);
             }
+            if (database != null && VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN) {
+                configureJournalMode(database);
+            }
+        }
+    }
+
+    /**
+     * Use write-ahead logging for a database in internal storage, so that queries are not blocked by long write
+     * transactions like imports. The database then serves queries of other threads from a small pool of read-only
+     * connections, while all writes are serialized on its single primary connection.
+     *
+     * The journal mode is stored in the database file, so it is switched back for a database on external storage,
+     * as the file systems used there do not reliably support the shared memory needed by write-ahead logging.
+     */
+    @TargetApi(VERSION_CODES.JELLY_BEAN)
+    private static void configureJournalMode(@NonNull final SQLiteDatabase db) {
+        try {
+            if (Settings.isDbOnSDCard()) {
+                db.disableWriteAheadLogging();
+            } else if (!db.enableWriteAheadLogging()) {
+                Log.w("DataStore.configureJournalMode: write-ahead logging not available");
+            }
+        } catch (final RuntimeException e) {
+            Log.e("DataStore.configureJournalMode: unable to change the journal mode", e);
+        }
+    }
+
+    /**
+     * Delete the journal files left next to a database file which is about to be replaced. They belong to the old
+     * content and would otherwise be applied to the new one.
+     */
+    private static void deleteJournalFiles(@NonNull final File dbFile) {
+        for (final String suffix : new String[] { "-wal", "-shm", "-journal" }) {
+            final File journal = new File(dbFile.getPath() + suffix);
+            if (journal.exists()) {
+                FileUtils.deleteIgnoringFailure(journal);
+            }
         }
     }
 
@@ -393,6 +551,7 @@ public class DataStore {
             return;
         }
 
+        pendingWrites.flush();
         cacheCache.removeAllFromCache();
         PreparedStatement.clearPreparedStatements();
         database.close();
@@ -442,6 +601,7 @@ public class DataStore {
 
                 final File source = databasePath();
                 final File target = databaseAlternatePath();
+                deleteJournalFiles(target);
                 if (!LocalStorage.copy(source, target)) {
                     Log.e("Database could not be moved to " + target);
                     init();
@@ -450,6 +610,7 @@ public class DataStore {
                 if (!FileUtils.delete(source)) {
                     Log.e("Original database could not be deleted during move");
                 }
+                deleteJournalFiles(source);
                 Settings.setDbOnSDCard(!Settings.isDbOnSDCard());
                 Log.i("Database was moved to " + target);
 
@@ -489,6 +650,7 @@ public class DataStore {
 
         final File sourceFile = getBackupFileInternal();
         closeDb();
+        deleteJournalFiles(databasePath());
         final boolean restoreDone = LocalStorage.copy(sourceFile, databasePath());
         init();
 
@@ -521,6 +683,123 @@ public class DataStore {
 
     }
 
+    /**
+     * Create and fill the counts of the caches on lists, together with the triggers keeping them up to date when
+     * caches are stored, changed or removed and when they are added to or removed from lists.
+     */
+    static void createListCounts(final SQLiteDatabase db) {
+        db.execSQL(dbCreateListCounts);
+        reconcileListCounts(db);
+        db.execSQL("create trigger if not exists tr_" + dbTableListCounts + "_list_insert after insert on " + dbTableCachesLists
+                + " begin " + getListCountsDelta("new", "+") + " end");
+        db.execSQL("create trigger if not exists tr_" + dbTableListCounts + "_list_delete after delete on " + dbTableCachesLists
+                + " begin " + getListCountsDelta("old", "-") + " end");
+        db.execSQL("create trigger if not exists tr_" + dbTableListCounts + "_list_update after update of list_id, geocode on " + dbTableCachesLists
+                + " begin " + getListCountsDelta("old", "-") + getListCountsDelta("new", "+") + " end");
+        db.execSQL("create trigger if not exists tr_" + dbTableListCounts + "_cache_insert after insert on " + dbTableCaches
+                + " begin " + getCacheCountsDelta("new", "+") + " end");
+        db.execSQL("create trigger if not exists tr_" + dbTableListCounts + "_cache_delete after delete on " + dbTableCaches
+                + " begin " + getCacheCountsDelta("old", "-") + " end");
+        db.execSQL("create trigger if not exists tr_" + dbTableListCounts + "_cache_update after update of geocode, type, detailed on " + dbTableCaches
+                + " when old.geocode is not new.geocode or old.type is not new.type or old.detailed is not new.detailed"
+                + " begin " + getCacheCountsDelta("old", "-") + getCacheCountsDelta("new", "+") + " end");
+    }
+
+    /**
+     * Compute the counts of the caches on lists from scratch.
+     */
+    static void reconcileListCounts(final SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.delete(dbTableListCounts, null, null);
+            db.execSQL("insert into " + dbTableListCounts + " (list_id, type, count)"
+                    + " select l.list_id, ifnull(c.type, ''), count(*) from " + dbTableCaches + " c, " + dbTableCachesLists + " l"
+                    + " where c.geocode = l.geocode and c.detailed = 1 group by l.list_id, ifnull(c.type, '')");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Trigger statements adding or subtracting the detailed caches of a list membership row to or from the counts.
+     */
+    private static String getListCountsDelta(final String row, final String sign) {
+        final String insert = "+".equals(sign) ? "insert or ignore into " + dbTableListCounts + " (list_id, type, count)"
+                + " select " + row + ".list_id, ifnull(type, ''), 0 from " + dbTableCaches + " where geocode = " + row + ".geocode and detailed = 1; " : "";
+        return insert + "update " + dbTableListCounts + " set count = count " + sign
+                + " (select count(*) from " + dbTableCaches + " c where c.geocode = " + row + ".geocode and c.detailed = 1 and ifnull(c.type, '') = " + dbTableListCounts + ".type)"
+                + " where list_id = " + row + ".list_id; ";
+    }
+
+    /**
+     * Trigger statements adding or subtracting a cache row to or from the counts of all lists containing it.
+     */
+    private static String getCacheCountsDelta(final String row, final String sign) {
+        final String insert = "+".equals(sign) ? "insert or ignore into " + dbTableListCounts + " (list_id, type, count)"
+                + " select list_id, ifnull(" + row + ".type, ''), 0 from " + dbTableCachesLists + " where geocode = " + row + ".geocode and " + row + ".detailed = 1; " : "";
+        return insert + "update " + dbTableListCounts + " set count = count " + sign + " 1"
+                + " where " + row + ".detailed = 1 and type = ifnull(" + row + ".type, '')"
+                + " and list_id in (select list_id from " + dbTableCachesLists + " where geocode = " + row + ".geocode); ";
+    }
+
+    /**
+     * Create the tables of the compressed texts, together with the triggers removing the texts of removed caches and
+     * logs.
+     */
+    static void createTextTables(final SQLiteDatabase db) {
+        db.execSQL(dbCreateCacheTexts);
+        db.execSQL(dbCreateLogTexts);
+        db.execSQL("create trigger if not exists tr_" + dbTableCacheTexts + "_delete after delete on " + dbTableCaches
+                + " begin delete from " + dbTableCacheTexts + " where geocode = old.geocode; end");
+        db.execSQL("create trigger if not exists tr_" + dbTableLogTexts + "_delete after delete on " + dbTableLogs
+                + " begin delete from " + dbTableLogTexts + " where _id = old._id; end");
+    }
+
+    /**
+     * Move the long texts stored uncompressed in the caches and logs tables into the tables of the compressed texts.
+     */
+    static void compressTexts(final SQLiteDatabase db) {
+        final String isLong = " >= " + TextCompression.MIN_LENGTH;
+        final SQLiteStatement insertCacheTexts = db.compileStatement(PreparedStatement.INSERT_CACHE_TEXTS.query);
+        final SQLiteStatement insertLogText = db.compileStatement(PreparedStatement.INSERT_LOG_TEXT.query);
+        try {
+            // the uncompressed texts are only removed after reading all of them, as changing the rows would change
+            // the result of the query while it is read
+            final Cursor caches = db.rawQuery("select geocode, shortdesc, description from " + dbTableCaches
+                    + " where length(shortdesc)" + isLong + " or length(description)" + isLong, null);
+            try {
+                while (caches.moveToNext()) {
+                    insertCacheTexts.bindString(1, caches.getString(0));
+                    bindDeflatedOrNull(insertCacheTexts, 2, caches.getString(1));
+                    bindDeflatedOrNull(insertCacheTexts, 3, caches.getString(2));
+                    insertCacheTexts.executeInsert();
+                }
+            } finally {
+                caches.close();
+            }
+            db.execSQL("update " + dbTableCaches + " set "
+                    + "shortdesc = case when length(shortdesc)" + isLong + " then null else shortdesc end, "
+                    + "description = case when length(description)" + isLong + " then null else description end "
+                    + "where length(shortdesc)" + isLong + " or length(description)" + isLong);
+
+            final Cursor logs = db.rawQuery("select _id, log from " + dbTableLogs + " where length(log)" + isLong, null);
+            try {
+                while (logs.moveToNext()) {
+                    insertLogText.bindLong(1, logs.getLong(0));
+                    bindDeflatedOrNull(insertLogText, 2, logs.getString(1));
+                    insertLogText.executeInsert();
+                }
+            } finally {
+                logs.close();
+            }
+            db.execSQL("update " + dbTableLogs + " set log = null where length(log)" + isLong);
+        } finally {
+            insertCacheTexts.close();
+            insertLogText.close();
+        }
+    }
+
     private static class DbHelper extends SQLiteOpenHelper {
 
         private static boolean firstRun = true;
@@ -546,6 +825,10 @@ public class DataStore {
             db.execSQL(dbCreateSearchDestinationHistory);
 
             createIndices(db);
+            createRTreeIndices(db);
+            createFtsIndices(db);
+            createListCounts(db);
+            createTextTables(db);
         }
 
         private static void createIndices(final SQLiteDatabase db) {
@@ -568,6 +851,80 @@ public class DataStore {
             db.execSQL("create index if not exists in_lists_geo on " + dbTableCachesLists + " (geocode)");
         }
 
+        /**
+         * Create and fill the R*Tree indices for cache and waypoint coordinates, together with the triggers keeping
+         * them up to date. If the SQLite library has no rtree module, the viewport queries fall back to the
+         * latitude/longitude indices.
+         */
+        private static void createRTreeIndices(final SQLiteDatabase db) {
+            try {
+                db.execSQL(dbCreateCachesRTree);
+                db.execSQL(dbCreateWaypointsRTree);
+            } catch (final Exception e) {
+                Log.w("DataStore.createRTreeIndices: rtree module not available", e);
+                return;
+            }
+            createRTreeTriggers(db, dbTableCaches, dbTableCachesRTree);
+            createRTreeTriggers(db, dbTableWaypoints, dbTableWaypointsRTree);
+        }
+
+        private static void createRTreeTriggers(final SQLiteDatabase db, final String table, final String rTree) {
+            final String newEntry = " select new._id, new.latitude, new.latitude, new.longitude, new.longitude where new.latitude is not null and new.longitude is not null";
+            db.execSQL("insert into " + rTree + " select _id, latitude, latitude, longitude, longitude from " + table + " where latitude is not null and longitude is not null");
+            db.execSQL("create trigger if not exists tr_" + rTree + "_insert after insert on " + table
+                    + " begin insert or replace into " + rTree + newEntry + "; end");
+            db.execSQL("create trigger if not exists tr_" + rTree + "_update after update of latitude, longitude on " + table
+                    + " begin delete from " + rTree + " where id = old._id; insert into " + rTree + newEntry + "; end");
+            db.execSQL("create trigger if not exists tr_" + rTree + "_delete after delete on " + table
+                    + " begin delete from " + rTree + " where id = old._id; end");
+        }
+
+        /**
+         * Create and fill the full text indices for the search suggestions, together with the triggers keeping them up
+         * to date. Without the fts4 module the suggestions fall back to {@code LIKE} queries.
+         */
+        private static void createFtsIndices(final SQLiteDatabase db) {
+            try {
+                db.execSQL(getCreateFts(dbTableCachesFts, ftsCachesColumns));
+                db.execSQL(getCreateFts(dbTableLogsFts, ftsLogsColumns));
+                db.execSQL(getCreateFts(dbTableTrackablesFts, ftsTrackablesColumns));
+            } catch (final Exception e) {
+                Log.w("DataStore.createFtsIndices: fts4 module not available", e);
+                dropFtsIndices(db);
+                return;
+            }
+            createFtsTriggers(db, dbTableCaches, dbTableCachesFts, ftsCachesColumns);
+            createFtsTriggers(db, dbTableLogs, dbTableLogsFts, ftsLogsColumns);
+            createFtsTriggers(db, dbTableTrackables, dbTableTrackablesFts, ftsTrackablesColumns);
+        }
+
+        private static String getCreateFts(final String fts, final String[] columns) {
+            return "create virtual table if not exists " + fts + " using fts4(" + StringUtils.join(columns, ", ") + ")";
+        }
+
+        private static void createFtsTriggers(final SQLiteDatabase db, final String table, final String fts, final String[] columns) {
+            final String columnList = StringUtils.join(columns, ", ");
+            final String newEntry = " (docid, " + columnList + ") values (new._id, new." + StringUtils.join(columns, ", new.") + ")";
+            db.execSQL("insert into " + fts + " (docid, " + columnList + ") select _id, " + columnList + " from " + table);
+            // merge the segments created by the bulk insert
+            db.execSQL("insert into " + fts + " (" + fts + ") values ('optimize')");
+            db.execSQL("create trigger if not exists tr_" + fts + "_insert after insert on " + table
+                    + " begin insert into " + fts + newEntry + "; end");
+            db.execSQL("create trigger if not exists tr_" + fts + "_update after update of " + columnList + " on " + table
+                    + " begin delete from " + fts + " where docid = old._id; insert into " + fts + newEntry + "; end");
+            db.execSQL("create trigger if not exists tr_" + fts + "_delete after delete on " + table
+                    + " begin delete from " + fts + " where docid = old._id; end");
+        }
+
+        private static void dropFtsIndices(final SQLiteDatabase db) {
+            for (final String fts : new String[] { dbTableCachesFts, dbTableLogsFts, dbTableTrackablesFts }) {
+                db.execSQL("drop trigger if exists tr_" + fts + "_insert");
+                db.execSQL("drop trigger if exists tr_" + fts + "_update");
+                db.execSQL("drop trigger if exists tr_" + fts + "_delete");
+                db.execSQL("drop table if exists " + fts);
+            }
+        }
+
         @Override
         public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
             Log.i("Upgrade database from ver. " + oldVersion + " to ver. " + newVersion + ": start");
@@ -861,6 +1218,39 @@ public class DataStore {
                             Log.e("Failed to upgrade to ver. 71", e);
                         }
                     }
+                    // Introduces R*Tree indices for coordinates
+                    if (oldVersion < 72) {
+                        try {
+                            createRTreeIndices(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 72", e);
+                        }
+                    }
+                    // Introduces full text indices for search suggestions
+                    if (oldVersion < 73) {
+                        try {
+                            createFtsIndices(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 73", e);
+                        }
+                    }
+                    // Introduces maintained counts of the caches on lists
+                    if (oldVersion < 74) {
+                        try {
+                            createListCounts(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 74", e);
+                        }
+                    }
+                    // Introduces compressed storage of long texts
+                    if (oldVersion < 75) {
+                        try {
+                            createTextTables(db);
+                            compressTexts(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 75", e);
+                        }
+                    }
                 }
 
                 db.setTransactionSuccessful();
@@ -873,6 +1263,8 @@ public class DataStore {
 
         @Override
         public void onOpen(final SQLiteDatabase db) {
+            rTreeAvailable = DatabaseUtils.queryNumEntries(db, "sqlite_master", "type = 'table' and name = ?", new String[] { dbTableCachesRTree }) > 0;
+            ftsAvailable = DatabaseUtils.queryNumEntries(db, "sqlite_master", "type = 'table' and name = ?", new String[] { dbTableCachesFts }) > 0;
             if (firstRun) {
                 sanityChecks(db);
                 firstRun = false;
@@ -934,6 +1326,12 @@ public class DataStore {
         }
 
         private static void dropDatabase(final SQLiteDatabase db) {
+            dropFtsIndices(db);
+            db.execSQL("drop table if exists " + dbTableListCounts);
+            db.execSQL("drop table if exists " + dbTableCacheTexts);
+            db.execSQL("drop table if exists " + dbTableLogTexts);
+            db.execSQL("drop table if exists " + dbTableCachesRTree);
+            db.execSQL("drop table if exists " + dbTableWaypointsRTree);
             db.execSQL("drop table if exists " + dbTableCachesLists);
             db.execSQL("drop table if exists " + dbTableCaches);
             db.execSQL("drop table if exists " + dbTableAttributes);
@@ -1137,6 +1535,68 @@ public class DataStore {
         if (CollectionUtils.isEmpty(caches)) {
             return;
         }
+        pendingWrites.flush(Geocache.getGeocodes(caches));
+        for (final Geocache geocache : mergeAndPutInCache(caches, saveFlags)) {
+            storeIntoDatabase(geocache);
+        }
+    }
+
+    /**
+     * Save imported caches and their logs to the database in a single transaction. The caches are merged with the
+     * stored data like in {@link #saveCaches(Collection, Set)}, but they are removed from the CacheCache afterwards,
+     * as the user did not actually look at them.
+     *
+     * @param caches
+     *            the caches to save
+     * @param logs
+     *            logs by geocode, replacing the stored logs of these caches
+     */
+    public static void saveImportedCaches(@NonNull final Collection<Geocache> caches, @NonNull final Map<String, ? extends Iterable<LogEntry>> logs) {
+        if (caches.isEmpty()) {
+            return;
+        }
+        pendingWrites.flush(Geocache.getGeocodes(caches));
+        final List<Geocache> toBeStored = mergeAndPutInCache(caches, EnumSet.of(SaveFlag.DB));
+
+        init();
+        boolean stored = false;
+        database.beginTransaction();
+        try {
+            for (final Geocache geocache : toBeStored) {
+                storeIntoDatabaseWithoutTransaction(geocache);
+            }
+            for (final Entry<String, ? extends Iterable<LogEntry>> entry : logs.entrySet()) {
+                saveLogsWithoutTransaction(entry.getKey(), entry.getValue());
+            }
+            database.setTransactionSuccessful();
+            stored = true;
+        } catch (final Exception e) {
+            Log.e("DataStore.saveImportedCaches", e);
+        } finally {
+            database.endTransaction();
+        }
+        if (!stored) {
+            // store the caches one by one, so that only the broken ones get lost
+            for (final Geocache geocache : toBeStored) {
+                storeIntoDatabase(geocache);
+            }
+            for (final Entry<String, ? extends Iterable<LogEntry>> entry : logs.entrySet()) {
+                saveLogs(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (final Geocache geocache : caches) {
+            cacheCache.removeCacheFromCache(geocache.getGeocode());
+        }
+    }
+
+    /**
+     * Merge the caches with the data already stored in the CacheCache or in the database and update the CacheCache.
+     *
+     * @return the caches which need to be stored into the database
+     */
+    @NonNull
+    private static List<Geocache> mergeAndPutInCache(final Collection<Geocache> caches, final Set<LoadFlags.SaveFlag> saveFlags) {
         final List<String> cachesFromDatabase = new ArrayList<>();
         final Map<String, Geocache> existingCaches = new HashMap<>();
 
@@ -1178,88 +1638,17 @@ public class DataStore {
                 toBeStored.add(cache);
             }
         }
-
-        for (final Geocache geocache : toBeStored) {
-            storeIntoDatabase(geocache);
-        }
+        return toBeStored;
     }
 
     private static boolean storeIntoDatabase(final Geocache cache) {
-        cache.addStorageLocation(StorageLocation.DATABASE);
-        cacheCache.putCacheInCache(cache);
-        Log.d("Saving " + cache.toString() + " (" + cache.getLists() + ") to DB");
-
-        final ContentValues values = new ContentValues();
-
-        if (cache.getUpdated() == 0) {
-            values.put("updated", System.currentTimeMillis());
-        } else {
-            values.put("updated", cache.getUpdated());
-        }
-        values.put("reason", StoredList.STANDARD_LIST_ID);
-        values.put("detailed", cache.isDetailed() ? 1 : 0);
-        values.put("detailedupdate", cache.getDetailedUpdate());
-        values.put("visiteddate", cache.getVisitedDate());
-        values.put("geocode", cache.getGeocode());
-        values.put("cacheid", cache.getCacheId());
-        values.put("guid", cache.getGuid());
-        values.put("type", cache.getType().id);
-        values.put("name", cache.getName());
-        values.put("owner", cache.getOwnerDisplayName());
-        values.put("owner_real", cache.getOwnerUserId());
-        final Date hiddenDate = cache.getHiddenDate();
-        if (hiddenDate == null) {
-            values.put("hidden", 0);
-        } else {
-            values.put("hidden", hiddenDate.getTime());
-        }
-        values.put("hint", cache.getHint());
-        values.put("size", cache.getSize().id);
-        values.put("difficulty", cache.getDifficulty());
-        values.put("terrain", cache.getTerrain());
-        values.put("location", cache.getLocation());
-        values.put("distance", cache.getDistance());
-        values.put("direction", cache.getDirection());
-        putCoords(values, cache.getCoords());
-        values.put("reliable_latlon", cache.isReliableLatLon() ? 1 : 0);
-        values.put("shortdesc", cache.getShortDescription());
-        values.put("personal_note", cache.getPersonalNote());
-        values.put("description", cache.getDescription());
-        values.put("favourite_cnt", cache.getFavoritePoints());
-        values.put("rating", cache.getRating());
-        values.put("votes", cache.getVotes());
-        values.put("myvote", cache.getMyVote());
-        values.put("disabled", cache.isDisabled() ? 1 : 0);
-        values.put("archived", cache.isArchived() ? 1 : 0);
-        values.put("members", cache.isPremiumMembersOnly() ? 1 : 0);
-        values.put("found", cache.isFound() ? 1 : 0);
-        values.put("favourite", cache.isFavorite() ? 1 : 0);
-        values.put("inventoryunknown", cache.getInventoryItems());
-        values.put("onWatchlist", cache.isOnWatchlist() ? 1 : 0);
-        values.put("coordsChanged", cache.hasUserModifiedCoords() ? 1 : 0);
-        values.put("finalDefined", cache.hasFinalDefined() ? 1 : 0);
-        values.put("logPasswordRequired", cache.isLogPasswordRequired() ? 1 : 0);
-        values.put("watchlistCount", cache.getWatchlistCount());
-
         init();
 
         // try to update record else insert fresh..
         database.beginTransaction();
 
         try {
-            saveAttributesWithoutTransaction(cache);
-            saveWaypointsWithoutTransaction(cache);
-            saveSpoilersWithoutTransaction(cache);
-            saveLogCountsWithoutTransaction(cache);
-            saveInventoryWithoutTransaction(cache.getGeocode(), cache.getInventory());
-            saveListsWithoutTransaction(cache);
-
-            final int rows = database.update(dbTableCaches, values, "geocode = ?", new String[] { cache.getGeocode() });
-            if (rows == 0) {
-                // cache is not in the DB, insert it
-                /* long id = */
-                database.insert(dbTableCaches, null, values);
-            }
+            storeIntoDatabaseWithoutTransaction(cache);
             database.setTransactionSuccessful();
             return true;
         } catch (final Exception e) {
@@ -1271,13 +1660,140 @@ public class DataStore {
         return false;
     }
 
-    private static void saveAttributesWithoutTransaction(final Geocache cache) {
-        final String geocode = cache.getGeocode();
+    private static void storeIntoDatabaseWithoutTransaction(final Geocache cache) {
+        cache.addStorageLocation(StorageLocation.DATABASE);
+        cacheCache.putCacheInCache(cache);
+        Log.d("Saving " + cache.toString() + " (" + cache.getLists() + ") to DB");
+
+        storeIntoDatabaseWithoutTransaction(new CacheSnapshot(cache));
+    }
+
+    private static void storeIntoDatabaseWithoutTransaction(final CacheSnapshot cache) {
+        saveAttributesWithoutTransaction(cache.geocode, cache.attributes);
+        saveWaypointsWithoutTransaction(cache.geocode, cache.waypoints);
+        saveSpoilersWithoutTransaction(cache.geocode, cache.spoilers);
+        saveLogCountsWithoutTransaction(cache.geocode, cache.logCounts);
+        saveInventoryWithoutTransaction(cache.geocode, cache.inventory);
+        saveListsWithoutTransaction(cache.geocode, cache.lists);
+        saveTextsWithoutTransaction(cache.geocode, cache.shortDescription, cache.description);
+
+        // update the existing record, else insert a new one. INSERT OR REPLACE is not used, as the delete triggers do
+        // not run for the replaced row. The check statement is shared with other threads.
+        final SQLiteStatement check = PreparedStatement.CHECK_IF_PRESENT.getStatement();
+        synchronized (check) {
+            check.bindString(1, cache.geocode);
+            if (check.simpleQueryForLong() > 0) {
+                final SQLiteStatement update = PreparedStatement.UPDATE_CACHE.getStatement();
+                bindColumns(update, cache.columns);
+                update.bindString(dbCachesColumns.length + 1, cache.geocode);
+                update.execute();
+            } else {
+                final SQLiteStatement insert = PreparedStatement.INSERT_CACHE.getStatement();
+                bindColumns(insert, cache.columns);
+                insert.executeInsert();
+            }
+        }
+    }
+
+    /**
+     * Bind the values of the cache columns of a {@link CacheSnapshot} to the first parameters of a statement.
+     */
+    private static void bindColumns(final SQLiteStatement statement, final Object[] columns) {
+        for (int index = 0; index < columns.length; index++) {
+            final Object value = columns[index];
+            if (value == null) {
+                statement.bindNull(index + 1);
+            } else if (value instanceof String) {
+                statement.bindString(index + 1, (String) value);
+            } else if (value instanceof Double) {
+                statement.bindDouble(index + 1, (Double) value);
+            } else {
+                statement.bindLong(index + 1, (Long) value);
+            }
+        }
+    }
+
+    private static void saveTextsWithoutTransaction(final String geocode, @Nullable final String shortDescription, @Nullable final String description) {
+        if (TextCompression.isCompressed(shortDescription) || TextCompression.isCompressed(description)) {
+            final SQLiteStatement insert = PreparedStatement.INSERT_CACHE_TEXTS.getStatement();
+            insert.bindString(1, geocode);
+            bindDeflatedOrNull(insert, 2, shortDescription);
+            bindDeflatedOrNull(insert, 3, description);
+            insert.executeInsert();
+        } else {
+            final SQLiteStatement remove = PreparedStatement.REMOVE_CACHE_TEXTS.getStatement();
+            remove.bindString(1, geocode);
+            remove.execute();
+        }
+    }
+
+    /**
+     * @return the text to be stored in the caches or logs table, null if it is stored compressed
+     */
+    @Nullable
+    private static String getUncompressedText(@Nullable final String text) {
+        return TextCompression.isCompressed(text) ? null : text;
+    }
+
+    private static void bindDeflatedOrNull(final SQLiteStatement statement, final int index, @Nullable final String text) {
+        if (TextCompression.isCompressed(text)) {
+            statement.bindBlob(index, TextCompression.deflate(text));
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    /**
+     * Read a text which is either stored in the given column or compressed in the given blob column.
+     */
+    @Nullable
+    private static String getText(final Cursor cursor, final int index, final int deflatedIndex) {
+        if (!cursor.isNull(deflatedIndex)) {
+            try {
+                return TextCompression.inflate(cursor.getBlob(deflatedIndex));
+            } catch (final IllegalArgumentException e) {
+                Log.e("DataStore.getText: invalid compressed text", e);
+            }
+        }
+        return cursor.getString(index);
+    }
+
+    private static void bindStringOrNull(final SQLiteStatement statement, final int index, @Nullable final String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bindDoubleOrNull(final SQLiteStatement statement, final int index, @Nullable final Float value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    /**
+     * Bind coordinates to two parameters of a statement, like {@link #putCoords(ContentValues, Geopoint)}.
+     *
+     * @return the index of the parameter following the coordinates
+     */
+    private static int bindCoords(final SQLiteStatement statement, final int index, @Nullable final Geopoint coords) {
+        if (coords == null) {
+            statement.bindNull(index);
+            statement.bindNull(index + 1);
+        } else {
+            statement.bindDouble(index, coords.getLatitude());
+            statement.bindDouble(index + 1, coords.getLongitude());
+        }
+        return index + 2;
+    }
 
-        // The attributes must be fetched first because lazy loading may load
-        // a null set otherwise.
-        final List<String> attributes = cache.getAttributes();
-        database.delete(dbTableAttributes, "geocode = ?", new String[]{geocode});
+    private static void saveAttributesWithoutTransaction(final String geocode, final List<String> attributes) {
+        final SQLiteStatement remove = PreparedStatement.REMOVE_ATTRIBUTES.getStatement();
+        remove.bindString(1, geocode);
+        remove.execute();
 
         if (attributes.isEmpty()) {
             return;
@@ -1293,13 +1809,7 @@ public class DataStore {
         }
     }
 
-    private static void saveListsWithoutTransaction(final Geocache cache) {
-        final String geocode = cache.getGeocode();
-
-        // The lists must be fetched first because lazy loading may load
-        // a null set otherwise.
-        final Set<Integer> lists = cache.getLists();
-
+    private static void saveListsWithoutTransaction(final String geocode, final Set<Integer> lists) {
         if (lists.isEmpty()) {
             return;
         }
@@ -1338,9 +1848,10 @@ public class DataStore {
 
     public static boolean saveWaypoints(final Geocache cache) {
         init();
+        pendingWrites.flush(Collections.singleton(cache.getGeocode()));
         database.beginTransaction();
         try {
-            saveWaypointsWithoutTransaction(cache);
+            saveWaypointsWithoutTransaction(cache.getGeocode(), CacheSnapshot.getWaypointValues(cache.getWaypoints()));
             database.setTransactionSuccessful();
             return true;
         } catch (final Exception e) {
@@ -1351,37 +1862,37 @@ public class DataStore {
         return false;
     }
 
-    private static void saveWaypointsWithoutTransaction(final Geocache cache) {
-        final String geocode = cache.getGeocode();
-
-        final List<Waypoint> waypoints = cache.getWaypoints();
+    private static void saveWaypointsWithoutTransaction(final String geocode, final List<CacheSnapshot.WaypointValues> waypoints) {
         if (CollectionUtils.isNotEmpty(waypoints)) {
             final List<String> currentWaypointIds = new ArrayList<>();
-            final ContentValues values = new ContentValues();
+            final SQLiteStatement insert = PreparedStatement.INSERT_WAYPOINT.getStatement();
+            final SQLiteStatement update = PreparedStatement.UPDATE_WAYPOINT.getStatement();
             final long timeStamp = System.currentTimeMillis();
-            for (final Waypoint oneWaypoint : waypoints) {
-
-                values.clear();
-                values.put("geocode", geocode);
-                values.put("updated", timeStamp);
-                values.put("type", oneWaypoint.getWaypointType() != null ? oneWaypoint.getWaypointType().id : null);
-                values.put("prefix", oneWaypoint.getPrefix());
-                values.put("lookup", oneWaypoint.getLookup());
-                values.put("name", oneWaypoint.getName());
-                putCoords(values, oneWaypoint.getCoords());
-                values.put("note", oneWaypoint.getNote());
-                values.put("own", oneWaypoint.isUserDefined() ? 1 : 0);
-                values.put("visited", oneWaypoint.isVisited() ? 1 : 0);
-                if (oneWaypoint.getId() < 0) {
-                    final long rowId = database.insert(dbTableWaypoints, null, values);
-                    oneWaypoint.setId((int) rowId);
+            for (final CacheSnapshot.WaypointValues oneWaypoint : waypoints) {
+                final SQLiteStatement statement = oneWaypoint.id < 0 ? insert : update;
+                statement.bindString(1, geocode);
+                statement.bindLong(2, timeStamp);
+                bindStringOrNull(statement, 3, oneWaypoint.type);
+                bindStringOrNull(statement, 4, oneWaypoint.prefix);
+                bindStringOrNull(statement, 5, oneWaypoint.lookup);
+                bindStringOrNull(statement, 6, oneWaypoint.name);
+                bindCoords(statement, 7, oneWaypoint.coords);
+                bindStringOrNull(statement, 9, oneWaypoint.note);
+                statement.bindLong(10, oneWaypoint.userDefined ? 1 : 0);
+                statement.bindLong(11, oneWaypoint.visited ? 1 : 0);
+                final int id;
+                if (oneWaypoint.id < 0) {
+                    id = (int) insert.executeInsert();
+                    oneWaypoint.waypoint.setId(id);
                 } else {
-                    database.update(dbTableWaypoints, values, "_id = ?", new String[] { Integer.toString(oneWaypoint.getId(), 10) });
+                    id = oneWaypoint.id;
+                    update.bindLong(12, id);
+                    update.execute();
                 }
-                currentWaypointIds.add(Integer.toString(oneWaypoint.getId()));
+                currentWaypointIds.add(Integer.toString(id));
             }
 
-            removeOutdatedWaypointsOfCache(cache, currentWaypointIds);
+            removeOutdatedWaypointsOfCache(geocode, currentWaypointIds);
         }
     }
 
@@ -1391,9 +1902,9 @@ public class DataStore {
      * @param remainingWaypointIds
      *            ids of waypoints which shall not be deleted
      */
-    private static void removeOutdatedWaypointsOfCache(@NonNull final Geocache cache, @NonNull final Collection<String> remainingWaypointIds) {
+    private static void removeOutdatedWaypointsOfCache(@NonNull final String geocode, @NonNull final Collection<String> remainingWaypointIds) {
         final String idList = StringUtils.join(remainingWaypointIds, ',');
-        database.delete(dbTableWaypoints, "geocode = ? AND _id NOT in (" + idList + ")", new String[]{cache.getGeocode()});
+        database.delete(dbTableWaypoints, "geocode = ? AND _id NOT in (" + idList + ")", new String[]{geocode});
     }
 
     /**
@@ -1472,20 +1983,20 @@ public class DataStore {
         }
 
         init();
+        pendingWrites.flush();
 
         return database.delete(dbTableWaypoints, "_id = " + id, null) > 0;
     }
 
-    private static void saveSpoilersWithoutTransaction(final Geocache cache) {
-        if (cache.hasSpoilersSet()) {
-            final String geocode = cache.getGeocode();
+    private static void saveSpoilersWithoutTransaction(final String geocode, @Nullable final List<Image> spoilers) {
+        if (spoilers != null) {
             final SQLiteStatement remove = PreparedStatement.REMOVE_SPOILERS.getStatement();
-            remove.bindString(1, cache.getGeocode());
+            remove.bindString(1, geocode);
             remove.execute();
 
             final SQLiteStatement insertSpoiler = PreparedStatement.INSERT_SPOILER.getStatement();
             final long timestamp = System.currentTimeMillis();
-            for (final Image spoiler : cache.getSpoilers()) {
+            for (final Image spoiler : spoilers) {
                 insertSpoiler.bindString(1, geocode);
                 insertSpoiler.bindLong(2, timestamp);
                 insertSpoiler.bindString(3, spoiler.getUrl());
@@ -1513,7 +2024,9 @@ public class DataStore {
 
     private static void saveLogsWithoutTransaction(final String geocode, final Iterable<LogEntry> logs) {
         // TODO delete logimages referring these logs
-        database.delete(dbTableLogs, "geocode = ?", new String[]{geocode});
+        final SQLiteStatement remove = PreparedStatement.REMOVE_LOGS.getStatement();
+        remove.bindString(1, geocode);
+        remove.execute();
 
         final SQLiteStatement insertLog = PreparedStatement.INSERT_LOG.getStatement();
         final long timestamp = System.currentTimeMillis();
@@ -1522,11 +2035,17 @@ public class DataStore {
             insertLog.bindLong(2, timestamp);
             insertLog.bindLong(3, log.getType().id);
             insertLog.bindString(4, log.author);
-            insertLog.bindString(5, log.log);
+            bindStringOrNull(insertLog, 5, getUncompressedText(log.log));
             insertLog.bindLong(6, log.date);
             insertLog.bindLong(7, log.found);
             insertLog.bindLong(8, log.friend ? 1 : 0);
             final long logId = insertLog.executeInsert();
+            if (TextCompression.isCompressed(log.log)) {
+                final SQLiteStatement insertText = PreparedStatement.INSERT_LOG_TEXT.getStatement();
+                insertText.bindLong(1, logId);
+                insertText.bindBlob(2, TextCompression.deflate(log.log));
+                insertText.executeInsert();
+            }
             if (log.hasLogImages()) {
                 final SQLiteStatement insertImage = PreparedStatement.INSERT_LOG_IMAGE.getStatement();
                 for (final Image img : log.getLogImages()) {
@@ -1540,11 +2059,11 @@ public class DataStore {
         }
     }
 
-    private static void saveLogCountsWithoutTransaction(final Geocache cache) {
-        final String geocode = cache.getGeocode();
-        database.delete(dbTableLogCount, "geocode = ?", new String[]{geocode});
+    private static void saveLogCountsWithoutTransaction(final String geocode, final Map<LogType, Integer> logCounts) {
+        final SQLiteStatement remove = PreparedStatement.REMOVE_LOG_COUNTS.getStatement();
+        remove.bindString(1, geocode);
+        remove.execute();
 
-        final Map<LogType, Integer> logCounts = cache.getLogCounts();
         if (MapUtils.isNotEmpty(logCounts)) {
             final Set<Entry<LogType, Integer>> logCountsItems = logCounts.entrySet();
             final SQLiteStatement insertLogCounts = PreparedStatement.INSERT_LOG_COUNTS.getStatement();
@@ -1574,36 +2093,32 @@ public class DataStore {
 
     private static void saveInventoryWithoutTransaction(final String geocode, final List<Trackable> trackables) {
         if (geocode != null) {
-            database.delete(dbTableTrackables, "geocode = ?", new String[]{geocode});
+            final SQLiteStatement remove = PreparedStatement.REMOVE_TRACKABLES_OF_CACHE.getStatement();
+            remove.bindString(1, geocode);
+            remove.execute();
         }
 
         if (CollectionUtils.isNotEmpty(trackables)) {
-            final ContentValues values = new ContentValues();
+            final SQLiteStatement remove = PreparedStatement.REMOVE_TRACKABLE.getStatement();
+            final SQLiteStatement insert = PreparedStatement.INSERT_TRACKABLE.getStatement();
             final long timeStamp = System.currentTimeMillis();
             for (final Trackable trackable : trackables) {
                 final String tbCode = trackable.getGeocode();
                 if (StringUtils.isNotBlank(tbCode)) {
-                    database.delete(dbTableTrackables, "tbcode = ?", new String[] { tbCode });
+                    remove.bindString(1, tbCode);
+                    remove.execute();
                 }
-                values.clear();
-                if (geocode != null) {
-                    values.put("geocode", geocode);
-                }
-                values.put("updated", timeStamp);
-                values.put("tbcode", tbCode);
-                values.put("guid", trackable.getGuid());
-                values.put("title", trackable.getName());
-                values.put("owner", trackable.getOwner());
+                bindStringOrNull(insert, 1, geocode);
+                insert.bindLong(2, timeStamp);
+                bindStringOrNull(insert, 3, tbCode);
+                bindStringOrNull(insert, 4, trackable.getGuid());
+                bindStringOrNull(insert, 5, trackable.getName());
+                bindStringOrNull(insert, 6, trackable.getOwner());
                 final Date releasedDate = trackable.getReleased();
-                if (releasedDate != null) {
-                    values.put("released", releasedDate.getTime());
-                } else {
-                    values.put("released", 0L);
-                }
-                values.put("goal", trackable.getGoal());
-                values.put("description", trackable.getDetails());
-
-                database.insert(dbTableTrackables, null, values);
+                insert.bindLong(7, releasedDate != null ? releasedDate.getTime() : 0L);
+                bindStringOrNull(insert, 8, trackable.getGoal());
+                bindStringOrNull(insert, 9, trackable.getDetails());
+                insert.executeInsert();
 
                 saveLogsWithoutTransaction(tbCode, trackable.getLogs());
             }
@@ -1669,6 +2184,9 @@ public class DataStore {
                 loadFlags.contains(LoadFlag.INVENTORY) ||
                 loadFlags.contains(LoadFlag.OFFLINE_LOG)) {
 
+            if (!remaining.isEmpty()) {
+                pendingWrites.flush(remaining);
+            }
             final Set<Geocache> cachesFromDB = loadCachesFromGeocodes(remaining, loadFlags);
             result.addAll(cachesFromDB);
             for (final Geocache cache : cachesFromDB) {
@@ -1720,83 +2238,153 @@ public class DataStore {
         query.append(whereGeocodeIn(geocodes));
 
         final Cursor cursor = database.rawQuery(query.toString(), null);
+        final Map<String, Geocache> caches = new HashMap<>();
         try {
-            final Set<Geocache> caches = new HashSet<>();
             int logIndex = -1;
 
             while (cursor.moveToNext()) {
                 final Geocache cache = createCacheFromDatabaseContent(cursor);
 
-                if (loadFlags.contains(LoadFlag.ATTRIBUTES)) {
-                    cache.setAttributes(loadAttributes(cache.getGeocode()));
-                }
-
-                if (loadFlags.contains(LoadFlag.WAYPOINTS)) {
-                    final List<Waypoint> waypoints = loadWaypoints(cache.getGeocode());
-                    if (CollectionUtils.isNotEmpty(waypoints)) {
-                        cache.setWaypoints(waypoints, false);
-                    }
-                }
-
-                if (loadFlags.contains(LoadFlag.SPOILERS)) {
-                    final List<Image> spoilers = loadSpoilers(cache.getGeocode());
-                    cache.setSpoilers(spoilers);
-                }
-
-                if (loadFlags.contains(LoadFlag.LOGS)) {
-                    final Map<LogType, Integer> logCounts = loadLogCounts(cache.getGeocode());
-                    if (MapUtils.isNotEmpty(logCounts)) {
-                        cache.getLogCounts().clear();
-                        cache.getLogCounts().putAll(logCounts);
-                    }
-                }
-
-                if (loadFlags.contains(LoadFlag.INVENTORY)) {
-                    final List<Trackable> inventory = loadInventory(cache.getGeocode());
-                    if (CollectionUtils.isNotEmpty(inventory)) {
-                        cache.setInventory(inventory);
-                    }
-                }
-
                 if (loadFlags.contains(LoadFlag.OFFLINE_LOG)) {
                     if (logIndex < 0) {
                         logIndex = cursor.getColumnIndex("log");
                     }
                     cache.setLogOffline(!cursor.isNull(logIndex));
                 }
-                cache.addStorageLocation(StorageLocation.DATABASE);
-                cacheCache.putCacheInCache(cache);
-
-                caches.add(cache);
-            }
-
-            final Map<String, Set<Integer>> cacheLists = loadLists(geocodes);
-            for (final Geocache geocache : caches) {
-                final Set<Integer> listIds = cacheLists.get(geocache.getGeocode());
-                if (listIds != null) {
-                    geocache.setLists(listIds);
-                }
+                caches.put(cache.getGeocode(), cache);
             }
-            return caches;
         } finally {
             cursor.close();
         }
-    }
 
+        if (caches.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-    /**
-     * Builds a where for a viewport with the size enhanced by 50%.
-     *
-     */
+        // child tables are read once for the whole batch instead of once per cache
+        final Set<String> foundGeocodes = caches.keySet();
 
-    @NonNull
-    private static StringBuilder buildCoordinateWhere(final String dbTable, final Viewport viewport) {
-        return viewport.resize(1.5).sqlWhere(dbTable);
-    }
+        if (loadFlags.contains(LoadFlag.ATTRIBUTES)) {
+            final Map<String, List<String>> attributes = loadAttributes(foundGeocodes);
+            for (final Geocache cache : caches.values()) {
+                final List<String> cacheAttributes = attributes.get(cache.getGeocode());
+                cache.setAttributes(cacheAttributes != null ? cacheAttributes : new LinkedList<String>());
+            }
+        }
 
-    /**
-     * creates a Cache from the cursor. Doesn't next.
-     *
+        if (loadFlags.contains(LoadFlag.WAYPOINTS)) {
+            final Map<String, List<Waypoint>> waypoints = loadWaypoints(foundGeocodes);
+            for (final Entry<String, List<Waypoint>> entry : waypoints.entrySet()) {
+                final Geocache cache = caches.get(entry.getKey());
+                if (cache != null) {
+                    cache.setWaypoints(entry.getValue(), false);
+                }
+            }
+        }
+
+        if (loadFlags.contains(LoadFlag.SPOILERS)) {
+            final Map<String, List<Image>> spoilers = loadSpoilers(foundGeocodes);
+            for (final Geocache cache : caches.values()) {
+                final List<Image> cacheSpoilers = spoilers.get(cache.getGeocode());
+                cache.setSpoilers(cacheSpoilers != null ? cacheSpoilers : new LinkedList<Image>());
+            }
+        }
+
+        if (loadFlags.contains(LoadFlag.LOGS)) {
+            final Map<String, Map<LogType, Integer>> logCounts = loadLogCounts(foundGeocodes);
+            for (final Entry<String, Map<LogType, Integer>> entry : logCounts.entrySet()) {
+                final Geocache cache = caches.get(entry.getKey());
+                if (cache != null) {
+                    cache.getLogCounts().clear();
+                    cache.getLogCounts().putAll(entry.getValue());
+                }
+            }
+        }
+
+        if (loadFlags.contains(LoadFlag.INVENTORY)) {
+            final Map<String, List<Trackable>> inventory = loadInventory(foundGeocodes);
+            for (final Entry<String, List<Trackable>> entry : inventory.entrySet()) {
+                final Geocache cache = caches.get(entry.getKey());
+                if (cache != null) {
+                    cache.setInventory(entry.getValue());
+                }
+            }
+        }
+
+        final Map<String, Set<Integer>> cacheLists = loadLists(foundGeocodes);
+        for (final Geocache geocache : caches.values()) {
+            final Set<Integer> listIds = cacheLists.get(geocache.getGeocode());
+            if (listIds != null) {
+                geocache.setLists(listIds);
+            }
+            geocache.addStorageLocation(StorageLocation.DATABASE);
+            cacheCache.putCacheInCache(geocache);
+        }
+        return new HashSet<>(caches.values());
+    }
+
+    /**
+     * Load the rows of a child table for a batch of caches with a single query, grouped by geocode.
+     * At most {@code maxPerGeocode} rows are kept for every geocode, in the order given by {@code orderBy}.
+     *
+     * @param columns the columns to read, which must contain {@code geocode}
+     * @return a non-null map from geocode to the converted rows
+     */
+    @NonNull
+    private static <T> Map<String, List<T>> loadGroupedByGeocode(@NonNull final String table,
+                                                                 final String[] columns,
+                                                                 @NonNull final Collection<String> geocodes,
+                                                                 final String orderBy,
+                                                                 final int maxPerGeocode,
+                                                                 final Func1<? super Cursor, ? extends T> func) {
+        final Map<String, List<T>> result = new HashMap<>();
+        if (geocodes.isEmpty()) {
+            return result;
+        }
+        init();
+        final Cursor cursor = database.query(table, columns, whereGeocodeIn(geocodes).toString(), null, null, null, orderBy);
+        try {
+            final int geocodeIndex = cursor.getColumnIndexOrThrow("geocode");
+            while (cursor.moveToNext()) {
+                final String geocode = cursor.getString(geocodeIndex);
+                List<T> rows = result.get(geocode);
+                if (rows == null) {
+                    rows = new LinkedList<>();
+                    result.put(geocode, rows);
+                }
+                if (rows.size() < maxPerGeocode) {
+                    rows.add(func.call(cursor));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Builds a where for a viewport with the size enhanced by 50%. The R*Tree index of the table is used if available.
+     *
+     */
+
+    @NonNull
+    private static StringBuilder buildCoordinateWhere(final String dbTable, final Viewport viewport) {
+        final Viewport resized = viewport.resize(1.5);
+        if (!rTreeAvailable) {
+            return resized.sqlWhere(dbTable);
+        }
+        final String rTree = dbTable.equals(dbTableWaypoints) ? dbTableWaypointsRTree : dbTableCachesRTree;
+        return new StringBuilder(dbTable).append("._id in (select id from ").append(rTree)
+                .append(" where maxLat >= ").append(resized.getLatitudeMin())
+                .append(" and minLat <= ").append(resized.getLatitudeMax())
+                .append(" and maxLon >= ").append(resized.getLongitudeMin())
+                .append(" and minLon <= ").append(resized.getLongitudeMax())
+                .append(')');
+    }
+
+    /**
+     * creates a Cache from the cursor. Doesn't next.
+     *
      * @return Cache from DB
      */
     @NonNull
@@ -1866,6 +2454,7 @@ public class DataStore {
         if (StringUtils.isBlank(geocode)) {
             return null;
         }
+        pendingWrites.flush(Collections.singleton(geocode));
 
         return queryToColl(dbTableAttributes,
                 new String[]{"attribute"},
@@ -1877,6 +2466,16 @@ public class DataStore {
                 GET_STRING_0);
     }
 
+    @NonNull
+    private static Map<String, List<String>> loadAttributes(@NonNull final Collection<String> geocodes) {
+        return loadGroupedByGeocode(dbTableAttributes,
+                new String[]{"attribute", "geocode"},
+                geocodes,
+                null,
+                100,
+                GET_STRING_0);
+    }
+
     @Nullable
     public static Set<Integer> loadLists(final String geocode) {
         if (StringUtils.isBlank(geocode)) {
@@ -1957,6 +2556,7 @@ public class DataStore {
         if (StringUtils.isBlank(geocode)) {
             return null;
         }
+        pendingWrites.flush(Collections.singleton(geocode));
 
         return queryToColl(dbTableWaypoints,
                 WAYPOINT_COLUMNS,
@@ -1973,6 +2573,21 @@ public class DataStore {
                 });
     }
 
+    @NonNull
+    private static Map<String, List<Waypoint>> loadWaypoints(@NonNull final Collection<String> geocodes) {
+        return loadGroupedByGeocode(dbTableWaypoints,
+                WAYPOINT_COLUMNS,
+                geocodes,
+                "_id",
+                100,
+                new Func1<Cursor, Waypoint>() {
+                    @Override
+                    public Waypoint call(final Cursor cursor) {
+                        return createWaypointFromDatabaseContent(cursor);
+                    }
+                });
+    }
+
     @NonNull
     private static Waypoint createWaypointFromDatabaseContent(final Cursor cursor) {
         final String name = cursor.getString(cursor.getColumnIndex("name"));
@@ -1990,19 +2605,13 @@ public class DataStore {
         return waypoint;
     }
 
-    @Nullable
-    private static List<Image> loadSpoilers(final String geocode) {
-        if (StringUtils.isBlank(geocode)) {
-            return null;
-        }
-
-        return queryToColl(dbTableSpoilers,
-                new String[]{"url", "title", "description"},
-                "geocode = ?",
-                new String[]{geocode},
+    @NonNull
+    private static Map<String, List<Image>> loadSpoilers(@NonNull final Collection<String> geocodes) {
+        return loadGroupedByGeocode(dbTableSpoilers,
+                new String[]{"url", "title", "description", "geocode"},
+                geocodes,
                 null,
-                "100",
-                new LinkedList<Image>(),
+                100,
                 new Func1<Cursor, Image>() {
                     @Override
                     public Image call(final Cursor cursor) {
@@ -2069,10 +2678,11 @@ public class DataStore {
         init();
 
         final Cursor cursor = database.rawQuery(
-                //                           0       1      2      3    4      5      6                                                7       8      9     10     11
-                "SELECT cg_logs._id as cg_logs_id, type, author, log, date, found, friend, " + dbTableLogImages + "._id as cg_logImages_id, log_id, title, url, description"
+                //                           0       1      2      3    4      5      6                                                7       8      9     10     11           12
+                "SELECT cg_logs._id as cg_logs_id, type, author, log, date, found, friend, " + dbTableLogImages + "._id as cg_logImages_id, log_id, title, url, description, log_deflated"
                         + " FROM " + dbTableLogs + " LEFT OUTER JOIN " + dbTableLogImages
-                        + " ON ( cg_logs._id = log_id ) WHERE geocode = ?  ORDER BY date desc, cg_logs._id asc", new String[]{geocode});
+                        + " ON ( cg_logs._id = log_id ) LEFT OUTER JOIN " + dbTableLogTexts + " ON ( cg_logs._id = " + dbTableLogTexts + "._id )"
+                        + " WHERE geocode = ?  ORDER BY date desc, cg_logs._id asc", new String[]{geocode});
 
         LogEntry.Builder log = null;
         while (cursor.moveToNext() && logs.size() < 100) {
@@ -2085,7 +2695,7 @@ public class DataStore {
                         .setAuthor(cursor.getString(2))
                         .setDate(cursor.getLong(4))
                         .setLogType(LogType.getById(cursor.getInt(1)))
-                        .setLog(cursor.getString(3))
+                        .setLog(getText(cursor, 3, 12))
                         .setId(cursor.getInt(0))
                         .setFound(cursor.getInt(5))
                         .setFriend(cursor.getInt(6) == 1);
@@ -2135,33 +2745,54 @@ public class DataStore {
         return logCounts;
     }
 
-    @Nullable
-    private static List<Trackable> loadInventory(final String geocode) {
-        if (StringUtils.isBlank(geocode)) {
-            return null;
+    @NonNull
+    private static Map<String, Map<LogType, Integer>> loadLogCounts(@NonNull final Collection<String> geocodes) {
+        final Map<String, Map<LogType, Integer>> logCounts = new HashMap<>();
+        if (geocodes.isEmpty()) {
+            return logCounts;
         }
 
         init();
 
-        final List<Trackable> trackables = new ArrayList<>();
-
         final Cursor cursor = database.query(
-                dbTableTrackables,
-                new String[]{"_id", "updated", "tbcode", "guid", "title", "owner", "released", "goal", "description"},
-                "geocode = ?",
-                new String[]{geocode},
+                dbTableLogCount,
+                new String[]{"type", "count", "geocode"},
+                whereGeocodeIn(geocodes).toString(),
                 null,
                 null,
-                "title COLLATE NOCASE ASC",
-                "100");
+                null,
+                null);
 
-        while (cursor.moveToNext()) {
-            trackables.add(createTrackableFromDatabaseContent(cursor));
+        try {
+            while (cursor.moveToNext()) {
+                final String geocode = cursor.getString(2);
+                Map<LogType, Integer> counts = logCounts.get(geocode);
+                if (counts == null) {
+                    counts = new EnumMap<>(LogType.class);
+                    logCounts.put(geocode, counts);
+                }
+                counts.put(LogType.getById(cursor.getInt(0)), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
         }
 
-        cursor.close();
+        return logCounts;
+    }
 
-        return trackables;
+    @NonNull
+    private static Map<String, List<Trackable>> loadInventory(@NonNull final Collection<String> geocodes) {
+        return loadGroupedByGeocode(dbTableTrackables,
+                new String[]{"_id", "updated", "tbcode", "guid", "title", "owner", "released", "goal", "description", "geocode"},
+                geocodes,
+                "title COLLATE NOCASE ASC",
+                100,
+                new Func1<Cursor, Trackable>() {
+                    @Override
+                    public Trackable call(final Cursor cursor) {
+                        return createTrackableFromDatabaseContent(cursor);
+                    }
+                });
     }
 
     @Nullable
@@ -2223,6 +2854,7 @@ public class DataStore {
             throw new IllegalArgumentException("list must be > 0");
         }
         init();
+        pendingWrites.flushListChanges();
 
         try {
             final SQLiteStatement compiledStmnt;
@@ -2241,7 +2873,7 @@ public class DataStore {
                 } else {
                     compiledStmnt = PreparedStatement.COUNT_TYPE_LIST.getStatement();
                     compiledStmnt.bindString(1, cacheType.id);
-                    compiledStmnt.bindLong(1, list);
+                    compiledStmnt.bindLong(2, list);
                 }
 
                 return (int) compiledStmnt.simpleQueryForLong();
@@ -2255,6 +2887,7 @@ public class DataStore {
 
     public static int getAllHistoryCachesCount() {
         init();
+        pendingWrites.flushVisitDates();
 
         try {
             return (int) PreparedStatement.HISTORY_COUNT.simpleQueryForLong();
@@ -2291,25 +2924,30 @@ public class DataStore {
     }
 
     /**
-     * Return a batch of stored geocodes.
+     * Return a page of stored geocodes, ordered by distance to the given coordinates or by geocode. The page starts
+     * behind the given sort key (keyset pagination), so that reading a page does not step over all previous pages. The
+     * previous caches need not exist anymore.
      *
      * @param coords
      *            the current coordinates to sort by distance, or null to sort by geocode
-     * @return a non-null set of geocodes
+     * @param after
+     *            the sort key of the last cache of the previous page, or null for the first page
+     * @param limit
+     *            the maximum number of geocodes, or 0 for all remaining geocodes
+     * @return a non-null list of the sort keys of the caches in sort order
      */
     @NonNull
-    private static Set<String> loadBatchOfStoredGeocodes(final Geopoint coords, final CacheType cacheType, final int listId) {
-        if (cacheType == null) {
-            throw new IllegalArgumentException("cacheType must not be null");
-        }
+    static List<StoredCachesPager.SortKey> loadStoredGeocodesPage(@Nullable final Geopoint coords, @NonNull final CacheType cacheType, final int listId,
+                                                                  @Nullable final StoredCachesPager.SortKey after, final int limit) {
+        pendingWrites.flushListChanges();
         final StringBuilder selection = new StringBuilder();
+        final List<String> selectionArgs = new ArrayList<>();
 
         selection.append(" detailed = 1 ");
 
-        String[] selectionArgs = null;
         if (cacheType != CacheType.ALL) {
             selection.append(" and type = ?");
-            selectionArgs = new String[] { String.valueOf(cacheType.id) };
+            selectionArgs.add(cacheType.id);
         }
 
         selection.append(" and geocode in (SELECT geocode FROM ");
@@ -2318,35 +2956,43 @@ public class DataStore {
         selection.append(listId != PseudoList.ALL_LIST.id ? "=" + Math.max(listId, 1) : ">= " + StoredList.STANDARD_LIST_ID);
         selection.append(')');
 
-
-        try {
+        // the distance is counted in whole microdegrees, so that the key of the last cache can be written into the
+        // next query unchanged, caches without coordinates are sorted first, as before
+        final String distance = coords != null ? "ifnull(cast(round((abs(latitude-" + String.format((Locale) null, "%.6f", coords.getLatitude()) +
+                ") + abs(longitude-" + String.format((Locale) null, "%.6f", coords.getLongitude()) + ")) * 1000000) as integer), -1)" : "0";
+        if (after != null) {
             if (coords != null) {
-                return queryToColl(dbTableCaches,
-                        new String[]{"geocode", "(abs(latitude-" + String.format((Locale) null, "%.6f", coords.getLatitude()) +
-                                ") + abs(longitude-" + String.format((Locale) null, "%.6f", coords.getLongitude()) + ")) as dif"},
-                        selection.toString(),
-                        selectionArgs,
-                        "dif",
-                        null,
-                        new HashSet<String>(),
-                        GET_STRING_0);
+                selection.append(" and (").append(distance).append(" > ").append(after.distance)
+                        .append(" or (").append(distance).append(" = ").append(after.distance).append(" and geocode > ?))");
+            } else {
+                selection.append(" and geocode > ?");
             }
+            selectionArgs.add(after.geocode);
+        }
+
+        try {
             return queryToColl(dbTableCaches,
-                    new String[] { "geocode" },
+                    new String[] { "geocode", distance },
                     selection.toString(),
-                    selectionArgs,
-                    "geocode",
-                    null,
-                    new HashSet<String>(),
-                    GET_STRING_0);
+                    selectionArgs.toArray(new String[selectionArgs.size()]),
+                    coords != null ? distance + ", geocode" : "geocode",
+                    limit > 0 ? String.valueOf(limit) : null,
+                    new ArrayList<StoredCachesPager.SortKey>(),
+                    new Func1<Cursor, StoredCachesPager.SortKey>() {
+                        @Override
+                        public StoredCachesPager.SortKey call(final Cursor cursor) {
+                            return new StoredCachesPager.SortKey(cursor.getString(0), cursor.getLong(1));
+                        }
+                    });
         } catch (final Exception e) {
-            Log.e("DataStore.loadBatchOfStoredGeocodes", e);
-            return Collections.emptySet();
+            Log.e("DataStore.loadStoredGeocodesPage", e);
+            return Collections.emptyList();
         }
     }
 
     @NonNull
     private static Set<String> loadBatchOfHistoricGeocodes(final boolean detailedOnly, final CacheType cacheType) {
+        pendingWrites.flushVisitDates();
         final StringBuilder selection = new StringBuilder("visiteddate > 0");
 
         if (detailedOnly) {
@@ -2396,6 +3042,9 @@ public class DataStore {
      */
     @NonNull
     private static SearchResult loadInViewport(final boolean stored, final Viewport viewport, final CacheType cacheType) {
+        if (stored) {
+            pendingWrites.flushListChanges();
+        }
         final Set<String> geocodes = new HashSet<>();
 
         // if not stored only, get codes from CacheCache as well
@@ -2434,6 +3083,90 @@ public class DataStore {
         return new SearchResult();
     }
 
+    /**
+     * Load the summaries of the caches in a viewport from CacheCache and database, like
+     * {@link #loadCachedInViewport(Viewport, CacheType)}.
+     */
+    @NonNull
+    public static List<GeocacheSummary> loadCachedSummariesInViewport(final Viewport viewport, final CacheType cacheType) {
+        return loadSummaries(loadInViewport(false, viewport, cacheType).getGeocodes());
+    }
+
+    /**
+     * Load the summaries of the stored caches in a viewport, like {@link #loadStoredInViewport(Viewport, CacheType)}.
+     */
+    @NonNull
+    public static List<GeocacheSummary> loadStoredSummariesInViewport(final Viewport viewport, final CacheType cacheType) {
+        return loadSummaries(loadInViewport(true, viewport, cacheType).getGeocodes());
+    }
+
+    /**
+     * Load the summaries of caches from the database, or from the CacheCache for caches not stored in the database.
+     * This reads much less than loading the caches with {@link LoadFlags#LOAD_WAYPOINTS} and is meant for showing
+     * many caches at once.
+     *
+     * @return the summaries of the caches found, in no particular order
+     */
+    @NonNull
+    public static List<GeocacheSummary> loadSummaries(@NonNull final Collection<String> geocodes) {
+        final List<GeocacheSummary> summaries = new ArrayList<>(geocodes.size());
+        if (geocodes.isEmpty()) {
+            return summaries;
+        }
+        pendingWrites.flush(geocodes);
+        init();
+
+        final Set<String> remaining = new HashSet<>(geocodes.size());
+        for (final String geocode : geocodes) {
+            remaining.add(StringUtils.upperCase(geocode));
+        }
+        final Cursor cursor = database.rawQuery(QUERY_SUMMARY_DATA + " WHERE cg_caches." + whereGeocodeIn(geocodes), null);
+        try {
+            // the connectors decide about the ownership on a cache, this one is only filled with the owner
+            final Geocache ownerCheck = new Geocache();
+            while (cursor.moveToNext()) {
+                final String geocode = cursor.getString(0);
+                if (!remaining.remove(geocode)) {
+                    // duplicate row of the join with the offline logs
+                    continue;
+                }
+                final IConnector connector = ConnectorFactory.getConnector(geocode);
+                ownerCheck.setGeocode(geocode);
+                ownerCheck.setOwnerDisplayName(cursor.getString(8));
+                ownerCheck.setOwnerUserId(cursor.getString(9));
+                final boolean logOffline = !cursor.isNull(18);
+                summaries.add(new GeocacheSummary.Builder(geocode)
+                        .setName(cursor.getString(1))
+                        .setType(CacheType.getById(cursor.getString(2)))
+                        .setSize(CacheSize.getById(cursor.getString(3)))
+                        .setCoords(getCoords(cursor, 4, 5))
+                        .setDifficulty(cursor.getFloat(6))
+                        .setTerrain(cursor.getFloat(7))
+                        .setOwner(connector.isOwner(ownerCheck))
+                        .setFound(cursor.getInt(10) == 1)
+                        .setDisabled(cursor.getInt(11) == 1)
+                        .setArchived(cursor.getInt(12) == 1)
+                        .setReliableLatLon(connector.isReliableLatLon(cursor.getInt(13) > 0))
+                        .setUserModifiedCoords(cursor.getInt(14) > 0)
+                        .setFinalDefined(cursor.getInt(15) > 0)
+                        .setPersonalNote(cursor.getInt(16) > 0)
+                        .setStored(cursor.getInt(17) > 0)
+                        .setLogOffline(logOffline, logOffline ? LogType.getById(cursor.getInt(18)) : null)
+                        .build());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (final String geocode : remaining) {
+            final Geocache cache = cacheCache.getCacheFromCache(geocode);
+            if (cache != null) {
+                summaries.add(GeocacheSummary.of(cache));
+            }
+        }
+        return summaries;
+    }
+
     /**
      * Remove caches which are not on any list in the background. Once it has been executed once it will not do anything.
      * This must be called from the UI thread to ensure synchronization of an internal variable.
@@ -2449,33 +3182,13 @@ public class DataStore {
             public void call() {
                 Log.d("Database clean: started");
                 try {
-                    final int version = Version.getVersionCode(context);
-                    final Set<String> geocodes = new HashSet<>();
-                    if (version != Settings.getVersion()) {
-                        queryToColl(dbTableCaches,
-                                new String[]{"geocode"},
-                                "geocode NOT IN (SELECT distinct (geocode) FROM " + dbTableCachesLists + ")",
-                                null,
-                                null,
-                                null,
-                                geocodes,
-                                GET_STRING_0);
-                    } else {
-                        final long timestamp = System.currentTimeMillis() - DAYS_AFTER_CACHE_IS_DELETED;
-                        final String timestampString = Long.toString(timestamp);
-                        queryToColl(dbTableCaches,
-                                new String[]{"geocode"},
-                                "detailed < ? and detailedupdate < ? and visiteddate < ? and geocode NOT IN (SELECT distinct (geocode) FROM " + dbTableCachesLists + ")",
-                                new String[]{timestampString, timestampString, timestampString},
-                                null,
-                                null,
-                                geocodes,
-                                GET_STRING_0);
-                    }
+                    init();
+                    reconcileListCounts(database);
 
-                    final Set<String> withoutOfflineLogs = exceptCachesWithOfflineLog(geocodes);
-                    Log.d("Database clean: removing " + withoutOfflineLogs.size() + " geocaches");
-                    removeCaches(withoutOfflineLogs, LoadFlags.REMOVE_ALL);
+                    final int version = Version.getVersionCode(context);
+                    final boolean versionChanged = version != Settings.getVersion();
+                    final int removed = removeStaleCaches(versionChanged);
+                    Log.d("Database clean: removed " + removed + " geocaches");
 
                     // This cleanup needs to be kept in place for about one year so that older log images records are
                     // cleaned. TO BE REMOVED AFTER 2015-03-24.
@@ -2502,32 +3215,149 @@ public class DataStore {
     }
 
     /**
-     * remove all geocodes from the given list of geocodes where an offline log exists
+     * Delete the given caches and all their rows in the dependent tables (attributes, spoilers, logs and their
+     * images, log counts, offline logs, waypoints and trackables) in a single transaction. The cache cache and the
+     * cache directories are left to the caller.
      *
+     * @param geocodes
+     *            the geocodes of the caches to delete
+     * @param withOwnWaypoints
+     *            {@code true} to delete the user defined waypoints of the caches too
      */
-    @NonNull
-    private static Set<String> exceptCachesWithOfflineLog(@NonNull final Set<String> geocodes) {
-        if (geocodes.isEmpty()) {
-            return geocodes;
+    private static void deleteCachesFromDatabase(@NonNull final Collection<String> geocodes, final boolean withOwnWaypoints) {
+        final ArrayList<String> quotedGeocodes = new ArrayList<>(geocodes.size());
+        for (final String geocode : geocodes) {
+            quotedGeocodes.add(DatabaseUtils.sqlEscapeString(geocode));
+        }
+        final String geocodeList = StringUtils.join(quotedGeocodes.toArray(), ',');
+        final String baseWhereClause = "geocode in (" + geocodeList + ")";
+        database.beginTransaction();
+        try {
+            database.delete(dbTableCaches, baseWhereClause, null);
+            database.delete(dbTableAttributes, baseWhereClause, null);
+            database.delete(dbTableSpoilers, baseWhereClause, null);
+            database.delete(dbTableLogImages, "log_id IN (SELECT _id FROM " + dbTableLogs + " WHERE " + baseWhereClause + ")", null);
+            database.delete(dbTableLogs, baseWhereClause, null);
+            database.delete(dbTableLogCount, baseWhereClause, null);
+            database.delete(dbTableLogsOffline, baseWhereClause, null);
+            String wayPointClause = baseWhereClause;
+            if (!withOwnWaypoints) {
+                wayPointClause += " and type <> 'own'";
+            }
+            database.delete(dbTableWaypoints, wayPointClause, null);
+            database.delete(dbTableTrackables, baseWhereClause, null);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
         }
+    }
 
-        final List<String> geocodesWithOfflineLog = queryToColl(dbTableLogsOffline,
-                new String[] { "geocode" },
-                null,
-                null,
-                null,
-                null,
-                new LinkedList<String>(),
-                GET_STRING_0);
-        geocodes.removeAll(geocodesWithOfflineLog);
-        return geocodes;
+    /**
+     * Remove the caches which are not stored on any list and have no offline log, in chunks of
+     * {@link #CLEAN_CHUNK_SIZE} caches with a pause between them, so that other database users are not blocked for a
+     * long time. The directories of the removed caches are deleted by the {@link #purgeWorker}.
+     *
+     * @param versionChanged
+     *            {@code true} to remove all such caches after a version change, which is resumed from the last chunk
+     *            if it was interrupted, {@code false} to remove only the ones not used for some days
+     * @return the number of removed caches
+     */
+    private static int removeStaleCaches(final boolean versionChanged) {
+        init();
+        pendingWrites.flush();
+        final String timestamp = Long.toString(System.currentTimeMillis() - DAYS_AFTER_CACHE_IS_DELETED);
+        final String query = "SELECT c._id, c.geocode FROM " + dbTableCaches + " c"
+                + " LEFT JOIN " + dbTableCachesLists + " l ON l.geocode = c.geocode"
+                + " LEFT JOIN " + dbTableLogsOffline + " o ON o.geocode = c.geocode"
+                + " WHERE l.geocode IS NULL AND o.geocode IS NULL AND c._id > ?"
+                + (versionChanged ? "" : " AND c.detailed < ? AND c.detailedupdate < ? AND c.visiteddate < ?")
+                + " ORDER BY c._id LIMIT " + CLEAN_CHUNK_SIZE;
+        long lastId = versionChanged ? Settings.getDatabaseCleanProgress() : 0;
+        int removed = 0;
+        while (true) {
+            final String[] args = versionChanged ? new String[] { Long.toString(lastId) } : new String[] { Long.toString(lastId), timestamp, timestamp, timestamp };
+            final Set<String> geocodes = new HashSet<>();
+            final Cursor cursor = database.rawQuery(query, args);
+            try {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    geocodes.add(cursor.getString(1));
+                }
+            } finally {
+                cursor.close();
+            }
+            if (geocodes.isEmpty()) {
+                break;
+            }
+
+            for (final String geocode : geocodes) {
+                cacheCache.removeCacheFromCache(geocode);
+            }
+            deleteCachesFromDatabase(geocodes, false);
+            purgeCacheDirectories(geocodes);
+            removed += geocodes.size();
+            if (versionChanged) {
+                Settings.setDatabaseCleanProgress(lastId);
+            }
+            Log.d("Database clean: removed " + removed + " geocaches so far");
+
+            try {
+                Thread.sleep(CLEAN_CHUNK_PAUSE);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w("Database clean: interrupted");
+                return removed;
+            }
+        }
+        if (versionChanged) {
+            Settings.setDatabaseCleanProgress(0);
+        }
+        return removed;
+    }
+
+    /**
+     * Delete the directories of removed caches in the background, unless a cache has been stored again meanwhile.
+     */
+    private static void purgeCacheDirectories(@NonNull final Collection<String> geocodes) {
+        final List<String> toPurge = new ArrayList<>(geocodes);
+        purgeWorker.schedule(new Action0() {
+            @Override
+            public void call() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                final SQLiteStatement select = PreparedStatement.CHECK_IF_PRESENT.getStatement();
+                for (final String geocode : toPurge) {
+                    synchronized (select) {
+                        select.bindString(1, geocode);
+                        if (select.simpleQueryForLong() > 0) {
+                            continue;
+                        }
+                    }
+                    FileUtils.deleteDirectory(LocalStorage.getStorageDir(geocode));
+                }
+            }
+        });
     }
 
     public static void removeAllFromCache() {
+        // the changes are only readable from the CacheCache until they have been written
+        pendingWrites.flush();
         // clean up CacheCache
         cacheCache.removeAllFromCache();
     }
 
+    /**
+     * Release memory of the CacheCache according to one of the {@code TRIM_MEMORY_*} levels of
+     * {@link android.content.ComponentCallbacks2}.
+     */
+    @SuppressLint("InlinedApi")
+    public static void trimCacheCache(final int level) {
+        // the readers of the database flush the pending writes themselves, this is only a good moment to write them
+        pendingWrites.flushInBackground();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cacheCache.trimMemory(level);
+        }
+    }
+
     public static void removeCache(final String geocode, final EnumSet<LoadFlags.RemoveFlag> removeFlags) {
         removeCaches(Collections.singleton(geocode), removeFlags);
     }
@@ -2544,6 +3374,7 @@ public class DataStore {
         }
 
         init();
+        pendingWrites.flush(geocodes);
 
         if (removeFlags.contains(RemoveFlag.CACHE)) {
             for (final String geocode : geocodes) {
@@ -2552,32 +3383,7 @@ public class DataStore {
         }
 
         if (removeFlags.contains(RemoveFlag.DB)) {
-            // Drop caches from the database
-            final ArrayList<String> quotedGeocodes = new ArrayList<>(geocodes.size());
-            for (final String geocode : geocodes) {
-                quotedGeocodes.add(DatabaseUtils.sqlEscapeString(geocode));
-            }
-            final String geocodeList = StringUtils.join(quotedGeocodes.toArray(), ',');
-            final String baseWhereClause = "geocode in (" + geocodeList + ")";
-            database.beginTransaction();
-            try {
-                database.delete(dbTableCaches, baseWhereClause, null);
-                database.delete(dbTableAttributes, baseWhereClause, null);
-                database.delete(dbTableSpoilers, baseWhereClause, null);
-                database.delete(dbTableLogImages, "log_id IN (SELECT _id FROM " + dbTableLogs + " WHERE " + baseWhereClause + ")", null);
-                database.delete(dbTableLogs, baseWhereClause, null);
-                database.delete(dbTableLogCount, baseWhereClause, null);
-                database.delete(dbTableLogsOffline, baseWhereClause, null);
-                String wayPointClause = baseWhereClause;
-                if (!removeFlags.contains(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING)) {
-                    wayPointClause += " and type <> 'own'";
-                }
-                database.delete(dbTableWaypoints, wayPointClause, null);
-                database.delete(dbTableTrackables, baseWhereClause, null);
-                database.setTransactionSuccessful();
-            } finally {
-                database.endTransaction();
-            }
+            deleteCachesFromDatabase(geocodes, removeFlags.contains(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING));
 
             // Delete cache directories
             for (final String geocode : geocodes) {
@@ -2696,6 +3502,7 @@ public class DataStore {
         }
 
         init();
+        pendingWrites.flush(geocodes);
 
         database.beginTransaction();
         try {
@@ -2714,6 +3521,7 @@ public class DataStore {
     @NonNull
     public static List<StoredList> getLists() {
         init();
+        pendingWrites.flushListChanges();
 
         final Resources res = CgeoApplication.getInstance().getResources();
         final List<StoredList> lists = new ArrayList<>();
@@ -2750,6 +3558,7 @@ public class DataStore {
     @NonNull
     public static StoredList getList(final int id) {
         init();
+        pendingWrites.flushListChanges();
         if (id >= customListIdOffset) {
             final Cursor cursor = database.query(
                     dbTableLists,
@@ -2775,6 +3584,7 @@ public class DataStore {
     }
 
     public static int getAllCachesCount() {
+        pendingWrites.flushListChanges();
         return (int) PreparedStatement.COUNT_ALL_CACHES.simpleQueryForLong();
     }
 
@@ -2858,6 +3668,7 @@ public class DataStore {
         }
 
         init();
+        pendingWrites.flushListChanges();
 
         database.beginTransaction();
         boolean status = false;
@@ -2896,33 +3707,17 @@ public class DataStore {
         if (!list.isConcrete()) {
             return;
         }
-        init();
-
-        final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_LIST.getStatement();
-        final SQLiteStatement add = PreparedStatement.ADD_TO_LIST.getStatement();
-
-        database.beginTransaction();
-        try {
-            for (final Geocache cache : caches) {
-                remove.bindLong(1, oldListId);
-                remove.bindString(2, cache.getGeocode());
-                remove.execute();
-
-                add.bindLong(1, newListId);
-                add.bindString(2, cache.getGeocode());
-                add.execute();
 
-                cache.getLists().remove(oldListId);
-                cache.getLists().add(newListId);
-            }
-            database.setTransactionSuccessful();
-        } finally {
-            database.endTransaction();
+        for (final Geocache cache : caches) {
+            cache.getLists().remove(oldListId);
+            cache.getLists().add(newListId);
+            pendingWrites.moveToList(cache.getGeocode(), oldListId, newListId);
         }
     }
 
     public static void removeFromList(final Collection<Geocache> caches, final int oldListId) {
         init();
+        pendingWrites.flush(Geocache.getGeocodes(caches));
 
         final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_LIST.getStatement();
 
@@ -2952,6 +3747,7 @@ public class DataStore {
             return;
         }
         init();
+        pendingWrites.flush(Geocache.getGeocodes(caches));
 
         final SQLiteStatement add = PreparedStatement.ADD_TO_LIST.getStatement();
 
@@ -2974,36 +3770,17 @@ public class DataStore {
         if (caches.isEmpty()) {
             return;
         }
-        init();
-
-        final SQLiteStatement add = PreparedStatement.ADD_TO_LIST.getStatement();
-        final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_ALL_LISTS.getStatement();
-
-        database.beginTransaction();
-        try {
-            for (final Geocache cache : caches) {
-                remove.bindString(1, cache.getGeocode());
-                remove.execute();
-                cache.getLists().clear();
-
-                for (final Integer listId : listIds) {
-                    final AbstractList list = AbstractList.getListById(listId);
-                    if (list == null) {
-                        return;
-                    }
-                    if (!list.isConcrete()) {
-                        return;
-                    }
-                    add.bindLong(1, listId);
-                    add.bindString(2, cache.getGeocode());
-                    add.execute();
-
-                    cache.getLists().add(listId);
-                }
+        for (final Integer listId : listIds) {
+            final AbstractList list = AbstractList.getListById(listId);
+            if (list == null || !list.isConcrete()) {
+                return;
             }
-            database.setTransactionSuccessful();
-        } finally {
-            database.endTransaction();
+        }
+
+        for (final Geocache cache : caches) {
+            cache.getLists().clear();
+            cache.getLists().addAll(listIds);
+            pendingWrites.setLists(cache.getGeocode(), listIds);
         }
     }
 
@@ -3012,6 +3789,7 @@ public class DataStore {
             return;
         }
         init();
+        pendingWrites.flush(Geocache.getGeocodes(caches));
 
         final SQLiteStatement add = PreparedStatement.ADD_TO_LIST.getStatement();
 
@@ -3060,6 +3838,187 @@ public class DataStore {
         return false;
     }
 
+    /**
+     * Receives the caches streamed by {@link #exportCaches(Collection, CacheExportVisitor)}.
+     */
+    public interface CacheExportVisitor {
+
+        /**
+         * @param cache
+         *            the cache with its texts, attributes, waypoints and inventory, but without logs. Its trackables
+         *            only have a geocode and a name.
+         * @param logs
+         *            the logs of the cache in the order of {@link #loadLogs(String)}, without images. The iterator
+         *            reads from the database and is only valid during this call.
+         */
+        void visit(@NonNull Geocache cache, @NonNull Iterator<LogEntry> logs) throws IOException;
+    }
+
+    /**
+     * Stream stored caches for an export, ordered by geocode. Instead of loading every cache with its child tables
+     * separately, the caches, attributes, waypoints, trackables and logs of a chunk of geocodes are each read with one
+     * cursor ordered by geocode, and the cursors are joined while iterating. Only the cache currently visited is kept
+     * in memory.
+     *
+     * @param geocodes
+     *            geocodes of the caches to export, geocodes of caches not being stored are ignored
+     * @param visitor
+     *            called for every cache
+     */
+    public static void exportCaches(@NonNull final Collection<String> geocodes, @NonNull final CacheExportVisitor visitor) throws IOException {
+        init();
+        pendingWrites.flush(geocodes);
+        final List<String> allGeocodes = new ArrayList<>(geocodes);
+        for (int start = 0; start < allGeocodes.size(); start += EXPORT_CHUNK_SIZE) {
+            exportChunk(allGeocodes.subList(start, Math.min(start + EXPORT_CHUNK_SIZE, allGeocodes.size())), visitor);
+        }
+    }
+
+    private static void exportChunk(@NonNull final List<String> geocodes, @NonNull final CacheExportVisitor visitor) throws IOException {
+        final String where = whereGeocodeIn(geocodes).toString();
+        final Cursor caches = database.rawQuery(QUERY_CACHE_DATA + ",cg_caches.description,cg_caches.shortdesc,description_deflated,shortdesc_deflated FROM " + dbTableCaches
+                + " LEFT OUTER JOIN " + dbTableCacheTexts + " ON ( " + dbTableCaches + ".geocode = " + dbTableCacheTexts + ".geocode )"
+                + " WHERE " + dbTableCaches + '.' + where + " ORDER BY " + dbTableCaches + ".geocode", null);
+        final OrderedCursor attributes = new OrderedCursor(database.query(dbTableAttributes,
+                new String[]{"attribute", "geocode"}, where, null, null, null, "geocode, _id"));
+        final OrderedCursor waypoints = new OrderedCursor(database.query(dbTableWaypoints,
+                WAYPOINT_COLUMNS, where, null, null, null, "geocode, _id"));
+        final OrderedCursor trackables = new OrderedCursor(database.query(dbTableTrackables,
+                new String[]{"tbcode", "title", "geocode"}, where, null, null, null, "geocode, title COLLATE NOCASE ASC"));
+        final OrderedCursor logs = new OrderedCursor(database.rawQuery("SELECT " + dbTableLogs + "._id, type, author, log, date, found, friend, geocode, log_deflated FROM " + dbTableLogs
+                + " LEFT OUTER JOIN " + dbTableLogTexts + " ON ( " + dbTableLogs + "._id = " + dbTableLogTexts + "._id )"
+                + " WHERE " + dbTableLogs + '.' + where + " ORDER BY geocode, date desc, " + dbTableLogs + "._id asc", null));
+        try {
+            while (caches.moveToNext()) {
+                final Geocache cache = createCacheFromDatabaseContent(caches);
+                final String geocode = cache.getGeocode();
+                cache.setHint(StringUtils.defaultString(caches.getString(13)));
+                cache.setLocation(StringUtils.defaultString(caches.getString(19)));
+                cache.setDescription(StringUtils.defaultString(getText(caches, 43, 45)));
+                cache.setShortDescription(StringUtils.defaultString(getText(caches, 44, 46)));
+
+                final List<String> cacheAttributes = new LinkedList<>();
+                for (boolean found = attributes.seek(geocode); found && cacheAttributes.size() < 100; found = attributes.next(geocode)) {
+                    cacheAttributes.add(attributes.cursor.getString(0));
+                }
+                cache.setAttributes(cacheAttributes);
+
+                final List<Waypoint> cacheWaypoints = new LinkedList<>();
+                for (boolean found = waypoints.seek(geocode); found && cacheWaypoints.size() < 100; found = waypoints.next(geocode)) {
+                    cacheWaypoints.add(createWaypointFromDatabaseContent(waypoints.cursor));
+                }
+                cache.setWaypoints(cacheWaypoints, false);
+
+                final List<Trackable> inventory = new ArrayList<>();
+                for (boolean found = trackables.seek(geocode); found && inventory.size() < 100; found = trackables.next(geocode)) {
+                    // only the fields needed for an export, especially without the logs of the trackable
+                    final Trackable trackable = new Trackable();
+                    trackable.setGeocode(trackables.cursor.getString(0));
+                    trackable.setName(trackables.cursor.getString(1));
+                    inventory.add(trackable);
+                }
+                if (!inventory.isEmpty()) {
+                    cache.setInventory(inventory);
+                }
+
+                visitor.visit(cache, new ExportLogIterator(logs, geocode));
+            }
+        } finally {
+            caches.close();
+            attributes.cursor.close();
+            waypoints.cursor.close();
+            trackables.cursor.close();
+            logs.cursor.close();
+        }
+    }
+
+    /**
+     * Cursor over a child table, ordered by geocode, which is moved forward in step with the cache cursor of an export.
+     */
+    private static final class OrderedCursor {
+        private final Cursor cursor;
+        private final int geocodeIndex;
+        private boolean valid;
+
+        OrderedCursor(@NonNull final Cursor cursor) {
+            this.cursor = cursor;
+            geocodeIndex = cursor.getColumnIndexOrThrow("geocode");
+            valid = cursor.moveToFirst();
+        }
+
+        /**
+         * Move to the first row of the given geocode, skipping all rows of smaller geocodes.
+         *
+         * @return {@code true} if the cursor is positioned on a row of the geocode
+         */
+        boolean seek(@NonNull final String geocode) {
+            while (valid && cursor.getString(geocodeIndex).compareTo(geocode) < 0) {
+                valid = cursor.moveToNext();
+            }
+            return isAt(geocode);
+        }
+
+        /**
+         * Move to the next row.
+         *
+         * @return {@code true} if the cursor is positioned on another row of the geocode
+         */
+        boolean next(@NonNull final String geocode) {
+            valid = cursor.moveToNext();
+            return isAt(geocode);
+        }
+
+        boolean isAt(@NonNull final String geocode) {
+            return valid && geocode.equals(cursor.getString(geocodeIndex));
+        }
+    }
+
+    /**
+     * Reads the logs of one cache from the ordered log cursor of an export, at most as many as {@link #loadLogs(String)}.
+     */
+    private static final class ExportLogIterator implements Iterator<LogEntry> {
+        private final OrderedCursor logs;
+        private final String geocode;
+        private boolean hasNext;
+        private int count = 0;
+
+        ExportLogIterator(@NonNull final OrderedCursor logs, @NonNull final String geocode) {
+            this.logs = logs;
+            this.geocode = geocode;
+            hasNext = logs.seek(geocode);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext && count < 100;
+        }
+
+        @Override
+        public LogEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Cursor cursor = logs.cursor;
+            final LogEntry log = new LogEntry.Builder()
+                    .setAuthor(cursor.getString(2))
+                    .setDate(cursor.getLong(4))
+                    .setLogType(LogType.getById(cursor.getInt(1)))
+                    .setLog(getText(cursor, 3, 8))
+                    .setId(cursor.getInt(0))
+                    .setFound(cursor.getInt(5))
+                    .setFriend(cursor.getInt(6) == 1)
+                    .build();
+            count++;
+            hasNext = logs.next(geocode);
+            return log;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     /**
      * Load the lazily initialized fields of a cache and return them as partial cache (all other fields unset).
      *
@@ -3075,21 +4034,18 @@ public class DataStore {
         partial.setLocation(StringUtils.EMPTY);
 
         init();
+        pendingWrites.flush(Collections.singleton(geocode));
 
         try {
-            final Cursor cursor = database.query(
-                    dbTableCaches,
-                    new String[] { "description", "shortdesc", "hint", "location" },
-                    "geocode = ?",
-                    new String[] { geocode },
-                    null,
-                    null,
-                    null,
-                    "1");
+            final Cursor cursor = database.rawQuery(
+                    "SELECT description, shortdesc, hint, location, description_deflated, shortdesc_deflated FROM " + dbTableCaches
+                            + " LEFT OUTER JOIN " + dbTableCacheTexts + " ON ( " + dbTableCaches + ".geocode = " + dbTableCacheTexts + ".geocode )"
+                            + " WHERE " + dbTableCaches + ".geocode = ? LIMIT 1",
+                    new String[] { geocode });
 
             if (cursor.moveToFirst()) {
-                partial.setDescription(StringUtils.defaultString(cursor.getString(0)));
-                partial.setShortDescription(StringUtils.defaultString(cursor.getString(1)));
+                partial.setDescription(StringUtils.defaultString(getText(cursor, 0, 4)));
+                partial.setShortDescription(StringUtils.defaultString(getText(cursor, 1, 5)));
                 partial.setHint(StringUtils.defaultString(cursor.getString(2)));
                 partial.setLocation(StringUtils.defaultString(cursor.getString(3)));
             }
@@ -3171,8 +4127,67 @@ public class DataStore {
         });
     }
 
+    /**
+     * Save a cache after a small change. The cache is put into the CacheCache immediately, while a snapshot of it is
+     * written to the database in the background together with other small changes.
+     */
     public static void saveChangedCache(final Geocache cache) {
-        saveCache(cache, cache.inDatabase() ? LoadFlags.SAVE_ALL : EnumSet.of(SaveFlag.CACHE));
+        if (!cache.inDatabase()) {
+            saveCache(cache, EnumSet.of(SaveFlag.CACHE));
+            return;
+        }
+        for (final Geocache geocache : mergeAndPutInCache(Collections.singletonList(cache), LoadFlags.SAVE_ALL)) {
+            pendingWrites.saveCache(geocache.getGeocode(), new CacheSnapshot(geocache));
+        }
+    }
+
+    /**
+     * Write small changes collected by {@link #pendingWrites} in one transaction.
+     */
+    private static void writeMutations(@NonNull final Collection<WriteBehindQueue.Mutation<CacheSnapshot>> mutations) {
+        init();
+        final SQLiteStatement removeFromAll = PreparedStatement.REMOVE_FROM_ALL_LISTS.getStatement();
+        final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_LIST.getStatement();
+        final SQLiteStatement add = PreparedStatement.ADD_TO_LIST.getStatement();
+        final SQLiteStatement setVisit = PreparedStatement.UPDATE_VISIT_DATE.getStatement();
+
+        database.beginTransaction();
+        try {
+            for (final WriteBehindQueue.Mutation<CacheSnapshot> mutation : mutations) {
+                if (mutation.cache != null) {
+                    storeIntoDatabaseWithoutTransaction(mutation.cache);
+                }
+                if (mutation.listsReplaced) {
+                    removeFromAll.bindString(1, mutation.geocode);
+                    removeFromAll.execute();
+                }
+                for (final Integer listId : mutation.listsRemoved) {
+                    remove.bindLong(1, listId);
+                    remove.bindString(2, mutation.geocode);
+                    remove.execute();
+                }
+                for (final Integer listId : mutation.listsAdded) {
+                    add.bindLong(1, listId);
+                    add.bindString(2, mutation.geocode);
+                    add.execute();
+                }
+                if (mutation.visitedDate >= 0) {
+                    setVisit.bindLong(1, mutation.visitedDate);
+                    setVisit.bindString(2, mutation.geocode);
+                    setVisit.execute();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Write the small changes of caches collected so far, e.g. before the application might get stopped.
+     */
+    public static void flushPendingWrites() {
+        pendingWrites.flushInBackground();
     }
 
     private enum PreparedStatement {
@@ -3192,16 +4207,30 @@ public class DataStore {
         COUNT_ALL_CACHES("SELECT count(distinct(geocode)) FROM " + dbTableCachesLists + " WHERE list_id >= " + StoredList.STANDARD_LIST_ID),
         INSERT_LOG("INSERT INTO " + dbTableLogs + " (geocode, updated, type, author, log, date, found, friend) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
         INSERT_ATTRIBUTE("INSERT INTO " + dbTableAttributes + " (geocode, updated, attribute) VALUES (?, ?, ?)"),
-        ADD_TO_LIST("INSERT OR REPLACE INTO " + dbTableCachesLists + " (list_id, geocode) VALUES (?, ?)"),
+        REMOVE_ATTRIBUTES("DELETE FROM " + dbTableAttributes + " WHERE geocode = ?"),
+        REMOVE_LOGS("DELETE FROM " + dbTableLogs + " WHERE geocode = ?"),
+        INSERT_LOG_TEXT("INSERT OR REPLACE INTO " + dbTableLogTexts + " (_id, log_deflated) VALUES (?, ?)"),
+        INSERT_CACHE_TEXTS("INSERT OR REPLACE INTO " + dbTableCacheTexts + " (geocode, shortdesc_deflated, description_deflated) VALUES (?, ?, ?)"),
+        REMOVE_CACHE_TEXTS("DELETE FROM " + dbTableCacheTexts + " WHERE geocode = ?"),
+        REMOVE_LOG_COUNTS("DELETE FROM " + dbTableLogCount + " WHERE geocode = ?"),
+        INSERT_CACHE("INSERT INTO " + dbTableCaches + " (" + StringUtils.join(dbCachesColumns, ", ") + ") VALUES (" + StringUtils.repeat("?", ", ", dbCachesColumns.length) + ")"),
+        UPDATE_CACHE("UPDATE " + dbTableCaches + " SET " + StringUtils.join(dbCachesColumns, " = ?, ") + " = ? WHERE geocode = ?"),
+        INSERT_WAYPOINT("INSERT INTO " + dbTableWaypoints + " (geocode, updated, type, prefix, lookup, name, latitude, longitude, note, own, visited) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+        UPDATE_WAYPOINT("UPDATE " + dbTableWaypoints + " SET geocode = ?, updated = ?, type = ?, prefix = ?, lookup = ?, name = ?, latitude = ?, longitude = ?, note = ?, own = ?, visited = ? WHERE _id = ?"),
+        INSERT_TRACKABLE("INSERT INTO " + dbTableTrackables + " (geocode, updated, tbcode, guid, title, owner, released, goal, description) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+        REMOVE_TRACKABLE("DELETE FROM " + dbTableTrackables + " WHERE tbcode = ?"),
+        REMOVE_TRACKABLES_OF_CACHE("DELETE FROM " + dbTableTrackables + " WHERE geocode = ?"),
+        // a replaced row would not be subtracted from the list counts, as delete triggers do not run for it
+        ADD_TO_LIST("INSERT OR IGNORE INTO " + dbTableCachesLists + " (list_id, geocode) VALUES (?, ?)"),
         GEOCODE_OFFLINE("SELECT count(list_id) FROM " + dbTableCachesLists + " WHERE geocode = ? AND list_id != " + StoredList.TEMPORARY_LIST.id),
         GUID_OFFLINE("SELECT count(list_id) FROM " + dbTableCachesLists + " WHERE geocode = (SELECT geocode FROM " + dbTableCaches + " WHERE guid = ?) AND list_id != " + StoredList.TEMPORARY_LIST.id),
         GEOCODE_OF_GUID("SELECT geocode FROM " + dbTableCaches + " WHERE guid = ?"),
         GEOCODE_FROM_TITLE("SELECT geocode FROM " + dbTableCaches + " WHERE name = ?"),
         INSERT_SEARCH_DESTINATION("INSERT INTO " + dbTableSearchDestinationHistory + " (date, latitude, longitude) VALUES (?, ?, ?)"),
-        COUNT_TYPE_ALL_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l  WHERE c.detailed = 1 AND c.type = ? AND c.geocode = l.geocode AND l.list_id > 0"), // See use of COUNT_TYPE_LIST for synchronization
-        COUNT_ALL_TYPES_ALL_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.detailed = 1 AND c.geocode = l.geocode AND l.list_id  > 0"), // See use of COUNT_TYPE_LIST for synchronization
-        COUNT_TYPE_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.detailed = 1 AND c.type = ? AND c.geocode = l.geocode AND l.list_id = ?"),
-        COUNT_ALL_TYPES_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.detailed = 1 AND c.geocode = l.geocode AND l.list_id = ?"), // See use of COUNT_TYPE_LIST for synchronization
+        COUNT_TYPE_ALL_LIST("SELECT IFNULL(SUM(count), 0) FROM " + dbTableListCounts + " WHERE type = ? AND list_id > 0"), // See use of COUNT_TYPE_LIST for synchronization
+        COUNT_ALL_TYPES_ALL_LIST("SELECT IFNULL(SUM(count), 0) FROM " + dbTableListCounts + " WHERE list_id > 0"), // See use of COUNT_TYPE_LIST for synchronization
+        COUNT_TYPE_LIST("SELECT IFNULL(SUM(count), 0) FROM " + dbTableListCounts + " WHERE type = ? AND list_id = ?"),
+        COUNT_ALL_TYPES_LIST("SELECT IFNULL(SUM(count), 0) FROM " + dbTableListCounts + " WHERE list_id = ?"), // See use of COUNT_TYPE_LIST for synchronization
         CHECK_IF_PRESENT("SELECT COUNT(*) FROM " + dbTableCaches + " WHERE geocode = ?");
 
         private static final List<PreparedStatement> statements = new ArrayList<>();
@@ -3245,10 +4274,16 @@ public class DataStore {
     }
 
     public static void saveVisitDate(final String geocode) {
-        setVisitDate(Collections.singletonList(geocode), System.currentTimeMillis());
+        final long visitedDate = System.currentTimeMillis();
+        final Geocache cache = cacheCache.getCacheFromCache(geocode);
+        if (cache != null) {
+            cache.setVisitedDate(visitedDate);
+        }
+        pendingWrites.setVisitDate(geocode, visitedDate);
     }
 
     public static Map<String, Set<Integer>> markDropped(final Collection<Geocache> caches) {
+        pendingWrites.flush(Geocache.getGeocodes(caches));
         final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_ALL_LISTS.getStatement();
         final Map<String, Set<Integer>> oldLists = new HashMap<>();
 
@@ -3285,7 +4320,7 @@ public class DataStore {
 
     @NonNull
     public static SearchResult getBatchOfStoredCaches(final Geopoint coords, final CacheType cacheType, final int listId) {
-        final Set<String> geocodes = loadBatchOfStoredGeocodes(coords, cacheType, listId);
+        final List<String> geocodes = StoredCachesPager.getGeocodes(loadStoredGeocodesPage(coords, cacheType, listId, null, 0));
         return new SearchResult(geocodes, getAllStoredCachesCount(cacheType, listId));
     }
 
@@ -3296,6 +4331,7 @@ public class DataStore {
     }
 
     public static boolean saveWaypoint(final int id, final String geocode, final Waypoint waypoint) {
+        pendingWrites.flush(Collections.singleton(geocode));
         if (saveWaypointInternal(id, geocode, waypoint)) {
             removeCache(geocode, EnumSet.of(RemoveFlag.CACHE));
             return true;
@@ -3343,24 +4379,35 @@ public class DataStore {
         init();
         final SearchSuggestionCursor resultCursor = new SearchSuggestionCursor();
         try {
-            final String selectionArg = getSuggestionArgument(searchTerm);
-            findCaches(resultCursor, selectionArg);
-            findTrackables(resultCursor, selectionArg);
+            findCaches(resultCursor, searchTerm);
+            findTrackables(resultCursor, searchTerm);
         } catch (final Exception e) {
-            Log.e("DataStore.loadBatchOfStoredGeocodes", e);
+            Log.e("DataStore.findSuggestions", e);
         }
         return resultCursor;
     }
 
-    private static void findCaches(final SearchSuggestionCursor resultCursor, final String selectionArg) {
-        final Cursor cursor = database.query(
-                dbTableCaches,
-                new String[] { "geocode", "name", "type" },
-                "geocode IS NOT NULL AND geocode != '' AND (geocode LIKE ? OR name LIKE ? OR owner LIKE ?)",
-                new String[] { selectionArg, selectionArg, selectionArg },
-                null,
-                null,
-                "name");
+    /**
+     * Find caches by geocode, name or owner. Caches whose geocode or name start with the search term are listed
+     * first.
+     */
+    private static void findCaches(final SearchSuggestionCursor resultCursor, final String searchTerm) {
+        final String prefix = getPrefixArgument(searchTerm);
+        final String ftsQuery = ftsAvailable ? getFtsPrefixQuery(searchTerm) : null;
+        final String selection;
+        final String[] selectionArgs;
+        if (ftsQuery != null) {
+            selection = "_id IN (SELECT docid FROM " + dbTableCachesFts + " WHERE " + dbTableCachesFts + " MATCH ?)";
+            selectionArgs = new String[] { ftsQuery, prefix, prefix };
+        } else {
+            final String selectionArg = getSuggestionArgument(searchTerm);
+            selection = "(geocode LIKE ? OR name LIKE ? OR owner LIKE ?)";
+            selectionArgs = new String[] { selectionArg, selectionArg, selectionArg, prefix, prefix };
+        }
+        final Cursor cursor = database.rawQuery("SELECT geocode, name, type FROM " + dbTableCaches
+                + " WHERE geocode IS NOT NULL AND geocode != '' AND " + selection
+                + " ORDER BY CASE WHEN geocode LIKE ? THEN 0 WHEN name LIKE ? THEN 1 ELSE 2 END, name COLLATE NOCASE ASC"
+                + " LIMIT " + MAX_SUGGESTIONS, selectionArgs);
         while (cursor.moveToNext()) {
             final String geocode = cursor.getString(0);
             final String cacheName = cursor.getString(1);
@@ -3375,15 +4422,58 @@ public class DataStore {
         return "%" + StringUtils.trim(input) + "%";
     }
 
-    private static void findTrackables(final MatrixCursor resultCursor, final String selectionArg) {
-        final Cursor cursor = database.query(
-                dbTableTrackables,
-                new String[] { "tbcode", "title" },
-                "tbcode IS NOT NULL AND tbcode != '' AND (tbcode LIKE ? OR title LIKE ?)",
-                new String[] { selectionArg, selectionArg },
-                null,
-                null,
-                "title");
+    @NonNull
+    private static String getPrefixArgument(final String input) {
+        return StringUtils.trim(input) + "%";
+    }
+
+    /**
+     * Build a full text query matching all rows containing words starting with the words of the input. The input is
+     * split the same way the default tokenizer of SQLite splits the indexed text, and every word is quoted, so that
+     * the input cannot contain query operators.
+     *
+     * @return the query, or {@code null} if the input does not contain any word
+     */
+    @Nullable
+    static String getFtsPrefixQuery(final String input) {
+        final StringBuilder query = new StringBuilder();
+        final StringBuilder word = new StringBuilder();
+        final String text = StringUtils.defaultString(input);
+        for (int i = 0; i <= text.length(); i++) {
+            final char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c >= 0x80 || Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append('"').append(word).append("*\"");
+                word.setLength(0);
+            }
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    /**
+     * Find trackables by code or title. Trackables whose code or title start with the search term are listed first.
+     */
+    private static void findTrackables(final MatrixCursor resultCursor, final String searchTerm) {
+        final String prefix = getPrefixArgument(searchTerm);
+        final String ftsQuery = ftsAvailable ? getFtsPrefixQuery(searchTerm) : null;
+        final String selection;
+        final String[] selectionArgs;
+        if (ftsQuery != null) {
+            selection = "_id IN (SELECT docid FROM " + dbTableTrackablesFts + " WHERE " + dbTableTrackablesFts + " MATCH ?)";
+            selectionArgs = new String[] { ftsQuery, prefix, prefix };
+        } else {
+            final String selectionArg = getSuggestionArgument(searchTerm);
+            selection = "(tbcode LIKE ? OR title LIKE ?)";
+            selectionArgs = new String[] { selectionArg, selectionArg, prefix, prefix };
+        }
+        final Cursor cursor = database.rawQuery("SELECT tbcode, title FROM " + dbTableTrackables
+                + " WHERE tbcode IS NOT NULL AND tbcode != '' AND " + selection
+                + " ORDER BY CASE WHEN tbcode LIKE ? THEN 0 WHEN title LIKE ? THEN 1 ELSE 2 END, title COLLATE NOCASE ASC"
+                + " LIMIT " + MAX_SUGGESTIONS, selectionArgs);
         while (cursor.moveToNext()) {
             final String tbcode = cursor.getString(0);
             resultCursor.addRow(new String[] {
@@ -3398,13 +4488,29 @@ public class DataStore {
         cursor.close();
     }
 
+    /**
+     * Get the distinct values of a column containing words starting with the words of the input, or containing the
+     * input if the column is not part of a full text index. Values starting with the input are listed first.
+     */
     @NonNull
     public static String[] getSuggestions(final String table, final String column, final String input) {
         try {
-            final Cursor cursor = database.rawQuery("SELECT DISTINCT " + column
-                    + " FROM " + table
-                    + " WHERE " + column + " LIKE ?"
-                    + " ORDER BY " + column + " COLLATE NOCASE ASC;", new String[] { getSuggestionArgument(input) });
+            final String ftsTable = ftsAvailable ? getFtsTable(table, column) : null;
+            final String ftsQuery = ftsTable != null ? getFtsPrefixQuery(input) : null;
+            final Cursor cursor;
+            if (ftsQuery != null) {
+                cursor = database.rawQuery("SELECT DISTINCT " + column
+                        + " FROM " + ftsTable
+                        + " WHERE " + column + " MATCH ?"
+                        + " ORDER BY CASE WHEN " + column + " LIKE ? THEN 0 ELSE 1 END, " + column + " COLLATE NOCASE ASC"
+                        + " LIMIT " + MAX_SUGGESTIONS, new String[] { ftsQuery, getPrefixArgument(input) });
+            } else {
+                cursor = database.rawQuery("SELECT DISTINCT " + column
+                        + " FROM " + table
+                        + " WHERE " + column + " LIKE ?"
+                        + " ORDER BY CASE WHEN " + column + " LIKE ? THEN 0 ELSE 1 END, " + column + " COLLATE NOCASE ASC"
+                        + " LIMIT " + MAX_SUGGESTIONS, new String[] { getSuggestionArgument(input), getPrefixArgument(input) });
+            }
             return cursorToColl(cursor, new LinkedList<String>(), GET_STRING_0).toArray(new String[cursor.getCount()]);
         } catch (final RuntimeException e) {
             Log.e("cannot get suggestions from " + table + "->" + column + " for input '" + input + "'", e);
@@ -3412,6 +4518,23 @@ public class DataStore {
         }
     }
 
+    /**
+     * @return the full text index containing the column of the table, {@code null} if the column is not indexed
+     */
+    @Nullable
+    private static String getFtsTable(final String table, final String column) {
+        if (dbTableCaches.equals(table) && ArrayUtils.contains(ftsCachesColumns, column)) {
+            return dbTableCachesFts;
+        }
+        if (dbTableLogs.equals(table) && ArrayUtils.contains(ftsLogsColumns, column)) {
+            return dbTableLogsFts;
+        }
+        if (dbTableTrackables.equals(table) && ArrayUtils.contains(ftsTrackablesColumns, column)) {
+            return dbTableTrackablesFts;
+        }
+        return null;
+    }
+
     @NonNull
     public static String[] getSuggestionsOwnerName(final String input) {
         return getSuggestions(dbTableCaches, "owner_real", input);
@@ -0,0 +1,104 @@
+package cgeo.geocaching.storage;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the geocodes of a stored list page by page in the order of {@link DataStore#loadStoredGeocodesPage}, so that
+ * a list can be displayed without loading all of its caches first. Every page continues behind the sort key of the last
+ * cache of the previous page.
+ */
+public final class StoredCachesPager {
+
+    public static final int PAGE_SIZE = 100;
+
+    /**
+     * The position of a cache in the order of the pages.
+     */
+    static final class SortKey {
+        @NonNull final String geocode;
+        /** distance to the coordinates of the pager in microdegrees, 0 if sorting by geocode */
+        final long distance;
+
+        SortKey(@NonNull final String geocode, final long distance) {
+            this.geocode = geocode;
+            this.distance = distance;
+        }
+    }
+
+    @Nullable private final Geopoint coords;
+    @NonNull private final CacheType cacheType;
+    private final int listId;
+    private final int totalCount;
+    @Nullable private SortKey last = null;
+    private boolean complete = false;
+
+    /**
+     * @param coords
+     *            the coordinates to sort by distance, or null to sort by geocode
+     */
+    public StoredCachesPager(@Nullable final Geopoint coords, @NonNull final CacheType cacheType, final int listId) {
+        this.coords = coords;
+        this.cacheType = cacheType;
+        this.listId = listId;
+        this.totalCount = DataStore.getAllStoredCachesCount(cacheType, listId);
+    }
+
+    /**
+     * @return the geocodes of the next page, empty if all pages have been read
+     */
+    @NonNull
+    public synchronized List<String> nextPage() {
+        return readPage(PAGE_SIZE);
+    }
+
+    /**
+     * @return the geocodes of all pages not read yet
+     */
+    @NonNull
+    public synchronized List<String> remainingPages() {
+        return readPage(0);
+    }
+
+    public synchronized boolean hasMore() {
+        return !complete;
+    }
+
+    /**
+     * @return the number of caches on the list at the time the pager was created
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    @NonNull
+    private List<String> readPage(final int limit) {
+        if (complete) {
+            return Collections.emptyList();
+        }
+        final List<SortKey> page = DataStore.loadStoredGeocodesPage(coords, cacheType, listId, last, limit);
+        if (limit == 0 || page.size() < limit) {
+            complete = true;
+        }
+        if (!page.isEmpty()) {
+            last = page.get(page.size() - 1);
+        }
+        return getGeocodes(page);
+    }
+
+    @NonNull
+    static List<String> getGeocodes(@NonNull final List<SortKey> keys) {
+        final List<String> geocodes = new ArrayList<>(keys.size());
+        for (final SortKey key : keys) {
+            geocodes.add(key.geocode);
+        }
+        return geocodes;
+    }
+}
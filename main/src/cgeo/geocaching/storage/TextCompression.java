@@ -0,0 +1,78 @@
+package cgeo.geocaching.storage;
+
+import org.apache.commons.lang3.CharEncoding;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the long texts of caches and logs, like descriptions, before storing them in the database.
+ */
+final class TextCompression {
+
+    /** texts shorter than this are stored uncompressed, as they gain little and are read more often */
+    static final int MIN_LENGTH = 512;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private TextCompression() {
+        // utility class
+    }
+
+    /**
+     * @return whether the text is stored compressed
+     */
+    static boolean isCompressed(@Nullable final String text) {
+        return text != null && text.length() >= MIN_LENGTH;
+    }
+
+    @NonNull
+    static byte[] deflate(@NonNull final String text) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(text.getBytes(CharEncoding.UTF_8));
+            deflater.finish();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(text.length() / 3);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the data has not been created by {@link #deflate(String)}
+     */
+    @NonNull
+    static String inflate(@NonNull final byte[] data) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 3);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                final int length = inflater.inflate(buffer);
+                if (length == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("truncated compressed text");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toString(CharEncoding.UTF_8);
+        } catch (final DataFormatException | UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
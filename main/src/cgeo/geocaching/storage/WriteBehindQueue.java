@@ -0,0 +1,299 @@
+package cgeo.geocaching.storage;
+
+import cgeo.geocaching.utils.Log;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
+import rx.functions.Func1;
+
+/**
+ * Collects small changes of stored caches, like a new visit date or other lists, and writes them in a single
+ * transaction a short time after the first change. Several changes of the same cache are merged into one
+ * {@link Mutation}, so that for instance opening the details of a cache does not lead to several transactions.
+ *
+ * Flushes are serialized and take all changes collected until they start, so that a caller of {@link #flush()} finds
+ * its changes in the database afterwards. Readers which depend only on some of the changes flush only these, e.g. with
+ * {@link #flush(Collection)} for the caches they read. Changes which could not be written stay queued and are tried
+ * again later.
+ *
+ * @param <T>
+ *            the type of the values a cache is stored with
+ */
+final class WriteBehindQueue<T> {
+
+    /**
+     * Writes the collected changes in one transaction.
+     */
+    interface Writer<T> {
+        void write(@NonNull Collection<Mutation<T>> mutations);
+    }
+
+    /**
+     * The pending changes of a single cache.
+     */
+    static final class Mutation<T> {
+        @NonNull final String geocode;
+        /** the cache to be stored completely, {@code null} if only the fields below have changed */
+        @Nullable T cache;
+        /** the new visit date, -1 if unchanged */
+        long visitedDate = -1;
+        /** whether the cache is to be removed from all lists not in {@link #listsAdded} */
+        boolean listsReplaced = false;
+        @NonNull final Set<Integer> listsRemoved = new HashSet<>();
+        @NonNull final Set<Integer> listsAdded = new HashSet<>();
+
+        Mutation(@NonNull final String geocode) {
+            this.geocode = geocode;
+        }
+
+        private void setLists(@NonNull final Set<Integer> listIds) {
+            listsReplaced = true;
+            listsRemoved.clear();
+            listsAdded.clear();
+            listsAdded.addAll(listIds);
+        }
+
+        private void moveToList(final int oldListId, final int newListId) {
+            listsAdded.remove(oldListId);
+            if (!listsReplaced) {
+                listsRemoved.add(oldListId);
+            }
+            listsRemoved.remove(newListId);
+            listsAdded.add(newListId);
+        }
+
+        boolean hasListChanges() {
+            return listsReplaced || !listsRemoved.isEmpty() || !listsAdded.isEmpty();
+        }
+
+        /**
+         * Add the changes of a newer mutation of the same cache.
+         */
+        private void merge(@NonNull final Mutation<T> newer) {
+            if (newer.cache != null) {
+                cache = newer.cache;
+            }
+            if (newer.visitedDate >= 0) {
+                visitedDate = newer.visitedDate;
+            }
+            if (newer.listsReplaced) {
+                setLists(newer.listsAdded);
+                return;
+            }
+            for (final Integer listId : newer.listsRemoved) {
+                listsAdded.remove(listId);
+                if (!listsReplaced) {
+                    listsRemoved.add(listId);
+                }
+            }
+            for (final Integer listId : newer.listsAdded) {
+                listsRemoved.remove(listId);
+                listsAdded.add(listId);
+            }
+        }
+    }
+
+    private static final Func1<Mutation<?>, Boolean> LIST_CHANGES = new Func1<Mutation<?>, Boolean>() {
+        @Override
+        public Boolean call(final Mutation<?> mutation) {
+            return mutation.hasListChanges();
+        }
+    };
+
+    private static final Func1<Mutation<?>, Boolean> VISIT_DATES = new Func1<Mutation<?>, Boolean>() {
+        @Override
+        public Boolean call(final Mutation<?> mutation) {
+            return mutation.visitedDate >= 0;
+        }
+    };
+
+    private final Writer<T> writer;
+    private final Worker worker;
+    private final long delay;
+    /** serializes the flushes, so that they are written in the order their changes were made */
+    private final Object flushLock = new Object();
+    private Map<String, Mutation<T>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    private final Action0 flushAction = new Action0() {
+        @Override
+        public void call() {
+            flush();
+        }
+    };
+
+    /**
+     * @param writer
+     *            writer of the collected changes
+     * @param scheduler
+     *            scheduler to write the changes on after the delay
+     * @param delay
+     *            time in milliseconds the changes are collected before being written
+     */
+    WriteBehindQueue(@NonNull final Writer<T> writer, @NonNull final Scheduler scheduler, final long delay) {
+        this.writer = writer;
+        this.worker = scheduler.createWorker();
+        this.delay = delay;
+    }
+
+    void saveCache(@NonNull final String geocode, @NonNull final T cache) {
+        synchronized (this) {
+            getMutation(geocode).cache = cache;
+        }
+        scheduleFlush();
+    }
+
+    void setVisitDate(@NonNull final String geocode, final long visitedDate) {
+        synchronized (this) {
+            getMutation(geocode).visitedDate = visitedDate;
+        }
+        scheduleFlush();
+    }
+
+    void setLists(@NonNull final String geocode, @NonNull final Set<Integer> listIds) {
+        synchronized (this) {
+            getMutation(geocode).setLists(listIds);
+        }
+        scheduleFlush();
+    }
+
+    void moveToList(@NonNull final String geocode, final int oldListId, final int newListId) {
+        synchronized (this) {
+            getMutation(geocode).moveToList(oldListId, newListId);
+        }
+        scheduleFlush();
+    }
+
+    synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Write all collected changes in the current thread.
+     */
+    void flush() {
+        flushSelected(null);
+    }
+
+    /**
+     * Write the collected changes of the given caches in the current thread, leaving the others queued.
+     */
+    void flush(@NonNull final Collection<String> geocodes) {
+        flushSelected(new Func1<Mutation<?>, Boolean>() {
+            @Override
+            public Boolean call(final Mutation<?> mutation) {
+                return geocodes.contains(mutation.geocode);
+            }
+        });
+    }
+
+    /**
+     * Write the collected changes of caches which change lists in the current thread, leaving the others queued.
+     */
+    void flushListChanges() {
+        flushSelected(LIST_CHANGES);
+    }
+
+    /**
+     * Write the collected changes of caches which change the visit date in the current thread, leaving the others
+     * queued.
+     */
+    void flushVisitDates() {
+        flushSelected(VISIT_DATES);
+    }
+
+    /**
+     * @param selection
+     *            the mutations to write, {@code null} for all
+     */
+    private void flushSelected(@Nullable final Func1<Mutation<?>, Boolean> selection) {
+        synchronized (flushLock) {
+            final Map<String, Mutation<T>> mutations;
+            synchronized (this) {
+                if (selection == null) {
+                    flushScheduled = false;
+                    mutations = pending;
+                    pending = new LinkedHashMap<>();
+                } else {
+                    mutations = new LinkedHashMap<>();
+                    for (final Mutation<T> mutation : pending.values()) {
+                        if (selection.call(mutation)) {
+                            mutations.put(mutation.geocode, mutation);
+                        }
+                    }
+                    pending.keySet().removeAll(mutations.keySet());
+                }
+            }
+            if (mutations.isEmpty()) {
+                return;
+            }
+            try {
+                writer.write(mutations.values());
+            } catch (final RuntimeException e) {
+                Log.w("WriteBehindQueue.flush: could not write " + mutations.keySet() + ", trying again later", e);
+                requeue(mutations);
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Put mutations which could not be written back in front of the queue, merged with the changes collected in the
+     * meantime.
+     */
+    private synchronized void requeue(@NonNull final Map<String, Mutation<T>> mutations) {
+        for (final Mutation<T> newer : pending.values()) {
+            final Mutation<T> older = mutations.get(newer.geocode);
+            if (older == null) {
+                mutations.put(newer.geocode, newer);
+            } else {
+                older.merge(newer);
+            }
+        }
+        pending = mutations;
+    }
+
+    /**
+     * Write all collected changes in the background without waiting for the delay, e.g. when the application might
+     * get stopped.
+     */
+    void flushInBackground() {
+        if (!isEmpty()) {
+            worker.schedule(flushAction);
+        }
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        worker.schedule(flushAction, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Must be called with the monitor held.
+     */
+    @NonNull
+    private Mutation<T> getMutation(@NonNull final String geocode) {
+        Mutation<T> mutation = pending.get(geocode);
+        if (mutation == null) {
+            mutation = new Mutation<>(geocode);
+            pending.put(geocode, mutation);
+        }
+        return mutation;
+    }
+}
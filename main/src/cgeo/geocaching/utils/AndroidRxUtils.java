@@ -1,5 +1,7 @@
 package cgeo.geocaching.utils;
 
+import cgeo.geocaching.network.RequestPriority;
+
 import rx.Scheduler;
 import rx.Scheduler.Worker;
 import rx.android.schedulers.AndroidSchedulers;
@@ -26,7 +28,9 @@ public class AndroidRxUtils {
 
     public static final Scheduler networkScheduler = Schedulers.from(Executors.newFixedThreadPool(10, new RxThreadFactory("network-")));
 
-    public static final Scheduler refreshScheduler = Schedulers.from(Executors.newFixedThreadPool(3, new RxThreadFactory("refresh-")));
+    /** Scheduler for refreshing many caches, whose requests get the {@link RequestPriority#BULK} priority */
+    public static final Scheduler refreshScheduler = Schedulers.from(Executors.newFixedThreadPool(3,
+            RequestPriority.threadFactory(RequestPriority.BULK, new RxThreadFactory("refresh-"))));
 
     private static final HandlerThread looperCallbacksThread =
             new HandlerThread("looper callbacks", Process.THREAD_PRIORITY_DEFAULT);
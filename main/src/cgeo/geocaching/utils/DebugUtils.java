@@ -1,10 +1,14 @@
 package cgeo.geocaching.utils;
 
 import cgeo.geocaching.R;
+import cgeo.geocaching.network.NetworkMetrics;
 
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNull;
 
+import android.app.AlertDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.os.Environment;
 import android.widget.Toast;
 
@@ -33,4 +37,42 @@ public class DebugUtils {
             Log.e("createMemoryDump", e);
         }
     }
+
+    /**
+     * Show the network statistics per host, with the possibility to export all of them as JSON.
+     */
+    public static void showNetworkMetrics(@NonNull final Context context) {
+        final String summary = NetworkMetrics.getSummary();
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.init_network_metrics)
+                .setMessage(StringUtils.isEmpty(summary) ? context.getString(R.string.init_network_metrics_empty) : summary)
+                .setPositiveButton(R.string.export, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(final DialogInterface dialog, final int which) {
+                        exportNetworkMetrics(context);
+                    }
+                })
+                .setNeutralButton(R.string.init_network_metrics_reset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(final DialogInterface dialog, final int which) {
+                        NetworkMetrics.reset();
+                    }
+                })
+                .setNegativeButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private static void exportNetworkMetrics(@NonNull final Context context) {
+        try {
+            final SimpleDateFormat fileNameDateFormat = new SimpleDateFormat("yyyy-MM-dd_hh-mm", Locale.US);
+            final File file = FileUtils.getUniqueNamedFile(new File(Environment.getExternalStorageDirectory(),
+                    "cgeo_network_" + fileNameDateFormat.format(new Date()) + ".json"));
+            JsonUtils.writer.writeValue(file, NetworkMetrics.toJson());
+            Toast.makeText(context, context.getString(R.string.init_network_metrics_exported, file.getAbsolutePath()),
+                    Toast.LENGTH_LONG).show();
+            ShareUtils.share(context, file, "application/json", R.string.init_network_metrics);
+        } catch (final IOException e) {
+            Log.e("exportNetworkMetrics", e);
+        }
+    }
 }
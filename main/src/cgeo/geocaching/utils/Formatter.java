@@ -5,6 +5,7 @@ import cgeo.geocaching.R;
 import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.ICacheSummary;
 import cgeo.geocaching.models.PocketQuery;
 import cgeo.geocaching.models.Waypoint;
 
@@ -251,7 +252,7 @@ public final class Formatter {
     }
 
     @NonNull
-    public static String formatMapSubtitle(final Geocache cache) {
+    public static String formatMapSubtitle(final ICacheSummary cache) {
         return "D " + formatDT(cache.getDifficulty()) + SEPARATOR + "T " + formatDT(cache.getTerrain()) + SEPARATOR + cache.getGeocode();
     }
 
@@ -1,5 +1,6 @@
 package cgeo.geocaching.utils;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -10,6 +11,8 @@ public class JsonUtils {
     private static final ObjectMapper mapper = new ObjectMapper();
     public static final ObjectReader reader = mapper.reader();
     public static final ObjectWriter writer = mapper.writer();
+    /** factory of the streaming parsers, for large documents which are not needed as a tree */
+    public static final JsonFactory jsonFactory = mapper.getFactory();
 
     public static final JsonNodeFactory factory = new JsonNodeFactory(true);
 
@@ -33,6 +33,13 @@ public abstract class LazyInitializedList<ElementType> extends AbstractList<Elem
         return list;
     }
 
+    /**
+     * @return whether the list has been loaded, without loading it
+     */
+    public boolean isInitialized() {
+        return list != null;
+    }
+
     @Override
     public boolean add(final ElementType element) {
         return getUnderlyingList().add(element);
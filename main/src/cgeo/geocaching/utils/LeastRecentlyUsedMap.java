@@ -56,9 +56,17 @@ public abstract class LeastRecentlyUsedMap<K, V> extends LinkedHashMap<K, V> {
         return super.put(key, value);
     }
 
+    /**
+     * Evicts the eldest entry through {@link #remove(Object)}, so that the {@link RemoveHandler} also gets notified
+     * about evictions. Depending on the platform, the {@link LinkedHashMap} would otherwise drop the entry without
+     * calling the overridden remove method.
+     */
     @Override
     protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
-        return size() > maxEntries;
+        if (size() > maxEntries) {
+            remove(eldest.getKey());
+        }
+        return false;
     }
 
     public int getMaxEntries() {
@@ -4,8 +4,9 @@ import cgeo.geocaching.R;
 import cgeo.geocaching.compatibility.Compatibility;
 import cgeo.geocaching.enumerations.CacheListType;
 import cgeo.geocaching.enumerations.LogType;
-import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.ICacheSummary;
 import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.settings.Settings;
 
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.eclipse.jdt.annotation.NonNull;
@@ -17,6 +18,7 @@ import android.support.annotation.Nullable;
 import android.util.SparseArray;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public final class MapUtils {
@@ -51,7 +53,7 @@ public final class MapUtils {
      *          a drawable representing the current cache status
      */
     @NonNull
-    public static LayerDrawable getCacheMarker(final Resources res, final Geocache cache) {
+    public static LayerDrawable getCacheMarker(final Resources res, final ICacheSummary cache) {
         return getCacheMarker(res, cache, null);
     }
 
@@ -71,7 +73,7 @@ public final class MapUtils {
      *          a drawable representing the current cache status
      */
     @NonNull
-    public static LayerDrawable getCacheMarker(final Resources res, final Geocache cache, @Nullable final CacheListType cacheListType) {
+    public static LayerDrawable getCacheMarker(final Resources res, final ICacheSummary cache, @Nullable final CacheListType cacheListType) {
         final int hashcode = new HashCodeBuilder()
                 .append(cache.isReliableLatLon())
                 .append(cache.getType().id)
@@ -80,9 +82,9 @@ public final class MapUtils {
                 .append(cache.isOwner())
                 .append(cache.isFound())
                 .append(showUserModifiedCoords(cache))
-                .append(cache.getPersonalNote())
+                .append(cache.hasPersonalNote())
                 .append(cache.isLogOffline())
-                .append(!cache.getLists().isEmpty())
+                .append(cache.isStored())
                 .append(cache.getOfflineLogType())
                 .append(showBackground(cacheListType))
                 .append(showFloppyOverlay(cacheListType))
@@ -158,6 +160,22 @@ public final class MapUtils {
         }
     }
 
+    /**
+     * Remove the caches excluded from the maps by the settings, like found, own or disabled caches.
+     */
+    public static synchronized void filter(final Collection<? extends ICacheSummary> caches) {
+        final boolean excludeMine = Settings.isExcludeMyCaches();
+        final boolean excludeDisabled = Settings.isExcludeDisabledCaches();
+
+        final List<ICacheSummary> removeList = new ArrayList<>();
+        for (final ICacheSummary cache : caches) {
+            if ((excludeMine && cache.isFound()) || (excludeMine && cache.isOwner()) || (excludeDisabled && cache.isDisabled()) || (excludeDisabled && cache.isArchived())) {
+                removeList.add(cache);
+            }
+        }
+        caches.removeAll(removeList);
+    }
+
     /**
      * Build the drawable for a given cache.
      *
@@ -171,7 +189,7 @@ public final class MapUtils {
      *          a drawable representing the current cache status
      */
     @NonNull
-    private static LayerDrawable createCacheMarker(final Resources res, final Geocache cache, @Nullable final CacheListType cacheListType) {
+    private static LayerDrawable createCacheMarker(final Resources res, final ICacheSummary cache, @Nullable final CacheListType cacheListType) {
         // Set initial capacities to the maximum of layers and insets to avoid dynamic reallocation
         final List<Drawable> layers = new ArrayList<>(9);
         final List<int[]> insets = new ArrayList<>(8);
@@ -197,7 +215,7 @@ public final class MapUtils {
             layers.add(Compatibility.getDrawable(res, R.drawable.marker_own));
             insets.add(getOwnInset(cacheListType)[resolution]);
             // if not, checked if stored
-        } else if (!cache.getLists().isEmpty() && showFloppyOverlay(cacheListType)) {
+        } else if (cache.isStored() && showFloppyOverlay(cacheListType)) {
             layers.add(Compatibility.getDrawable(res, R.drawable.marker_stored));
             insets.add(getOwnInset(cacheListType)[resolution]);
         }
@@ -222,7 +240,7 @@ public final class MapUtils {
             insets.add(getUMCInset(cacheListType)[resolution]);
         }
         // personal note
-        if (cache.getPersonalNote() != null) {
+        if (cache.hasPersonalNote()) {
             layers.add(Compatibility.getDrawable(res, R.drawable.marker_personalnote));
             insets.add(getPNInset(cacheListType)[resolution]);
         }
@@ -283,7 +301,7 @@ public final class MapUtils {
      * @return
      *         True if the UserModifiedCoords flag should be displayed
      */
-    private static boolean showUserModifiedCoords(final Geocache cache) {
+    private static boolean showUserModifiedCoords(final ICacheSummary cache) {
 
         return cache.hasUserModifiedCoords() || cache.hasFinalDefined();
     }
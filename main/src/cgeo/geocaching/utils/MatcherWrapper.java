@@ -31,6 +31,14 @@ public class MatcherWrapper {
         return matcher.find(start);
     }
 
+    /**
+     * see {@link Matcher#region(int, int)}
+     */
+    public MatcherWrapper region(final int start, final int end) {
+        matcher.region(start, end);
+        return this;
+    }
+
     /**
      * see {@link Matcher#group(int)}
      */
@@ -52,11 +52,35 @@ public final class TextUtils {
      *            Find the last occurring value
      * @return defaultValue or the n-th group if the pattern matches (trimmed if wanted)
      */
-    @SuppressFBWarnings("DM_STRING_CTOR")
     public static String getMatch(@Nullable final String data, final Pattern pattern, final boolean trim, final int group, final String defaultValue, final boolean last) {
+        return getMatch(data, pattern, 0, trim, group, defaultValue, last);
+    }
+
+    /**
+     * Searches for the pattern pattern in the data, starting at the given index. If the pattern is not found
+     * defaultValue is returned
+     *
+     * @param data
+     *            Data to search in
+     * @param pattern
+     *            Pattern to search for
+     * @param start
+     *            Index in the data to start the search at
+     * @param trim
+     *            Set to true if the group found should be trim'ed
+     * @param group
+     *            Number of the group to return if found
+     * @param defaultValue
+     *            Value to return if the pattern is not found
+     * @param last
+     *            Find the last occurring value
+     * @return defaultValue or the n-th group if the pattern matches (trimmed if wanted)
+     */
+    @SuppressFBWarnings("DM_STRING_CTOR")
+    public static String getMatch(@Nullable final String data, final Pattern pattern, final int start, final boolean trim, final int group, final String defaultValue, final boolean last) {
         if (data != null) {
             final Matcher matcher = pattern.matcher(data);
-            if (matcher.find()) {
+            if (matcher.find(start)) {
                 String result = matcher.group(group);
                 while (last && matcher.find()) {
                     result = matcher.group(group);
@@ -6,11 +6,13 @@ import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.CgeoApplicationTest;
 import cgeo.geocaching.SearchResult;
 import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LogType;
 import cgeo.geocaching.enumerations.StatusCode;
 import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Image;
+import cgeo.geocaching.models.LogEntry;
 import cgeo.geocaching.models.Trackable;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.settings.Settings;
@@ -20,11 +22,14 @@ import cgeo.geocaching.test.mock.MockedCacheAndroid;
 import cgeo.geocaching.utils.CancellableHandler;
 import cgeo.test.Compare;
 
+import org.apache.commons.lang3.CharEncoding;
 import org.apache.commons.lang3.StringUtils;
 
 import android.support.annotation.RawRes;
 import android.test.suitebuilder.annotation.MediumTest;
 
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -256,4 +261,55 @@ public class GCParserTest extends AbstractResourceInstrumentationTestCase {
         assertThat(spoiler.getTitle()).isEqualTo("SPOILER");
         assertThat(spoiler.getDescription()).isEqualTo("Suche diese Schraube");
     }
+
+    private static List<LogEntry> parseLogs(final String json) throws UnsupportedEncodingException {
+        final String gcCustomDate = Settings.getGcCustomDate();
+        try {
+            Settings.setGcCustomDate("yyyy-MM-dd");
+            return GCParser.parseLogs(false, new ByteArrayInputStream(json.getBytes(CharEncoding.UTF_8))).toList().toBlocking().single();
+        } finally {
+            Settings.setGcCustomDate(gcCustomDate);
+        }
+    }
+
+    public static void testParseLogsStreamed() throws Exception {
+        final List<LogEntry> logs = parseLogs("{\"status\":\"success\",\"data\":["
+                + "{\"LogID\":1,\"LogType\":\"Found it\",\"Visited\":\"2016-05-01\",\"LatLonString\":\"\",\"LogText\":\"TFTC\",\"UserName\":\"finder\",\"GeocacheFindCount\":42,"
+                + "\"Images\":[{\"FileName\":\"image.jpg\",\"Name\":\"view\",\"Descr\":\"from the top\",\"Extra\":{\"a\":[1]}}]},"
+                + "{\"LogType\":\"Found it\",\"Visited\":\"not a date\"},"
+                + "{\"LogType\":\"Write note\",\"Visited\":\"2016-05-02\",\"LatLonString\":\"N 52\",\"LogText\":\"note\",\"UserName\":\"owner\",\"Images\":[]}"
+                + "],\"pageInfo\":{\"size\":3}}");
+        assertThat(logs).hasSize(2);
+        final LogEntry found = logs.get(0);
+        assertThat(found.getType()).isEqualTo(LogType.FOUND_IT);
+        assertThat(found.author).isEqualTo("finder");
+        assertThat(found.log).isEqualTo("TFTC");
+        assertThat(found.found).isEqualTo(42);
+        assertThat(found.getLogImages()).hasSize(1);
+        assertThat(found.getLogImages().get(0).getUrl()).isEqualTo("https://imgcdn.geocaching.com/cache/log/large/image.jpg");
+        assertThat(found.getLogImages().get(0).getTitle()).isEqualTo("view");
+        assertThat(found.getLogImages().get(0).getDescription()).isEqualTo("from the top");
+        assertThat(logs.get(1).getType()).isEqualTo(LogType.NOTE);
+        assertThat(logs.get(1).log).isEqualTo("N 52<br/><br/>note");
+    }
+
+    public static void testParseLogsSkipsNonObjects() throws Exception {
+        final List<LogEntry> logs = parseLogs("{\"status\":\"success\",\"data\":[null,"
+                + "{\"LogType\":\"Found it\",\"Visited\":\"2016-05-01\",\"UserName\":\"finder\","
+                + "\"Images\":[null,{\"FileName\":\"image.jpg\",\"Name\":\"view\"},[{}],{\"FileName\":\"other.jpg\"}]},"
+                + "[{}],\"log\",{\"LogType\":\"Write note\",\"Visited\":\"2016-05-02\",\"UserName\":\"owner\"}]}");
+        assertThat(logs).hasSize(2);
+        assertThat(logs.get(0).getLogImages()).hasSize(2);
+        assertThat(logs.get(0).getLogImages().get(1).getUrl()).isEqualTo("https://imgcdn.geocaching.com/cache/log/large/other.jpg");
+        assertThat(logs.get(1).author).isEqualTo("owner");
+    }
+
+    public static void testParseLogsWithStatusAfterData() throws Exception {
+        final String data = "\"data\":[{\"LogType\":\"Found it\",\"Visited\":\"2016-05-01\",\"UserName\":\"finder\"}]";
+        assertThat(parseLogs("{" + data + ",\"status\":\"success\"}")).hasSize(1);
+        assertThat(parseLogs("{" + data + ",\"status\":\"error\"}")).isEmpty();
+        assertThat(parseLogs("{" + data + "}")).isEmpty();
+        assertThat(parseLogs("{\"status\":\"error\"," + data + "}")).isEmpty();
+        assertThat(parseLogs("[]")).isEmpty();
+    }
 }
@@ -0,0 +1,161 @@
+package cgeo.geocaching.export;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.enumerations.CacheSize;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LogType;
+import cgeo.geocaching.enumerations.WaypointType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.LogEntry;
+import cgeo.geocaching.models.Trackable;
+import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.storage.DataStore.CacheExportVisitor;
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the parallel GPX export with the sequential one on synthetic caches, which are not stored in the database.
+ */
+public class ParallelGpxExportTest extends AndroidTestCase {
+
+    private static final int CACHES = 2000;
+    private static final int LOGS_PER_CACHE = 20;
+
+    private final List<Geocache> caches = new ArrayList<>();
+    private final List<List<LogEntry>> logs = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (int i = 0; i < CACHES; i++) {
+            final String geocode = "GC" + Integer.toString(100000 + i, 36).toUpperCase(Locale.US);
+            final Geocache cache = new Geocache();
+            cache.setGeocode(geocode);
+            cache.setCacheId(String.valueOf(i));
+            cache.setName("Cache <" + i + "> & more");
+            cache.setOwnerDisplayName("owner " + i);
+            cache.setOwnerUserId("owner" + i);
+            cache.setType(CacheType.values()[i % 5]);
+            cache.setSize(CacheSize.SMALL);
+            cache.setDifficulty(1.5f);
+            cache.setTerrain(2.0f + i % 3);
+            cache.setHidden(new Date(1300000000000L + i * 86400000L));
+            cache.setLocation("Bavaria, Germany");
+            cache.setShortDescription("short description of " + geocode);
+            cache.setDescription("<p>long description of " + geocode + " with \"quotes\" and umlauts äöü</p>");
+            cache.setHint("hint " + i);
+            cache.setFound(i % 3 == 0);
+            cache.setPersonalNote(i % 2 == 0 ? "note " + i : null);
+            // every 100th cache cannot be exported
+            cache.setCoords(i % 100 == 99 ? null : new Geopoint(48.0 + i / 10000.0, 11.0 + i / 10000.0));
+
+            final List<Waypoint> waypoints = new ArrayList<>();
+            final Waypoint parking = new Waypoint("Parking", WaypointType.PARKING, false);
+            parking.setGeocode(geocode);
+            parking.setPrefix("PK");
+            parking.setCoords(new Geopoint(48.0, 11.0));
+            waypoints.add(parking);
+            final Waypoint own = new Waypoint("Own", WaypointType.WAYPOINT, true);
+            own.setGeocode(geocode);
+            own.setCoords(new Geopoint(48.1, 11.1));
+            waypoints.add(own);
+            cache.setWaypoints(waypoints, false);
+
+            final Trackable trackable = new Trackable();
+            trackable.setGeocode("TB" + i);
+            trackable.setName("Trackable " + i);
+            cache.setInventory(Collections.singletonList(trackable));
+
+            final List<LogEntry> cacheLogs = new ArrayList<>();
+            for (int log = 0; log < LOGS_PER_CACHE; log++) {
+                cacheLogs.add(new LogEntry.Builder()
+                        .setId(i * LOGS_PER_CACHE + log)
+                        .setAuthor("finder " + log)
+                        .setDate(1400000000000L + log * 3600000L)
+                        .setLogType(LogType.FOUND_IT)
+                        .setLog("TFTC <b>" + log + "</b>")
+                        .build());
+            }
+            caches.add(cache);
+            logs.add(cacheLogs);
+        }
+    }
+
+    private GpxSerializer.CacheSource createSource() {
+        return new GpxSerializer.CacheSource() {
+
+            @Override
+            public void visitCaches(@NonNull final CacheExportVisitor visitor) throws IOException {
+                for (int i = 0; i < caches.size(); i++) {
+                    visitor.visit(caches.get(i), logs.get(i).iterator());
+                }
+            }
+        };
+    }
+
+    private String export(final int threads) throws IOException {
+        final StringWriter writer = new StringWriter();
+        if (threads == 0) {
+            new GpxSerializer().writeGPX(createSource(), writer, null, null, 0);
+            return writer.toString();
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            new GpxSerializer().writeGPX(createSource(), writer, null, executor, threads);
+        } finally {
+            executor.shutdownNow();
+        }
+        return writer.toString();
+    }
+
+    public void testParallelExportIsIdentical() throws IOException {
+        final String sequential = export(0);
+        assertThat(sequential).contains("<name>GC255S</name>").contains("<groundspeak:log id=\"0\">");
+        for (final int threads : new int[] { 1, 2, 4 }) {
+            assertThat(export(threads)).as("export with " + threads + " threads").isEqualTo(sequential);
+        }
+    }
+
+    public void testParallelExportOfNothing() throws IOException {
+        caches.clear();
+        logs.clear();
+        assertThat(export(2)).isEqualTo(export(0)).endsWith(" />");
+    }
+
+    @NotForIntegrationTests
+    public void testThroughput() throws IOException {
+        // warm up
+        export(0);
+        export(4);
+
+        final StringBuilder times = new StringBuilder();
+        times.append("sequential ").append(measure(0)).append(" ms");
+        for (final int threads : new int[] { 1, 2, 4 }) {
+            times.append(", ").append(threads).append(" threads ").append(measure(threads)).append(" ms");
+        }
+        Log.d(String.format(Locale.US, "ParallelGpxExportTest: %d caches on %d processors, %s", CACHES, Runtime.getRuntime().availableProcessors(), times));
+    }
+
+    private long measure(final int threads) throws IOException {
+        final long start = SystemClock.elapsedRealtime();
+        export(threads);
+        return SystemClock.elapsedRealtime() - start;
+    }
+}
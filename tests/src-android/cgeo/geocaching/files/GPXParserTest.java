@@ -22,8 +22,11 @@ import cgeo.geocaching.test.R;
 import cgeo.geocaching.utils.CalendarUtils;
 import cgeo.geocaching.utils.SynchronizedDateFormat;
 
+import org.apache.commons.lang3.CharEncoding;
+
 import android.support.annotation.RawRes;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
@@ -484,6 +487,29 @@ public class GPXParserTest extends AbstractResourceInstrumentationTestCase {
         assertThat(log.date).isNotEqualTo(0);
     }
 
+    public void testWaypointsAcrossImportBatches() throws Exception {
+        final int count = GPXImportWriter.BATCH_SIZE * 2 + 50;
+        final StringBuilder gpx = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<gpx version=\"1.0\" xmlns=\"http://www.topografix.com/GPX/1/0\">\n");
+        for (int i = 0; i < count; i++) {
+            final String suffix = String.format(Locale.US, "ZZ%04d", i);
+            gpx.append("<wpt lat=\"48.5\" lon=\"9.5\"><name>GC").append(suffix).append("</name><type>Geocache|Traditional Cache</type></wpt>\n");
+            gpx.append("<wpt lat=\"48.6\" lon=\"9.6\"><name>01").append(suffix).append("</name><desc>Stage</desc><type>Waypoint|Stages of a Multicache</type></wpt>\n");
+        }
+        gpx.append("</gpx>\n");
+
+        final GPX10Parser parser = new GPX10Parser(getTemporaryListId());
+        final Collection<Geocache> parsed = parser.parse(new ByteArrayInputStream(gpx.toString().getBytes(CharEncoding.UTF_8)), null);
+        assertThat(parsed).hasSize(count);
+
+        final Set<String> geocodes = new HashSet<>();
+        for (final Geocache cache : parsed) {
+            geocodes.add(cache.getGeocode());
+        }
+        for (final Geocache cache : DataStore.loadCaches(geocodes, LoadFlags.LOAD_ALL_DB_ONLY)) {
+            assertThat(cache.getWaypoints()).as(cache.getGeocode()).hasSize(1);
+        }
+    }
+
     public void testTerraCachingMulti() throws Exception {
         final List<Geocache> caches = readGPX11(R.raw.tc99un_gpx);
         assertThat(caches).hasSize(1);
@@ -0,0 +1,82 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.enumerations.CacheSize;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.list.StoredList;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import org.apache.commons.lang3.StringUtils;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Logs the number of caches per second stored by {@link DataStore#saveCaches}, once inserting new caches and once
+ * updating the same caches. The caches are stored under geocodes not used otherwise and removed afterwards.
+ */
+public class CacheStorePerformanceTest extends CGeoTestCase {
+
+    private static final String GEOCODE_PREFIX = "TESTSTORE";
+    private static final int CACHES = 2000;
+    private static final String LONG_TEXT = StringUtils.repeat("Lorem ipsum dolor sit amet. ", 20);
+
+    @NotForIntegrationTests
+    public static void testStoreCaches() {
+        final Set<String> geocodes = new HashSet<>(CACHES);
+        try {
+            final long inserted = storeCaches(geocodes, "Inserted");
+            // start from the database again, like after opening a list
+            DataStore.removeAllFromCache();
+            final long updated = storeCaches(geocodes, "Updated");
+
+            assertThat(DataStore.loadCaches(geocodes, LoadFlags.LOAD_CACHE_ONLY)).hasSize(CACHES);
+            Log.d(String.format(Locale.US, "CacheStorePerformanceTest: insert %d caches/s, update %d caches/s",
+                    CACHES * 1000L / Math.max(inserted, 1), CACHES * 1000L / Math.max(updated, 1)));
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    /**
+     * @return the time in milliseconds needed to store the caches
+     */
+    private static long storeCaches(final Set<String> geocodes, final String name) {
+        final List<Geocache> caches = new ArrayList<>(CACHES);
+        for (int i = 0; i < CACHES; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode(String.format(Locale.US, "%s%05d", GEOCODE_PREFIX, i));
+            cache.setName(name + " " + i);
+            cache.setType(CacheType.TRADITIONAL);
+            cache.setSize(CacheSize.SMALL);
+            cache.setDifficulty(1.5f);
+            cache.setTerrain(2f);
+            cache.setCoords(new Geopoint(48.0 + i / 10000.0, 11.0 + i / 10000.0));
+            cache.setOwnerDisplayName("Owner " + i % 50);
+            cache.setHint("Hint " + i);
+            cache.setShortDescription(LONG_TEXT);
+            cache.setDescription(LONG_TEXT + i);
+            cache.setDetailed(true);
+            cache.getLists().add(StoredList.STANDARD_LIST_ID);
+            cache.setAttributes(Arrays.asList("wheelchair_yes", "dogs_no"));
+            caches.add(cache);
+            geocodes.add(cache.getGeocode());
+        }
+        final long start = SystemClock.elapsedRealtime();
+        DataStore.saveCaches(caches, LoadFlags.SAVE_ALL);
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+}
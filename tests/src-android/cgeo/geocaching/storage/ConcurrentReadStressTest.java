@@ -0,0 +1,101 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.list.StoredList;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.LogEntry;
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an import of caches in batched transactions while querying viewports from another thread, and logs the latency
+ * percentiles of the viewport queries.
+ */
+public class ConcurrentReadStressTest extends CGeoTestCase {
+
+    private static final String GEOCODE_PREFIX = "TESTSTRESS";
+    private static final int CACHES = 10000;
+    private static final int BATCH_SIZE = 500;
+
+    @NotForIntegrationTests
+    public static void testViewportQueriesDuringImport() throws Exception {
+        final Set<String> geocodes = new HashSet<>(CACHES);
+        final AtomicBoolean importRunning = new AtomicBoolean(true);
+        final Thread importer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int start = 0; start < CACHES; start += BATCH_SIZE) {
+                        final List<Geocache> batch = new ArrayList<>(BATCH_SIZE);
+                        for (int i = start; i < start + BATCH_SIZE; i++) {
+                            batch.add(createCache(i));
+                        }
+                        DataStore.saveImportedCaches(batch, Collections.<String, List<LogEntry>> emptyMap());
+                    }
+                } finally {
+                    importRunning.set(false);
+                }
+            }
+        }, "ConcurrentReadStressTest");
+        for (int i = 0; i < CACHES; i++) {
+            geocodes.add(geocode(i));
+        }
+
+        final List<Long> latencies = new ArrayList<>();
+        try {
+            DataStore.init();
+            importer.start();
+            final Viewport viewport = new Viewport(new Geopoint(48.0, 11.0), new Geopoint(48.1, 11.1));
+            while (importRunning.get()) {
+                final long start = SystemClock.elapsedRealtime();
+                DataStore.loadStoredInViewport(viewport, CacheType.ALL);
+                latencies.add(SystemClock.elapsedRealtime() - start);
+            }
+            importer.join();
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+
+        assertThat(latencies).isNotEmpty();
+        Collections.sort(latencies);
+        Log.d(String.format(Locale.US, "ConcurrentReadStressTest: %d viewport queries while importing %d caches, latency p50 %d ms, p90 %d ms, p99 %d ms, max %d ms",
+                latencies.size(), CACHES, percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99), latencies.get(latencies.size() - 1)));
+    }
+
+    private static long percentile(final List<Long> sortedValues, final int percent) {
+        return sortedValues.get(Math.min(sortedValues.size() - 1, sortedValues.size() * percent / 100));
+    }
+
+    private static String geocode(final int index) {
+        return String.format(Locale.US, "%s%05d", GEOCODE_PREFIX, index);
+    }
+
+    private static Geocache createCache(final int index) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode(index));
+        cache.setName("Stress " + index);
+        cache.setType(CacheType.TRADITIONAL);
+        cache.setCoords(new Geopoint(48.0 + (index % 100) / 1000.0, 11.0 + (index / 100) / 1000.0));
+        cache.setDetailed(true);
+        cache.getLists().add(StoredList.STANDARD_LIST_ID);
+        cache.setAttributes(Arrays.asList("wheelchair_yes", "dogs_no"));
+        return cache;
+    }
+}
@@ -0,0 +1,92 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.WaypointType;
+import cgeo.geocaching.list.StoredList;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Checks that caches loaded in batches get their attributes and waypoints attached, and logs the wall time needed
+ * to load lists of different sizes.
+ */
+public class DataStoreBatchLoadTest extends CGeoTestCase {
+
+    private static final String GEOCODE_PREFIX = "TESTBATCH";
+
+    public static void testBatchLoadAttachesChildren() {
+        final Set<String> geocodes = storeCaches(20);
+        try {
+            final Set<Geocache> caches = DataStore.loadCaches(geocodes, LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(caches).hasSize(geocodes.size());
+            for (final Geocache cache : caches) {
+                assertThat(cache.getAttributes()).containsOnly("wheelchair_yes", "dogs_no");
+                assertThat(cache.getWaypoints()).hasSize(2);
+                assertThat(cache.getWaypoints().get(0).getGeocode()).isEqualTo(cache.getGeocode());
+                assertThat(cache.getLists()).contains(StoredList.STANDARD_LIST_ID);
+            }
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    @NotForIntegrationTests
+    public static void testBatchLoadPerformance() {
+        for (final int count : new int[] { 1000, 5000, 10000 }) {
+            final Set<String> geocodes = storeCaches(count);
+            try {
+                DataStore.removeAllFromCache();
+                final long start = SystemClock.elapsedRealtime();
+                final Set<Geocache> caches = DataStore.loadCaches(geocodes, LoadFlags.LOAD_ALL_DB_ONLY);
+                final long duration = SystemClock.elapsedRealtime() - start;
+                assertThat(caches).hasSize(count);
+                Log.d(String.format(Locale.US, "DataStoreBatchLoadTest: loaded %d caches in %d ms", count, duration));
+            } finally {
+                DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+            }
+        }
+    }
+
+    private static Set<String> storeCaches(final int count) {
+        final List<Geocache> caches = new ArrayList<>(count);
+        final Set<String> geocodes = new HashSet<>(count);
+        for (int i = 0; i < count; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode(String.format(Locale.US, "%s%05d", GEOCODE_PREFIX, i));
+            cache.setName("Batch " + i);
+            cache.setType(CacheType.TRADITIONAL);
+            cache.setCoords(new Geopoint(48.0 + i / 10000.0, 11.0 + i / 10000.0));
+            cache.setDetailed(true);
+            cache.getLists().add(StoredList.STANDARD_LIST_ID);
+            cache.setAttributes(Arrays.asList("wheelchair_yes", "dogs_no"));
+            final List<Waypoint> waypoints = new ArrayList<>();
+            for (int w = 0; w < 2; w++) {
+                final Waypoint waypoint = new Waypoint("Stage " + w, WaypointType.STAGE, false);
+                waypoint.setCoords(cache.getCoords());
+                waypoints.add(waypoint);
+            }
+            cache.setWaypoints(waypoints, false);
+            caches.add(cache);
+            geocodes.add(cache.getGeocode());
+        }
+        DataStore.saveCaches(caches, LoadFlags.SAVE_ALL);
+        return geocodes;
+    }
+
+}
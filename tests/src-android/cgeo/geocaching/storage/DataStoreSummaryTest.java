@@ -0,0 +1,154 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.enumerations.CacheSize;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.enumerations.LogType;
+import cgeo.geocaching.list.StoredList;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.GeocacheSummary;
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Checks that the summaries read by the narrow query match the full caches, and logs the heap and the time needed to
+ * load 10,000 caches completely and as summaries.
+ */
+public class DataStoreSummaryTest extends CGeoTestCase {
+
+    private static final String GEOCODE_PREFIX = "TESTSUMMARY";
+    // somewhere in the South Pacific, where no real caches are stored
+    private static final Viewport VIEWPORT = new Viewport(new Geopoint(-61.0, -121.0), new Geopoint(-59.0, -119.0));
+
+    public static void testSummariesMatchCaches() {
+        final List<Geocache> caches = createCaches(3);
+        caches.get(0).setFound(true);
+        caches.get(0).setPersonalNote("note");
+        caches.get(1).setDisabled(true);
+        caches.get(1).setUserModifiedCoords(true);
+        caches.get(1).setSize(CacheSize.MICRO);
+        caches.get(2).setArchived(true);
+        caches.get(2).setDifficulty(3.5f);
+        caches.get(2).setTerrain(2.0f);
+        final Set<String> geocodes = Geocache.getGeocodes(caches);
+        DataStore.saveCaches(caches, LoadFlags.SAVE_ALL);
+        try {
+            DataStore.saveLogOffline(caches.get(2).getGeocode(), new Date(), LogType.FOUND_IT, "offline");
+            DataStore.removeAllFromCache();
+
+            final List<GeocacheSummary> summaries = DataStore.loadStoredSummariesInViewport(VIEWPORT, CacheType.ALL);
+            assertThat(summaries).hasSize(3);
+            for (final GeocacheSummary summary : summaries) {
+                final GeocacheSummary expected = GeocacheSummary.of(DataStore.loadCache(summary.getGeocode(), LoadFlags.LOAD_ALL_DB_ONLY));
+                assertThat(summary.getName()).isEqualTo(expected.getName());
+                assertThat(summary.getType()).isEqualTo(expected.getType());
+                assertThat(summary.getSize()).isEqualTo(expected.getSize());
+                assertThat(summary.getCoords()).isEqualTo(expected.getCoords());
+                assertThat(summary.getDifficulty()).isEqualTo(expected.getDifficulty());
+                assertThat(summary.getTerrain()).isEqualTo(expected.getTerrain());
+                assertThat(summary.isFound()).isEqualTo(expected.isFound());
+                assertThat(summary.isDisabled()).isEqualTo(expected.isDisabled());
+                assertThat(summary.isArchived()).isEqualTo(expected.isArchived());
+                assertThat(summary.isOwner()).isEqualTo(expected.isOwner());
+                assertThat(summary.isStored()).isTrue();
+                assertThat(summary.isReliableLatLon()).isEqualTo(expected.isReliableLatLon());
+                assertThat(summary.hasUserModifiedCoords()).isEqualTo(expected.hasUserModifiedCoords());
+                assertThat(summary.hasFinalDefined()).isEqualTo(expected.hasFinalDefined());
+                assertThat(summary.hasPersonalNote()).isEqualTo(expected.hasPersonalNote());
+                assertThat(summary.isLogOffline()).isEqualTo(expected.isLogOffline());
+                assertThat(summary.getOfflineLogType()).isEqualTo(expected.getOfflineLogType());
+            }
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testSummaryOfCacheOnlyInMemory() {
+        final Geocache cache = createCaches(1).get(0);
+        cache.getLists().clear();
+        DataStore.saveCache(cache, EnumSet.of(SaveFlag.CACHE));
+        try {
+            final List<GeocacheSummary> summaries = DataStore.loadSummaries(Collections.singleton(cache.getGeocode()));
+            assertThat(summaries).hasSize(1);
+            assertThat(summaries.get(0).getName()).isEqualTo(cache.getName());
+            assertThat(summaries.get(0).isStored()).isFalse();
+        } finally {
+            DataStore.removeCache(cache.getGeocode(), LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    @NotForIntegrationTests
+    public static void testSummaryHeapAndLoadTime() {
+        final int count = 10000;
+        final List<Geocache> caches = createCaches(count);
+        final Set<String> geocodes = Geocache.getGeocodes(caches);
+        DataStore.saveCaches(caches, LoadFlags.SAVE_ALL);
+        caches.clear();
+        try {
+            DataStore.removeAllFromCache();
+            long heap = getUsedHeap();
+            long start = SystemClock.elapsedRealtime();
+            final Set<Geocache> loaded = DataStore.loadCaches(geocodes, LoadFlags.LOAD_WAYPOINTS);
+            final long cachesTime = SystemClock.elapsedRealtime() - start;
+            final long cachesHeap = getUsedHeap() - heap;
+            assertThat(loaded).hasSize(count);
+            loaded.clear();
+
+            DataStore.removeAllFromCache();
+            heap = getUsedHeap();
+            start = SystemClock.elapsedRealtime();
+            final List<GeocacheSummary> summaries = DataStore.loadSummaries(geocodes);
+            final long summariesTime = SystemClock.elapsedRealtime() - start;
+            final long summariesHeap = getUsedHeap() - heap;
+            assertThat(summaries).hasSize(count);
+
+            Log.d(String.format(Locale.US, "DataStoreSummaryTest: %d caches, full caches %d kB in %d ms, summaries %d kB in %d ms",
+                    count, cachesHeap / 1024, cachesTime, summariesHeap / 1024, summariesTime));
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    private static long getUsedHeap() {
+        System.gc();
+        System.runFinalization();
+        System.gc();
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<Geocache> createCaches(final int count) {
+        final List<Geocache> caches = new ArrayList<>(count);
+        final Set<String> geocodes = new HashSet<>(count);
+        for (int i = 0; i < count; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode(String.format(Locale.US, "%s%05d", GEOCODE_PREFIX, i));
+            cache.setName("Summary " + i);
+            cache.setType(CacheType.TRADITIONAL);
+            cache.setCoords(new Geopoint(-60.5 + i / 20000.0, -120.5 + i / 20000.0));
+            cache.setDetailed(true);
+            cache.getLists().add(StoredList.STANDARD_LIST_ID);
+            caches.add(cache);
+            geocodes.add(cache.getGeocode());
+        }
+        return caches;
+    }
+
+}
@@ -6,6 +6,7 @@ import cgeo.CGeoTestCase;
 import cgeo.geocaching.SearchResult;
 import cgeo.geocaching.connector.gc.GCConnector;
 import cgeo.geocaching.connector.gc.Tile;
+import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
@@ -20,6 +21,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
@@ -164,6 +166,289 @@ public class DataStoreTest extends CGeoTestCase {
         }
     }
 
+    // Changes written behind must be visible to the following queries
+    public static void testReadPendingWrites() {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(ARTIFICIAL_GEOCODE);
+        cache.setType(CacheType.TRADITIONAL);
+        cache.setDetailed(true);
+
+        int listId = StoredList.STANDARD_LIST_ID;
+        try {
+            listId = DataStore.createList("DataStore Pending Test");
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            DataStore.saveVisitDate(ARTIFICIAL_GEOCODE);
+            assertThat(DataStore.getHistoryOfCaches(true, CacheType.ALL).getGeocodes()).contains(ARTIFICIAL_GEOCODE);
+
+            DataStore.saveLists(Collections.singletonList(cache), Collections.singleton(listId));
+            assertThat(DataStore.getAllStoredCachesCount(CacheType.ALL, listId)).isEqualTo(1);
+            DataStore.moveToList(Collections.singletonList(cache), listId, StoredList.STANDARD_LIST_ID);
+            assertThat(DataStore.getAllStoredCachesCount(CacheType.ALL, listId)).isEqualTo(0);
+            final Geocache loaded = DataStore.loadCache(ARTIFICIAL_GEOCODE, LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(loaded).isNotNull();
+            assertThat(loaded.getLists()).containsOnly(StoredList.STANDARD_LIST_ID);
+        } finally {
+            DataStore.removeCache(ARTIFICIAL_GEOCODE, LoadFlags.REMOVE_ALL);
+            DataStore.removeList(listId);
+        }
+    }
+
+    public static void testStoredGeocodesPages() {
+        final Geopoint center = new Geopoint(48.0, 11.0);
+        final List<Geocache> caches = new ArrayList<>();
+        // two caches at the same distance, to be ordered by geocode
+        final double[] offsets = { 0.3, 0.1, 0.2, 0.1, 0.4 };
+        for (int i = 0; i < offsets.length; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode(ARTIFICIAL_GEOCODE + i);
+            cache.setType(CacheType.TRADITIONAL);
+            cache.setCoords(new Geopoint(48.0 + offsets[i], 11.0));
+            cache.setDetailed(true);
+            caches.add(cache);
+        }
+
+        int listId = StoredList.STANDARD_LIST_ID;
+        try {
+            listId = DataStore.createList("DataStore Pages Test");
+            for (final Geocache cache : caches) {
+                cache.getLists().add(listId);
+            }
+            DataStore.saveCaches(caches, EnumSet.of(SaveFlag.DB));
+
+            final List<String> pages = new ArrayList<>();
+            List<StoredCachesPager.SortKey> page = DataStore.loadStoredGeocodesPage(center, CacheType.ALL, listId, null, 2);
+            while (!page.isEmpty()) {
+                assertThat(page.size()).isLessThanOrEqualTo(2);
+                pages.addAll(StoredCachesPager.getGeocodes(page));
+                page = DataStore.loadStoredGeocodesPage(center, CacheType.ALL, listId, page.get(page.size() - 1), 2);
+            }
+            assertThat(pages).containsExactly(ARTIFICIAL_GEOCODE + 1, ARTIFICIAL_GEOCODE + 3, ARTIFICIAL_GEOCODE + 2, ARTIFICIAL_GEOCODE + 0, ARTIFICIAL_GEOCODE + 4);
+
+            final StoredCachesPager.SortKey afterGeocode = new StoredCachesPager.SortKey(ARTIFICIAL_GEOCODE + 2, 0);
+            assertThat(StoredCachesPager.getGeocodes(DataStore.loadStoredGeocodesPage(null, CacheType.ALL, listId, afterGeocode, 0)))
+                    .containsExactly(ARTIFICIAL_GEOCODE + 3, ARTIFICIAL_GEOCODE + 4);
+            assertThat(DataStore.loadStoredGeocodesPage(center, CacheType.MULTI, listId, null, 0)).isEmpty();
+
+            final StoredCachesPager pager = new StoredCachesPager(center, CacheType.ALL, listId);
+            assertThat(pager.getTotalCount()).isEqualTo(offsets.length);
+            assertThat(pager.nextPage()).isEqualTo(pages);
+            assertThat(pager.hasMore()).isFalse();
+            assertThat(pager.remainingPages()).isEmpty();
+
+            // the last cache of a page may be removed before the next page is read
+            final List<StoredCachesPager.SortKey> firstPage = DataStore.loadStoredGeocodesPage(center, CacheType.ALL, listId, null, 2);
+            DataStore.removeCache(ARTIFICIAL_GEOCODE + 3, LoadFlags.REMOVE_ALL);
+            assertThat(StoredCachesPager.getGeocodes(DataStore.loadStoredGeocodesPage(center, CacheType.ALL, listId, firstPage.get(1), 0)))
+                    .containsExactly(ARTIFICIAL_GEOCODE + 2, ARTIFICIAL_GEOCODE + 0, ARTIFICIAL_GEOCODE + 4);
+        } finally {
+            for (final Geocache cache : caches) {
+                DataStore.removeCache(cache.getGeocode(), LoadFlags.REMOVE_ALL);
+            }
+            DataStore.removeList(listId);
+        }
+    }
+
+    private static Geocache createCacheWithAllColumns(final String geocode) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setUpdated(1400000000000L);
+        cache.setDetailed(true);
+        cache.setDetailedUpdate(1400000001000L);
+        cache.setVisitedDate(1400000002000L);
+        cache.setCacheId("123456");
+        cache.setGuid("0a1b2c3d-guid");
+        cache.setType(CacheType.MULTI);
+        cache.setName("All columns");
+        cache.setOwnerDisplayName("Owner");
+        cache.setOwnerUserId("owner-id");
+        cache.setHidden(new Date(1300000000000L));
+        cache.setHint("under the stone");
+        cache.setSize(CacheSize.SMALL);
+        cache.setDifficulty(2.5f);
+        cache.setTerrain(3.5f);
+        cache.setLocation("Bavaria, Germany");
+        cache.setDistance(12.5f);
+        cache.setDirection(90f);
+        cache.setCoords(new Geopoint(48.125, 11.5));
+        cache.setReliableLatLon(true);
+        cache.setShortDescription("short");
+        cache.setPersonalNote("personal note");
+        cache.setDescription("description");
+        cache.setFavoritePoints(7);
+        cache.setRating(4.25f);
+        cache.setVotes(12);
+        cache.setMyVote(3f);
+        cache.setDisabled(true);
+        cache.setArchived(true);
+        cache.setPremiumMembersOnly(true);
+        cache.setFound(true);
+        cache.setFavorite(true);
+        cache.setInventoryItems(3);
+        cache.setOnWatchlist(true);
+        cache.setUserModifiedCoords(true);
+        cache.setFinalDefined(true);
+        cache.setLogPasswordRequired(true);
+        cache.setWatchlistCount(5);
+        return cache;
+    }
+
+    private static void assertSameColumns(final Geocache loaded, final Geocache stored) {
+        assertThat(loaded.getUpdated()).isEqualTo(stored.getUpdated());
+        assertThat(loaded.isDetailed()).isEqualTo(stored.isDetailed());
+        assertThat(loaded.getDetailedUpdate()).isEqualTo(stored.getDetailedUpdate());
+        assertThat(loaded.getVisitedDate()).isEqualTo(stored.getVisitedDate());
+        assertThat(loaded.getGeocode()).isEqualTo(stored.getGeocode());
+        assertThat(loaded.getCacheId()).isEqualTo(stored.getCacheId());
+        assertThat(loaded.getGuid()).isEqualTo(stored.getGuid());
+        assertThat(loaded.getType()).isEqualTo(stored.getType());
+        assertThat(loaded.getName()).isEqualTo(stored.getName());
+        assertThat(loaded.getOwnerDisplayName()).isEqualTo(stored.getOwnerDisplayName());
+        assertThat(loaded.getOwnerUserId()).isEqualTo(stored.getOwnerUserId());
+        assertThat(loaded.getHiddenDate()).isEqualTo(stored.getHiddenDate());
+        assertThat(loaded.getHint()).isEqualTo(stored.getHint());
+        assertThat(loaded.getSize()).isEqualTo(stored.getSize());
+        assertThat(loaded.getDifficulty()).isEqualTo(stored.getDifficulty());
+        assertThat(loaded.getTerrain()).isEqualTo(stored.getTerrain());
+        assertThat(loaded.getLocation()).isEqualTo(stored.getLocation());
+        assertThat(loaded.getDistance()).isEqualTo(stored.getDistance());
+        assertThat(loaded.getDirection()).isEqualTo(stored.getDirection());
+        assertThat(loaded.getCoords()).isEqualTo(stored.getCoords());
+        assertThat(loaded.isReliableLatLon()).isEqualTo(stored.isReliableLatLon());
+        assertThat(loaded.getShortDescription()).isEqualTo(stored.getShortDescription());
+        assertThat(loaded.getPersonalNote()).isEqualTo(stored.getPersonalNote());
+        assertThat(loaded.getDescription()).isEqualTo(stored.getDescription());
+        assertThat(loaded.getFavoritePoints()).isEqualTo(stored.getFavoritePoints());
+        assertThat(loaded.getRating()).isEqualTo(stored.getRating());
+        assertThat(loaded.getVotes()).isEqualTo(stored.getVotes());
+        assertThat(loaded.getMyVote()).isEqualTo(stored.getMyVote());
+        assertThat(loaded.isDisabled()).isEqualTo(stored.isDisabled());
+        assertThat(loaded.isArchived()).isEqualTo(stored.isArchived());
+        assertThat(loaded.isPremiumMembersOnly()).isEqualTo(stored.isPremiumMembersOnly());
+        assertThat(loaded.isFound()).isEqualTo(stored.isFound());
+        assertThat(loaded.isFavorite()).isEqualTo(stored.isFavorite());
+        assertThat(loaded.getInventoryItems()).isEqualTo(stored.getInventoryItems());
+        assertThat(loaded.isOnWatchlist()).isEqualTo(stored.isOnWatchlist());
+        assertThat(loaded.hasUserModifiedCoords()).isEqualTo(stored.hasUserModifiedCoords());
+        assertThat(loaded.hasFinalDefined()).isEqualTo(stored.hasFinalDefined());
+        assertThat(loaded.isLogPasswordRequired()).isEqualTo(stored.isLogPasswordRequired());
+        assertThat(loaded.getWatchlistCount()).isEqualTo(stored.getWatchlistCount());
+    }
+
+    // every column written by the compiled insert and update statements must be read back unchanged
+    public static void testStoreAndLoadAllColumns() {
+        // a geocode of geocaching.com, whose connector keeps the reliable coordinates flag
+        final String geocode = "GCZZZZZ9";
+        final Geocache cache = createCacheWithAllColumns(geocode);
+        try {
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            DataStore.removeCache(geocode, EnumSet.of(LoadFlags.RemoveFlag.CACHE));
+            final Geocache inserted = DataStore.loadCache(geocode, LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(inserted).isNotNull();
+            assertSameColumns(inserted, cache);
+
+            // storing the cache again updates the existing row
+            final Geocache changed = new Geocache();
+            changed.setGeocode(geocode);
+            changed.setType(CacheType.TRADITIONAL);
+            changed.setUpdated(1400000003000L);
+            changed.setSize(CacheSize.LARGE);
+            changed.setWatchlistCount(-1);
+            DataStore.saveCache(changed, EnumSet.of(SaveFlag.DB));
+            DataStore.removeCache(geocode, EnumSet.of(LoadFlags.RemoveFlag.CACHE));
+            final Geocache updated = DataStore.loadCache(geocode, LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(updated).isNotNull();
+            assertSameColumns(updated, changed);
+        } finally {
+            DataStore.removeCache(geocode, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testCompressedTexts() {
+        final String description = StringUtils.repeat("<p>A long description.</p>", 100);
+        final String logText = StringUtils.repeat("Found it, thanks for the cache. ", 50);
+        final Geocache cache = new Geocache();
+        cache.setGeocode(ARTIFICIAL_GEOCODE);
+        cache.setDetailed(true);
+        cache.setShortDescription("short");
+        cache.setDescription(description);
+
+        try {
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            DataStore.saveLogs(ARTIFICIAL_GEOCODE, Collections.singletonList(new LogEntry.Builder().setLog(logText).build()));
+
+            final Geocache texts = DataStore.loadCacheTexts(ARTIFICIAL_GEOCODE);
+            assertThat(texts.getDescription()).isEqualTo(description);
+            assertThat(texts.getShortDescription()).isEqualTo("short");
+            final List<LogEntry> logs = DataStore.loadLogs(ARTIFICIAL_GEOCODE);
+            assertThat(logs).hasSize(1);
+            assertThat(logs.get(0).log).isEqualTo(logText);
+
+            // a text getting short again is stored uncompressed
+            cache.setDescription("now short");
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            assertThat(DataStore.loadCacheTexts(ARTIFICIAL_GEOCODE).getDescription()).isEqualTo("now short");
+        } finally {
+            DataStore.removeCache(ARTIFICIAL_GEOCODE, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    // A cache changed after it was saved is written as it was saved
+    public static void testPendingWriteSnapshot() {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(ARTIFICIAL_GEOCODE);
+        cache.setType(CacheType.TRADITIONAL);
+        cache.setDetailed(true);
+        cache.setName("saved");
+
+        try {
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            cache.setFound(true);
+            DataStore.saveChangedCache(cache);
+            cache.setName("not saved");
+
+            DataStore.removeCache(ARTIFICIAL_GEOCODE, EnumSet.of(LoadFlags.RemoveFlag.CACHE));
+            final Geocache loaded = DataStore.loadCache(ARTIFICIAL_GEOCODE, LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(loaded).isNotNull();
+            assertThat(loaded.isFound()).isTrue();
+            assertThat(loaded.getName()).isEqualTo("saved");
+        } finally {
+            DataStore.removeCache(ARTIFICIAL_GEOCODE, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testSuggestions() {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(ARTIFICIAL_GEOCODE);
+        cache.setName("Suggestion Test Cache");
+        cache.setOwnerUserId("suggestionowner");
+        cache.setDetailed(true);
+
+        try {
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            assertThat(DataStore.getSuggestionsKeyword("suggestion te")).contains("Suggestion Test Cache");
+            assertThat(DataStore.getSuggestionsKeyword("test")).contains("Suggestion Test Cache");
+            assertThat(DataStore.getSuggestionsOwnerName("suggestionow")).contains("suggestionowner");
+            assertThat(DataStore.getSuggestionsGeocode(ARTIFICIAL_GEOCODE)).contains(ARTIFICIAL_GEOCODE);
+
+            // renaming must update the index
+            cache.setName("Renamed Cache");
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            assertThat(DataStore.getSuggestionsKeyword("suggestion te")).doesNotContain("Suggestion Test Cache");
+            assertThat(DataStore.getSuggestionsKeyword("renamed")).contains("Renamed Cache");
+        } finally {
+            DataStore.removeCache(ARTIFICIAL_GEOCODE, LoadFlags.REMOVE_ALL);
+        }
+        assertThat(DataStore.getSuggestionsKeyword("renamed")).doesNotContain("Renamed Cache");
+    }
+
+    public static void testFtsPrefixQuery() {
+        assertThat(DataStore.getFtsPrefixQuery("GC12")).isEqualTo("\"GC12*\"");
+        assertThat(DataStore.getFtsPrefixQuery(" big  tree ")).isEqualTo("\"big*\" \"tree*\"");
+        assertThat(DataStore.getFtsPrefixQuery("a OR \"b\"-c")).isEqualTo("\"a*\" \"OR*\" \"b*\" \"c*\"");
+        assertThat(DataStore.getFtsPrefixQuery("Größe")).isEqualTo("\"Größe*\"");
+        assertThat(DataStore.getFtsPrefixQuery(" *- ")).isNull();
+    }
+
     // Loading logs for an empty geocode should return an empty list, not null!
     public static void testLoadLogsFromEmptyGeocode() {
         final List<LogEntry> logs = DataStore.loadLogs("");
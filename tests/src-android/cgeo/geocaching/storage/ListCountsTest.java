@@ -0,0 +1,107 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import java.util.Random;
+
+/**
+ * Applies random sequences of cache and list changes to an in-memory database with the layout {@link DataStore} uses,
+ * and compares the maintained list counts with counting the joined caches and list memberships.
+ */
+public class ListCountsTest extends AndroidTestCase {
+
+    private static final int GEOCODES = 30;
+    private static final int LISTS = 5;
+    private static final String[] TYPES = { "traditional", "multi", "mystery", null };
+    private static final int MUTATIONS = 2000;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = SQLiteDatabase.create(null);
+        db.execSQL("create table cg_caches (_id integer primary key autoincrement, geocode text unique not null, type text, detailed integer not null default 0)");
+        db.execSQL("create table cg_caches_lists (list_id integer not null, geocode text not null, primary key (list_id, geocode))");
+        DataStore.createListCounts(db);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testRandomMutations() {
+        final Random random = new Random(42);
+        for (int i = 0; i < MUTATIONS; i++) {
+            final String geocode = "GC" + random.nextInt(GEOCODES);
+            final int listId = random.nextInt(LISTS);
+            final String type = TYPES[random.nextInt(TYPES.length)];
+            final String detailed = String.valueOf(random.nextInt(2));
+            switch (random.nextInt(7)) {
+                case 0:
+                    db.execSQL("insert or ignore into cg_caches (geocode, type, detailed) values (?, ?, ?)", new Object[] { geocode, type, detailed });
+                    break;
+                case 1:
+                    db.execSQL("update cg_caches set type = ?, detailed = ? where geocode = ?", new Object[] { type, detailed, geocode });
+                    break;
+                case 2:
+                    db.execSQL("delete from cg_caches where geocode = ?", new Object[] { geocode });
+                    break;
+                case 3:
+                    // same statement as used by the data store
+                    db.execSQL("insert or ignore into cg_caches_lists (list_id, geocode) values (?, ?)", new Object[] { listId, geocode });
+                    break;
+                case 4:
+                    db.execSQL("delete from cg_caches_lists where list_id = ? and geocode = ?", new Object[] { listId, geocode });
+                    break;
+                case 5:
+                    db.execSQL("update or ignore cg_caches_lists set list_id = ? where geocode = ?", new Object[] { listId, geocode });
+                    break;
+                default:
+                    db.execSQL("delete from cg_caches_lists where list_id = ?", new Object[] { listId });
+                    break;
+            }
+            assertCountsMatch();
+        }
+    }
+
+    public void testReconcile() {
+        db.execSQL("insert into cg_caches (geocode, type, detailed) values ('GC1', 'traditional', 1)");
+        db.execSQL("insert into cg_caches_lists (list_id, geocode) values (1, 'GC1')");
+        db.execSQL("update cg_list_counts set count = 17");
+        DataStore.reconcileListCounts(db);
+        assertCountsMatch();
+        assertThat(count("select count from cg_list_counts where list_id = 1 and type = 'traditional'")).isEqualTo(1);
+    }
+
+    private void assertCountsMatch() {
+        assertThat(count("select ifnull(sum(count), 0) from cg_list_counts where list_id > 0"))
+                .isEqualTo(count("select count(c._id) from cg_caches c, cg_caches_lists l where c.detailed = 1 and c.geocode = l.geocode and l.list_id > 0"));
+        for (int listId = 0; listId < LISTS; listId++) {
+            assertThat(count("select ifnull(sum(count), 0) from cg_list_counts where list_id = " + listId))
+                    .isEqualTo(count("select count(c._id) from cg_caches c, cg_caches_lists l where c.detailed = 1 and c.geocode = l.geocode and l.list_id = " + listId));
+            for (final String type : TYPES) {
+                if (type != null) {
+                    assertThat(count("select ifnull(sum(count), 0) from cg_list_counts where type = '" + type + "' and list_id = " + listId))
+                            .isEqualTo(count("select count(c._id) from cg_caches c, cg_caches_lists l where c.detailed = 1 and c.type = '" + type + "' and c.geocode = l.geocode and l.list_id = " + listId));
+                }
+            }
+        }
+    }
+
+    private long count(final String sql) {
+        final Cursor cursor = db.rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the {@code LIKE} queries formerly used for search suggestions with prefix queries on a full text index, on
+ * a synthetic in-memory database of 40,000 caches and 200,000 logs with the same layout {@link DataStore} uses.
+ */
+public class SuggestionQueryPerformanceTest extends AndroidTestCase {
+
+    private static final int CACHES = 40000;
+    private static final int LOGS_PER_CACHE = 5;
+    private static final int AUTHORS = 20000;
+    private static final String[] WORDS = { "old", "oak", "tree", "bridge", "mill", "river", "castle", "hidden", "view", "forest",
+            "lake", "stone", "church", "tower", "park", "garden", "valley", "hill", "rock", "spring" };
+    private static final String[] TERMS = { "bri", "castl", "hid", "tow", "gard", "vall", "spr", "GC1A", "user12", "author3" };
+
+    private SQLiteDatabase db;
+    private boolean ftsAvailable;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = SQLiteDatabase.create(null);
+        db.execSQL("create table cg_caches (_id integer primary key autoincrement, geocode text, name text, owner text)");
+        db.execSQL("create table cg_logs (_id integer primary key autoincrement, geocode text, author text)");
+        try {
+            db.execSQL("create virtual table cg_caches_fts using fts4(geocode, name, owner)");
+            db.execSQL("create virtual table cg_logs_fts using fts4(author)");
+            ftsAvailable = true;
+        } catch (final SQLiteException e) {
+            Log.w("SuggestionQueryPerformanceTest: fts4 module not available", e);
+        }
+
+        final Random random = new Random(42);
+        final SQLiteStatement insertCache = db.compileStatement("insert into cg_caches (geocode, name, owner) values (?, ?, ?)");
+        final SQLiteStatement insertLog = db.compileStatement("insert into cg_logs (geocode, author) values (?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CACHES; i++) {
+                final String geocode = "GC" + Integer.toString(i, 36).toUpperCase(Locale.US);
+                insertCache.bindString(1, geocode);
+                insertCache.bindString(2, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " #" + i);
+                insertCache.bindString(3, "user" + random.nextInt(AUTHORS));
+                insertCache.executeInsert();
+                for (int j = 0; j < LOGS_PER_CACHE; j++) {
+                    insertLog.bindString(1, geocode);
+                    insertLog.bindString(2, "author" + random.nextInt(AUTHORS));
+                    insertLog.executeInsert();
+                }
+            }
+            if (ftsAvailable) {
+                db.execSQL("insert into cg_caches_fts (docid, geocode, name, owner) select _id, geocode, name, owner from cg_caches");
+                db.execSQL("insert into cg_caches_fts (cg_caches_fts) values ('optimize')");
+                db.execSQL("insert into cg_logs_fts (docid, author) select _id, author from cg_logs");
+                db.execSQL("insert into cg_logs_fts (cg_logs_fts) values ('optimize')");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    @NotForIntegrationTests
+    public void testCacheSuggestions() {
+        if (!ftsAvailable) {
+            return;
+        }
+        long likeTime = 0;
+        long ftsTime = 0;
+        for (final String term : TERMS) {
+            long start = SystemClock.elapsedRealtime();
+            final Set<String> like = query("select geocode from cg_caches where geocode like ? or name like ? or owner like ?", "%" + term + "%", "%" + term + "%", "%" + term + "%");
+            likeTime += SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            final Set<String> fts = query("select geocode from cg_caches where _id in (select docid from cg_caches_fts where cg_caches_fts match ?)", DataStore.getFtsPrefixQuery(term));
+            ftsTime += SystemClock.elapsedRealtime() - start;
+
+            // words starting with the term are a subset of the texts containing it
+            assertThat(like).containsAll(fts);
+        }
+        Log.d(String.format(Locale.US, "SuggestionQueryPerformanceTest: %d cache searches on %d caches, LIKE %d ms, FTS %d ms", TERMS.length, CACHES, likeTime, ftsTime));
+    }
+
+    @NotForIntegrationTests
+    public void testAuthorSuggestions() {
+        if (!ftsAvailable) {
+            return;
+        }
+        long likeTime = 0;
+        long ftsTime = 0;
+        for (final String term : TERMS) {
+            long start = SystemClock.elapsedRealtime();
+            final Set<String> like = query("select distinct author from cg_logs where author like ? order by author collate nocase asc", "%" + term + "%");
+            likeTime += SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            final Set<String> fts = query("select distinct author from cg_logs_fts where author match ? order by author collate nocase asc", DataStore.getFtsPrefixQuery(term));
+            ftsTime += SystemClock.elapsedRealtime() - start;
+
+            assertThat(like).containsAll(fts);
+        }
+        Log.d(String.format(Locale.US, "SuggestionQueryPerformanceTest: %d author searches on %d logs, LIKE %d ms, FTS %d ms", TERMS.length, CACHES * LOGS_PER_CACHE, likeTime, ftsTime));
+    }
+
+    private Set<String> query(final String sql, final String... args) {
+        final Set<String> result = new HashSet<>();
+        final Cursor cursor = db.rawQuery(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                result.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,151 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the database size and the time to read the rows of a cache list before and after moving the long texts of
+ * a synthetic sample of 20,000 caches with the same layout {@link DataStore} uses into the compressed text tables.
+ */
+public class TextStoragePerformanceTest extends AndroidTestCase {
+
+    private static final int CACHES = 20000;
+    private static final int LOGS_PER_CACHE = 3;
+    private static final String[] WORDS = { "<p>", "</p>", "<br />", "the", "cache", "is", "hidden", "near", "old", "oak", "tree",
+            "bridge", "please", "bring", "a", "pen", "and", "take", "care", "of", "muggles", "<strong>", "</strong>", "parking", "at" };
+
+    private File file;
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getContext().getCacheDir(), "text_storage_test.sqlite");
+        deleteDatabase();
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL("create table cg_caches (_id integer primary key autoincrement, geocode text unique not null, name text, type text, latitude double, longitude double, shortdesc text, description text)");
+        db.execSQL("create table cg_logs (_id integer primary key autoincrement, geocode text not null, log text)");
+
+        final Random random = new Random(42);
+        final SQLiteStatement insertCache = db.compileStatement("insert into cg_caches (geocode, name, type, latitude, longitude, shortdesc, description) values (?, ?, 'traditional', ?, ?, ?, ?)");
+        final SQLiteStatement insertLog = db.compileStatement("insert into cg_logs (geocode, log) values (?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CACHES; i++) {
+                final String geocode = "GC" + i;
+                insertCache.bindString(1, geocode);
+                insertCache.bindString(2, "Cache " + i);
+                insertCache.bindDouble(3, 48 + random.nextDouble());
+                insertCache.bindDouble(4, 11 + random.nextDouble());
+                insertCache.bindString(5, createText(random, 60));
+                insertCache.bindString(6, createText(random, 500));
+                insertCache.executeInsert();
+                for (int j = 0; j < LOGS_PER_CACHE; j++) {
+                    insertLog.bindString(1, geocode);
+                    insertLog.bindString(2, createText(random, 20 + random.nextInt(150)));
+                    insertLog.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        deleteDatabase();
+        super.tearDown();
+    }
+
+    private void deleteDatabase() {
+        file.delete();
+        new File(file.getPath() + "-journal").delete();
+    }
+
+    private static String createText(final Random random, final int words) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    @NotForIntegrationTests
+    public void testSizeAndListLoad() {
+        final String description = queryString("select description from cg_caches where geocode = 'GC1'");
+        final long plainSize = getVacuumedSize();
+        // the list used to read the short description with the other fields of the caches
+        final long plainLoad = loadList("geocode, name, type, latitude, longitude, shortdesc");
+
+        final long start = SystemClock.elapsedRealtime();
+        db.beginTransaction();
+        try {
+            DataStore.createTextTables(db);
+            DataStore.compressTexts(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        final long migration = SystemClock.elapsedRealtime() - start;
+        final long compressedSize = getVacuumedSize();
+        final long compressedLoad = loadList("geocode, name, type, latitude, longitude");
+
+        assertThat(queryString("select description from cg_caches where geocode = 'GC1'")).isNull();
+        final Cursor cursor = db.rawQuery("select description_deflated from cg_cache_texts where geocode = 'GC1'", null);
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(TextCompression.inflate(cursor.getBlob(0))).isEqualTo(description);
+        } finally {
+            cursor.close();
+        }
+
+        Log.d(String.format(Locale.US, "TextStoragePerformanceTest: %d caches, %d logs, database %d kB uncompressed, %d kB compressed (migration %d ms), list load %d ms uncompressed, %d ms compressed",
+                CACHES, CACHES * LOGS_PER_CACHE, plainSize / 1024, compressedSize / 1024, migration, plainLoad, compressedLoad));
+    }
+
+    private long getVacuumedSize() {
+        db.execSQL("vacuum");
+        return file.length();
+    }
+
+    private long loadList(final String columns) {
+        final long start = SystemClock.elapsedRealtime();
+        final Cursor cursor = db.rawQuery("select " + columns + " from cg_caches", null);
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    cursor.getString(i);
+                }
+                rows++;
+            }
+            assertThat(rows).isEqualTo(CACHES);
+        } finally {
+            cursor.close();
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private String queryString(final String sql) {
+        final Cursor cursor = db.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.test.NotForIntegrationTests;
+import cgeo.geocaching.utils.Log;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares viewport queries using the latitude/longitude indices with queries using an R*Tree index on a synthetic
+ * in-memory database of 50,000 caches, the same layout {@link DataStore} uses.
+ */
+public class ViewportQueryPerformanceTest extends AndroidTestCase {
+
+    private static final int CACHES = 50000;
+    private static final int QUERIES = 200;
+
+    private SQLiteDatabase db;
+    private boolean rTreeAvailable;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = SQLiteDatabase.create(null);
+        db.execSQL("create table cg_caches (_id integer primary key autoincrement, geocode text, latitude double, longitude double)");
+        db.execSQL("create index in_caches_lat on cg_caches (latitude)");
+        db.execSQL("create index in_caches_lon on cg_caches (longitude)");
+        try {
+            db.execSQL("create virtual table cg_caches_rtree using rtree(id, minLat, maxLat, minLon, maxLon)");
+            rTreeAvailable = true;
+        } catch (final SQLiteException e) {
+            Log.w("ViewportQueryPerformanceTest: rtree module not available", e);
+        }
+
+        final Random random = new Random(42);
+        final SQLiteStatement insert = db.compileStatement("insert into cg_caches (geocode, latitude, longitude) values (?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CACHES; i++) {
+                insert.bindString(1, "GC" + Integer.toString(i, 36).toUpperCase(Locale.US));
+                // central Europe
+                insert.bindDouble(2, 45.0 + random.nextDouble() * 10.0);
+                insert.bindDouble(3, 5.0 + random.nextDouble() * 15.0);
+                insert.executeInsert();
+            }
+            if (rTreeAvailable) {
+                db.execSQL("insert into cg_caches_rtree select _id, latitude, latitude, longitude, longitude from cg_caches");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    @NotForIntegrationTests
+    public void testViewportQueries() {
+        if (!rTreeAvailable) {
+            return;
+        }
+        final Random random = new Random(4711);
+        long rangeTime = 0;
+        long rTreeTime = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            final Viewport viewport = new Viewport(new Geopoint(45.0 + random.nextDouble() * 10.0, 5.0 + random.nextDouble() * 15.0), 0.15, 0.3);
+
+            long start = SystemClock.elapsedRealtime();
+            final Set<String> range = query("select geocode from cg_caches where " + viewport.sqlWhere("cg_caches"));
+            rangeTime += SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            final Set<String> rTree = query("select geocode from cg_caches where cg_caches._id in (select id from cg_caches_rtree where maxLat >= " + viewport.getLatitudeMin()
+                    + " and minLat <= " + viewport.getLatitudeMax() + " and maxLon >= " + viewport.getLongitudeMin() + " and minLon <= " + viewport.getLongitudeMax() + ")");
+            rTreeTime += SystemClock.elapsedRealtime() - start;
+
+            // the R*Tree stores 32 bit floats, so it may return additional caches exactly on the border
+            assertThat(rTree).containsAll(range);
+        }
+        Log.d(String.format(Locale.US, "ViewportQueryPerformanceTest: %d queries on %d caches, lat/lon indices %d ms, R*Tree %d ms", QUERIES, CACHES, rangeTime, rTreeTime));
+    }
+
+    private Set<String> query(final String sql) {
+        final Set<String> result = new HashSet<>();
+        final Cursor cursor = db.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                result.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.test.mock.MockedCache;
+import cgeo.geocaching.utils.MatcherWrapper;
+import cgeo.geocaching.utils.TextUtils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class GCCachePageTest extends TestCase {
+
+    private static final String[] GEOCODES = { "GC1ZXX2", "GC2CJPF", "GC2JVEH", "GC3XX5J" };
+
+    private static List<String> readPages() {
+        final List<String> pages = new ArrayList<>();
+        for (final String geocode : GEOCODES) {
+            pages.add(TextUtils.replaceWhitespace(MockedCache.readCachePage(geocode)));
+        }
+        return pages;
+    }
+
+    public static void testSameMatchesAsWholePage() {
+        for (final String page : readPages()) {
+            final GCCachePage cachePage = new GCCachePage(page);
+            final int cacheDetails = page.indexOf(GCConstants.STRING_CACHEDETAILS);
+            assertThat(cachePage.indexOf(GCConstants.STRING_CACHEDETAILS, 0)).isEqualTo(cacheDetails);
+            assertThat(cachePage.indexOf(GCConstants.STRING_WAYPOINTS, 0)).isEqualTo(page.indexOf(GCConstants.STRING_WAYPOINTS));
+            for (final Pattern pattern : GCCachePage.getPatterns()) {
+                assertThat(cachePage.matches(pattern)).as(pattern.pattern()).isEqualTo(TextUtils.matches(page, pattern));
+                if (hasGroup(pattern)) {
+                    assertThat(cachePage.getMatch(pattern, false, null)).as(pattern.pattern()).isEqualTo(TextUtils.getMatch(page, pattern, false, null));
+                    assertThat(cachePage.getMatch(pattern, cacheDetails, true, null)).as(pattern.pattern())
+                            .isEqualTo(TextUtils.getMatch(page.substring(cacheDetails), pattern, true, null));
+                }
+                assertThat(findAll(cachePage.matcher(pattern))).as(pattern.pattern()).isEqualTo(findAll(new MatcherWrapper(pattern, page)));
+            }
+            assertThat(cachePage.getLongDescription()).isEqualTo(TextUtils.getMatch(page, GCConstants.PATTERN_DESC, true, ""));
+            assertThat(cachePage.getHiddenEventDate(cacheDetails)).isEqualTo(TextUtils.getMatch(page.substring(cacheDetails), GCConstants.PATTERN_HIDDENEVENT, true, null));
+        }
+    }
+
+    private static boolean hasGroup(final Pattern pattern) {
+        return pattern.matcher("").groupCount() > 0;
+    }
+
+    private static List<String> findAll(final MatcherWrapper matcher) {
+        final List<String> matches = new ArrayList<>();
+        while (matcher.find()) {
+            matches.add(matcher.group());
+        }
+        return matches;
+    }
+
+    public static void testFoundFields() {
+        final GCCachePage cachePage = new GCCachePage(TextUtils.replaceWhitespace(MockedCache.readCachePage("GC2CJPF")));
+        assertThat(cachePage.getMatch(GCConstants.PATTERN_GEOCODE, true, null)).isEqualTo("GC2CJPF");
+        assertThat(cachePage.getLongDescription()).isNotEmpty();
+        assertThat(cachePage.getMatch(GCConstants.PATTERN_SIZE, cachePage.indexOf(GCConstants.STRING_CACHEDETAILS, 0), true, null)).isNotNull();
+    }
+
+    public static void testEventDateEndingTheSearch() {
+        final String page = "<div id=\"cacheDetails\"> Event Date: 05/26/2012 <div id=\"calLinks\"> ";
+        assertThat(new GCCachePage(page).getHiddenEventDate(0)).isEqualTo("05/26/2012");
+        assertThat(new GCCachePage("<div id=\"calLinks\">").getHiddenEventDate(0)).isNull();
+    }
+
+    /**
+     * @return a date ending the search with a match of the given length
+     */
+    private static String eventDateWithLength(final int length) {
+        final String links = "<div id=\"calLinks\">";
+        return ": " + StringUtils.repeat('1', length - links.length() - 3) + " " + links;
+    }
+
+    /**
+     * @return the end of a long description matching {@link GCConstants#PATTERN_DESC_END} with the given length
+     */
+    private static String descriptionEndWithLength(final int length) {
+        final String end = "</div> <p> </p> <p id=\"ctl00_ContentBody_hints\">";
+        return "</span>" + StringUtils.repeat(' ', length - end.length() - 7) + end;
+    }
+
+    private static void assertSameEventDate(final String page, final String expected) {
+        assertThat(new GCCachePage(page).getHiddenEventDate(0)).isEqualTo(expected).isEqualTo(TextUtils.getMatch(page, GCConstants.PATTERN_HIDDENEVENT, true, null));
+    }
+
+    private static void assertSameLongDescription(final String page, final String expected) {
+        assertThat(new GCCachePage(page).getLongDescription()).isEqualTo(expected).isEqualTo(TextUtils.getMatch(page, GCConstants.PATTERN_DESC, true, ""));
+    }
+
+    public static void testEventDateAtWindowEdge() {
+        final String before = "<div id=\"cacheDetails\"> " + StringUtils.repeat("<p>Event</p> ", 50) + "Event Date";
+        final String atEdge = eventDateWithLength(GCCachePage.MATCH_END_WINDOW);
+        assertThat(atEdge).hasSize(GCCachePage.MATCH_END_WINDOW);
+        assertSameEventDate(before + atEdge, StringUtils.repeat('1', GCCachePage.MATCH_END_WINDOW - 22));
+        assertSameEventDate(before + eventDateWithLength(GCCachePage.MATCH_END_WINDOW + 1), StringUtils.repeat('1', GCCachePage.MATCH_END_WINDOW - 21));
+        // only a date directly before the links is found
+        assertSameEventDate(before + ": 05/26/2012 <p>" + StringUtils.repeat(' ', GCCachePage.MATCH_END_WINDOW) + "</p> <div id=\"calLinks\">", null);
+    }
+
+    public static void testDescriptionEndAtWindowEdge() {
+        final String description = StringUtils.repeat("<p>Lorem ipsum</p>", " ", 50);
+        final String before = "<span id=\"ctl00_ContentBody_LongDescription\">" + description;
+        final String atEdge = descriptionEndWithLength(GCCachePage.MATCH_END_WINDOW);
+        assertThat(atEdge).hasSize(GCCachePage.MATCH_END_WINDOW);
+        assertSameLongDescription(before + atEdge, description);
+        assertSameLongDescription(before + descriptionEndWithLength(GCCachePage.MATCH_END_WINDOW + 1), description);
+        // the hints without the end of the description do not end it
+        assertSameLongDescription(before + "</span> <p id=\"ctl00_ContentBody_hints\">", "");
+    }
+
+    public static void testUnknownPattern() {
+        try {
+            new GCCachePage("").getMatch(GCConstants.PATTERN_TRACKABLE_NAME, true, null);
+            fail("pattern without prefix accepted");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Extracts the fields of the cache pages from the whole page for every field, as the parser did before, and from
+     * the scanned page. Both must find the same fields.
+     */
+    public static void testSameFieldsAsWholePageSearches() {
+        final List<String> pages = readPages();
+        assertThat(extractFromScannedPages(pages)).isEqualTo(extractFromWholePages(pages)).isGreaterThan(0);
+    }
+
+    private static int extractFromWholePages(final List<String> pages) {
+        int matches = 0;
+        for (final String page : pages) {
+            final String details = page.substring(page.indexOf(GCConstants.STRING_CACHEDETAILS));
+            for (final Pattern pattern : GCCachePage.getPatterns()) {
+                if (pattern != GCConstants.PATTERN_DESC && hasGroup(pattern) && TextUtils.getMatch(page, pattern, true, null) != null) {
+                    matches++;
+                }
+            }
+            if (TextUtils.getMatch(details, GCConstants.PATTERN_HIDDENEVENT, true, null) != null) {
+                matches++;
+            }
+            if (!TextUtils.getMatch(page, GCConstants.PATTERN_DESC, true, "").isEmpty()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static int extractFromScannedPages(final List<String> pages) {
+        int matches = 0;
+        for (final String page : pages) {
+            final GCCachePage cachePage = new GCCachePage(page);
+            for (final Pattern pattern : GCCachePage.getPatterns()) {
+                if (pattern != GCConstants.PATTERN_DESC && hasGroup(pattern) && cachePage.getMatch(pattern, true, null) != null) {
+                    matches++;
+                }
+            }
+            if (cachePage.getHiddenEventDate(cachePage.indexOf(GCConstants.STRING_CACHEDETAILS, 0)) != null) {
+                matches++;
+            }
+            if (!cachePage.getLongDescription().isEmpty()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,230 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.files.ParserException;
+import cgeo.geocaching.utils.JsonUtils;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+public class MapInfoParserTest extends TestCase {
+
+    /**
+     * Create the data of a tile in the format of the live map, with caches covering 4x4 grid cells, some of them
+     * overlapping.
+     */
+    private static String createTile(final int caches, final long seed) {
+        final Random random = new Random(seed);
+        final Map<String, List<String>> cells = new LinkedHashMap<>();
+        final char[][] grid = new char[UTFGrid.GRID_MAXY + 1][UTFGrid.GRID_MAXX + 1];
+        for (final char[] row : grid) {
+            Arrays.fill(row, ' ');
+        }
+        for (int i = 0; i < caches; i++) {
+            final int x = random.nextInt(UTFGrid.GRID_MAXX - 3);
+            final int y = random.nextInt(UTFGrid.GRID_MAXY - 3);
+            for (int dx = 0; dx < 4; dx++) {
+                for (int dy = 0; dy < 4; dy++) {
+                    final String key = "(" + (x + dx) + ", " + (y + dy) + ")";
+                    List<String> ids = cells.get(key);
+                    if (ids == null) {
+                        ids = new ArrayList<>();
+                        cells.put(key, ids);
+                    }
+                    ids.add("{\"i\":\"id" + i + "\",\"n\":\"Cache \\\"" + i + "\\\"\"}");
+                    grid[y + dy][x + dx] = (char) ('A' + cells.size() % 26);
+                }
+            }
+        }
+        final StringBuilder json = new StringBuilder("{\"grid\":[");
+        for (int y = 0; y < grid.length; y++) {
+            json.append(y > 0 ? "," : "").append('"').append(grid[y]).append('"');
+        }
+        json.append("],\"keys\":[\"\"");
+        for (final String key : cells.keySet()) {
+            json.append(",\"").append(key).append('"');
+        }
+        json.append("],\"data\":{");
+        boolean first = true;
+        for (final Map.Entry<String, List<String>> cell : cells.entrySet()) {
+            json.append(first ? "" : ",").append('"').append(cell.getKey()).append("\":[");
+            for (int i = 0; i < cell.getValue().size(); i++) {
+                json.append(i > 0 ? "," : "").append(cell.getValue().get(i));
+            }
+            json.append(']');
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String describe(final String name, final List<UTFGridPosition> positions, final List<UTFGridPosition> singlePositions) {
+        final StringBuilder description = new StringBuilder(name);
+        for (final UTFGridPosition position : positions) {
+            description.append(" (").append(position.x).append(", ").append(position.y).append(')');
+        }
+        description.append(" single");
+        for (final UTFGridPosition position : singlePositions) {
+            description.append(" (").append(position.x).append(", ").append(position.y).append(')');
+        }
+        return description.toString();
+    }
+
+    private static Map<String, String> toMap(final Collection<MapInfoParser.TileCache> tileCaches) {
+        final Map<String, String> caches = new HashMap<>();
+        for (final MapInfoParser.TileCache cache : tileCaches) {
+            caches.put(cache.id, describe(cache.name, cache.positions, cache.singlePositions));
+        }
+        return caches;
+    }
+
+    public static void testKnownTile() throws Exception {
+        final String data = createGrid() + ",\"keys\":[\"\",\"(0, 0)\",\"(1, 0)\",\"(0, 1)\",\"(5, 5)\"],\"data\":{"
+                + "\"(0, 0)\":[{\"i\":\"a\",\"n\":\"A\"}],"
+                + "\"(1, 0)\":[{\"i\":\"a\",\"n\":\"A\"},{\"i\":\"b\",\"n\":\"B\"}],"
+                + "\"(0, 1)\":[{\"i\":\"a\",\"n\":\"A\"}],"
+                + "\"(5, 5)\":[{\"i\":\"c\",\"n\":\"Cache \\\"3\\\" \\u00e4\"}]}}";
+        final Map<String, String> expected = new HashMap<>();
+        expected.put("a", "A (0, 0) (1, 0) (0, 1) single (0, 0) (0, 1)");
+        expected.put("b", "B (1, 0) single");
+        expected.put("c", "Cache \"3\" \u00e4 (5, 5) single (5, 5)");
+        assertThat(toMap(MapInfoParser.parse(data))).isEqualTo(expected);
+    }
+
+    public static void testGeneratedTiles() throws Exception {
+        for (int seed = 0; seed < 5; seed++) {
+            final Map<String, String> caches = toMap(MapInfoParser.parse(createTile(40, seed)));
+            assertThat(caches).hasSize(40);
+            for (int i = 0; i < 40; i++) {
+                // every generated cache covers 4x4 cells
+                assertThat(caches.get("id" + i)).startsWith("Cache \"" + i + "\" (");
+                assertThat(StringUtils.countMatches(StringUtils.substringBefore(caches.get("id" + i), " single"), '(')).isEqualTo(16);
+            }
+        }
+    }
+
+    public static void testSingleAndSharedPositions() throws Exception {
+        final String data = createGrid() + ",\"keys\":[\"\",\"(1, 2)\",\"(3, 4)\"],\"data\":{\"(1, 2)\":[{\"i\":\"a\",\"n\":\"A\"}],\"(3, 4)\":[{\"i\":\"a\",\"n\":\"A\"},{\"i\":\"b\",\"n\":\"B\",\"x\":[1,{}]}]}}";
+        final List<MapInfoParser.TileCache> caches = new ArrayList<>(MapInfoParser.parse(data));
+        assertThat(caches).hasSize(2);
+        assertThat(caches.get(0).id).isEqualTo("a");
+        assertThat(caches.get(0).name).isEqualTo("A");
+        assertThat(caches.get(0).positions).hasSize(2);
+        assertThat(caches.get(0).singlePositions).hasSize(1);
+        assertThat(caches.get(0).singlePositions.get(0).getX()).isEqualTo(1);
+        assertThat(caches.get(1).id).isEqualTo("b");
+        assertThat(caches.get(1).positions).hasSize(1);
+        assertThat(caches.get(1).singlePositions).isEmpty();
+    }
+
+    public static void testNonObjectCachesSkipped() throws Exception {
+        final String data = createGrid() + ",\"keys\":[\"\",\"(1, 2)\"],\"data\":{\"(1, 2)\":[null,{\"i\":\"a\",\"n\":\"A\"},[{}],\"b\",{\"i\":\"c\",\"n\":\"C\"}]}}";
+        final Map<String, String> expected = new HashMap<>();
+        expected.put("a", "A (1, 2) single");
+        expected.put("c", "C (1, 2) single");
+        assertThat(toMap(MapInfoParser.parse(data))).isEqualTo(expected);
+    }
+
+    public static void testDataOfUnknownKeysIgnored() throws Exception {
+        final String data = createGrid() + ",\"keys\":[\"\"],\"data\":{\"(1, 2)\":[{\"i\":\"a\",\"n\":\"A\"}]}}";
+        assertThat(MapInfoParser.parse(data)).isEmpty();
+    }
+
+    public static void testInvalidTiles() throws Exception {
+        assertInvalid("[]");
+        assertInvalid("{\"grid\":[\"\"],\"keys\":[],\"data\":{}}");
+        assertInvalid(createGrid() + ",\"data\":{}}");
+        assertInvalid(createGrid() + ",\"keys\":[]}");
+        assertInvalid(createGrid() + ",\"keys\":[\"\",\"(1, 2)\"],\"data\":{\"(1, 2)\":[{\"n\":\"A\"}]}}");
+    }
+
+    private static String createGrid() {
+        final StringBuilder grid = new StringBuilder("{\"grid\":[");
+        for (int y = 0; y <= UTFGrid.GRID_MAXY; y++) {
+            grid.append(y > 0 ? ",\"\"" : "\"\"");
+        }
+        return grid.append(']').toString();
+    }
+
+    private static void assertInvalid(final String data) throws IOException {
+        try {
+            MapInfoParser.parse(data);
+            fail("invalid tile accepted: " + data);
+        } catch (final ParserException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Compares the memory allocated to parse a tile while it is streamed and to only read the tree of the whole
+     * document, which the live map did before decoding the caches from it. The time is only part of the failure
+     * message, as it is too noisy to compare on a shared machine.
+     */
+    public static void testLessAllocationsThanTree() throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            // nothing to compare without allocation counting
+            return;
+        }
+        final List<String> tiles = new ArrayList<>();
+        for (int seed = 0; seed < 10; seed++) {
+            tiles.add(createTile(60, seed));
+        }
+
+        // warm up both ways before measuring
+        parseTrees(tiles, 20);
+        parseStreams(tiles, 20);
+
+        final int rounds = 50;
+        long bytes = allocatedBytes(threads);
+        long start = System.nanoTime();
+        parseTrees(tiles, rounds);
+        final long treeTime = System.nanoTime() - start;
+        final long treeBytes = allocatedBytes(threads) - bytes;
+
+        bytes = allocatedBytes(threads);
+        start = System.nanoTime();
+        parseStreams(tiles, rounds);
+        final long streamTime = System.nanoTime() - start;
+        final long streamBytes = allocatedBytes(threads) - bytes;
+
+        final int parsed = rounds * tiles.size();
+        final String figures = String.format(Locale.US, "%.3f ms and %d bytes per tile instead of %.3f ms and %d bytes",
+                streamTime / 1e6 / parsed, streamBytes / parsed, treeTime / 1e6 / parsed, treeBytes / parsed);
+        assertThat(streamBytes).as(figures).isLessThan(treeBytes);
+    }
+
+    private static long allocatedBytes(final ThreadMXBean threads) {
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void parseTrees(final List<String> tiles, final int rounds) throws IOException {
+        for (int round = 0; round < rounds; round++) {
+            for (final String tile : tiles) {
+                assertThat(JsonUtils.reader.readTree(tile).get("data").size()).isPositive();
+            }
+        }
+    }
+
+    private static void parseStreams(final List<String> tiles, final int rounds) throws IOException, ParserException {
+        for (int round = 0; round < rounds; round++) {
+            for (final String tile : tiles) {
+                assertThat(MapInfoParser.parse(tile)).isNotEmpty();
+            }
+        }
+    }
+}
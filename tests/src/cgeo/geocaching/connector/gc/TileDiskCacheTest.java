@@ -0,0 +1,91 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.utils.FileUtils;
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+public class TileDiskCacheTest extends TestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(System.getProperty("java.io.tmpdir"), "TileDiskCacheTest-" + System.nanoTime());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+        super.tearDown();
+    }
+
+    private static Geocache createCache(final String geocode) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setName("Tile " + geocode);
+        cache.setCoords(new Geopoint(48.1, 11.5), 14);
+        cache.setType(CacheType.MULTI, 14);
+        cache.setFound(true);
+        return cache;
+    }
+
+    public void testRoundTrip() {
+        final TileDiskCache cache = new TileDiskCache(directory, 60000, 1024 * 1024);
+        assertThat(cache.get("14_1_2_0")).isNull();
+
+        cache.put("14_1_2_0", "{\"grid\":[]}", 14, Collections.singletonList(createCache("GC12345")));
+        final TileDiskCache.Entry entry = cache.get("14_1_2_0");
+        assertThat(entry).isNotNull();
+        assertThat(entry.data).isEqualTo("{\"grid\":[]}");
+        assertThat(entry.caches).hasSize(1);
+        final Geocache restored = entry.caches.get(0);
+        assertThat(restored.getGeocode()).isEqualTo("GC12345");
+        assertThat(restored.getName()).isEqualTo("Tile GC12345");
+        assertThat(restored.getCoords()).isEqualTo(new Geopoint(48.1, 11.5));
+        assertThat(restored.getType()).isEqualTo(CacheType.MULTI);
+        assertThat(restored.isFound()).isTrue();
+        assertThat(restored.isDetailed()).isFalse();
+
+        // a new instance must see the entries stored before
+        assertThat(new TileDiskCache(directory, 60000, 1024 * 1024).get("14_1_2_0")).isNotNull();
+    }
+
+    public void testExpiredEntry() {
+        final TileDiskCache cache = new TileDiskCache(directory, -1, 1024 * 1024);
+        cache.put("14_1_2_0", "{}", 14, Collections.singletonList(createCache("GC12345")));
+        assertThat(cache.get("14_1_2_0")).isNull();
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        final TileDiskCache cache = new TileDiskCache(directory, 60000, 3000);
+        final String data = new String(new char[500]).replace('\0', 'x');
+        for (int i = 0; i < 10; i++) {
+            cache.put("14_" + i + "_0_0", data, 14, Collections.singletonList(createCache("GC" + i)));
+            assertThat(new File(directory, "14_" + i + "_0_0.json").setLastModified(1000000000000L + i * 1000L)).isTrue();
+        }
+        // the most recent entry is never evicted
+        assertThat(cache.get("14_9_0_0")).isNotNull();
+        assertThat(cache.get("14_0_0_0")).isNull();
+        long size = 0;
+        for (final File file : directory.listFiles()) {
+            size += file.length();
+        }
+        assertThat(size).isLessThanOrEqualTo(3000);
+    }
+
+    public void testClear() {
+        final TileDiskCache cache = new TileDiskCache(directory, 60000, 1024 * 1024);
+        cache.put("14_1_2_0", "{}", 14, Collections.singletonList(createCache("GC12345")));
+        cache.clear();
+        assertThat(cache.get("14_1_2_0")).isNull();
+    }
+}
@@ -24,6 +24,17 @@ public class UTFGridPositionTest extends TestCase {
         assertXYFromString("(12, 34)", 12, 34);
         assertXYFromString("(34,56)", 34, 56);
         assertXYFromString("(34,  56)", 34, 56);
+        assertXYFromString("34,\t56", 34, 56);
+    }
+
+    public static void testFromStringWithoutPosition() throws Exception {
+        assertXYFromString("", 0, 0);
+        assertXYFromString("(12)", 0, 0);
+        assertXYFromString("(12, )", 0, 0);
+        assertXYFromString("12_34", 0, 0);
+        assertXYFromString("(12, 34)5", 0, 0);
+        assertXYFromString("(12 , 34)", 0, 0);
+        assertXYFromString("(99999999999, 34)", 0, 0);
     }
 
     private static void assertXYFromString(final String key, int x, int y) {
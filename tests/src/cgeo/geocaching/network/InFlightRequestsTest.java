@@ -0,0 +1,183 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class InFlightRequestsTest extends TestCase {
+
+    private static Response createResponse(final byte[] body) {
+        return new Response.Builder()
+                .request(new Request.Builder().url("http://example.com/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .body(ResponseBody.create(MediaType.parse("text/plain"), body))
+                .build();
+    }
+
+    /**
+     * A request answered by the subject the first time, and immediately afterwards.
+     */
+    private static Single<Response> createRequest(final PublishSubject<Response> subject, final AtomicInteger calls, final byte[] body) {
+        return Single.create(new Single.OnSubscribe<Response>() {
+            @Override
+            public void call(final SingleSubscriber<? super Response> subscriber) {
+                if (calls.incrementAndGet() == 1) {
+                    subject.toSingle().subscribe(subscriber);
+                } else {
+                    subscriber.onSuccess(createResponse(body));
+                }
+            }
+        });
+    }
+
+    private static TestSubscriber<Response> subscribe(final Single<Response> single) {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        single.toObservable().subscribe(subscriber);
+        return subscriber;
+    }
+
+    private static byte[] getBody(final TestSubscriber<Response> subscriber) throws IOException {
+        subscriber.assertNoErrors();
+        subscriber.assertValueCount(1);
+        return subscriber.getOnNextEvents().get(0).body().bytes();
+    }
+
+    public static void testIdenticalRequestsShareOneCall() throws IOException {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final PublishSubject<Response> subject = PublishSubject.create();
+        final AtomicInteger calls = new AtomicInteger();
+        final byte[] body = "shared".getBytes("UTF-8");
+        final Single<Response> request = createRequest(subject, calls, body);
+
+        final TestSubscriber<Response> first = subscribe(inFlight.share("key", request));
+        final TestSubscriber<Response> second = subscribe(inFlight.share("key", request));
+        assertThat(inFlight.size()).isEqualTo(1);
+        subject.onNext(createResponse(body));
+        subject.onCompleted();
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(getBody(first)).isEqualTo(body);
+        assertThat(getBody(second)).isEqualTo(body);
+        assertThat(inFlight.size()).isEqualTo(0);
+    }
+
+    public static void testDifferentKeysAreNotShared() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final AtomicInteger calls = new AtomicInteger();
+        final Single<Response> request = createRequest(PublishSubject.<Response> create(), calls, new byte[0]);
+
+        subscribe(inFlight.share("key1", request));
+        subscribe(inFlight.share("key2", request));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    public static void testLargeBodyIsNotCopied() throws IOException {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final PublishSubject<Response> subject = PublishSubject.create();
+        final AtomicInteger calls = new AtomicInteger();
+        final byte[] body = new byte[(int) InFlightRequests.MAX_SHARED_BODY + 10];
+        Arrays.fill(body, (byte) 'x');
+        final Single<Response> request = createRequest(subject, calls, body);
+
+        final TestSubscriber<Response> first = subscribe(inFlight.share("key", request));
+        final TestSubscriber<Response> second = subscribe(inFlight.share("key", request));
+        subject.onNext(createResponse(body));
+        subject.onCompleted();
+
+        // the second subscriber had to send its own request
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(getBody(first)).isEqualTo(body);
+        assertThat(getBody(second)).isEqualTo(body);
+    }
+
+    public static void testSingleSubscriberGetsResponseUnbuffered() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final PublishSubject<Response> subject = PublishSubject.create();
+        final AtomicInteger calls = new AtomicInteger();
+        final Single<Response> request = createRequest(subject, calls, new byte[0]);
+
+        final TestSubscriber<Response> subscriber = subscribe(inFlight.share("key", request));
+        final Response response = createResponse(new byte[] { 1, 2, 3 });
+        subject.onNext(response);
+        subject.onCompleted();
+
+        subscriber.assertValue(response);
+    }
+
+    public static void testRegisteredOnlyWhenSubscribed() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final AtomicInteger calls = new AtomicInteger();
+        final Single<Response> shared = inFlight.share("key", createRequest(PublishSubject.<Response> create(), calls, new byte[0]));
+
+        assertThat(inFlight.size()).isEqualTo(0);
+        assertThat(calls.get()).isEqualTo(0);
+        subscribe(shared);
+        assertThat(inFlight.size()).isEqualTo(1);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    public static void testSubscriberAfterCompletionSendsNewRequest() throws IOException {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final PublishSubject<Response> subject = PublishSubject.create();
+        final AtomicInteger calls = new AtomicInteger();
+        final byte[] body = "again".getBytes("UTF-8");
+        final Single<Response> shared = inFlight.share("key", createRequest(subject, calls, body));
+
+        final TestSubscriber<Response> first = subscribe(shared);
+        subject.onNext(createResponse(body));
+        subject.onCompleted();
+        final TestSubscriber<Response> second = subscribe(shared);
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(getBody(first)).isEqualTo(body);
+        assertThat(getBody(second)).isEqualTo(body);
+        assertThat(inFlight.size()).isEqualTo(0);
+    }
+
+    public static void testUnsubscribingAllCancelsRequest() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final PublishSubject<Response> subject = PublishSubject.create();
+        final AtomicInteger calls = new AtomicInteger();
+        final Single<Response> request = createRequest(subject, calls, new byte[0]);
+
+        final TestSubscriber<Response> first = subscribe(inFlight.share("key", request));
+        final TestSubscriber<Response> second = subscribe(inFlight.share("key", request));
+        first.unsubscribe();
+        assertThat(subject.hasObservers()).isTrue();
+        assertThat(inFlight.size()).isEqualTo(1);
+        second.unsubscribe();
+
+        assertThat(subject.hasObservers()).isFalse();
+        assertThat(inFlight.size()).isEqualTo(0);
+    }
+
+    public static void testErrorIsShared() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final PublishSubject<Response> subject = PublishSubject.create();
+        final AtomicInteger calls = new AtomicInteger();
+        final Single<Response> request = createRequest(subject, calls, new byte[0]);
+
+        final TestSubscriber<Response> first = subscribe(inFlight.share("key", request));
+        final TestSubscriber<Response> second = subscribe(inFlight.share("key", request));
+        subject.onError(new IOException("unreachable"));
+
+        first.assertError(IOException.class);
+        second.assertError(IOException.class);
+        assertThat(inFlight.size()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,186 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Checks how the HTTP cache of {@link Network} answers requests with a {@link CachePolicy}, against a local server.
+ */
+public class NetworkCacheTest extends TestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HttpServer server;
+    private Cache cache;
+    private OkHttpClient client;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String body = "1";
+    private volatile String cacheControl = "max-age=0";
+    private volatile String etag = null;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        NetworkMetrics.reset();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if (etag != null) {
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        exchange.sendResponseHeaders(304, -1);
+                        exchange.close();
+                        return;
+                    }
+                }
+                if (cacheControl != null) {
+                    exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+                }
+                final byte[] bytes = body.getBytes(UTF_8);
+                exchange.sendResponseHeaders(status, bytes.length);
+                final OutputStream output = exchange.getResponseBody();
+                output.write(bytes);
+                output.close();
+            }
+        });
+        server.start();
+        cache = new Cache(new File(System.getProperty("java.io.tmpdir"), "NetworkCacheTest-" + System.nanoTime()), 1024 * 1024);
+        client = Network.buildWithCache(new OkHttpClient.Builder(), cache);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        // background revalidations must not write to the cache once it is deleted
+        for (int i = 0; i < 100 && client.dispatcher().runningCallsCount() > 0; i++) {
+            Thread.sleep(50);
+        }
+        server.stop(0);
+        cache.delete();
+        NetworkMetrics.reset();
+        super.tearDown();
+    }
+
+    private String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data";
+    }
+
+    private String get(final Request request) throws IOException {
+        final Response response = client.newCall(request).execute();
+        return response.body().string();
+    }
+
+    private String get(final CachePolicy policy) throws IOException {
+        return get(Network.newRequest("GET", getUrl(), null, null, policy));
+    }
+
+    private static long getCount(final NetworkMetrics.CacheUse use) {
+        return NetworkMetrics.getCacheCount(use);
+    }
+
+    public void testFreshHit() throws IOException {
+        final CachePolicy policy = new CachePolicy(60, 0, false);
+        cacheControl = "no-cache";
+        assertThat(get(policy)).isEqualTo("1");
+        body = "2";
+        assertThat(get(policy)).isEqualTo("1");
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(getCount(NetworkMetrics.CacheUse.MISS)).isEqualTo(1);
+        assertThat(getCount(NetworkMetrics.CacheUse.HIT)).isEqualTo(1);
+    }
+
+    public void testStaleWhileRevalidate() throws Exception {
+        final CachePolicy policy = new CachePolicy(0, 3600, false);
+        assertThat(get(policy)).isEqualTo("1");
+        body = "2";
+
+        // the stale response is answered at once, and refreshed in the background
+        assertThat(get(policy)).isEqualTo("1");
+        assertThat(getCount(NetworkMetrics.CacheUse.HIT)).isEqualTo(1);
+        String refreshed = null;
+        for (int i = 0; i < 100 && !"2".equals(refreshed); i++) {
+            Thread.sleep(50);
+            refreshed = get(policy);
+        }
+        assertThat(refreshed).isEqualTo("2");
+        assertThat(requests.get()).isGreaterThanOrEqualTo(2);
+    }
+
+    public void testStaleWithoutPolicyAsksServer() throws IOException {
+        assertThat(get((CachePolicy) null)).isEqualTo("1");
+        body = "2";
+        assertThat(get((CachePolicy) null)).isEqualTo("2");
+        assertThat(getCount(NetworkMetrics.CacheUse.MISS)).isEqualTo(2);
+    }
+
+    public void testOfflineFallback() throws IOException {
+        assertThat(get(CachePolicy.OFFLINE_FALLBACK)).isEqualTo("1");
+
+        status = 503;
+        body = "error";
+        assertThat(get(CachePolicy.OFFLINE_FALLBACK)).isEqualTo("1");
+
+        server.stop(0);
+        assertThat(get(CachePolicy.OFFLINE_FALLBACK)).isEqualTo("1");
+        assertThat(getCount(NetworkMetrics.CacheUse.MISS)).isEqualTo(1);
+        assertThat(getCount(NetworkMetrics.CacheUse.HIT)).isEqualTo(2);
+    }
+
+    public void testNoFallbackWithoutPolicy() throws IOException {
+        assertThat(get((CachePolicy) null)).isEqualTo("1");
+        server.stop(0);
+        try {
+            get((CachePolicy) null);
+            fail("an unreachable server must fail without an offline fallback");
+        } catch (final IOException ignored) {
+            // expected
+        }
+    }
+
+    public void testNoStoreWithPassword() throws IOException {
+        final Request request = Network.newRequest("GET", getUrl(), new Parameters("pass", "secret"), null, new CachePolicy(60, 0, false));
+        assertThat(request.tag()).isNotInstanceOf(CachePolicy.class);
+        assertThat(request.cacheControl().noStore()).isTrue();
+
+        assertThat(get(request)).isEqualTo("1");
+        body = "2";
+        assertThat(get(request)).isEqualTo("2");
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(cache.urls().hasNext()).isFalse();
+
+        // the same request without a password is stored
+        assertThat(get(new CachePolicy(60, 0, false))).isEqualTo("2");
+        assertThat(cache.urls().hasNext()).isTrue();
+    }
+
+    public void testRevalidationCounted() throws IOException {
+        etag = "\"v1\"";
+        cacheControl = "no-cache";
+        assertThat(get((CachePolicy) null)).isEqualTo("1");
+        assertThat(get((CachePolicy) null)).isEqualTo("1");
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(getCount(NetworkMetrics.CacheUse.MISS)).isEqualTo(1);
+        assertThat(getCount(NetworkMetrics.CacheUse.REVALIDATION)).isEqualTo(1);
+        assertThat(getCount(NetworkMetrics.CacheUse.HIT)).isZero();
+    }
+
+}
@@ -0,0 +1,106 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import junit.framework.TestCase;
+import okhttp3.HttpUrl;
+
+import java.util.Locale;
+
+public class NetworkMetricsTest extends TestCase {
+
+    private static final HttpUrl OKAPI_URL = HttpUrl.parse("http://www.opencaching.de/okapi/services/caches/geocache?cache_code=OC1234");
+    private static final HttpUrl GEOKRETY_URL = HttpUrl.parse("https://geokrety.org/konkret/12345/details");
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        NetworkMetrics.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        NetworkMetrics.reset();
+        super.tearDown();
+    }
+
+    public static void testEndpoint() {
+        assertThat(NetworkMetrics.getEndpoint(OKAPI_URL)).isEqualTo("www.opencaching.de/okapi/services/caches/geocache");
+        assertThat(NetworkMetrics.getEndpoint(GEOKRETY_URL)).isEqualTo("geokrety.org/konkret/{n}/details");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://www.geocaching.com/geocache/GC1ZXX2_bremer-stadtmusikanten")))
+                .isEqualTo("www.geocaching.com/geocache/{code}");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://www.geocaching.com/track/TB2J1VZ/log")))
+                .isEqualTo("www.geocaching.com/track/{code}/log");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://www.geocaching.com/seek/log.aspx?LUID=a1b2c3d4-e5f6-4a5b-8c9d-0e1f2a3b4c5d")))
+                .isEqualTo("www.geocaching.com/seek/log.aspx");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://img.geocaching.com/cache/large/a1b2c3d4-e5f6-4a5b-8c9d-0e1f2a3b4c5d.jpg")))
+                .isEqualTo("img.geocaching.com/cache/large/{guid}.jpg");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://www.geocaching.com/profile/a1b2c3d4-e5f6-4a5b-8c9d-0e1f2a3b4c5d/")))
+                .isEqualTo("www.geocaching.com/profile/{guid}/");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://example.com/tiles/5f3a9c0e21b74d88/info")))
+                .isEqualTo("example.com/tiles/{id}/info");
+        assertThat(NetworkMetrics.getEndpoint(HttpUrl.parse("https://example.com/api/v2/caches/search")))
+                .isEqualTo("example.com/api/v2/caches/search");
+    }
+
+    public static void testCachesShareEndpoint() {
+        for (int i = 0; i < 300; i++) {
+            NetworkMetrics.recordResponse(HttpUrl.parse("https://www.geocaching.com/geocache/GC" + Integer.toString(4096 + i, 36).toUpperCase(Locale.US) + "1"), 200, 10, 0);
+        }
+        final JsonNode endpoints = NetworkMetrics.toJson().path("endpoints");
+        assertThat(endpoints.size()).isEqualTo(1);
+        assertThat(endpoints.path("www.geocaching.com/geocache/{code}").path("latency").path("count").asLong()).isEqualTo(300);
+    }
+
+    public static void testHistogram() {
+        final NetworkMetrics.Histogram histogram = new NetworkMetrics.Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i * 20);
+        }
+        histogram.record(40000);
+        assertThat(histogram.getCount()).isEqualTo(11);
+        assertThat(histogram.getMean()).isEqualTo((1100 + 40000) / 11);
+        assertThat(histogram.getPercentile(0.5)).isEqualTo(250);
+        assertThat(histogram.getPercentile(1)).isEqualTo(40000);
+    }
+
+    public static void testRecordedFigures() {
+        NetworkMetrics.recordResponse(OKAPI_URL, 200, 120, 0);
+        NetworkMetrics.recordResponse(OKAPI_URL, 500, 80, 10);
+        NetworkMetrics.recordFailure(OKAPI_URL);
+        NetworkMetrics.recordBytesIn(OKAPI_URL, 2048);
+        NetworkMetrics.recordDns("www.opencaching.de", 30);
+        NetworkMetrics.recordConnect("www.opencaching.de", 50);
+        NetworkMetrics.recordCacheUse("www.opencaching.de", NetworkMetrics.CacheUse.HIT);
+        NetworkMetrics.recordCacheUse("www.opencaching.de", NetworkMetrics.CacheUse.MISS);
+        NetworkMetrics.recordCacheUse("geokrety.org", NetworkMetrics.CacheUse.REVALIDATION);
+
+        final JsonNode host = NetworkMetrics.toJson().path("hosts").path("www.opencaching.de");
+        assertThat(host.path("latency").path("count").asLong()).isEqualTo(2);
+        assertThat(host.path("latency").path("max").asLong()).isEqualTo(120);
+        assertThat(host.path("httpErrors").asLong()).isEqualTo(1);
+        assertThat(host.path("failures").asLong()).isEqualTo(1);
+        assertThat(host.path("bytesIn").asLong()).isEqualTo(2048);
+        assertThat(host.path("bytesOut").asLong()).isEqualTo(10);
+        assertThat(host.path("dns").path("mean").asLong()).isEqualTo(30);
+        assertThat(host.path("connect").path("mean").asLong()).isEqualTo(50);
+        assertThat(host.path("cache").path("hitRate").asDouble()).isEqualTo(0.5);
+
+        final JsonNode endpoint = NetworkMetrics.toJson().path("endpoints").path("www.opencaching.de/okapi/services/caches/geocache");
+        assertThat(endpoint.path("latency").path("count").asLong()).isEqualTo(2);
+
+        assertThat(NetworkMetrics.getCacheCount(NetworkMetrics.CacheUse.HIT)).isEqualTo(1);
+        assertThat(NetworkMetrics.getCacheCount(NetworkMetrics.CacheUse.REVALIDATION)).isEqualTo(1);
+        assertThat(NetworkMetrics.getSummary()).contains("HTTP cache: 1 hits, 1 revalidations").contains("www.opencaching.de").contains("geokrety.org");
+    }
+
+    public static void testReset() {
+        NetworkMetrics.recordResponse(OKAPI_URL, 200, 120, 0);
+        NetworkMetrics.reset();
+        assertThat(NetworkMetrics.getSummary()).isEmpty();
+        assertThat(NetworkMetrics.toJson().path("hosts").size()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,91 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class RequestDispatcherTest extends TestCase {
+
+    private final List<String> started = new ArrayList<>();
+
+    private RequestDispatcher.Waiting submit(final RequestDispatcher dispatcher, final String host, final RequestPriority priority, final String name) {
+        return dispatcher.submit(host, priority, new Runnable() {
+            @Override
+            public void run() {
+                started.add(name);
+            }
+        });
+    }
+
+    public void testLimitPerHost() {
+        final RequestDispatcher dispatcher = new RequestDispatcher(2, 1);
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "1");
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "2");
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "3");
+        submit(dispatcher, "b", RequestPriority.INTERACTIVE, "4");
+        assertThat(started).containsExactly("1", "2", "4");
+        assertThat(dispatcher.getWaitingCount()).isEqualTo(1);
+
+        dispatcher.finished("a", RequestPriority.INTERACTIVE);
+        assertThat(started).containsExactly("1", "2", "4", "3");
+        assertThat(dispatcher.getWaitingCount()).isEqualTo(0);
+    }
+
+    public void testBulkKeepsSlotsForInteractive() {
+        final RequestDispatcher dispatcher = new RequestDispatcher(2, 1);
+        submit(dispatcher, "a", RequestPriority.BULK, "bulk1");
+        submit(dispatcher, "a", RequestPriority.BULK, "bulk2");
+        assertThat(started).containsExactly("bulk1");
+
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "interactive");
+        assertThat(started).containsExactly("bulk1", "interactive");
+
+        dispatcher.finished("a", RequestPriority.BULK);
+        assertThat(started).containsExactly("bulk1", "interactive", "bulk2");
+    }
+
+    public void testInteractiveStartedFirst() {
+        final RequestDispatcher dispatcher = new RequestDispatcher(1, 1);
+        submit(dispatcher, "a", RequestPriority.BULK, "bulk1");
+        submit(dispatcher, "a", RequestPriority.BULK, "bulk2");
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "interactive");
+
+        dispatcher.finished("a", RequestPriority.BULK);
+        assertThat(started).containsExactly("bulk1", "interactive");
+        dispatcher.finished("a", RequestPriority.INTERACTIVE);
+        assertThat(started).containsExactly("bulk1", "interactive", "bulk2");
+    }
+
+    public void testCancelWaiting() {
+        final RequestDispatcher dispatcher = new RequestDispatcher(1, 1);
+        final RequestDispatcher.Waiting running = submit(dispatcher, "a", RequestPriority.INTERACTIVE, "1");
+        final RequestDispatcher.Waiting waiting = submit(dispatcher, "a", RequestPriority.INTERACTIVE, "2");
+        assertThat(dispatcher.cancel(running)).isFalse();
+        assertThat(dispatcher.cancel(waiting)).isTrue();
+
+        dispatcher.finished("a", RequestPriority.INTERACTIVE);
+        assertThat(started).containsExactly("1");
+        assertThat(dispatcher.getWaitingCount()).isEqualTo(0);
+    }
+
+    public void testRaisedLimitStartsWaiting() {
+        final RequestDispatcher dispatcher = new RequestDispatcher(1, 1);
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "1");
+        submit(dispatcher, "a", RequestPriority.INTERACTIVE, "2");
+        dispatcher.setLimits(2, 1);
+        assertThat(started).containsExactly("1", "2");
+    }
+
+    public static void testInvalidLimits() {
+        try {
+            new RequestDispatcher(1, 2);
+            fail("bulk limit above the host limit must be refused");
+        } catch (final IllegalArgumentException ignored) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore.StorageLocation;
+
+import org.apache.commons.lang3.StringUtils;
+
+import android.content.ComponentCallbacks2;
+
+import junit.framework.TestCase;
+
+public class CacheCacheTest extends TestCase {
+
+    private static Geocache createCache(final String geocode, final double latitude, final double longitude, final CacheType type) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setCoords(new Geopoint(latitude, longitude));
+        cache.setType(type);
+        return cache;
+    }
+
+    public static void testGetInViewport() {
+        final CacheCache cacheCache = new CacheCache();
+        cacheCache.putCacheInCache(createCache("GC1", 48.10, 11.50, CacheType.TRADITIONAL));
+        cacheCache.putCacheInCache(createCache("GC2", 48.12, 11.52, CacheType.MULTI));
+        cacheCache.putCacheInCache(createCache("GC3", 52.50, 13.40, CacheType.TRADITIONAL));
+
+        final Viewport munich = new Viewport(new Geopoint(48.0, 11.4), new Geopoint(48.2, 11.6));
+        assertThat(cacheCache.getInViewport(munich, CacheType.ALL)).containsOnly("GC1", "GC2");
+        assertThat(cacheCache.getInViewport(munich, CacheType.TRADITIONAL)).containsOnly("GC1");
+
+        final Viewport germany = new Viewport(new Geopoint(47.0, 5.0), new Geopoint(55.0, 15.0));
+        assertThat(cacheCache.getInViewport(germany, CacheType.ALL)).containsOnly("GC1", "GC2", "GC3");
+    }
+
+    public static void testViewportAcrossCellBorders() {
+        final CacheCache cacheCache = new CacheCache();
+        cacheCache.putCacheInCache(createCache("GC1", -0.01, -0.01, CacheType.TRADITIONAL));
+        cacheCache.putCacheInCache(createCache("GC2", 0.01, 0.01, CacheType.TRADITIONAL));
+        cacheCache.putCacheInCache(createCache("GC3", 0.2, 0.2, CacheType.TRADITIONAL));
+
+        final Viewport viewport = new Viewport(new Geopoint(-0.02, -0.02), new Geopoint(0.02, 0.02));
+        assertThat(cacheCache.getInViewport(viewport, CacheType.ALL)).containsOnly("GC1", "GC2");
+    }
+
+    public static void testIndexFollowsReplaceAndRemove() {
+        final CacheCache cacheCache = new CacheCache();
+        final Viewport munich = new Viewport(new Geopoint(48.0, 11.4), new Geopoint(48.2, 11.6));
+        final Viewport berlin = new Viewport(new Geopoint(52.4, 13.3), new Geopoint(52.6, 13.5));
+
+        cacheCache.putCacheInCache(createCache("GC1", 48.10, 11.50, CacheType.TRADITIONAL));
+        assertThat(cacheCache.getInViewport(munich, CacheType.ALL)).containsOnly("GC1");
+
+        // replacing the cache with moved coordinates must move it in the index as well
+        cacheCache.putCacheInCache(createCache("GC1", 52.50, 13.40, CacheType.TRADITIONAL));
+        assertThat(cacheCache.getInViewport(munich, CacheType.ALL)).isEmpty();
+        assertThat(cacheCache.getInViewport(berlin, CacheType.ALL)).containsOnly("GC1");
+
+        cacheCache.removeCacheFromCache("GC1");
+        assertThat(cacheCache.getInViewport(berlin, CacheType.ALL)).isEmpty();
+    }
+
+    private static final int STUB_SIZE = createCache("GC0", 0, 0, CacheType.TRADITIONAL).getEstimatedSize();
+
+    public static void testIndexFollowsEviction() {
+        final CacheCache cacheCache = new CacheCache(1000L * STUB_SIZE);
+        final Viewport world = new Viewport(new Geopoint(-89.0, -179.0), new Geopoint(89.0, 179.0));
+        for (int i = 0; i < 1100; i++) {
+            cacheCache.putCacheInCache(createCache("GC" + i, (i % 170) - 85.0, (i % 350) - 175.0, CacheType.TRADITIONAL));
+        }
+        assertThat(cacheCache.getInViewport(world, CacheType.ALL)).hasSize(1000).doesNotContain("GC0").contains("GC1099");
+        assertThat(cacheCache.getCacheFromCache("GC0")).isNull();
+    }
+
+    public static void testLargeCacheEvictedUnchanged() {
+        final CacheCache cacheCache = new CacheCache(3L * STUB_SIZE + 1000);
+        final Geocache detailed = createCache("GC1", 48.10, 11.50, CacheType.TRADITIONAL);
+        detailed.setDescription(StringUtils.repeat('x', 10000));
+        cacheCache.putCacheInCache(detailed);
+        assertThat(cacheCache.getEstimatedSize()).isGreaterThan(3L * STUB_SIZE + 1000);
+
+        // other threads may still use the evicted instance, it must not lose its descriptions
+        cacheCache.putCacheInCache(createCache("GC2", 48.12, 11.52, CacheType.TRADITIONAL));
+        assertThat(cacheCache.getCacheFromCache("GC1")).isNull();
+        assertThat(detailed.getDescription()).hasSize(10000);
+        assertThat(cacheCache.getEstimatedSize()).isEqualTo(STUB_SIZE);
+    }
+
+    public static void testStoredPartsReleasedBeforeEviction() {
+        final CacheCache cacheCache = new CacheCache(3L * STUB_SIZE + 25000);
+        cacheCache.putCacheInCache(createCache("GC0", 48.08, 11.48, CacheType.TRADITIONAL));
+        final Geocache stored = createCache("GC1", 48.10, 11.50, CacheType.TRADITIONAL);
+        stored.addStorageLocation(StorageLocation.DATABASE);
+        stored.setDescription(StringUtils.repeat('x', 10000));
+        stored.setShortDescription(StringUtils.EMPTY);
+        stored.setHint(StringUtils.EMPTY);
+        stored.setLocation(StringUtils.EMPTY);
+        cacheCache.putCacheInCache(stored);
+        final Geocache heavy = createCache("GC2", 48.12, 11.52, CacheType.TRADITIONAL);
+        heavy.setDescription(StringUtils.repeat('y', 10000));
+        cacheCache.putCacheInCache(heavy);
+
+        // the description of the stored cache can be loaded again, so it is released before any cache is removed
+        final Geocache core = cacheCache.getCacheFromCache("GC1");
+        assertThat(core).isNotNull().isNotSameAs(stored);
+        assertThat(core.getEstimatedSize()).isEqualTo(STUB_SIZE);
+        assertThat(core.getCoords()).isEqualTo(stored.getCoords());
+        assertThat(cacheCache.getCacheFromCache("GC0")).isNotNull();
+        assertThat(cacheCache.getCacheFromCache("GC2")).isSameAs(heavy);
+        assertThat(cacheCache.getEstimatedSize()).isEqualTo(2L * STUB_SIZE + heavy.getEstimatedSize());
+        final Viewport munich = new Viewport(new Geopoint(48.0, 11.4), new Geopoint(48.2, 11.6));
+        assertThat(cacheCache.getInViewport(munich, CacheType.ALL)).containsOnly("GC0", "GC1", "GC2");
+
+        // other threads may still use the replaced instance, it must not lose its description
+        assertThat(stored.getDescription()).hasSize(10000);
+    }
+
+    public static void testTrimMemory() {
+        final CacheCache cacheCache = new CacheCache(100L * STUB_SIZE);
+        for (int i = 0; i < 100; i++) {
+            cacheCache.putCacheInCache(createCache("GC" + i, 48.0 + i * 0.01, 11.0, CacheType.TRADITIONAL));
+        }
+        cacheCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertThat(cacheCache.getEstimatedSize()).isEqualTo(100L * STUB_SIZE);
+        cacheCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertThat(cacheCache.getEstimatedSize()).isEqualTo(75L * STUB_SIZE);
+        cacheCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertThat(cacheCache.getEstimatedSize()).isEqualTo(50L * STUB_SIZE);
+        cacheCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertThat(cacheCache.getEstimatedSize()).isEqualTo(25L * STUB_SIZE);
+        assertThat(cacheCache.getCacheFromCache("GC74")).isNull();
+        assertThat(cacheCache.getCacheFromCache("GC75")).isNotNull();
+        cacheCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertThat(cacheCache.getEstimatedSize()).isZero();
+        assertThat(cacheCache.getCacheFromCache("GC99")).isNull();
+    }
+
+}
@@ -0,0 +1,48 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.StringUtils;
+
+import junit.framework.TestCase;
+
+public class TextCompressionTest extends TestCase {
+
+    public static void testRoundTrip() {
+        final String text = StringUtils.repeat("<p>Der Cache liegt unter der großen Eiche. ☺</p>\n", 200);
+        final byte[] deflated = TextCompression.deflate(text);
+        assertThat(deflated.length).isLessThan(text.length() / 10);
+        assertThat(TextCompression.inflate(deflated)).isEqualTo(text);
+    }
+
+    public static void testEmptyText() {
+        assertThat(TextCompression.inflate(TextCompression.deflate(""))).isEmpty();
+    }
+
+    public static void testIsCompressed() {
+        assertThat(TextCompression.isCompressed(null)).isFalse();
+        assertThat(TextCompression.isCompressed(StringUtils.repeat('x', TextCompression.MIN_LENGTH - 1))).isFalse();
+        assertThat(TextCompression.isCompressed(StringUtils.repeat('x', TextCompression.MIN_LENGTH))).isTrue();
+    }
+
+    public static void testInvalidData() {
+        try {
+            TextCompression.inflate(new byte[] { 1, 2, 3, 4 });
+            fail("invalid data must not be inflated");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public static void testTruncatedData() {
+        final byte[] deflated = TextCompression.deflate(StringUtils.repeat("some text ", 100));
+        final byte[] truncated = new byte[deflated.length / 2];
+        System.arraycopy(deflated, 0, truncated, 0, truncated.length);
+        try {
+            TextCompression.inflate(truncated);
+            fail("truncated data must not be inflated");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
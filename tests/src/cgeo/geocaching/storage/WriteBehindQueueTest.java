@@ -0,0 +1,186 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import rx.schedulers.TestScheduler;
+
+public class WriteBehindQueueTest extends TestCase {
+
+    private final List<List<WriteBehindQueue.Mutation<String>>> written = new ArrayList<>();
+    private final TestScheduler scheduler = new TestScheduler();
+    private int failures = 0;
+    private final WriteBehindQueue<String> queue = new WriteBehindQueue<>(new WriteBehindQueue.Writer<String>() {
+        @Override
+        public void write(@NonNull final Collection<WriteBehindQueue.Mutation<String>> mutations) {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("database locked");
+            }
+            written.add(new ArrayList<>(mutations));
+        }
+    }, scheduler, 1000);
+
+    public void testWritesAfterDelay() {
+        queue.setVisitDate("GC1", 42);
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        assertThat(written).isEmpty();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).hasSize(1);
+        assertThat(written.get(0).get(0).visitedDate).isEqualTo(42);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    public void testCoalescesPerGeocode() {
+        final String first = "first GC1";
+        final String second = "second GC1";
+        queue.saveCache("GC1", first);
+        queue.setVisitDate("GC1", 1);
+        queue.setVisitDate("GC2", 2);
+        queue.saveCache("GC1", second);
+        queue.setVisitDate("GC1", 3);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        assertThat(written).hasSize(1);
+        final List<WriteBehindQueue.Mutation<String>> mutations = written.get(0);
+        assertThat(mutations).hasSize(2);
+        assertThat(mutations.get(0).geocode).isEqualTo("GC1");
+        assertThat(mutations.get(0).cache).isSameAs(second);
+        assertThat(mutations.get(0).visitedDate).isEqualTo(3);
+        assertThat(mutations.get(1).geocode).isEqualTo("GC2");
+        assertThat(mutations.get(1).cache).isNull();
+    }
+
+    public void testMoveToList() {
+        queue.moveToList("GC1", 1, 2);
+        queue.moveToList("GC1", 2, 3);
+        queue.flush();
+
+        final WriteBehindQueue.Mutation<String> mutation = written.get(0).get(0);
+        assertThat(mutation.listsReplaced).isFalse();
+        assertThat(mutation.listsRemoved).containsOnly(1, 2);
+        assertThat(mutation.listsAdded).containsOnly(3);
+    }
+
+    public void testMoveBack() {
+        queue.moveToList("GC1", 1, 2);
+        queue.moveToList("GC1", 2, 1);
+        queue.flush();
+
+        final WriteBehindQueue.Mutation<String> mutation = written.get(0).get(0);
+        assertThat(mutation.listsRemoved).containsOnly(2);
+        assertThat(mutation.listsAdded).containsOnly(1);
+    }
+
+    public void testSetListsReplacesEarlierMoves() {
+        queue.moveToList("GC1", 1, 2);
+        queue.setLists("GC1", new HashSet<>(Arrays.asList(4, 5)));
+        queue.moveToList("GC1", 4, 6);
+        queue.flush();
+
+        final WriteBehindQueue.Mutation<String> mutation = written.get(0).get(0);
+        assertThat(mutation.listsReplaced).isTrue();
+        assertThat(mutation.listsRemoved).isEmpty();
+        assertThat(mutation.listsAdded).containsOnly(5, 6);
+    }
+
+    public void testFlushWritesImmediately() {
+        queue.setVisitDate("GC1", 1);
+        queue.flush();
+        assertThat(written).hasSize(1);
+
+        // the scheduled flush finds nothing to write anymore
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(written).hasSize(1);
+    }
+
+    public void testFlushInBackground() {
+        queue.flushInBackground();
+        scheduler.triggerActions();
+        assertThat(written).isEmpty();
+
+        queue.setVisitDate("GC1", 1);
+        queue.flushInBackground();
+        scheduler.triggerActions();
+        assertThat(written).hasSize(1);
+    }
+
+    public void testFlushGeocodes() {
+        queue.setVisitDate("GC1", 1);
+        queue.setVisitDate("GC2", 2);
+        queue.flush(Collections.singleton("GC2"));
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).hasSize(1);
+        assertThat(written.get(0).get(0).geocode).isEqualTo("GC2");
+
+        // the others are still written after the delay
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(written).hasSize(2);
+        assertThat(written.get(1).get(0).geocode).isEqualTo("GC1");
+    }
+
+    public void testFlushWithoutMatchingChangesWritesNothing() {
+        queue.setVisitDate("GC1", 1);
+        queue.flushListChanges();
+        queue.flush(Collections.singleton("GC2"));
+        assertThat(written).isEmpty();
+        assertThat(queue.isEmpty()).isFalse();
+    }
+
+    public void testFlushListChangesAndVisitDates() {
+        queue.setVisitDate("GC1", 1);
+        queue.moveToList("GC2", 1, 2);
+        queue.flushListChanges();
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0).get(0).geocode).isEqualTo("GC2");
+        queue.flushVisitDates();
+        assertThat(written).hasSize(2);
+        assertThat(written.get(1).get(0).geocode).isEqualTo("GC1");
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    public void testFailedChangesKeptAndMerged() {
+        failures = 1;
+        queue.moveToList("GC1", 1, 2);
+        queue.setVisitDate("GC1", 1);
+        queue.flush();
+        assertThat(written).isEmpty();
+        assertThat(queue.isEmpty()).isFalse();
+
+        // changes made after the failure are merged into the failed ones
+        queue.moveToList("GC1", 2, 3);
+        queue.setVisitDate("GC1", 2);
+        queue.setVisitDate("GC2", 3);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        assertThat(written).hasSize(1);
+        final List<WriteBehindQueue.Mutation<String>> mutations = written.get(0);
+        assertThat(mutations).hasSize(2);
+        assertThat(mutations.get(0).geocode).isEqualTo("GC1");
+        assertThat(mutations.get(0).visitedDate).isEqualTo(2);
+        assertThat(mutations.get(0).listsRemoved).containsOnly(1, 2);
+        assertThat(mutations.get(0).listsAdded).containsOnly(3);
+        assertThat(mutations.get(1).geocode).isEqualTo("GC2");
+    }
+
+    public void testFailedChangesRetried() {
+        failures = 1;
+        queue.setVisitDate("GC1", 1);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(written).isEmpty();
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(written).hasSize(1);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+}
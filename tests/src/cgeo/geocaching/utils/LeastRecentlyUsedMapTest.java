@@ -2,6 +2,8 @@ package cgeo.geocaching.utils;
 
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import cgeo.geocaching.models.Geocache;
@@ -86,4 +88,20 @@ public class LeastRecentlyUsedMapTest extends TestCase {
         assertThat(cache).containsKey("11");
     }
 
+    public static void testRemoveHandlerCalledOnEviction() {
+        final LeastRecentlyUsedMap<String, String> map = new LeastRecentlyUsedMap.LruCache<>(2);
+        final List<String> removed = new ArrayList<>();
+        map.setRemoveHandler(new LeastRecentlyUsedMap.RemoveHandler<String>() {
+            @Override
+            public void onRemove(final String value) {
+                removed.add(value);
+            }
+        });
+        map.put("one", "1");
+        map.put("two", "2");
+        map.put("three", "3");
+        assertThat(map.keySet()).containsExactly("two", "three");
+        assertThat(removed).containsExactly("1");
+    }
+
 }